@@ -22,12 +22,12 @@
  *******************************************************************************/
 package com.gisgraphy.compound;
 
-import static com.gisgraphy.compound.Trie.CONDENSE;
-import static com.gisgraphy.compound.Trie.trie;
-
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -38,12 +38,18 @@ import java.util.regex.Pattern;
  * This decompounder aim is to split a word based on words list but keep the unknow words: 
  * e.g : if words are {weg,wald} then foowegwald will return [foowegwald foo weg wald].
  * lucene one would have returned [weg wald].
+ * <br/><br/>
+ * The words are put in {@link WordAutomaton}s : a text is scanned once to find the
+ * words, then the split points are the ones the former regex (built with {@link Trie})
+ * found : at every index, the longest word that starts there.
  * 
  */
 public class Decompounder {
-	private Pattern p;
-	private Pattern concatenatePattern;
-	private Pattern addPattern;
+	/**
+	 * The words file of the solr decompound filter, see {@link #loadWords(String)}
+	 */
+	public static final String COMPOUND_FILE = "compound.txt";
+	
 	public enum state {CONCATENATE, SEPARATE, NOT_APPLICABLE};
 	Pattern ENDING_POINT = Pattern.compile("\\.$");
 	
@@ -71,6 +77,26 @@ public class Decompounder {
 		}
 	};
 	
+	private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>(){
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+	};
+	
+	/**
+	 * The words that end a word (they ends with a dot in the list), case is ignored for ascii letters only
+	 */
+	private WordAutomaton endWords;
+	/**
+	 * The same words as {@link #endWords} but unicode case is ignored
+	 */
+	private WordAutomaton unicodeEndWords;
+	/**
+	 * The words that can be anywhere in a word
+	 */
+	private WordAutomaton inWords;
+	
 	/**
 	 * create a basic decompounder with default ending word
 	 */
@@ -84,138 +110,202 @@ public class Decompounder {
 		if (words==null){
 			throw new RuntimeException("words list is mandatory for a decompounder");
 		}
-		List<String> inWords = new ArrayList<String>();
-		List<String> endWords = new ArrayList<String>();
+		List<String> inWordsList = new ArrayList<String>();
+		List<String> endWordsList = new ArrayList<String>();
 		for (String word: words){
 			if (word.endsWith(".")){
 				String endWord = word.substring(0, word.length()-1);
-				endWords.add(endWord);
+				endWordsList.add(endWord);
 			} else {
-				inWords.add(word);
+				inWordsList.add(word);
 			}
 			
 		}
-		String re = trie(inWords, CONDENSE);
-		String re2 = trie(endWords, CONDENSE);
-		concatenatePattern = Pattern
-				.compile("((\\S|\\s)("+re2+"\\b[\\.]?))",Pattern.CASE_INSENSITIVE);
-		 addPattern = Pattern
-				.compile("(\\b([a-z]+)\\s?("+re2+"\\b[\\.]?))",Pattern.CASE_INSENSITIVE);
-		
-		re= "((?:("+re2+"\\b[\\.]?))|(?:"+re+"))";
-		//System.out.println(re);
-		p = Pattern
-				.compile(re, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+		endWords = new WordAutomaton(endWordsList, false);
+		unicodeEndWords = new WordAutomaton(endWordsList, true);
+		inWords = new WordAutomaton(inWordsList, true);
+	}
+	
+	/**
+	 * @param filePath the path of a words file in the classpath (e.g : {@link #COMPOUND_FILE}),
+	 * one word per line, the empty lines and the ones that start with '#' are ignored
+	 * @return the words to create a {@link Decompounder}
+	 */
+	public static List<String> loadWords(String filePath){
+		if (filePath==null){
+			throw new RuntimeException("Decompounder : Can not load a null filepath");
+		}
+		InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(filePath);
+		if (inputStream == null) {
+			throw new RuntimeException("file " + filePath + " does not exists or is not present in classpath");
+		}
+		List<String> words = new ArrayList<String>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() > 0 && !line.startsWith("#")) {
+					words.add(line);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e.getMessage(), e);
+		} finally {
+			try {
+				if (reader != null) {
+					reader.close();
+				} else {
+					inputStream.close();
+				}
+			} catch (IOException e) {
+				//ignore
+			}
+		}
+		return words;
 	}
 
 	public String[] decompound(String str) {
-		//Simple but probably not optimized
-		Matcher m = p.matcher(str);
-		StringBuffer s = new StringBuffer();
+		int length = str.length();
+		Buffers buffers = BUFFERS.get();
+		int[] longestEndWords = buffers.longestEndWords(length);
+		int[] longestInWords = buffers.longestInWords(length);
+		unicodeEndWords.findLongestWords(str, longestEndWords);
+		inWords.findLongestWords(str, longestInWords);
+		StringBuilder s = buffers.text();
 		boolean found=false;
-		while (m.find()) {
+		int appended = 0;
+		int start = 0;
+		while (start <= length) {
+			int end = -1;
+			if (longestEndWords[start] >= 0 && isWordBoundary(str, start + longestEndWords[start])){
+				end = withEndingPoint(str, start + longestEndWords[start]);
+			} else if (longestInWords[start] >= 0){
+				end = start + longestInWords[start];
+			}
+			if (end < 0){
+				start++;
+				continue;
+			}
 			found=true;
-			m.appendReplacement(s, " " + m.group(0) + " ");
+			s.append(str, appended, start).append(' ').append(str, start, end).append(' ');
+			appended = end;
+			start = end == start ? start + 1 : end;
 		}
-		m.appendTail(s);
 		if(found){
-		return s.toString().replaceAll("\\s+", " ").trim().split(" ");
+			s.append(str, appended, length);
+			StringBuilder result = new StringBuilder(s.length());
+			appendWithSingleSpaces(s, result);
+			return result.toString().split(" ");
 		} else {
 			return new String[]{str};
 		}
 	}
 	
 	public String getOtherFormat(String str){
-		state state = getSate(str);
-		if (state==com.gisgraphy.compound.Decompounder.state.CONCATENATE){
-			return separate(str);
-		} else if (state == com.gisgraphy.compound.Decompounder.state.SEPARATE){
-			return concatenate(str);
-		} else {
-			return str;
+		//separate and concatenate are the same
+		return separate(str);
+	}
+	
+	/**
+	 * Streaming version of {@link #getOtherFormat(String)} for the importers : the name is
+	 * scanned once and nothing is allocated but the appended characters
+	 * @param name a name
+	 * @param out where the other format is appended
+	 * @return false if the name is not a decompound name (see {@link #isDecompoundName(String)}), 
+	 * nothing is appended then
+	 */
+	public boolean appendOtherFormat(CharSequence name, StringBuilder out){
+		if (name==null){
+			return false;
 		}
+		Buffers buffers = BUFFERS.get();
+		int[] longest = buffers.longestEndWords(name.length());
+		endWords.findLongestWords(name, longest);
+		int start = findConcatenate(name, 0, longest);
+		if (start < 0){
+			return false;
+		}
+		StringBuilder s = buffers.text();
+		s.append(name, 0, start);
+		int end = appendConcatenateReplacement(name, start, longest, s, false);
+		s.append(name, end, name.length());
+		appendWithSingleSpaces(s, out);
+		return true;
 	}
 	
 	public String getOtherFormatForText(String text){
 		if (text==null){
 			return text;
 		}
-		Matcher m = concatenatePattern.matcher(text);
-				StringBuffer s = new StringBuffer();
-				while (m.find()) {
-					/*System.out.println("--------------");
-					System.out.println(m.group(1));
-					System.out.println(m.group(2));
-					System.out.println(m.group(3));
-					System.out.println("--------------");*/
-					if (" ".equals(m.group(2))|| "-".equals(m.group(2))){
-					m.appendReplacement(s,  m.group(3) );
-					} else {
-						m.appendReplacement(s,  m.group(2)+" " +m.group(3) + " ");
-					}
-		}
-				m.appendTail(s);
-				return s.toString().replaceAll("\\s+", " ").trim();
+		Buffers buffers = BUFFERS.get();
+		int[] longest = buffers.longestEndWords(text.length());
+		endWords.findLongestWords(text, longest);
+		StringBuilder s = buffers.text();
+		int appended = 0;
+		int start;
+		while ((start = findConcatenate(text, appended, longest)) >= 0) {
+			s.append(text, appended, start);
+			appended = appendConcatenateReplacement(text, start, longest, s, true);
+		}
+		s.append(text, appended, text.length());
+		StringBuilder result = new StringBuilder(s.length());
+		appendWithSingleSpaces(s, result);
+		return result.toString();
 	}
+	
 	public String addOtherFormat(String text){
 		if (text==null){
 			return text;
 		}
-		Matcher m = addPattern.matcher(text);
-				StringBuffer s = new StringBuffer();
-				while (m.find()) {
-					/*System.out.println("--------------");
-					System.out.println(m.group(1));
-					System.out.println(m.group(2));
-					System.out.println(m.group(3));
-					System.out.println("--------------");*/
-					if (" ".equals(m.group(2))|| "-".equals(m.group(2))){
-					m.appendReplacement(s,  m.group(3) );
-					} else {
-						m.appendReplacement(s,  m.group(2)+" " +m.group(3) + " "+m.group(2)+m.group(3) + " ");
-					}
-		}
-				m.appendTail(s);
-				return s.toString().replaceAll("\\s+", " ").trim();
+		int length = text.length();
+		Buffers buffers = BUFFERS.get();
+		int[] longest = buffers.longestEndWords(length);
+		endWords.findLongestWords(text, longest);
+		StringBuilder s = buffers.text();
+		int appended = 0;
+		int start = 0;
+		while (start < length) {
+			//(\b([a-z]+)\s?(endWord\b[\.]?)) : the letters are given back one by one
+			int lettersEnd = start;
+			if (isWordBoundary(text, start)){
+				while (lettersEnd < length && isAsciiLetter(text.charAt(lettersEnd))){
+					lettersEnd++;
+				}
+			}
+			int end = -1;
+			int wordStart = -1;
+			for (int nameEnd = lettersEnd; nameEnd > start && end < 0; nameEnd--) {
+				if (nameEnd < length && isWhitespace(text.charAt(nameEnd))){
+					wordStart = nameEnd + 1;
+					end = matchEndWord(text, wordStart, longest);
+				}
+				if (end < 0){
+					wordStart = nameEnd;
+					end = matchEndWord(text, wordStart, longest);
+				}
+				if (end >= 0){
+					s.append(text, appended, start)
+					.append(text, start, nameEnd).append(' ').append(text, wordStart, end).append(' ')
+					.append(text, start, nameEnd).append(text, wordStart, end).append(' ');
+					appended = end;
+				}
+			}
+			start = end >= 0 ? end : start + 1;
+		}
+		s.append(text, appended, length);
+		StringBuilder result = new StringBuilder(s.length());
+		appendWithSingleSpaces(s, result);
+		return result.toString();
 	}
 	
 	
 	
 	public String OtherFormatForText(String text){
-		if (text==null){
-			return text;
-		}
-		Matcher m = concatenatePattern.matcher(text);
-				StringBuffer s = new StringBuffer();
-				while (m.find()) {
-					if (" ".equals(m.group(2))|| "-".equals(m.group(2))){
-					m.appendReplacement(s,  m.group(3) );
-					} else {
-						m.appendReplacement(s,  m.group(2)+" " +m.group(3) + " ");
-					}
-		}
-				m.appendTail(s);
-				return s.toString().replaceAll("\\s+", " ").trim();
+		return getOtherFormatForText(text);
 	}
 	
-
-	/*public String separate(String str) {
-		//Simple but probably not optimized
-		Matcher m = p.matcher(str);
-		StringBuffer s = new StringBuffer();
-		boolean found=false;
-		while (m.find()) {
-			found=true;
-			m.appendReplacement(s, " " + m.group(0) + " ");
-		}
-		m.appendTail(s);
-		if(found){
-		return s.toString().replaceAll("\\s+", " ").trim();
-		} else {
-			return str;
-		}
-	}*/
-	
 	public String concatenate(String text){
 		return separate(text);
 	}
@@ -224,16 +314,9 @@ public class Decompounder {
 		if (text==null){
 			return text;
 		}
-		Matcher m = concatenatePattern.matcher(text);
-				StringBuffer s = new StringBuffer();
-				while (m.find()) {
-					if (" ".equals(m.group(2))){
-					m.appendReplacement(s,  m.group(3) );
-					} else {
-						m.appendReplacement(s,  m.group(2)+" " +m.group(3) + " ");
-					}
-				m.appendTail(s);
-				return s.toString().replaceAll("\\s+", " ").trim();
+		StringBuilder result = new StringBuilder(text.length() + 2);
+		if (appendOtherFormat(text, result)){
+			return result.toString();
 		}
 		return text;
 	}
@@ -242,9 +325,11 @@ public class Decompounder {
 		if (text==null){
 			return state.NOT_APPLICABLE;
 		}
-		Matcher m = concatenatePattern.matcher(text);
-		if (m.find()){
-			if (" ".equals(m.group(2))){
+		int[] longest = BUFFERS.get().longestEndWords(text.length());
+		endWords.findLongestWords(text, longest);
+		int start = findConcatenate(text, 0, longest);
+		if (start >= 0){
+			if (text.charAt(start) == ' ' && wordStart(text, start) == start + 1){
 				return state.SEPARATE;
 			} else {
 				return state.CONCATENATE;
@@ -269,8 +354,153 @@ public class Decompounder {
 		}
 	}
 	
+	/**
+	 * Find the next match of ((\S|\s)(endWord\b[\.]?)) : any character followed by an end word
+	 * @return the start of the match (the index of the character before the end word) or -1
+	 */
+	private int findConcatenate(CharSequence text, int from, int[] longest){
+		for (int start = from; start < text.length(); start++) {
+			if (matchEndWord(text, wordStart(text, start), longest) >= 0){
+				return start;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Append the replacement of the match that starts at start : the end word if the character 
+	 * before is a space (or a '-' if dash is true), the character, a space, the end word and a space otherwise
+	 * @return the end of the match
+	 */
+	private int appendConcatenateReplacement(CharSequence text, int start, int[] longest, StringBuilder out, boolean dash){
+		int wordStart = wordStart(text, start);
+		int end = matchEndWord(text, wordStart, longest);
+		boolean separator = wordStart == start + 1 && (text.charAt(start) == ' ' || (dash && text.charAt(start) == '-'));
+		if (separator){
+			out.append(text, wordStart, end);
+		} else {
+			out.append(text, start, wordStart).append(' ').append(text, wordStart, end).append(' ');
+		}
+		return end;
+	}
+	
+	/**
+	 * @return the index after the (code point) character at start
+	 */
+	private static int wordStart(CharSequence text, int start){
+		return start + Character.charCount(Character.codePointAt(text, start));
+	}
+	
+	/**
+	 * Match (endWord\b[\.]?) at start
+	 * @return the end of the match or -1
+	 */
+	private static int matchEndWord(CharSequence text, int start, int[] longest){
+		if (longest[start] < 0 || !isWordBoundary(text, start + longest[start])){
+			return -1;
+		}
+		return withEndingPoint(text, start + longest[start]);
+	}
+	
+	private static int withEndingPoint(CharSequence text, int end){
+		return end < text.length() && text.charAt(end) == '.' ? end + 1 : end;
+	}
+	
+	/**
+	 * @return true if there is a word boundary (\b in a regex) at the index
+	 */
+	private static boolean isWordBoundary(CharSequence text, int index){
+		boolean left = index > 0 && isWordCharacter(text, index - Character.charCount(Character.codePointBefore(text, index)));
+		boolean right = index < text.length() && isWordCharacter(text, index);
+		return left != right;
+	}
+	
+	private static boolean isWordCharacter(CharSequence text, int index){
+		int codePoint = Character.codePointAt(text, index);
+		if (codePoint == '_' || Character.isLetterOrDigit(codePoint)){
+			return true;
+		}
+		if (Character.getType(codePoint) != Character.NON_SPACING_MARK){
+			return false;
+		}
+		//a mark is part of the word of its base character
+		for (int i = index - 1; i >= 0; i--) {
+			codePoint = Character.codePointAt(text, i);
+			if (Character.isLetterOrDigit(codePoint)){
+				return true;
+			}
+			if (Character.getType(codePoint) != Character.NON_SPACING_MARK){
+				return false;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean isAsciiLetter(char c){
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+	
+	/**
+	 * @return true for the characters of \s in a regex
+	 */
+	private static boolean isWhitespace(char c){
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+	
+	/**
+	 * Same as text.replaceAll("\\s+", " ").trim()
+	 */
+	private static void appendWithSingleSpaces(CharSequence text, StringBuilder out){
+		int start = 0;
+		int end = text.length();
+		while (start < end && text.charAt(start) <= ' '){
+			start++;
+		}
+		while (end > start && text.charAt(end - 1) <= ' '){
+			end--;
+		}
+		boolean space = false;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (isWhitespace(c)){
+				if (!space){
+					out.append(' ');
+					space = true;
+				}
+			} else {
+				out.append(c);
+				space = false;
+			}
+		}
+	}
+	
+	/**
+	 * The arrays and the builder a thread reuse to scan the texts
+	 */
+	private static final class Buffers {
+		private int[] longestEndWords = new int[64];
+		private int[] longestInWords = new int[64];
+		private final StringBuilder text = new StringBuilder(64);
+		
+		private int[] longestEndWords(int length){
+			if (longestEndWords.length <= length){
+				longestEndWords = new int[Math.max(length + 1, longestEndWords.length * 2)];
+			}
+			return longestEndWords;
+		}
+		
+		private int[] longestInWords(int length){
+			if (longestInWords.length <= length){
+				longestInWords = new int[Math.max(length + 1, longestInWords.length * 2)];
+			}
+			return longestInWords;
+		}
+		
+		private StringBuilder text(){
+			text.setLength(0);
+			return text;
+		}
+	}
 	
 
 }
-
-
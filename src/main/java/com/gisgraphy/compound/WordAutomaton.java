@@ -0,0 +1,178 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.compound;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An Aho-Corasick automaton of words, that finds in one left to right scan of
+ * a text the longest word that starts at every index. The words are compared
+ * ignoring case as a {@link java.util.regex.Pattern} compiled with
+ * CASE_INSENSITIVE (and UNICODE_CASE if unicodeCase is true) does.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ * 
+ */
+final class WordAutomaton {
+
+	private final Node root = new Node();
+
+	private final boolean unicodeCase;
+
+	/**
+	 * True if there is no words (the empty words are ignored as {@link Trie}
+	 * does) : the regex of such a list matches an empty string everywhere
+	 */
+	private final boolean matchesEmpty;
+
+	WordAutomaton(List<String> words, boolean unicodeCase) {
+		this.unicodeCase = unicodeCase;
+		boolean empty = true;
+		for (String word : words) {
+			if (word.length() > 0) {
+				add(word);
+				empty = false;
+			}
+		}
+		matchesEmpty = empty;
+		computeFailures();
+	}
+
+	private void add(String word) {
+		Node node = root;
+		for (int i = 0; i < word.length(); i++) {
+			char c = fold(word.charAt(i));
+			Node child = node.child(c);
+			if (child == null) {
+				child = node.addChild(c);
+			}
+			node = child;
+		}
+		node.length = word.length();
+	}
+
+	/**
+	 * Link every node to the node of its longest suffix, breadth first
+	 */
+	private void computeFailures() {
+		List<Node> queue = new ArrayList<Node>();
+		for (Node child : root.children) {
+			child.failure = root;
+			queue.add(child);
+		}
+		for (int i = 0; i < queue.size(); i++) {
+			Node node = queue.get(i);
+			node.output = node.failure.length > 0 ? node.failure : node.failure.output;
+			for (int j = 0; j < node.characters.length; j++) {
+				Node child = node.children[j];
+				Node failure = node.failure;
+				while (failure != root && failure.child(node.characters[j]) == null) {
+					failure = failure.failure;
+				}
+				Node next = failure.child(node.characters[j]);
+				child.failure = next != null ? next : root;
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * @param text
+	 *            the text to scan
+	 * @param longest
+	 *            an array of at least text.length() + 1 elements, filled with
+	 *            the length of the longest word that starts at each index of
+	 *            the text (the last element is the end of the text), -1 if
+	 *            no word starts there
+	 */
+	void findLongestWords(CharSequence text, int[] longest) {
+		int length = text.length();
+		Arrays.fill(longest, 0, length + 1, matchesEmpty ? 0 : -1);
+		Node node = root;
+		for (int i = 0; i < length; i++) {
+			char c = fold(text.charAt(i));
+			Node next = node.child(c);
+			while (next == null && node != root) {
+				node = node.failure;
+				next = node.child(c);
+			}
+			node = next != null ? next : root;
+			for (Node match = node.length > 0 ? node : node.output; match != null; match = match.output) {
+				int start = i - match.length + 1;
+				if (match.length > longest[start]) {
+					longest[start] = match.length;
+				}
+			}
+		}
+	}
+
+	private char fold(char c) {
+		if (unicodeCase) {
+			return Character.toLowerCase(Character.toUpperCase(c));
+		}
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	private static final class Node {
+
+		private char[] characters = new char[0];
+
+		private Node[] children = new Node[0];
+
+		private Node failure;
+
+		/**
+		 * The nearest node that ends a word in the failure links
+		 */
+		private Node output;
+
+		/**
+		 * The length of the word that ends at this node, 0 if none
+		 */
+		private int length;
+
+		private Node child(char c) {
+			int index = Arrays.binarySearch(characters, c);
+			return index >= 0 ? children[index] : null;
+		}
+
+		private Node addChild(char c) {
+			int index = -Arrays.binarySearch(characters, c) - 1;
+			char[] newCharacters = new char[characters.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(characters, 0, newCharacters, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(characters, index, newCharacters, index + 1, characters.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+			Node child = new Node();
+			newCharacters[index] = c;
+			newChildren[index] = child;
+			characters = newCharacters;
+			children = newChildren;
+			return child;
+		}
+	}
+
+}
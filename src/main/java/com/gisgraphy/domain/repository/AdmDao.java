@@ -31,6 +31,7 @@ import javax.persistence.PersistenceException;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
@@ -39,7 +40,6 @@ import com.gisgraphy.domain.geoloc.entity.Adm;
 import com.gisgraphy.domain.geoloc.entity.City;
 import com.gisgraphy.domain.geoloc.entity.GisFeature;
 import com.gisgraphy.domain.geoloc.entity.ZipCode;
-import com.gisgraphy.domain.valueobject.SRID;
 import com.vividsolutions.jts.geom.Point;
 
 /**
@@ -54,6 +54,9 @@ public class AdmDao extends GenericGisDao<Adm> implements IAdmDao {
 	super(Adm.class);
     }
     
+    @Autowired(required = false)
+    private IShapeIndex shapeIndex;
+    
     @Override
     public Adm get(final Long id) {
 	Assert.notNull(id, "Can not retrieve an Ogject with a null id");
@@ -760,25 +763,42 @@ public class AdmDao extends GenericGisDao<Adm> implements IAdmDao {
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public List<Adm> ListByShape(final Point location,final String countryCode) {
 		Assert.notNull(location);
+		if (shapeIndex != null && shapeIndex.isReady()){
+			final List<Long> ids = shapeIndex.listAdmIdsByShape(location, countryCode);
+			return (List<Adm>) this.getHibernateTemplate().execute(new HibernateCallback() {
+
+			    public Object doInHibernate(Session session)
+				    throws PersistenceException {
+			    	List<Adm> result = new ArrayList<Adm>();
+			    	for (Long id : ids){
+			    		Adm adm = (Adm) session.get(persistentClass, id);
+			    		if (adm != null){
+			    			result.add(adm);
+			    		}
+			    	}
+			    	return result;
+			    }
+			});
+		}
 		return (List<Adm>) this.getHibernateTemplate().execute(new HibernateCallback() {
 
 		    public Object doInHibernate(Session session)
 			    throws PersistenceException {
 		    	//select name,municipality,source,openstreetmapid from city c 
 		    	//where st_contains(c.shape,ST_GeometryFromText('POINT(2.349 48.868)',4326))=true limit 1
-		    String pointAsString = "ST_GeometryFromText('POINT("+location.getX()+" "+location.getY()+")',"+SRID.WGS84_SRID.getSRID()+")";
 			String queryString = "from " + persistentClass.getSimpleName()
-				+ " as a where st_contains(a.shape,"+pointAsString+")=true ";
-					;
+				+ " as a where st_contains(a.shape,:point)=true ";
 			if (countryCode!=null ){
-				queryString+=" and a.countryCode='"+countryCode+"'";
+				queryString+=" and a.countryCode=:countryCode";
 			}
 			queryString = queryString+ " order by st_area(a.shape) desc";
 			
 
 			Query qry = session.createQuery(queryString);
-
-			//qry.setParameter("point2", location);
+			SpatialParameters.setPoint(qry, "point", location);
+			if (countryCode!=null ){
+				qry.setString("countryCode", countryCode);
+			}
 			List<Adm> result = (List<Adm>) qry.list();
 			if (result == null) {
 			    return new ArrayList<Adm>();
@@ -789,4 +809,8 @@ public class AdmDao extends GenericGisDao<Adm> implements IAdmDao {
 	}
     
 
+	public void setShapeIndex(IShapeIndex shapeIndex) {
+		this.shapeIndex = shapeIndex;
+	}
+
 }
@@ -30,6 +30,7 @@ import javax.persistence.PersistenceException;
 
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
@@ -38,7 +39,6 @@ import com.gisgraphy.domain.geoloc.entity.Adm;
 import com.gisgraphy.domain.geoloc.entity.City;
 import com.gisgraphy.domain.geoloc.entity.OpenStreetMap;
 import com.gisgraphy.domain.geoloc.entity.ZipCode;
-import com.gisgraphy.domain.valueobject.SRID;
 import com.vividsolutions.jts.geom.Point;
 
 /**
@@ -55,6 +55,9 @@ public class CityDao extends GenericGisDao<City> implements ICityDao {
     public CityDao() {
 	super(City.class);
     }
+    
+    @Autowired(required = false)
+    private IShapeIndex shapeIndex;
 
     /*
      * (non-Javadoc)
@@ -99,20 +102,34 @@ public class CityDao extends GenericGisDao<City> implements ICityDao {
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public City getByShape(final Point location,final String countryCode,final boolean filterMunicipality) {
 		Assert.notNull(location);
+		if (shapeIndex != null && shapeIndex.isReady()){
+			final Long id = shapeIndex.getCityIdByShape(location, countryCode, filterMunicipality);
+			if (id == null){
+				return null;
+			}
+			return (City) this.getHibernateTemplate().execute(new HibernateCallback() {
+
+			    public Object doInHibernate(Session session)
+				    throws PersistenceException {
+			    	City result = (City) session.get(persistentClass, id);
+			    	initialize(result);
+			    	return result;
+			    }
+			});
+		}
 		return (City) this.getHibernateTemplate().execute(new HibernateCallback() {
 
 		    public Object doInHibernate(Session session)
 			    throws PersistenceException {
 		    	//select name,municipality,source,openstreetmapid from city c 
 		    	//where st_contains(c.shape,ST_GeometryFromText('POINT(2.349 48.868)',4326))=true limit 1
-		    String pointAsString = "ST_GeometryFromText('POINT("+location.getX()+" "+location.getY()+")',"+SRID.WGS84_SRID.getSRID()+")";
 			String queryString = "from " + persistentClass.getSimpleName()
-				+ " as c where st_contains(c.shape,"+pointAsString+")=true ";
+				+ " as c where st_contains(c.shape,:point)=true ";
 			if (filterMunicipality){
 				queryString+=" and c.municipality=true";
 			}
 			if (countryCode!=null ){
-				queryString+=" and c.countryCode='"+countryCode+"'";
+				queryString+=" and c.countryCode=:countryCode";
 			}
 			queryString = queryString+ " order by st_area(c.shape)";
 			//we need to sort by shape due to error in osm data 
@@ -121,26 +138,119 @@ public class CityDao extends GenericGisDao<City> implements ICityDao {
 			//cause there is the city and the district
 
 			Query qry = session.createQuery(queryString).setMaxResults(1);
-
-			//qry.setParameter("point2", location);
-			City result = (City) qry.uniqueResult();
-			//initialize
-			if (result!=null){
-				Set<ZipCode> zipCodes = result.getZipCodes();
-				if (zipCodes!=null){
-					zipCodes.size();
-				}
-				Adm adm = result.getAdm();
-				if (adm!=null){
-					adm.getName();
-				}
+			SpatialParameters.setPoint(qry, "point", location);
+			if (countryCode!=null ){
+				qry.setString("countryCode", countryCode);
 			}
+			City result = (City) qry.uniqueResult();
+			initialize(result);
 
 			return result;
 		    }
 		});
 	}
 	
+	/**
+	 * initialize the lazy associations of a city that are used outside of the
+	 * session
+	 */
+	private void initialize(City city){
+		if (city!=null){
+			Set<ZipCode> zipCodes = city.getZipCodes();
+			if (zipCodes!=null){
+				zipCodes.size();
+			}
+			Adm adm = city.getAdm();
+			if (adm!=null){
+				adm.getName();
+			}
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.GenericGisDao#getListShapesQuery()
+	 */
+	@Override
+	protected String getListShapesQuery() {
+		return "select c.id, c.shape, c.countryCode, c.municipality from " + persistentClass.getSimpleName()
+				+ " as c where c.id > ? and c.shape is not null order by c.id";
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.ICityDao#listLookupDataByCountryCodeFrom(java.lang.String, long, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> listLookupDataByCountryCodeFrom(final String countryCode, final long idFrom, final int maxResults) {
+		Assert.notNull(countryCode);
+		return (List<Object[]>) this.getHibernateTemplate().execute(
+				new HibernateCallback() {
+
+				    public Object doInHibernate(Session session)
+					    throws PersistenceException {
+					String queryString = "select c.id, c.featureId, c.name, c.location, c.shape, c.municipality, c.population,"
+						+ " c.adm1Name, c.adm2Name, c.adm3Name, c.adm4Name, c.adm5Name from " + persistentClass.getSimpleName()
+						+ " as c where c.countryCode=? and c.id > ? order by c.id";
+					Query qry = session.createQuery(queryString);
+					qry.setParameter(0, countryCode);
+					qry.setParameter(1, idFrom);
+					qry.setMaxResults(maxResults);
+					return qry.list();
+				    }
+				});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.ICityDao#listZipCodesByCountryCode(java.lang.String)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> listZipCodesByCountryCode(final String countryCode) {
+		Assert.notNull(countryCode);
+		return (List<Object[]>) this.getHibernateTemplate().execute(
+				new HibernateCallback() {
+
+				    public Object doInHibernate(Session session)
+					    throws PersistenceException {
+					String queryString = "select c.id, z.code from " + persistentClass.getSimpleName()
+						+ " as c join c.zipCodes as z where c.countryCode=?";
+					Query qry = session.createQuery(queryString);
+					qry.setParameter(0, countryCode);
+					return qry.list();
+				    }
+				});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.ICityDao#listAlternateNamesByCountryCode(java.lang.String)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> listAlternateNamesByCountryCode(final String countryCode) {
+		Assert.notNull(countryCode);
+		return (List<Object[]>) this.getHibernateTemplate().execute(
+				new HibernateCallback() {
+
+				    public Object doInHibernate(Session session)
+					    throws PersistenceException {
+					String queryString = "select c.id, a.name from " + persistentClass.getSimpleName()
+						+ " as c join c.alternateNames as a where c.countryCode=?";
+					Query qry = session.createQuery(queryString);
+					qry.setParameter(0, countryCode);
+					return qry.list();
+				    }
+				});
+	}
+
+	public void setShapeIndex(IShapeIndex shapeIndex) {
+		this.shapeIndex = shapeIndex;
+	}
+	
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public int fixPolygons(){
 		return (Integer) this.getHibernateTemplate().execute(
@@ -28,6 +28,7 @@ import javax.persistence.PersistenceException;
 
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.stereotype.Repository;
@@ -35,7 +36,6 @@ import org.springframework.util.Assert;
 
 import com.gisgraphy.domain.geoloc.entity.City;
 import com.gisgraphy.domain.geoloc.entity.CitySubdivision;
-import com.gisgraphy.domain.valueobject.SRID;
 import com.vividsolutions.jts.geom.Point;
 
 /**
@@ -51,6 +51,9 @@ public class CitySubdivisionDao extends GenericGisDao<CitySubdivision>
 	
 	private ICityDao cityDao;
 	
+	@Autowired(required = false)
+	private IShapeIndex shapeIndex;
+	
     /**
      * Default constructor
      */
@@ -68,21 +71,23 @@ public class CitySubdivisionDao extends GenericGisDao<CitySubdivision>
 			    throws PersistenceException {
 		    	//select name,municipality,source,openstreetmapid from city c 
 		    	//where st_contains(c.shape,ST_GeometryFromText('POINT(2.349 48.868)',4326))=true limit 1
-		    String pointAsString = "ST_GeometryFromText('POINT("+location.getX()+" "+location.getY()+")',"+SRID.WGS84_SRID.getSRID()+")";
 			String queryString = "from " + persistentClass.getSimpleName()
-				+ " as c where c.cityId= "+cityId;
+				+ " as c where c.cityId= :cityId";
 				if (maxDistance !=null && maxDistance >0){
-					queryString += " and ST_Distance_Sphere(c.location, "+pointAsString+" ) < "+maxDistance;
+					queryString += " and ST_Distance_Sphere(c.location, :point ) < :maxDistance";
 				}
-			queryString = queryString+ " order by ST_Distance_Sphere(c.location, "+pointAsString+" )";
+			queryString = queryString+ " order by ST_Distance_Sphere(c.location, :point )";
 			//we need to sort by distance due to error in osm data 
 			//eg : if we search for the nearest city of http://www.openstreetmap.org/way/27904415
 			// we can have 2 cities : http://www.openstreetmap.org/way/75509282 vs http://www.openstreetmap.org/relation/388250
 			//cause there is the city and the district
 
 			Query qry = session.createQuery(queryString).setMaxResults(1);
-
-			//qry.setParameter("point2", location);
+			qry.setLong("cityId", cityId);
+			if (maxDistance !=null && maxDistance >0){
+				qry.setDouble("maxDistance", maxDistance);
+			}
+			SpatialParameters.setPoint(qry, "point", location);
 			CitySubdivision result = (CitySubdivision) qry.uniqueResult();
 
 			return result;
@@ -122,17 +127,20 @@ public class CitySubdivisionDao extends GenericGisDao<CitySubdivision>
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public CitySubdivision getByShape(final Point location,final String countryCode) {
 		Assert.notNull(location);
+		if (shapeIndex != null && shapeIndex.isReady()){
+			Long id = shapeIndex.getCitySubdivisionIdByShape(location, countryCode);
+			return id == null ? null : get(id);
+		}
 		return (CitySubdivision) this.getHibernateTemplate().execute(new HibernateCallback() {
 
 		    public Object doInHibernate(Session session)
 			    throws PersistenceException {
 		    	//select name,municipality,source,openstreetmapid from city c 
 		    	//where st_contains(c.shape,ST_GeometryFromText('POINT(2.349 48.868)',4326))=true limit 1
-		    String pointAsString = "ST_GeometryFromText('POINT("+location.getX()+" "+location.getY()+")',"+SRID.WGS84_SRID.getSRID()+")";
 			String queryString = "from " + persistentClass.getSimpleName()
-				+ " as c where st_contains(c.shape,"+pointAsString+")=true ";
+				+ " as c where st_contains(c.shape,:point)=true ";
 			if (countryCode!=null ){
-				queryString+=" and c.countryCode='"+countryCode+"'";
+				queryString+=" and c.countryCode=:countryCode";
 			}
 			queryString = queryString+ " order by st_area(c.shape)";
 			//we need to sort by shape due to error in osm data 
@@ -141,8 +149,10 @@ public class CitySubdivisionDao extends GenericGisDao<CitySubdivision>
 			//cause there is the city and the district
 
 			Query qry = session.createQuery(queryString).setMaxResults(1);
-
-			//qry.setParameter("point2", location);
+			SpatialParameters.setPoint(qry, "point", location);
+			if (countryCode!=null ){
+				qry.setString("countryCode", countryCode);
+			}
 			CitySubdivision result = (CitySubdivision) qry.uniqueResult();
 
 			return result;
@@ -150,11 +160,36 @@ public class CitySubdivisionDao extends GenericGisDao<CitySubdivision>
 		});
 	}
 
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.domain.repository.ICitySubdivisionDao#listNamesAndShapesByCountryCodeFrom(java.lang.String, long, int)
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public List<Object[]> listNamesAndShapesByCountryCodeFrom(final String countryCode, final long idFrom, final int maxResults) {
+		Assert.notNull(countryCode);
+		return (List<Object[]>) this.getHibernateTemplate().execute(new HibernateCallback() {
+
+		    public Object doInHibernate(Session session)
+			    throws PersistenceException {
+			String queryString = "select c.id, c.name, c.shape from " + persistentClass.getSimpleName()
+				+ " as c where c.countryCode=? and c.id > ? and c.shape is not null order by c.id";
+			Query qry = session.createQuery(queryString);
+			qry.setParameter(0, countryCode);
+			qry.setParameter(1, idFrom);
+			qry.setMaxResults(maxResults);
+			return qry.list();
+		    }
+		});
+	}
+
 	@Required
 	public void setCityDao(ICityDao cityDao) {
 		this.cityDao = cityDao;
 	}
 	
+	public void setShapeIndex(IShapeIndex shapeIndex) {
+		this.shapeIndex = shapeIndex;
+	}
+	
 	
 
 	
@@ -0,0 +1,493 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.domain.repository;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.dbcp.DelegatingConnection;
+import org.hibernate.EntityMode;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.jdbc.Work;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.UnionSubclassEntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+import com.gisgraphy.domain.valueobject.SRID;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Load new entities in the database with the postgres COPY protocol instead
+ * of saving them one by one with hibernate : there is no session cache, no
+ * dirty checking and no event, the rows are buffered as text and streamed to
+ * the tables on {@link #flush()}, in the current transaction.
+ * <p>
+ * The columns and the values are read from the hibernate mapping, the ids
+ * are generated with the identifier generator of the entity (the same
+ * sequence as a save) and the geometries are written as hex EWKB. The
+ * tables are copied after the tables they reference (e.g : the house numbers
+ * after the streets), whatever the order they have been used for the first
+ * time, so that the foreign keys are satisfied at each flush.
+ * <p>
+ * Because no event is fired, the entities are not synchronised with the
+ * full text engine, see {@link IGisDao#fireStoredEvents(List)} and
+ * {@link IOpenStreetMapDao#fireStoredEvents(List)}. A loader buffers the
+ * rows of one importer and is not thread safe.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class CopyBulkLoader {
+
+    protected static final Logger logger = LoggerFactory.getLogger(CopyBulkLoader.class);
+
+    /**
+     * default number of buffered rows before a flush
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    static final String NULL_VALUE = "\\N";
+
+    static final char COLUMN_SEPARATOR = '\t';
+
+    static final char ROW_SEPARATOR = '\n';
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private SessionFactory sessionFactory;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private final Map<Class<?>, TableLoader> tables = new LinkedHashMap<Class<?>, TableLoader>();
+
+    private int numberOfBufferedRows = 0;
+
+    private long numberOfLoadedRows = 0;
+
+    /**
+     * Buffer a new entity, the id is generated if it is not set yet
+     * 
+     * @param entity
+     *                the entity to load, the entities it references must
+     *                already be saved or added to the loader
+     * @return the id of the entity
+     */
+    public Serializable add(Object entity) {
+	SessionImplementor session = (SessionImplementor) sessionFactory.getCurrentSession();
+	Class<?> entityClass = Hibernate.getClass(entity);
+	TableLoader table = tables.get(entityClass);
+	if (table == null) {
+	    table = new TableLoader((AbstractEntityPersister) sessionFactory.getClassMetadata(entityClass));
+	    tables.put(entityClass, table);
+	}
+	Serializable id = table.append(entity, session);
+	if (++numberOfBufferedRows >= batchSize) {
+	    flush();
+	}
+	return id;
+    }
+
+    /**
+     * Copy the buffered rows to the database, in the current transaction
+     */
+    public void flush() {
+	if (numberOfBufferedRows == 0) {
+	    return;
+	}
+	long start = System.currentTimeMillis();
+	try {
+	    sessionFactory.getCurrentSession().doWork(new Work() {
+		public void execute(Connection connection) throws SQLException {
+		    CopyManager copyManager = getPostgresConnection(connection).getCopyAPI();
+		    for (Class<?> entityClass : getCopyOrder(getReferences())) {
+			tables.get(entityClass).copy(copyManager);
+		    }
+		}
+	    });
+	    numberOfLoadedRows += numberOfBufferedRows;
+	    logger.info("bulk load of " + numberOfBufferedRows + " rows in " + (System.currentTimeMillis() - start) + " ms (" + numberOfLoadedRows
+		    + " rows loaded)");
+	} finally {
+	    clear();
+	}
+    }
+
+    /**
+     * Discard the buffered rows (e.g : when the transaction is rollbacked)
+     */
+    public void clear() {
+	for (TableLoader table : tables.values()) {
+	    table.clear();
+	}
+	numberOfBufferedRows = 0;
+    }
+
+    /**
+     * @return the number of rows buffered and not copied yet
+     */
+    public int getNumberOfBufferedRows() {
+	return numberOfBufferedRows;
+    }
+
+    /**
+     * @return the number of rows copied since the creation of the loader
+     */
+    public long getNumberOfLoadedRows() {
+	return numberOfLoadedRows;
+    }
+
+    /**
+     * @return the number of buffered rows before a flush
+     */
+    public int getBatchSize() {
+	return batchSize;
+    }
+
+    /**
+     * @param batchSize
+     *                the number of buffered rows before a flush
+     */
+    public void setBatchSize(int batchSize) {
+	this.batchSize = batchSize;
+    }
+
+    @Required
+    public void setSessionFactory(SessionFactory sessionFactory) {
+	this.sessionFactory = sessionFactory;
+    }
+
+    private Map<Class<?>, Set<Class<?>>> getReferences() {
+	Map<Class<?>, Set<Class<?>>> references = new LinkedHashMap<Class<?>, Set<Class<?>>>();
+	for (Map.Entry<Class<?>, TableLoader> table : tables.entrySet()) {
+	    references.put(table.getKey(), table.getValue().referencedClasses);
+	}
+	return references;
+    }
+
+    /**
+     * @param references
+     *                the classes referenced by each loaded class, in the
+     *                order the classes have been used for the first time
+     * @return the loaded classes, each one after the loaded classes (or
+     *         subclasses) it references. The order of use is kept when
+     *         there is no reference between the classes, a cycle is broken
+     *         in the order of use
+     */
+    static List<Class<?>> getCopyOrder(Map<Class<?>, Set<Class<?>>> references) {
+	Set<Class<?>> ordered = new LinkedHashSet<Class<?>>();
+	Set<Class<?>> visiting = new HashSet<Class<?>>();
+	for (Class<?> entityClass : references.keySet()) {
+	    addParentsFirst(entityClass, references, ordered, visiting);
+	}
+	return new ArrayList<Class<?>>(ordered);
+    }
+
+    private static void addParentsFirst(Class<?> entityClass, Map<Class<?>, Set<Class<?>>> references, Set<Class<?>> ordered,
+	    Set<Class<?>> visiting) {
+	if (ordered.contains(entityClass) || !visiting.add(entityClass)) {
+	    return;
+	}
+	for (Class<?> referenced : references.get(entityClass)) {
+	    for (Class<?> loaded : references.keySet()) {
+		if (loaded != entityClass && referenced.isAssignableFrom(loaded)) {
+		    addParentsFirst(loaded, references, ordered, visiting);
+		}
+	    }
+	}
+	ordered.add(entityClass);
+    }
+
+    /**
+     * @return the postgres connection behind the connection of the pool
+     * @throws SQLException
+     *                 if it is not a postgres connection or if the pool
+     *                 does not give access to it
+     */
+    static PGConnection getPostgresConnection(Connection connection) throws SQLException {
+	Connection current = connection;
+	if (current instanceof DelegatingConnection) {
+	    Connection innermost = ((DelegatingConnection) current).getInnermostDelegate();
+	    if (innermost != null) {
+		current = innermost;
+	    }
+	}
+	if (current instanceof PGConnection) {
+	    return (PGConnection) current;
+	}
+	throw new SQLException("The bulk load needs a postgres connection but got " + connection.getClass().getName()
+		+ ", check that the accessToUnderlyingConnectionAllowed property of the datasource is true");
+    }
+
+    /**
+     * @return the geometry as hex EWKB, with the srid {@link SRID#WGS84_SRID}
+     *         if it has none (the geometry itself is not modified)
+     */
+    static String toEWKB(Geometry geometry) {
+	if (geometry.getSRID() == 0) {
+	    geometry = (Geometry) geometry.clone();
+	    geometry.setSRID(SRID.WGS84_SRID.getSRID());
+	}
+	return WKBWriter.toHex(new WKBWriter(2, ByteOrderValues.LITTLE_ENDIAN, true).write(geometry));
+    }
+
+    /**
+     * @return the value as a field of the text format of COPY
+     */
+    static String format(Object value) {
+	if (value == null) {
+	    return NULL_VALUE;
+	}
+	if (value instanceof Boolean) {
+	    return ((Boolean) value).booleanValue() ? "t" : "f";
+	}
+	if (value instanceof byte[]) {
+	    byte[] bytes = (byte[]) value;
+	    StringBuilder hex = new StringBuilder(bytes.length * 2 + 3).append("\\\\x");
+	    for (byte b : bytes) {
+		hex.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+	    }
+	    return hex.toString();
+	}
+	return escape(value.toString());
+    }
+
+    /**
+     * @return the string with the backslashes and the separators escaped
+     */
+    static String escape(String value) {
+	StringBuilder escaped = null;
+	for (int i = 0; i < value.length(); i++) {
+	    char c = value.charAt(i);
+	    String replacement;
+	    switch (c) {
+	    case '\\':
+		replacement = "\\\\";
+		break;
+	    case '\t':
+		replacement = "\\t";
+		break;
+	    case '\n':
+		replacement = "\\n";
+		break;
+	    case '\r':
+		replacement = "\\r";
+		break;
+	    default:
+		replacement = null;
+	    }
+	    if (replacement != null && escaped == null) {
+		escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+	    }
+	    if (escaped != null) {
+		if (replacement == null) {
+		    escaped.append(c);
+		} else {
+		    escaped.append(replacement);
+		}
+	    }
+	}
+	return escaped == null ? value : escaped.toString();
+    }
+
+    /**
+     * @return a statement that only records the values bound by
+     *         {@link Type#nullSafeSet(PreparedStatement, Object, int, SessionImplementor)}
+     *         in the array (the first parameter is stored at index 0)
+     */
+    static PreparedStatement capture(final Object[] values) {
+	return (PreparedStatement) Proxy.newProxyInstance(CopyBulkLoader.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+		new InvocationHandler() {
+		    public Object invoke(Object proxy, Method method, Object[] args) {
+			if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+			    values[((Integer) args[0]).intValue() - 1] = "setNull".equals(method.getName()) ? null : args[1];
+			    return null;
+			}
+			throw new UnsupportedOperationException(method.getName() + " is not supported by the bulk load");
+		    }
+		});
+    }
+
+    private Serializable getIdentifier(Object entity) {
+	if (entity instanceof HibernateProxy) {
+	    return ((HibernateProxy) entity).getHibernateLazyInitializer().getIdentifier();
+	}
+	Serializable id = sessionFactory.getClassMetadata(entity.getClass()).getIdentifier(entity, EntityMode.POJO);
+	if (id == null) {
+	    throw new IllegalStateException("The " + entity.getClass().getSimpleName()
+		    + " referenced by a bulk loaded entity must be saved or added to the bulk loader first");
+	}
+	return id;
+    }
+
+    /**
+     * The buffered rows of a table
+     */
+    private class TableLoader {
+
+	private final AbstractEntityPersister persister;
+
+	private final String copySql;
+
+	private final int[] properties;
+
+	private final int[] columnSpans;
+
+	private final Type[] types;
+
+	/**
+	 * the classes of the entities referenced by the inserted columns
+	 */
+	private final Set<Class<?>> referencedClasses = new HashSet<Class<?>>();
+
+	private final StringBuilder rows = new StringBuilder();
+
+	private int numberOfRows = 0;
+
+	TableLoader(AbstractEntityPersister persister) {
+	    if (persister.isInherited() && !(persister instanceof UnionSubclassEntityPersister)) {
+		throw new IllegalArgumentException("The bulk load of " + persister.getEntityName()
+			+ " is not supported, it is not stored in only one table");
+	    }
+	    this.persister = persister;
+	    this.types = persister.getPropertyTypes();
+	    boolean[] insertable = persister.getPropertyInsertability();
+	    List<String> columns = new ArrayList<String>();
+	    for (String column : persister.getIdentifierColumnNames()) {
+		columns.add(column);
+	    }
+	    List<Integer> insertedProperties = new ArrayList<Integer>();
+	    for (int i = 0; i < types.length; i++) {
+		String[] propertyColumns = persister.getPropertyColumnNames(i);
+		if (insertable[i] && !types[i].isCollectionType() && propertyColumns != null && propertyColumns.length > 0) {
+		    insertedProperties.add(i);
+		    if (types[i].isEntityType()) {
+			referencedClasses.add(types[i].getReturnedClass());
+		    }
+		    for (String column : propertyColumns) {
+			columns.add(column);
+		    }
+		}
+	    }
+	    this.properties = new int[insertedProperties.size()];
+	    this.columnSpans = new int[types.length];
+	    for (int i = 0; i < properties.length; i++) {
+		properties[i] = insertedProperties.get(i);
+		columnSpans[properties[i]] = persister.getPropertyColumnNames(properties[i]).length;
+	    }
+	    StringBuilder sql = new StringBuilder("COPY ").append(persister.getTableName()).append(" (");
+	    for (int i = 0; i < columns.size(); i++) {
+		if (i > 0) {
+		    sql.append(", ");
+		}
+		sql.append(columns.get(i));
+	    }
+	    this.copySql = sql.append(") FROM STDIN").toString();
+	    logger.info("bulk load of " + persister.getEntityName() + " with " + copySql);
+	}
+
+	Serializable append(Object entity, SessionImplementor session) {
+	    Serializable id = persister.getIdentifier(entity, EntityMode.POJO);
+	    if (id == null) {
+		id = persister.getIdentifierGenerator().generate(session, entity);
+		persister.setIdentifier(entity, id, EntityMode.POJO);
+	    }
+	    Object[] values = persister.getPropertyValues(entity, EntityMode.POJO);
+	    StringBuilder row = new StringBuilder();
+	    appendValue(row, persister.getIdentifierType(), id, persister.getIdentifierColumnNames().length, session);
+	    for (int property : properties) {
+		row.append(COLUMN_SEPARATOR);
+		appendValue(row, types[property], values[property], columnSpans[property], session);
+	    }
+	    rows.append(row).append(ROW_SEPARATOR);
+	    numberOfRows++;
+	    return id;
+	}
+
+	private void appendValue(StringBuilder row, Type type, Object value, int columnSpan, SessionImplementor session) {
+	    if (value instanceof Geometry) {
+		row.append(toEWKB((Geometry) value));
+		return;
+	    }
+	    Type valueType = type;
+	    Object jdbcValue = value;
+	    if (type.isEntityType() && value != null) {
+		valueType = ((EntityType) type).getIdentifierOrUniqueKeyType(session.getFactory());
+		jdbcValue = getIdentifier(value);
+	    }
+	    Object[] columnValues = new Object[columnSpan];
+	    try {
+		valueType.nullSafeSet(capture(columnValues), jdbcValue, 1, session);
+	    } catch (SQLException e) {
+		throw new HibernateException("can not convert " + value + " for the bulk load of " + persister.getEntityName(), e);
+	    }
+	    for (int i = 0; i < columnValues.length; i++) {
+		if (i > 0) {
+		    row.append(COLUMN_SEPARATOR);
+		}
+		row.append(format(columnValues[i]));
+	    }
+	}
+
+	void copy(CopyManager copyManager) throws SQLException {
+	    if (numberOfRows == 0) {
+		return;
+	    }
+	    try {
+		copyManager.copyIn(copySql, new StringReader(rows.toString()));
+	    } catch (IOException e) {
+		throw new SQLException("can not copy the rows of " + persister.getTableName() + " : " + e.getMessage());
+	    }
+	}
+
+	void clear() {
+	    rows.setLength(0);
+	    numberOfRows = 0;
+	}
+    }
+
+}
@@ -36,10 +36,12 @@ import org.hibernate.HibernateException;
 import org.hibernate.ObjectNotFoundException;
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.orm.hibernate3.HibernateCallback;
+import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.orm.hibernate3.support.HibernateDaoSupport;
 import org.springframework.util.Assert;
 
@@ -74,6 +76,14 @@ public class GenericDao<T, PK extends Serializable> extends HibernateDaoSupport
 	this.persistentClass = persistentClass;
     }
 
+    /**
+     * The operations of the daos are timed, see {@link TimedHibernateTemplate}
+     */
+    @Override
+    protected HibernateTemplate createHibernateTemplate(SessionFactory sessionFactory) {
+	return new TimedHibernateTemplate(sessionFactory);
+    }
+
     /*
      * (non-Javadoc)
      * 
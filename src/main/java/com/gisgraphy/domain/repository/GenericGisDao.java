@@ -51,6 +51,7 @@ import org.opengis.feature.type.GeometryType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.util.Assert;
 
@@ -66,11 +67,9 @@ import com.gisgraphy.domain.geoloc.entity.event.GisFeatureStoredEvent;
 import com.gisgraphy.domain.geoloc.entity.event.PlaceTypeDeleteAllEvent;
 import com.gisgraphy.domain.valueobject.Constants;
 import com.gisgraphy.domain.valueobject.GisFeatureDistance;
-import com.gisgraphy.domain.valueobject.SRID;
 import com.gisgraphy.fulltext.FullTextFields;
 import com.gisgraphy.fulltext.IsolrClient;
 import com.gisgraphy.helper.GeolocHelper;
-import com.gisgraphy.helper.GisHelper;
 import com.gisgraphy.helper.IntrospectionHelper;
 import com.gisgraphy.hibernate.criterion.DistanceRestriction;
 import com.gisgraphy.hibernate.criterion.ProjectionOrder;
@@ -110,6 +109,8 @@ public class GenericGisDao<T extends GisFeature> extends
 
     private EventManager eventManager;
 
+    private boolean knnQueryEnabled = false;
+
     /**
      * Constructor
      * 
@@ -167,6 +168,26 @@ public class GenericGisDao<T extends GisFeature> extends
 		maxResults,includeDistanceField, persistentClass, isMunicipality);
     }
 
+    /**
+     * @param knnQueryEnabled
+     *                whether the findNearest* methods use the native knn
+     *                query (see {@link KnnNearestQuery}) for the placetypes
+     *                that support it, instead of the criteria one. it is a
+     *                switch to compare the results of the two versions
+     */
+    @Value("${geoloc.knnquery.enabled}")
+    public void setKnnQueryEnabled(boolean knnQueryEnabled) {
+	this.knnQueryEnabled = knnQueryEnabled;
+    }
+
+    /**
+     * @return whether the findNearest* methods use the native knn query
+     * @see #setKnnQueryEnabled(boolean)
+     */
+    public boolean isKnnQueryEnabled() {
+	return knnQueryEnabled;
+    }
+
     /**
      * base method for all findNearest* 
      * 
@@ -206,6 +227,13 @@ public class GenericGisDao<T extends GisFeature> extends
 
 		    public Object doInHibernate(Session session)
 			    throws PersistenceException {
+			if (knnQueryEnabled) {
+			    KnnNearestQuery knnQuery = KnnNearestQuery.forClass(session, requiredClass);
+			    if (knnQuery.isSupported()) {
+				return knnQuery.execute(session, point, pointId, distance, firstResult,
+					maxResults, includeDistanceField, isMunicipality);
+			    }
+			}
 			Criteria criteria = session
 				.createCriteria(requiredClass);
 			
@@ -428,6 +456,36 @@ public class GenericGisDao<T extends GisFeature> extends
 	return savedgisFeature;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.gisgraphy.domain.repository.IGisDao#fireStoredEvents(java.util.List)
+     */
+    @SuppressWarnings("unchecked")
+    public int fireStoredEvents(final List<Long> ids) {
+	if (ids == null || ids.size() == 0) {
+	    return 0;
+	}
+	List<T> features = (List<T>) this.getHibernateTemplate().execute(
+		new HibernateCallback() {
+
+		    public Object doInHibernate(final Session session)
+			    throws PersistenceException {
+			final String queryString = "from "
+				+ persistentClass.getSimpleName()
+				+ " as g where g.id in (:ids)";
+
+			final Query qry = session.createQuery(queryString);
+			qry.setParameterList("ids", ids);
+			return qry.list();
+		    }
+		});
+	for (T feature : features) {
+	    eventManager.handleEvent(new GisFeatureStoredEvent(feature));
+	}
+	return features.size();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -665,29 +723,19 @@ public class GenericGisDao<T extends GisFeature> extends
 
 		    public Object doInHibernate(Session session)
 			    throws PersistenceException {
-		    String pointAsString = "ST_GeometryFromText('POINT("+location.getX()+" "+location.getY()+")',"+SRID.WGS84_SRID.getSRID()+")";
-		   /* String bbox = "st_setSRID(cast ('BOX3D(39.875947845588854 -6.649904839690944,57.85738955675488 11.316505067046899)'as box3d), 4326)";
-		    String bbox2 = "ST_MakeEnvelope(39.875947845588854, -6.649904839690944,57.85738955675488, 11.316505067046899, 4326)";*/
 			String queryString = "from " + persistentClass.getSimpleName()
-				+ " as c  where st_distance_sphere(c.location,"+pointAsString+") < "+distance
-				//+" AND st_contains("+bbox2+",c.location)=true ";
-				+ " AND "+GisHelper.makeEnvelope("c", location.getY(),location.getX(), distance)
-	
-						//GisHelper.getBoundingBox(criteriaQuery.getSQLAlias(criteria), this.point
-							//	.getY(), this.point.getX(), distance)
-				
-				;//left outer join c.zipCodes z
+				+ " as c  where st_distance_sphere(c.location,:point) < :distance"
+				+ " AND st_contains(:envelope,c.location)=true";
 			if (filterMunicipality){
 				queryString+=" and c.municipality=true";
 			}
 			if (countryCode!=null ){
-				queryString+=" and c.countryCode='"+countryCode+"'";
+				queryString+=" and c.countryCode=:countryCode";
 			}
-			queryString = queryString+ " order by st_distance_sphere(c.location,"+pointAsString+")";
+			queryString = queryString+ " order by st_distance_sphere(c.location,:point)";
 
 			Query qry = session.createQuery(queryString).setMaxResults(1);
-
-			//qry.setParameter("point2", location);
+			bindNearestParameters(qry, location, countryCode, distance);
 			T result = (T) qry.uniqueResult();
 
 			return result;
@@ -702,32 +750,22 @@ public class GenericGisDao<T extends GisFeature> extends
 
   		    public Object doInHibernate(Session session)
   			    throws PersistenceException {
-  		    String pointAsString = "ST_GeometryFromText('POINT("+location.getX()+" "+location.getY()+")',"+SRID.WGS84_SRID.getSRID()+")";
-  		  /*  String bbox = "st_setSRID(cast ('BOX3D(39.875947845588854 -6.649904839690944,57.85738955675488 11.316505067046899)'as box3d), 4326)";
-  		    String bbox2 = "ST_MakeEnvelope(39.875947845588854, -6.649904839690944,57.85738955675488, 11.316505067046899, 4326)";*/
   			String queryString = "from " + persistentClass.getSimpleName()
-  				+ " as c  where st_distance_sphere(c.location,"+pointAsString+") < "+distance
-  				//+" AND st_contains("+bbox2+",c.location)=true ";
-  				+ " AND "+GisHelper.makeEnvelope("c", location.getY(),location.getX(), distance)
-  	
-  						//GisHelper.getBoundingBox(criteriaQuery.getSQLAlias(criteria), this.point
-  							//	.getY(), this.point.getX(), distance)
-  				
-  				;//left outer join c.zipCodes z
+  				+ " as c  where st_distance_sphere(c.location,:point) < :distance"
+  				+ " AND st_contains(:envelope,c.location)=true";
   			if (filterMunicipality){
   				queryString+=" and c.municipality=true";
   			}
   			if (countryCode!=null ){
-  				queryString+=" and c.countryCode='"+countryCode+"'";
+  				queryString+=" and c.countryCode=:countryCode";
   			}
-  			queryString = queryString+ " order by st_distance_sphere(c.location,"+pointAsString+")";
+  			queryString = queryString+ " order by st_distance_sphere(c.location,:point)";
 
   			Query qry = session.createQuery(queryString);
   			if (limit >0){
   				qry.setMaxResults(limit);
   			}
-
-  			//qry.setParameter("point2", location);
+  			bindNearestParameters(qry, location, countryCode, distance);
   			List<T> results = (List<T>) qry.list();
   			if (results == null) {
 			    results = new ArrayList<T>();
@@ -738,6 +776,15 @@ public class GenericGisDao<T extends GisFeature> extends
   		});
   	}
 
+    private void bindNearestParameters(Query qry, Point location, String countryCode, int distance) {
+	SpatialParameters.setPoint(qry, "point", location);
+	SpatialParameters.setEnvelope(qry, "envelope", location, distance);
+	qry.setInteger("distance", distance);
+	if (countryCode != null) {
+	    qry.setString("countryCode", countryCode);
+	}
+    }
+
     public void createGISTIndexForShapeColumn() {
 		 this.getHibernateTemplate().execute(
 				 new HibernateCallback() {
@@ -787,6 +834,35 @@ public class GenericGisDao<T extends GisFeature> extends
 				});
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.IGisDao#listShapesFrom(long, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> listShapesFrom(final long idFrom, final int maxResults) {
+		return (List<Object[]>) this.getHibernateTemplate().execute(
+				new HibernateCallback() {
+
+				    public Object doInHibernate(Session session)
+					    throws PersistenceException {
+					Query qry = session.createQuery(getListShapesQuery());
+					qry.setParameter(0, idFrom);
+					qry.setMaxResults(maxResults);
+					return qry.list();
+				    }
+				});
+	}
+
+	/**
+	 * @return the HQL query of {@link #listShapesFrom(long, int)}, the
+	 *         subclasses can add columns after the three first ones
+	 */
+	protected String getListShapesQuery() {
+		return "select g.id, g." + GisFeature.SHAPE_COLUMN_NAME + ", g.countryCode from " + persistentClass.getSimpleName()
+				+ " as g where g.id > ? and g." + GisFeature.SHAPE_COLUMN_NAME + " is not null order by g.id";
+	}
+
 	@Override
 	public long countByCountryCode(final String countryCode) {
 		if (countryCode!=null){
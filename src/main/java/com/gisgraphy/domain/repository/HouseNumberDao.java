@@ -22,6 +22,8 @@
  *******************************************************************************/
 package com.gisgraphy.domain.repository;
 
+import java.util.List;
+
 import javax.persistence.PersistenceException;
 
 import org.hibernate.Query;
@@ -70,4 +72,22 @@ public class HouseNumberDao extends GenericDao<HouseNumber, Long> implements
 	}
 
 
+	@SuppressWarnings("unchecked")
+	public List<Object[]> listLocationsFrom(final long idFrom, final int maxResults) {
+		return (List<Object[]>) this.getHibernateTemplate().execute(
+				new HibernateCallback() {
+
+				    public Object doInHibernate(Session session)
+					    throws PersistenceException {
+					String queryString = "select h.id, h.street.id, h.location, h.number, h.name from "
+						+ persistentClass.getSimpleName()+ " as h where h.id > ? and h.location is not null order by h.id";
+
+					Query qry = session.createQuery(queryString);
+					qry.setParameter(0, idFrom);
+					qry.setMaxResults(maxResults);
+					return qry.list();
+				    }
+				});
+	}
+
 }
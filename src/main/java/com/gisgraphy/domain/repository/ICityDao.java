@@ -57,6 +57,31 @@ public interface ICityDao extends IGisDao<City> {
      * return the number of polygons modify
      */
     public int fixPolygons();
+
+    /**
+     * @param countryCode
+     *                the country code of the cities
+     * @param idFrom
+     *                the cities with an id strictly greater are returned
+     * @param maxResults
+     *                the maximum number of cities to return
+     * @return the id, feature id, name, location, shape, municipality flag,
+     *         population and the five adm names of the cities of the country,
+     *         sorted by id
+     */
+    public List<Object[]> listLookupDataByCountryCodeFrom(String countryCode, long idFrom, int maxResults);
+
+    /**
+     * @return the id of the city and the code of all the zip codes of the
+     *         cities of the given country
+     */
+    public List<Object[]> listZipCodesByCountryCode(String countryCode);
+
+    /**
+     * @return the id of the city and the name of all the alternate names of
+     *         the cities of the given country
+     */
+    public List<Object[]> listAlternateNamesByCountryCode(String countryCode);
   
     
   
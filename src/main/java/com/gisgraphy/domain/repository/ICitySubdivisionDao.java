@@ -51,6 +51,18 @@ public interface ICitySubdivisionDao extends IGisDao<CitySubdivision> {
      * @return the city that the given point belongs by searching by shape. the countrycode is optionnal
      */
     public CitySubdivision getByShape(Point location,final String countryCode);
+
+    /**
+     * @param countryCode
+     *                the country code of the subdivisions
+     * @param idFrom
+     *                the subdivisions with an id strictly greater are returned
+     * @param maxResults
+     *                the maximum number of subdivisions to return
+     * @return the id, name and shape of the subdivisions of the country that
+     *         have a shape, sorted by id
+     */
+    public List<Object[]> listNamesAndShapesByCountryCodeFrom(String countryCode, long idFrom, int maxResults);
     
   
 }
@@ -254,6 +254,20 @@ public interface IGisDao<T> extends IDao<T, java.lang.Long> {
      */
     public String getShapeAsWKTByFeatureId(Long featureId);
     
+    /**
+     * List the shapes, by increasing id, to build an index. The features
+     * without shape are ignored.
+     * 
+     * @param idFrom
+     *            the returned features have an id strictly greater than this
+     *            one
+     * @param maxResults
+     *            the maximum number of features to return
+     * @return arrays of id, shape ({@link com.vividsolutions.jts.geom.Geometry})
+     *         and country code
+     */
+    public List<Object[]> listShapesFrom(long idFrom, int maxResults);
+    
     /**
      * @return the number of element in the Datastore
      * @throws HibernateException
@@ -271,4 +285,16 @@ public interface IGisDao<T> extends IDao<T, java.lang.Long> {
      *                 if thrown by JDBC API
      */
     public long countShapeByCountryCode(String countryCode);
+    
+    /**
+     * Fire a {@link com.gisgraphy.domain.geoloc.entity.event.GisFeatureStoredEvent}
+     * for each feature, as if they had been saved, to synchronise the
+     * features that have been loaded (or whose alternate names have been
+     * loaded) without hibernate, e.g : by the {@link CopyBulkLoader}
+     * 
+     * @param ids
+     *            the ids (not the featureIds) of the features
+     * @return the number of features found
+     */
+    public int fireStoredEvents(List<Long> ids);
 }
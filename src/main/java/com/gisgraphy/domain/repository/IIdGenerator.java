@@ -38,8 +38,19 @@ public interface IIdGenerator {
 	public long getGid();
 	
 	/**
-	 * synchronise the generator with the database
+	 * synchronise the generator with the database, the generator is not
+	 * rewinded if an other importer is running
 	 */
 	public void sync();
+	
+	/**
+	 * to be called when an importer starts, see {@link #sync()}
+	 */
+	public void onImporterStarted();
+	
+	/**
+	 * to be called when an importer ends, see {@link #sync()}
+	 */
+	public void onImporterEnded();
 
 }
@@ -184,8 +184,45 @@ public interface IOpenStreetMapDao extends IDao<OpenStreetMap, java.lang.Long> {
     public List<OpenStreetMap> getNearestsFrom(
 			final Point point,final boolean onlyroad,final boolean filterEmptyName, final double distance) ;
     
+    /**
+     * Same as {@link #getNearestsFrom(Point, boolean, boolean, double)} but
+     * returns at most maxResults streets, the nearest first
+     * 
+     * @param maxResults
+     *            the maximum number of streets to return, no limit if not
+     *            positive
+     */
+    public List<OpenStreetMap> getNearestsFrom(
+			final Point point,final boolean onlyroad,final boolean filterEmptyName, final double distance, final int maxResults) ;
+    
     public long countByCountryCode(String countryCode);
     
     public long countShapeByCountryCode(String countryCode);
     
+    /**
+     * List the shapes of the streets, by increasing id, to build an index. The
+     * streets without shape are ignored.
+     * 
+     * @param idFrom
+     *            the returned streets have an id strictly greater than this
+     *            one
+     * @param maxResults
+     *            the maximum number of streets to return
+     * @return arrays of id, shape ({@link com.vividsolutions.jts.geom.Geometry}),
+     *         street type and name
+     */
+    public List<Object[]> listShapesFrom(long idFrom, int maxResults);
+    
+    /**
+     * Fire a {@link com.gisgraphy.domain.geoloc.entity.event.GisFeatureStoredEvent}
+     * for each street, as if they had been saved, to synchronise the streets
+     * that have been loaded (or whose house numbers have been loaded) without
+     * hibernate, e.g : by the {@link CopyBulkLoader}
+     * 
+     * @param ids
+     *            the ids (not the gids) of the streets
+     * @return the number of streets found
+     */
+    public int fireStoredEvents(List<Long> ids);
+    
 }
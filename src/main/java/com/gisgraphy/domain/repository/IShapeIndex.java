@@ -0,0 +1,94 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.domain.repository;
+
+import java.util.List;
+
+import com.gisgraphy.domain.geoloc.entity.Adm;
+import com.gisgraphy.domain.geoloc.entity.City;
+import com.gisgraphy.domain.geoloc.entity.CitySubdivision;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * In memory index of the shapes of the {@link City}, {@link CitySubdivision}
+ * and {@link Adm}, to find the features that contain a point without any
+ * query to the database. The methods return the same features as the
+ * getByShape methods of the daos.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public interface IShapeIndex {
+
+	/**
+	 * @return true if the index is loaded and up to date with the database.
+	 *         The query methods should not be called otherwise
+	 */
+	public boolean isReady();
+
+	/**
+	 * @param location
+	 *            the point
+	 * @param countryCode
+	 *            the country code of the city, all the countries if null
+	 * @param filterMunicipality
+	 *            whether only the municipalities are returned
+	 * @return the id of the smallest city that contains the point, or null
+	 * @see ICityDao#getByShape(Point, String, boolean)
+	 */
+	public Long getCityIdByShape(Point location, String countryCode, boolean filterMunicipality);
+
+	/**
+	 * @return the id of the smallest subdivision that contains the point, or
+	 *         null
+	 * @see ICitySubdivisionDao#getByShape(Point, String)
+	 */
+	public Long getCitySubdivisionIdByShape(Point location, String countryCode);
+
+	/**
+	 * @return the ids of the adms that contain the point, the biggest first
+	 * @see IAdmDao#ListByShape(Point, String)
+	 */
+	public List<Long> listAdmIdsByShape(Point location, String countryCode);
+
+	/**
+	 * Load the shapes from the database and replace the current index
+	 */
+	public void reload();
+
+	/**
+	 * Reload the index if a city, a subdivision or an adm has been modified
+	 * since it has been loaded, and if the index is enabled
+	 */
+	public void reloadIfStale();
+
+	/**
+	 * @return the number of indexed shapes
+	 */
+	public long getNumberOfShapes();
+
+	/**
+	 * @return an estimation of the memory used by the index, in bytes
+	 */
+	public long getMemoryFootprint();
+
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Gisgraphy Project 
+ *  
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *  
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *    Lesser General Public License for more details.
+ *  
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ *  
+ *   Copyright 2008  Gisgraphy project 
+ * 
+ *   David Masclet <davidmasclet@gisgraphy.com>
+ ******************************************************************************/
+package com.gisgraphy.domain.repository;
+
+/**
+ * Interface that must be implemented by the objects that should be notified
+ * when the full text search engine has committed, i.e : when the results of
+ * the queries may have changed (e.g : to invalidate a cache)
+ * 
+ * @see SolRSynchroniser
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public interface ISolRCommitListener {
+
+    /**
+     * Called after a successful commit (or deletion) in the full text search
+     * engine
+     */
+    public void onCommit();
+
+}
@@ -52,6 +52,18 @@ public interface ISolRSynchroniser {
      */
     public boolean commit();
 
+    /**
+     * Wait for the documents that are indexed asynchronously to be sent to
+     * the full text search engine. The importers should call it when they
+     * end. If some documents may have been sent asynchronously, they are
+     * committed (see {@link #commit()}) and the commit listeners are
+     * notified once the documents are visible
+     * 
+     * @throws com.gisgraphy.geoloc.GisgraphyCommunicationException
+     *             if some documents can not be sent
+     */
+    public void flush();
+
     /**
      * Send a optimize command to the full text search engine
      */
@@ -21,10 +21,13 @@
  ******************************************************************************/
 package com.gisgraphy.domain.repository;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PostConstruct;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.stereotype.Service;
 
@@ -52,6 +55,8 @@ public class IdGenerator implements IIdGenerator {
      */ 
     public final static long OPENSTREETMAP_GID_NO_CONFLICT = 100000000;
     
+    protected static final Logger logger = LoggerFactory.getLogger(IdGenerator.class);
+    
    
 	
 	private IGisFeatureDao gisFeatureDao;
@@ -91,37 +96,79 @@ public class IdGenerator implements IIdGenerator {
 		return openstreetmapGid.get();
 	}
 
-	private AtomicLong featureId ;
+	private final AtomicLong featureId = new AtomicLong();
 	
 	
-	private AtomicLong openstreetmapGid;
+	private final AtomicLong openstreetmapGid = new AtomicLong();
+
+	/**
+	 * the number of importers that are running
+	 */
+	private final AtomicInteger runningImporters = new AtomicInteger();
+
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.domain.repository.IIdGenerator#onImporterStarted()
+	 */
+	public void onImporterStarted() {
+		runningImporters.incrementAndGet();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.domain.repository.IIdGenerator#onImporterEnded()
+	 */
+	public void onImporterEnded() {
+		runningImporters.decrementAndGet();
+	}
 
+	/**
+	 * synchronise the generator with the database. when an other importer
+	 * is running, the ids it has already generated may not be in the database
+	 * yet, so the generator is only moved forward and never rewinded
+	 */
 	@PostConstruct
-	public void sync() {
+	public synchronized void sync() {
+		boolean canRewind = runningImporters.get() <= 1;
+		if (!canRewind){
+			logger.warn("an other importer is running, the idGenerator will not be rewinded");
+		}
 		//order is important
-		initFeatureId();
-		initGid();
+		initFeatureId(canRewind);
+		initGid(canRewind);
 	}
 
 
-	private void initGid() {
+	private void initGid(boolean canRewind) {
 		long maxGidInDatabase = openStreetMapDao.getMaxGid();
 		if (maxGidInDatabase<OPENSTREETMAP_GID_NO_CONFLICT){
 			maxGidInDatabase= OPENSTREETMAP_GID_NO_CONFLICT;
 		}
-		openstreetmapGid = new AtomicLong(Math.max(featureId.get(), maxGidInDatabase));
+		update(openstreetmapGid, Math.max(featureId.get(), maxGidInDatabase), canRewind);
 		
 	}
 
 
 
 
-	private void initFeatureId() {
+	private void initFeatureId(boolean canRewind) {
 		long maxFeatureIdInDatabase = gisFeatureDao.getMaxFeatureId();
 		if(maxFeatureIdInDatabase<FEATUREID_INCREMENT_NO_CONFLICT){
 		    maxFeatureIdInDatabase = FEATUREID_INCREMENT_NO_CONFLICT;
 		}
-		featureId = new AtomicLong(maxFeatureIdInDatabase);
+		update(featureId, maxFeatureIdInDatabase, canRewind);
+	}
+
+	private static void update(AtomicLong id, long value, boolean canRewind) {
+		if (canRewind){
+			id.set(value);
+			return;
+		}
+		long current;
+		do {
+			current = id.get();
+			if (current >= value){
+				return;
+			}
+		} while (!id.compareAndSet(current, value));
 	}
 
 
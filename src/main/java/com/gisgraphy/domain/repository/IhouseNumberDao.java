@@ -23,6 +23,7 @@
 package com.gisgraphy.domain.repository;
 
 import java.sql.SQLException;
+import java.util.List;
 
 import org.hibernate.HibernateException;
 
@@ -44,6 +45,20 @@ public interface IhouseNumberDao extends IDao<HouseNumber, Long> {
      *                 if thrown by JDBC API
      */
 	 public long countByCountryCode(String countryCode);
+	 
+	 /**
+	  * List the house numbers, by increasing id, to build an index. The house
+	  * numbers without location are ignored.
+	  * 
+	  * @param idFrom
+	  *            the returned house numbers have an id strictly greater than
+	  *            this one
+	  * @param maxResults
+	  *            the maximum number of house numbers to return
+	  * @return arrays of id, street id, location ({@link com.vividsolutions.jts.geom.Point}), 
+	  *         number and name
+	  */
+	 public List<Object[]> listLocationsFrom(long idFrom, int maxResults);
 
   
 
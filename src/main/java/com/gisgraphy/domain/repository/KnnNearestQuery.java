@@ -0,0 +1,440 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.domain.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gisgraphy.domain.geoloc.entity.City;
+import com.gisgraphy.domain.geoloc.entity.GisFeature;
+import com.gisgraphy.domain.geoloc.entity.ZipCode;
+import com.gisgraphy.domain.geoloc.entity.ZipCodesAware;
+import com.gisgraphy.domain.valueobject.GisFeatureDistance;
+import com.gisgraphy.domain.valueobject.SRID;
+import com.gisgraphy.helper.GisHelper;
+import com.gisgraphy.helper.IntrospectionHelper;
+import com.gisgraphy.hibernate.criterion.ResultTransformerUtil;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Native sql version of {@link GenericGisDao}#getNearestAndDistanceFrom for
+ * one placetype. The sql is built once per class from the hibernate mapping
+ * and the point, the bounding box and the other values are bound as
+ * parameters, so the statement can be prepared once by postgres.
+ * <p>
+ * The candidates are read from the gist index of the location with the knn
+ * operator (<code>&lt;-&gt;</code>), so postgres stops to read the index as
+ * soon as it has enough candidates instead of computing the distance of all
+ * the features of the bounding box, then the distance is re-checked on the
+ * sphere and the candidates are sorted by this distance. The zip codes are
+ * aggregated in the same query. The knn operator sorts the features by
+ * distance in degrees, so {@link #getNumberOfCandidates(Point, int)} reads
+ * more candidates than needed (the more we are far from the equator, the
+ * more the longitudes are shrunk). The results are exact, as the criteria
+ * version : when all the candidates have been read, the query is executed
+ * again with twice more candidates until the features that have not been
+ * read are farther on the sphere than the last result, see
+ * {@link #getMinSphereDistance(double, double[])}.
+ * <p>
+ * The placetypes that have some subclasses are stored in several tables
+ * (table per class) and are not supported : {@link #isSupported()} returns
+ * false and the criteria version should be used.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+class KnnNearestQuery {
+
+    protected static final Logger logger = LoggerFactory.getLogger(KnnNearestQuery.class);
+
+    static final String DISTANCE_ALIAS = "distance";
+
+    static final String ZIPCODES_ALIAS = "zipcodes";
+
+    static final String ZIPCODES_SEPARATOR = "|";
+
+    static final String KNN_DISTANCE_ALIAS = "knn_distance";
+
+    static final String CANDIDATES_READ_ALIAS = "candidates_read";
+
+    static final String MAX_KNN_DISTANCE_ALIAS = "max_knn_distance";
+
+    /**
+     * the radius of the earth used by st_distance_sphere
+     */
+    static final double SPHERE_RADIUS_IN_METERS = 6370986;
+
+    /**
+     * minimum ratio between the number of candidates read the first time
+     * with the knn operator and the number of results
+     */
+    static final int CANDIDATES_FACTOR = 2;
+
+    /**
+     * the cosine of the latitude under which the number of candidates is not
+     * increased anymore
+     */
+    private static final double MIN_COSINE = 0.05;
+
+    private static final ConcurrentMap<Class<?>, KnnNearestQuery> QUERIES = new ConcurrentHashMap<Class<?>, KnnNearestQuery>();
+
+    private final Class<? extends GisFeature> placeType;
+
+    private final String[] aliases;
+
+    private final Type[] types;
+
+    private final String selectClause;
+
+    private final String tableName;
+
+    private final String locationColumn;
+
+    private final String idColumn;
+
+    private final String idAlias;
+
+    private final String municipalityColumn;
+
+    private final boolean zipCodesAware;
+
+    /**
+     * @param session
+     *                a session to read the mapping
+     * @param placeType
+     *                the class of the features to search
+     * @return the query for the placetype, built the first time it is used
+     */
+    static KnnNearestQuery forClass(Session session, Class<? extends GisFeature> placeType) {
+	KnnNearestQuery query = QUERIES.get(placeType);
+	if (query == null) {
+	    query = new KnnNearestQuery(session.getSessionFactory().getClassMetadata(placeType), placeType);
+	    QUERIES.putIfAbsent(placeType, query);
+	}
+	return query;
+    }
+
+    KnnNearestQuery(ClassMetadata metadata, Class<? extends GisFeature> placeType) {
+	this.placeType = placeType;
+	this.zipCodesAware = ZipCodesAware.class.isAssignableFrom(placeType);
+	String[] fields = IntrospectionHelper.getFieldsAsArray(placeType);
+	String[] columns = null;
+	Type[] fieldTypes = null;
+	String table = null;
+	String location = null;
+	String id = null;
+	String idProperty = null;
+	String municipality = null;
+	if (metadata instanceof AbstractEntityPersister) {
+	    AbstractEntityPersister persister = (AbstractEntityPersister) metadata;
+	    try {
+		if (persister.getEntityMetamodel().getSubclassEntityNames().size() <= 1) {
+		    idProperty = persister.getIdentifierPropertyName();
+		    id = getSingleColumn(persister.getIdentifierColumnNames());
+		    location = getSingleColumn(persister.getPropertyColumnNames(GisFeature.LOCATION_COLUMN_NAME));
+		    if (placeType == City.class) {
+			municipality = getSingleColumn(persister.getPropertyColumnNames(City.MUNICIPALITY_FIELD_NAME));
+		    }
+		    columns = new String[fields.length];
+		    fieldTypes = new Type[fields.length];
+		    for (int i = 0; i < fields.length; i++) {
+			if (fields[i].equals(idProperty)) {
+			    columns[i] = id;
+			    fieldTypes[i] = persister.getIdentifierType();
+			} else {
+			    columns[i] = getSingleColumn(persister.getPropertyColumnNames(fields[i]));
+			    fieldTypes[i] = persister.getPropertyType(fields[i]);
+			}
+			if (columns[i] == null) {
+			    columns = null;
+			    break;
+			}
+		    }
+		    table = persister.getTableName();
+		}
+	    } catch (HibernateException e) {
+		logger.warn("the knn query is not supported for " + placeType.getSimpleName() + " : " + e.getMessage());
+		columns = null;
+	    }
+	}
+	if (columns == null || id == null || location == null || (placeType == City.class && municipality == null)) {
+	    logger.info("the knn query is not supported for " + placeType.getSimpleName() + ", the criteria query will be used");
+	    this.aliases = null;
+	    this.types = null;
+	    this.selectClause = null;
+	    this.tableName = null;
+	    this.locationColumn = null;
+	    this.idColumn = null;
+	    this.idAlias = null;
+	    this.municipalityColumn = null;
+	    return;
+	}
+	this.aliases = fields;
+	this.types = fieldTypes;
+	this.tableName = table;
+	this.locationColumn = location;
+	this.idColumn = id;
+	this.idAlias = idProperty;
+	this.municipalityColumn = municipality;
+	StringBuilder select = new StringBuilder();
+	for (int i = 0; i < fields.length; i++) {
+	    select.append("g.").append(columns[i]).append(" as \"").append(fields[i]).append("\", ");
+	}
+	select.append("st_distance_sphere(g.").append(location).append(", :point) as \"").append(DISTANCE_ALIAS).append("\"");
+	this.selectClause = select.toString();
+    }
+
+    private static String getSingleColumn(String[] columns) {
+	return columns != null && columns.length == 1 ? columns[0] : null;
+    }
+
+    /**
+     * @return true if the placetype is stored in only one table and all its
+     *         fields can be read with the native query
+     */
+    boolean isSupported() {
+	return selectClause != null;
+    }
+
+    /**
+     * @return the sql of the query, there is only one sql per placetype and
+     *         per combination of the optional restrictions
+     */
+    String getSql(boolean excludeId, boolean filterMunicipality, boolean paginate, boolean offset) {
+	StringBuilder sql = new StringBuilder();
+	if (zipCodesAware) {
+	    sql.append("select sorted.*, (select array_to_string(array_agg(z.code), '").append(ZIPCODES_SEPARATOR).append("') from ")
+		    .append(ZipCode.class.getSimpleName().toLowerCase()).append(" z where z.gisfeature = sorted.\"").append(idAlias)
+		    .append("\") as \"").append(ZIPCODES_ALIAS).append("\" from (");
+	}
+	sql.append("select *");
+	if (paginate) {
+	    //the last results are only exact if the candidates that have not been read are farther, see isExact
+	    sql.append(", count(*) over () as \"").append(CANDIDATES_READ_ALIAS).append("\", max(\"").append(KNN_DISTANCE_ALIAS)
+		    .append("\") over () as \"").append(MAX_KNN_DISTANCE_ALIAS).append("\"");
+	}
+	sql.append(" from (select ").append(selectClause);
+	if (paginate) {
+	    sql.append(", g.").append(locationColumn).append(" <-> :point as \"").append(KNN_DISTANCE_ALIAS).append("\"");
+	}
+	sql.append(" from ").append(tableName).append(" g where g.").append(locationColumn)
+		.append(" && st_makeenvelope(:minx, :miny, :maxx, :maxy, ").append(SRID.WGS84_SRID.getSRID()).append(") and st_distance_sphere(g.")
+		.append(locationColumn).append(", :point) <= :distance");
+	if (excludeId) {
+	    sql.append(" and g.").append(idColumn).append(" <> :excludedId");
+	}
+	if (filterMunicipality) {
+	    sql.append(" and g.").append(municipalityColumn).append(" = true");
+	}
+	sql.append(" order by g.").append(locationColumn).append(" <-> :point");
+	if (paginate) {
+	    sql.append(" limit :candidates");
+	}
+	sql.append(") candidates order by \"").append(DISTANCE_ALIAS).append("\"");
+	if (offset) {
+	    sql.append(" offset :offset");
+	}
+	if (paginate) {
+	    sql.append(" limit :maxResults");
+	}
+	if (zipCodesAware) {
+	    sql.append(") sorted order by sorted.\"").append(DISTANCE_ALIAS).append("\"");
+	}
+	return sql.toString();
+    }
+
+    /**
+     * @param point
+     *                the point to search around
+     * @param numberOfResults
+     *                the number of results (offset included)
+     * @return the number of candidates to read the first time with the knn
+     *         operator
+     */
+    static int getNumberOfCandidates(Point point, int numberOfResults) {
+	double cosine = Math.max(Math.cos(Math.toRadians(point.getY())), MIN_COSINE);
+	return (int) Math.min(Integer.MAX_VALUE, Math.ceil(numberOfResults * CANDIDATES_FACTOR / cosine));
+    }
+
+    /**
+     * @param degrees
+     *                a distance in degrees, as computed by the knn operator
+     * @param boundingBox
+     *                the bounding box of the features, as returned by
+     *                {@link GisHelper#getBoundingBoxCoordinates(double, double, double)}
+     * @return a distance on the sphere that is lower than the distance of any
+     *         two points of the bounding box that are at least at this
+     *         distance in degrees, or 0 if the bounding box is larger than
+     *         180 degrees of longitude
+     */
+    static double getMinSphereDistance(double degrees, double[] boundingBox) {
+	if (boundingBox[2] - boundingBox[0] > 180) {
+	    return 0;
+	}
+	//the cosine of the latitudes shrinks the longitudes, it is the lowest
+	//at the latitude of the bounding box the nearest to a pole
+	double maxLatitude = Math.min(Math.max(Math.abs(boundingBox[1]), Math.abs(boundingBox[3])), 90);
+	double cosine = Math.max(Math.cos(Math.toRadians(maxLatitude)), 0);
+	//haversine : hav(d) >= cos(lat1).cos(lat2).(hav(dlat)+hav(dlong)) >= cos^2.hav(degrees)
+	double halfAngle = Math.toRadians(Math.min(degrees, 180)) / 2;
+	return 2 * SPHERE_RADIUS_IN_METERS * Math.asin(Math.min(cosine * Math.sin(halfAngle), 1));
+    }
+
+    /**
+     * @param rows
+     *                the results of a paginated query
+     * @param candidates
+     *                the number of candidates read with the knn operator
+     * @return true if no feature that has not been read can be nearer than
+     *         the last result
+     */
+    boolean isExact(List<Object[]> rows, int candidates, int maxResults, double[] boundingBox) {
+	if (rows.size() < maxResults) {
+	    //there is less candidates than asked, they have all been read
+	    return true;
+	}
+	Object[] last = rows.get(rows.size() - 1);
+	int statisticsIndex = zipCodesAware ? aliases.length + 2 : aliases.length + 1;
+	if (((Number) last[statisticsIndex]).longValue() < candidates) {
+	    return true;
+	}
+	double maxKnnDistance = ((Number) last[statisticsIndex + 1]).doubleValue();
+	double lastDistance = ((Number) last[aliases.length]).doubleValue();
+	return getMinSphereDistance(maxKnnDistance, boundingBox) > lastDistance;
+    }
+
+    /**
+     * see {@link GenericGisDao}#getNearestAndDistanceFrom for the parameters
+     */
+    List<GisFeatureDistance> execute(Session session, Point point, Long pointId, double distance, int firstResult, int maxResults,
+	    boolean includeDistanceField, boolean isMunicipality) {
+	boolean excludeId = pointId != null && pointId != 0;
+	boolean filterMunicipality = isMunicipality && municipalityColumn != null;
+	boolean paginate = maxResults > 0;
+	int offset = firstResult >= 1 ? firstResult - 1 : 0;
+	String sql = getSql(excludeId, filterMunicipality, paginate, offset > 0);
+	double[] boundingBox = GisHelper.getBoundingBoxCoordinates(point.getY(), point.getX(), distance);
+	int candidates = paginate ? getNumberOfCandidates(point, offset + maxResults) : 0;
+	List<Object[]> rows = list(session, sql, point, pointId, distance, boundingBox, offset, maxResults, candidates);
+	while (paginate && candidates < Integer.MAX_VALUE && !isExact(rows, candidates, maxResults, boundingBox)) {
+	    candidates = (int) Math.min(Integer.MAX_VALUE, 2L * candidates);
+	    logger.debug("some " + placeType.getSimpleName() + " may be nearer than the knn candidates, the query is executed with "
+		    + candidates + " candidates");
+	    rows = list(session, sql, point, pointId, distance, boundingBox, offset, maxResults, candidates);
+	}
+	return transform(rows, includeDistanceField);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> list(Session session, String sql, Point point, Long pointId, double distance, double[] boundingBox, int offset,
+	    int maxResults, int candidates) {
+	boolean excludeId = pointId != null && pointId != 0;
+	boolean paginate = maxResults > 0;
+	SQLQuery query = session.createSQLQuery(sql);
+	for (int i = 0; i < aliases.length; i++) {
+	    query.addScalar(aliases[i], types[i]);
+	}
+	query.addScalar(DISTANCE_ALIAS, Hibernate.DOUBLE);
+	if (zipCodesAware) {
+	    query.addScalar(ZIPCODES_ALIAS, Hibernate.STRING);
+	}
+	if (paginate) {
+	    query.addScalar(CANDIDATES_READ_ALIAS, Hibernate.LONG);
+	    query.addScalar(MAX_KNN_DISTANCE_ALIAS, Hibernate.DOUBLE);
+	}
+	SpatialParameters.setPoint(query, "point", point);
+	query.setDouble("minx", boundingBox[0]);
+	query.setDouble("miny", boundingBox[1]);
+	query.setDouble("maxx", boundingBox[2]);
+	query.setDouble("maxy", boundingBox[3]);
+	query.setDouble("distance", distance);
+	if (excludeId) {
+	    query.setLong("excludedId", pointId);
+	}
+	if (offset > 0) {
+	    query.setInteger("offset", offset);
+	}
+	if (paginate) {
+	    query.setInteger("candidates", candidates);
+	    query.setInteger("maxResults", maxResults);
+	}
+	return (List<Object[]>) query.list();
+    }
+
+    /**
+     * removes the zip codes and the distance (if not needed) from the rows
+     * and transform them as the criteria version does
+     */
+    List<GisFeatureDistance> transform(List<Object[]> rows, boolean includeDistanceField) {
+	int numberOfColumns = includeDistanceField ? aliases.length + 1 : aliases.length;
+	String[] aliasList = new String[numberOfColumns];
+	System.arraycopy(aliases, 0, aliasList, 0, aliases.length);
+	if (includeDistanceField) {
+	    aliasList[aliases.length] = DISTANCE_ALIAS;
+	}
+	int idIndex = 0;
+	for (int i = 0; i < aliases.length; i++) {
+	    if (aliases[i].equals(idAlias)) {
+		idIndex = i;
+		break;
+	    }
+	}
+	Map<Long, Set<String>> idToZipCodesMap = null;
+	List<Object[]> tuples = new ArrayList<Object[]>(rows.size());
+	for (Object[] row : rows) {
+	    Object[] tuple = new Object[numberOfColumns];
+	    System.arraycopy(row, 0, tuple, 0, numberOfColumns);
+	    tuples.add(tuple);
+	    if (zipCodesAware) {
+		String zipCodes = (String) row[aliases.length + 1];
+		if (zipCodes != null && zipCodes.length() > 0) {
+		    if (idToZipCodesMap == null) {
+			idToZipCodesMap = new HashMap<Long, Set<String>>();
+		    }
+		    Set<String> codes = new HashSet<String>();
+		    for (String code : zipCodes.split("\\" + ZIPCODES_SEPARATOR)) {
+			codes.add(code);
+		    }
+		    idToZipCodesMap.put((Long) row[idIndex], codes);
+		}
+	    }
+	}
+	return ResultTransformerUtil.transformToGisFeatureDistance(aliasList, tuples, idToZipCodesMap, placeType);
+    }
+
+}
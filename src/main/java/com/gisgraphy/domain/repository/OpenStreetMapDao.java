@@ -55,14 +55,11 @@ import com.gisgraphy.domain.geoloc.entity.event.GisFeatureDeletedEvent;
 import com.gisgraphy.domain.geoloc.entity.event.GisFeatureStoredEvent;
 import com.gisgraphy.domain.geoloc.entity.event.PlaceTypeDeleteAllEvent;
 import com.gisgraphy.domain.valueobject.GisgraphyConfig;
-import com.gisgraphy.domain.valueobject.SRID;
 import com.gisgraphy.domain.valueobject.StreetDistance;
 import com.gisgraphy.helper.GeolocHelper;
 import com.gisgraphy.helper.IntrospectionHelper;
 import com.gisgraphy.helper.StringHelper;
-import com.gisgraphy.hibernate.criterion.DistanceRestriction;
 import com.gisgraphy.hibernate.criterion.IntersectsRestriction;
-import com.gisgraphy.hibernate.criterion.NativeSQLOrder;
 import com.gisgraphy.hibernate.criterion.ProjectionOrder;
 import com.gisgraphy.hibernate.criterion.ResultTransformerUtil;
 import com.gisgraphy.hibernate.projection.ProjectionBean;
@@ -95,6 +92,21 @@ public class OpenStreetMapDao extends GenericDao<OpenStreetMap, Long> implements
 
 	protected static final int DEFAULT_DISTANCE = 7000;
 
+	private static final String TABLE_NAME = OpenStreetMap.class.getSimpleName().toLowerCase();
+
+	private static final String OPENSTREETMAP_ID_COLUMN_NAME = "openstreetmapid";
+
+	private static final String GID_COLUMN_NAME = "gid";
+
+	private static final String STREET_TYPE_COLUMN_NAME = "streettype";
+
+	/**
+	 * sort the streets by the distance between the point and the nearest
+	 * point of their shape
+	 */
+	private static final String NEAREST_ORDER = " order by " + DISTANCE_SPHERE_FUNCTION + "(:point, "
+			+ SpatialProjection.ST_CLOSEST_POINT + "(o." + OpenStreetMap.SHAPE_COLUMN_NAME + ", :point))";
+
 	/**
 	 * Default constructor
 	 */
@@ -370,6 +382,33 @@ public class OpenStreetMapDao extends GenericDao<OpenStreetMap, Long> implements
 		eventManager.handleEvent(CreatedEvent);
 		return savedEntity;
 	}
+
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.domain.repository.IOpenStreetMapDao#fireStoredEvents(java.util.List)
+	 */
+	@SuppressWarnings("unchecked")
+	public int fireStoredEvents(final List<Long> ids) {
+		if (ids == null || ids.size() == 0) {
+			return 0;
+		}
+		List<OpenStreetMap> streets = (List<OpenStreetMap>) this.getHibernateTemplate().execute(
+				new HibernateCallback() {
+
+					public Object doInHibernate(Session session)
+							throws PersistenceException {
+						String queryString = "from " + persistentClass.getSimpleName()
+								+ " as o where o.id in (:ids)";
+
+						Query qry = session.createQuery(queryString);
+						qry.setParameterList("ids", ids);
+						return qry.list();
+					}
+				});
+		for (OpenStreetMap openStreetMap : streets) {
+			eventManager.handleEvent(new GisFeatureStoredEvent(streetFactory.create(openStreetMap)));
+		}
+		return streets.size();
+	}
 	
 
 	public String getShapeAsWKTByGId(final Long gid) {
@@ -399,6 +438,24 @@ public class OpenStreetMapDao extends GenericDao<OpenStreetMap, Long> implements
 	}
 
 
+	@SuppressWarnings("unchecked")
+	public List<Object[]> listShapesFrom(final long idFrom, final int maxResults) {
+		return (List<Object[]>) this.getHibernateTemplate().execute(
+				new HibernateCallback() {
+
+					public Object doInHibernate(Session session)
+							throws PersistenceException {
+						String queryString = "select o.id, o.shape, o.streetType, o.name from " + persistentClass.getSimpleName()
+								+ " as o where o.id > ? and o.shape is not null order by o.id";
+
+						Query qry = session.createQuery(queryString);
+						qry.setParameter(0, idFrom);
+						qry.setMaxResults(maxResults);
+						return qry.list();
+					}
+				});
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -474,49 +531,15 @@ public class OpenStreetMapDao extends GenericDao<OpenStreetMap, Long> implements
 	}
 
 	public OpenStreetMap getNearestByosmIds(final Point point,final List<Long> ids) {
-		if (ids==null || ids.size()==0){
-			return null;
-		}
-		return (OpenStreetMap) this.getHibernateTemplate().execute(
-				new HibernateCallback() {
-
-					public Object doInHibernate(Session session)
-							throws PersistenceException {
-
-						Criteria criteria = session
-								.createCriteria(OpenStreetMap.class);
-
-						criteria.add(new DistanceRestriction(point,DEFAULT_DISTANCE,true));
-						criteria.add(Restrictions.in("openstreetmapId", ids));
-
-						String pointAsString = "ST_GeometryFromText('POINT("+point.getX()+" "+point.getY()+")',"+SRID.WGS84_SRID.getSRID()+")";
-						String distanceCondition = new StringBuffer()
-						.append(DISTANCE_SPHERE_FUNCTION)
-						.append("(")
-						.append(pointAsString)
-						.append(",")
-						.append(SpatialProjection.ST_CLOSEST_POINT)
-						.append("(")
-						.append("this_.").append(OpenStreetMap.SHAPE_COLUMN_NAME)
-						.append(",")
-						.append(pointAsString)
-						.append(")")
-						.append(")")
-						.toString();
-						criteria.addOrder(new NativeSQLOrder(distanceCondition));
-						criteria = criteria.setMaxResults(1);
-						//criteria.setCacheable(true);
-						// List<Object[]> queryResults =testCriteria.list();
-						OpenStreetMap openStreetMap = (OpenStreetMap)criteria.uniqueResult();
-
-						return openStreetMap;
-
-					}
-				});
+		return getNearestByIds(point, OPENSTREETMAP_ID_COLUMN_NAME, ids);
 	}
 	
 	
 	public OpenStreetMap getNearestByGIds(final Point point,final List<Long> ids) {
+		return getNearestByIds(point, GID_COLUMN_NAME, ids);
+	}
+	
+	private OpenStreetMap getNearestByIds(final Point point,final String idColumnName,final List<Long> ids) {
 		if (ids==null || ids.size()==0){
 			return null;
 		}
@@ -525,34 +548,19 @@ public class OpenStreetMapDao extends GenericDao<OpenStreetMap, Long> implements
 
 					public Object doInHibernate(Session session)
 							throws PersistenceException {
+						String queryString = "select {o.*} from " + TABLE_NAME + " o where "
+								+ DISTANCE_SPHERE_FUNCTION + "(o." + OpenStreetMap.LOCATION_COLUMN_NAME + ", :point) <= :distance"
+								+ " and o." + OpenStreetMap.LOCATION_COLUMN_NAME + " && :envelope"
+								+ " and o." + idColumnName + " in (:ids)"
+								+ NEAREST_ORDER;
+						Query qry = session.createSQLQuery(queryString).addEntity("o", OpenStreetMap.class);
+						SpatialParameters.setPoint(qry, "point", point);
+						SpatialParameters.setEnvelope(qry, "envelope", point, DEFAULT_DISTANCE);
+						SpatialParameters.setIds(qry, "ids", ids);
+						qry.setDouble("distance", DEFAULT_DISTANCE);
+						qry.setMaxResults(1);
+						OpenStreetMap openStreetMap = (OpenStreetMap) qry.uniqueResult();
 
-						Criteria criteria = session
-								.createCriteria(OpenStreetMap.class);
-
-						criteria.add(new DistanceRestriction(point,DEFAULT_DISTANCE,true));
-						criteria.add(Restrictions.in("gid", ids));
-
-						String pointAsString = "ST_GeometryFromText('POINT("+point.getX()+" "+point.getY()+")',"+SRID.WGS84_SRID.getSRID()+")";
-						String distanceCondition = new StringBuffer()
-						.append(DISTANCE_SPHERE_FUNCTION)
-						.append("(")
-						.append(pointAsString)
-						.append(",")
-						.append(SpatialProjection.ST_CLOSEST_POINT)
-						.append("(")
-						.append("this_.").append(OpenStreetMap.SHAPE_COLUMN_NAME)
-						.append(",")
-						.append(pointAsString)
-						.append(")")
-						.append(")")
-						.toString();
-						criteria.addOrder(new NativeSQLOrder(distanceCondition));
-						criteria = criteria.setMaxResults(1);
-						//criteria.setCacheable(true);
-						// List<Object[]> queryResults =testCriteria.list();
-						OpenStreetMap openStreetMap = (OpenStreetMap)criteria.uniqueResult();
-
-						
 						return openStreetMap;
 					}
 				});
@@ -632,6 +640,11 @@ public class OpenStreetMapDao extends GenericDao<OpenStreetMap, Long> implements
 	
 	public List<OpenStreetMap> getNearestsFrom(
 			final Point point,final boolean onlyroad,final boolean filterEmptyName, final double distance) {
+		return getNearestsFrom(point, onlyroad, filterEmptyName, distance, 0);
+	}
+	
+	public List<OpenStreetMap> getNearestsFrom(
+			final Point point,final boolean onlyroad,final boolean filterEmptyName, final double distance, final int maxResults) {
 		if (point==null){
 			return null;
 		}
@@ -641,40 +654,27 @@ public class OpenStreetMapDao extends GenericDao<OpenStreetMap, Long> implements
 					public Object doInHibernate(Session session)
 							throws PersistenceException {
 
-						Criteria criteria = session
-								.createCriteria(OpenStreetMap.class);
-
-						if (point!=null){
-							//An intersect restriction will probably have better performances and use the index than a distance restriction 
-							Polygon polygonBox = GeolocHelper.createPolygonBox(point.getX(), point.getY(), distance);
-							criteria = criteria.add(new IntersectsRestriction(OpenStreetMap.SHAPE_COLUMN_NAME, polygonBox));
-						}
+						//An intersect restriction will probably have better performances and use the index than a distance restriction 
+						String queryString = "select {o.*} from " + TABLE_NAME + " o where o." + OpenStreetMap.SHAPE_COLUMN_NAME + " && :box";
 						if (onlyroad) {
-							criteria = criteria.add(Restrictions.ne("streetType",StreetType.FOOTWAY));
+							queryString += " and o." + STREET_TYPE_COLUMN_NAME + " <> :footway";
 						}
 						if (filterEmptyName){
-							criteria = criteria.add(Restrictions.isNotNull("name"));
+							queryString += " and o.name is not null";
 						}
-						//criteria.setFetchMode("houseNumbers", FetchMode.JOIN);
-
-						String pointAsString = "ST_GeometryFromText('POINT("+point.getX()+" "+point.getY()+")',"+SRID.WGS84_SRID.getSRID()+")";
-						String distanceCondition = new StringBuffer()
-						.append(DISTANCE_SPHERE_FUNCTION)
-						.append("(")
-						.append(pointAsString)
-						.append(",")
-						.append(SpatialProjection.ST_CLOSEST_POINT)
-						.append("(")
-						.append("this_.").append(OpenStreetMap.SHAPE_COLUMN_NAME)
-						.append(",")
-						.append(pointAsString)
-						.append(")")
-						.append(")")
-						.toString();
-						criteria.addOrder(new NativeSQLOrder(distanceCondition));
-						criteria.setCacheable(true);
-						// List<Object[]> queryResults =testCriteria.list();
-						List<OpenStreetMap> openStreetMaps = (List<OpenStreetMap>)criteria.list();
+						queryString += NEAREST_ORDER;
+						Query qry = session.createSQLQuery(queryString).addEntity("o", OpenStreetMap.class);
+						Polygon polygonBox = GeolocHelper.createPolygonBox(point.getX(), point.getY(), distance);
+						SpatialParameters.setGeometry(qry, "box", polygonBox);
+						SpatialParameters.setPoint(qry, "point", point);
+						if (onlyroad) {
+							qry.setString("footway", StreetType.FOOTWAY.name());
+						}
+						if (maxResults > 0) {
+							qry.setMaxResults(maxResults);
+						}
+						qry.setCacheable(true);
+						List<OpenStreetMap> openStreetMaps = (List<OpenStreetMap>)qry.list();
 						/*if (openStreetMaps!=null){
 							for (OpenStreetMap o : openStreetMaps){
 								if (o!=null){
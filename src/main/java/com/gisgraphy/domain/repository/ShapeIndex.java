@@ -0,0 +1,425 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.domain.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.gisgraphy.domain.geoloc.entity.Adm;
+import com.gisgraphy.domain.geoloc.entity.City;
+import com.gisgraphy.domain.geoloc.entity.CitySubdivision;
+import com.gisgraphy.domain.geoloc.entity.GisFeature;
+import com.gisgraphy.domain.geoloc.entity.event.GisFeatureEvent;
+import com.gisgraphy.domain.geoloc.entity.event.GisFeaturesEvent;
+import com.gisgraphy.domain.geoloc.entity.event.IEvent;
+import com.gisgraphy.domain.geoloc.entity.event.IEventListener;
+import com.gisgraphy.domain.geoloc.entity.event.PlaceTypeDeleteAllEvent;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * Default implementation of {@link IShapeIndex}. The shapes are prepared
+ * geometries stored in one STR-tree per layer (city, subdivision, adm) and
+ * per country, plus one for all the countries. A new index is built in the
+ * background and replaces the current one when it is ready, so the queries
+ * are never blocked by a reload.
+ * <p>
+ * The index listens to the repository events : as soon as a city, a
+ * subdivision or an adm is stored or deleted, it is stale and
+ * {@link #isReady()} returns false until it is reloaded (the importer manager
+ * reloads it after each importer), so the daos use the database in the
+ * meantime.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class ShapeIndex implements IShapeIndex, IEventListener {
+
+	protected static final Logger logger = LoggerFactory.getLogger(ShapeIndex.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private static final String ALL_COUNTRIES = "";
+
+	private static final String THREAD_NAME = "shape-index-loader";
+
+	/**
+	 * estimated size of a coordinate (object header, 3 doubles and
+	 * reference), in bytes
+	 */
+	private static final int COORDINATE_SIZE = 48;
+
+	/**
+	 * estimated size of an entry (entry, envelope, prepared geometry and tree
+	 * node), in bytes
+	 */
+	private static final int ENTRY_SIZE = 256;
+
+	enum Layer {
+		CITY, CITY_SUBDIVISION, ADM
+	}
+
+	@Autowired
+	protected ICityDao cityDao;
+
+	@Autowired
+	protected ICitySubdivisionDao citySubdivisionDao;
+
+	@Autowired
+	protected IAdmDao admDao;
+
+	private boolean enabled = false;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private volatile Snapshot snapshot;
+
+	private volatile boolean stale = false;
+
+	private Thread loaderThread;
+
+	@PostConstruct
+	public synchronized void init() {
+		if (!enabled) {
+			logger.info("the shape index is disabled, the shapes will be queried in the database");
+			return;
+		}
+		loaderThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					reload();
+				} catch (Exception e) {
+					logger.error("can not load the shape index, the shapes will be queried in the database : " + e.getMessage(), e);
+				}
+			}
+		}, THREAD_NAME);
+		loaderThread.setDaemon(true);
+		loaderThread.start();
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (loaderThread != null) {
+			loaderThread.interrupt();
+			loaderThread = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.IShapeIndex#isReady()
+	 */
+	public boolean isReady() {
+		return snapshot != null && !stale;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.IShapeIndex#getCityIdByShape(com.vividsolutions.jts.geom.Point, java.lang.String, boolean)
+	 */
+	public Long getCityIdByShape(Point location, String countryCode, boolean filterMunicipality) {
+		Entry smallest = null;
+		for (Entry entry : listContaining(Layer.CITY, location, countryCode)) {
+			if (filterMunicipality && !entry.municipality) {
+				continue;
+			}
+			if (smallest == null || entry.area < smallest.area) {
+				smallest = entry;
+			}
+		}
+		return smallest == null ? null : smallest.id;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.IShapeIndex#getCitySubdivisionIdByShape(com.vividsolutions.jts.geom.Point, java.lang.String)
+	 */
+	public Long getCitySubdivisionIdByShape(Point location, String countryCode) {
+		Entry smallest = null;
+		for (Entry entry : listContaining(Layer.CITY_SUBDIVISION, location, countryCode)) {
+			if (smallest == null || entry.area < smallest.area) {
+				smallest = entry;
+			}
+		}
+		return smallest == null ? null : smallest.id;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.IShapeIndex#listAdmIdsByShape(com.vividsolutions.jts.geom.Point, java.lang.String)
+	 */
+	public List<Long> listAdmIdsByShape(Point location, String countryCode) {
+		List<Entry> entries = listContaining(Layer.ADM, location, countryCode);
+		Collections.sort(entries, new Comparator<Entry>() {
+			public int compare(Entry entry1, Entry entry2) {
+				return Double.compare(entry2.area, entry1.area);
+			}
+		});
+		List<Long> ids = new ArrayList<Long>(entries.size());
+		for (Entry entry : entries) {
+			ids.add(entry.id);
+		}
+		return ids;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Entry> listContaining(Layer layer, Point location, String countryCode) {
+		List<Entry> result = new ArrayList<Entry>();
+		Snapshot current = snapshot;
+		if (current == null || location == null) {
+			return result;
+		}
+		STRtree tree = current.getTree(layer, countryCode == null ? ALL_COUNTRIES : countryCode.toUpperCase());
+		if (tree == null) {
+			return result;
+		}
+		for (Entry entry : (List<Entry>) tree.query(location.getEnvelopeInternal())) {
+			if (entry.shape.contains(location)) {
+				result.add(entry);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.IShapeIndex#reload()
+	 */
+	public synchronized void reload() {
+		long start = System.currentTimeMillis();
+		//the modifications done during the load will make it stale again
+		stale = false;
+		Snapshot newSnapshot = new Snapshot();
+		load(newSnapshot, Layer.CITY, cityDao);
+		load(newSnapshot, Layer.CITY_SUBDIVISION, citySubdivisionDao);
+		load(newSnapshot, Layer.ADM, admDao);
+		newSnapshot.build();
+		snapshot = newSnapshot;
+		logger.info("the shape index has been loaded in " + (System.currentTimeMillis() - start) + " ms : " + newSnapshot.numberOfShapes + " shapes, about "
+				+ (newSnapshot.getMemoryFootprint() / (1024 * 1024)) + " MB");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.IShapeIndex#reloadIfStale()
+	 */
+	public void reloadIfStale() {
+		if (enabled && stale) {
+			logger.info("cities, subdivisions or adms have been modified, the shape index will be reloaded");
+			reload();
+		}
+	}
+
+	private void load(Snapshot newSnapshot, Layer layer, IGisDao<? extends GisFeature> dao) {
+		PreparedGeometryFactory factory = new PreparedGeometryFactory();
+		long lastId = Long.MIN_VALUE;
+		List<Object[]> shapes;
+		do {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new RuntimeException("the load of the shape index has been interrupted");
+			}
+			shapes = dao.listShapesFrom(lastId, batchSize);
+			for (Object[] shape : shapes) {
+				lastId = (Long) shape[0];
+				Geometry geometry = (Geometry) shape[1];
+				String countryCode = (String) shape[2];
+				boolean municipality = shape.length > 3 && Boolean.TRUE.equals(shape[3]);
+				newSnapshot.add(layer, countryCode, new Entry(lastId, municipality, geometry.getArea(), factory.create(geometry)), geometry);
+			}
+		} while (shapes.size() == batchSize);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.IShapeIndex#getNumberOfShapes()
+	 */
+	public long getNumberOfShapes() {
+		Snapshot current = snapshot;
+		return current == null ? 0 : current.numberOfShapes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.IShapeIndex#getMemoryFootprint()
+	 */
+	public long getMemoryFootprint() {
+		Snapshot current = snapshot;
+		return current == null ? 0 : current.getMemoryFootprint();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.geoloc.entity.event.IEventListener#supports(com.gisgraphy.domain.geoloc.entity.event.IEvent)
+	 */
+	public boolean supports(IEvent event) {
+		if (event instanceof GisFeatureEvent) {
+			return isIndexed(((GisFeatureEvent) event).getGisFeature().getClass());
+		}
+		if (event instanceof GisFeaturesEvent) {
+			for (GisFeature gisFeature : ((GisFeaturesEvent) event).getGisFeatures()) {
+				if (gisFeature != null && isIndexed(gisFeature.getClass())) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (event instanceof PlaceTypeDeleteAllEvent) {
+			return isIndexed(((PlaceTypeDeleteAllEvent) event).getPlaceType());
+		}
+		return false;
+	}
+
+	private boolean isIndexed(Class<?> placeType) {
+		return placeType != null
+				&& (City.class.isAssignableFrom(placeType) || CitySubdivision.class.isAssignableFrom(placeType) || Adm.class.isAssignableFrom(placeType));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.geoloc.entity.event.IEventListener#handleEvent(com.gisgraphy.domain.geoloc.entity.event.IEvent)
+	 */
+	public void handleEvent(IEvent event) {
+		stale = true;
+	}
+
+	/**
+	 * @return true if the index is loaded at startup and after the imports
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            whether the index is loaded at startup and after the imports
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize
+	 *            the number of shapes read from the database at a time
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("the batch size should be greater than 0");
+		}
+		this.batchSize = batchSize;
+	}
+
+	static final class Entry {
+		private final long id;
+		private final boolean municipality;
+		private final double area;
+		private final PreparedGeometry shape;
+
+		Entry(long id, boolean municipality, double area, PreparedGeometry shape) {
+			this.id = id;
+			this.municipality = municipality;
+			this.area = area;
+			this.shape = shape;
+		}
+	}
+
+	/**
+	 * the trees of one load of the index, read only once built
+	 */
+	static final class Snapshot {
+		private final Map<Layer, Map<String, STRtree>> trees = new HashMap<Layer, Map<String, STRtree>>();
+		private long numberOfShapes = 0;
+		private long numberOfCoordinates = 0;
+
+		void add(Layer layer, String countryCode, Entry entry, Geometry geometry) {
+			Map<String, STRtree> treesByCountry = trees.get(layer);
+			if (treesByCountry == null) {
+				treesByCountry = new HashMap<String, STRtree>();
+				trees.put(layer, treesByCountry);
+			}
+			getOrCreateTree(treesByCountry, ALL_COUNTRIES).insert(geometry.getEnvelopeInternal(), entry);
+			if (countryCode != null) {
+				getOrCreateTree(treesByCountry, countryCode.toUpperCase()).insert(geometry.getEnvelopeInternal(), entry);
+			}
+			numberOfShapes++;
+			numberOfCoordinates += geometry.getNumPoints();
+		}
+
+		private STRtree getOrCreateTree(Map<String, STRtree> treesByCountry, String key) {
+			STRtree tree = treesByCountry.get(key);
+			if (tree == null) {
+				tree = new STRtree();
+				treesByCountry.put(key, tree);
+			}
+			return tree;
+		}
+
+		/**
+		 * build the trees now, so that the queries never modify them
+		 */
+		void build() {
+			for (Map<String, STRtree> treesByCountry : trees.values()) {
+				for (STRtree tree : treesByCountry.values()) {
+					tree.build();
+				}
+			}
+		}
+
+		STRtree getTree(Layer layer, String key) {
+			Map<String, STRtree> treesByCountry = trees.get(layer);
+			return treesByCountry == null ? null : treesByCountry.get(key);
+		}
+
+		long getMemoryFootprint() {
+			//every entry is in two trees
+			return numberOfCoordinates * COORDINATE_SIZE + numberOfShapes * ENTRY_SIZE * 2;
+		}
+	}
+
+}
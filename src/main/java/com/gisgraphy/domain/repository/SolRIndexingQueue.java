@@ -0,0 +1,269 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.domain.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gisgraphy.fulltext.IsolrClient;
+import com.gisgraphy.geoloc.GisgraphyCommunicationException;
+import com.gisgraphy.helper.RetryOnErrorTemplate;
+
+/**
+ * Collect the documents to index and send them to the full text search engine
+ * by batches, from a pool of sender threads, so that the callers don't wait
+ * for the full text search engine. The documents are dispatched to the
+ * senders according to their key : the documents with the same key are sent
+ * in the order they have been added.<br/>
+ * The callers only wait when too many batches are pending. The errors are
+ * logged and thrown by {@link #flush()}
+ * 
+ * @see SolRSynchroniser
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class SolRIndexingQueue {
+
+    protected static final Logger logger = LoggerFactory.getLogger(SolRIndexingQueue.class);
+
+    private final IsolrClient solrClient;
+
+    private final int batchSize;
+
+    private final int commitWithinMs;
+
+    private final int numberOfRetryOnFailure;
+
+    private final Sender[] senders;
+
+    /**
+     * Limit the number of batches in memory
+     */
+    private final Semaphore pendingBatches;
+
+    private final Object batchesLock = new Object();
+
+    /**
+     * The number of batches submitted and not sent yet, guarded by
+     * {@link #batchesLock}
+     */
+    private int batchesInProgress = 0;
+
+    private final AtomicLong numberOfDocumentsSent = new AtomicLong();
+
+    private volatile Exception error;
+
+    private static final class Sender {
+
+	private final ExecutorService executor;
+
+	private List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>();
+
+	private Sender(ExecutorService executor) {
+	    this.executor = executor;
+	}
+    }
+
+    /**
+     * @param solrClient
+     *            the client of the full text search engine
+     * @param threads
+     *            the number of threads that send the batches
+     * @param batchSize
+     *            the number of documents sent by request
+     * @param commitWithinMs
+     *            the maximum time before the documents are committed by the
+     *            full text search engine, 0 or less to wait for an explicit
+     *            commit
+     * @param numberOfRetryOnFailure
+     *            the number of times a batch is sent before giving up
+     */
+    public SolRIndexingQueue(IsolrClient solrClient, int threads, int batchSize, int commitWithinMs, int numberOfRetryOnFailure) {
+	if (threads < 1 || batchSize < 1) {
+	    throw new IllegalArgumentException("the number of threads and the batch size should be positive : " + threads + ", " + batchSize);
+	}
+	this.solrClient = solrClient;
+	this.batchSize = batchSize;
+	this.commitWithinMs = commitWithinMs;
+	this.numberOfRetryOnFailure = numberOfRetryOnFailure;
+	this.pendingBatches = new Semaphore(threads * 2);
+	this.senders = new Sender[threads];
+	for (int i = 0; i < threads; i++) {
+	    final String threadName = "solr-indexer-" + (i + 1);
+	    senders[i] = new Sender(Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+		    Thread thread = new Thread(runnable, threadName);
+		    thread.setDaemon(true);
+		    return thread;
+		}
+	    }));
+	}
+	logger.info("the documents will be indexed by batches of " + batchSize + " with " + threads + " threads");
+    }
+
+    /**
+     * Add a document to the queue. the document will be sent with the next
+     * batch
+     * 
+     * @param document
+     *            the document to index
+     * @param key
+     *            the key of the document, the documents with the same key are
+     *            sent in order
+     */
+    public void add(SolrInputDocument document, long key) {
+	Sender sender = senders[(int) Math.abs(key % senders.length)];
+	List<SolrInputDocument> fullBatch = null;
+	synchronized (sender) {
+	    sender.batch.add(document);
+	    if (sender.batch.size() >= batchSize) {
+		fullBatch = sender.batch;
+		sender.batch = new ArrayList<SolrInputDocument>(batchSize);
+	    }
+	}
+	if (fullBatch != null) {
+	    submit(sender, fullBatch);
+	}
+    }
+
+    /**
+     * Send the documents of the queue and wait for them to be sent
+     * 
+     * @throws GisgraphyCommunicationException
+     *             if some documents have not been sent since the last flush
+     */
+    public void flush() {
+	for (Sender sender : senders) {
+	    List<SolrInputDocument> partialBatch = null;
+	    synchronized (sender) {
+		if (!sender.batch.isEmpty()) {
+		    partialBatch = sender.batch;
+		    sender.batch = new ArrayList<SolrInputDocument>(batchSize);
+		}
+	    }
+	    if (partialBatch != null) {
+		submit(sender, partialBatch);
+	    }
+	}
+	synchronized (batchesLock) {
+	    while (batchesInProgress > 0) {
+		try {
+		    batchesLock.wait();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    throw new GisgraphyCommunicationException("interrupted while waiting for the documents to be indexed", e);
+		}
+	    }
+	}
+	Exception lastError = error;
+	if (lastError != null) {
+	    error = null;
+	    throw new GisgraphyCommunicationException("Can not synchronise SolR : some documents have not been indexed : " + lastError.getMessage(), lastError);
+	}
+    }
+
+    /**
+     * Send the remaining documents and stop the sender threads
+     */
+    public void shutdown() {
+	try {
+	    flush();
+	} catch (GisgraphyCommunicationException e) {
+	    logger.error(e.getMessage(), e);
+	} finally {
+	    for (Sender sender : senders) {
+		sender.executor.shutdown();
+	    }
+	}
+	for (Sender sender : senders) {
+	    try {
+		sender.executor.awaitTermination(1, TimeUnit.MINUTES);
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		return;
+	    }
+	}
+    }
+
+    /**
+     * @return the number of documents that have been sent
+     */
+    public long getNumberOfDocumentsSent() {
+	return numberOfDocumentsSent.get();
+    }
+
+    private void submit(Sender sender, final List<SolrInputDocument> batch) {
+	try {
+	    pendingBatches.acquire();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new GisgraphyCommunicationException("interrupted while waiting to index " + batch.size() + " documents", e);
+	}
+	synchronized (batchesLock) {
+	    batchesInProgress++;
+	}
+	sender.executor.execute(new Runnable() {
+	    public void run() {
+		try {
+		    send(batch);
+		} catch (Exception e) {
+		    logger.error("Can not synchronise SolR : " + batch.size() + " documents have not been indexed : " + e.getMessage(), e);
+		    error = e;
+		} finally {
+		    pendingBatches.release();
+		    synchronized (batchesLock) {
+			batchesInProgress--;
+			batchesLock.notifyAll();
+		    }
+		}
+	    }
+	});
+    }
+
+    private void send(final List<SolrInputDocument> batch) throws Exception {
+	RetryOnErrorTemplate<Boolean> retryOnError = new RetryOnErrorTemplate<Boolean>() {
+	    @Override
+	    public Boolean tryThat() throws Exception {
+		if (commitWithinMs > 0) {
+		    solrClient.getServer().add(batch, commitWithinMs);
+		} else {
+		    solrClient.getServer().add(batch);
+		}
+		return true;
+	    }
+	};
+	retryOnError.setLoggingSentence("Synchronise SolR : add " + batch.size() + " documents");
+	retryOnError.times(numberOfRetryOnFailure);
+	numberOfDocumentsSent.addAndGet(batch.size());
+    }
+
+}
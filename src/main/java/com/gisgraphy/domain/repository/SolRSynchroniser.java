@@ -59,7 +59,7 @@ import com.gisgraphy.geoloc.GisgraphyCommunicationException;
 import com.gisgraphy.helper.ClassNameHelper;
 import com.gisgraphy.helper.EncodingHelper;
 import com.gisgraphy.helper.RetryOnErrorTemplate;
-import com.gisgraphy.street.HouseNumberSerializer;
+import com.gisgraphy.street.HouseNumberBinaryCodec;
 
 /**
  * Interface of data access object for {@link Language}
@@ -69,7 +69,7 @@ import com.gisgraphy.street.HouseNumberSerializer;
  */
 public class SolRSynchroniser implements ISolRSynchroniser {
 	
-	HouseNumberSerializer houseNumberListSerializer = new HouseNumberSerializer();
+	HouseNumberBinaryCodec houseNumberBinaryCodec = new HouseNumberBinaryCodec();
 	Decompounder decompounder = new Decompounder();
 	
 	
@@ -88,6 +88,20 @@ public class SolRSynchroniser implements ISolRSynchroniser {
 	    .getLogger(SolRSynchroniser.class);
 
     private IsolrClient solClient;
+    
+    private List<ISolRCommitListener> commitListeners = new ArrayList<ISolRCommitListener>();
+
+    /**
+     * The number of threads that send the documents, 0 to send them in the
+     * thread that stores the features
+     */
+    private int indexingThreads = 0;
+
+    private int indexingBatchSize = 100;
+
+    private int commitWithinMs = 0;
+
+    private SolRIndexingQueue indexingQueue;
 
     public SolRSynchroniser(IsolrClient solrClient) {
 	Assert
@@ -100,6 +114,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
      * @param gisFeatureEvent
      */
     private void handleEvent(final GisFeatureDeletedEvent gisFeatureEvent) {
+	flushIndexingQueue();
 	try {
 	    RetryOnErrorTemplate<Object> retryOnError = new RetryOnErrorTemplate<Object>() {
 		    @Override
@@ -112,6 +127,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
 		};
 		retryOnError.setLoggingSentence("Synchronise SolR : deletion of feature with id="+gisFeatureEvent.getGisFeature().getFeatureId());
 		retryOnError.times(numberOfRetryOnFailure);
+		notifyCommitListeners();
 	    
 	    
 	} catch (Exception e) {
@@ -125,6 +141,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
      * @see com.gisgraphy.domain.repository.ISolRSynchroniser#deleteAll()
      */
     public void deleteAll() {
+	flushIndexingQueue();
 	try {
 	    RetryOnErrorTemplate<Object> retryOnError = new RetryOnErrorTemplate<Object>() {
 		    @Override
@@ -138,6 +155,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
 		};
 		retryOnError.setLoggingSentence("Synchronise SolR : deletion of all features");
 		retryOnError.times(numberOfRetryOnFailure);
+		notifyCommitListeners();
 	    
 	    
 	} catch (Exception e) {
@@ -155,6 +173,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
     }
 
     public void deleteAllByPlaceType(final Class<? extends GisFeature> placetype) {
+	flushIndexingQueue();
 	try {
 	    RetryOnErrorTemplate<Object> retryOnError = new RetryOnErrorTemplate<Object>() {
 		    @Override
@@ -171,6 +190,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
 		};
 		retryOnError.setLoggingSentence("Synchronise SolR : deletion of features of type="+placetype.getClass().getSimpleName());
 		retryOnError.times(numberOfRetryOnFailure);
+		notifyCommitListeners();
 	    
 	    
 	} catch (Exception e) {
@@ -179,6 +199,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
     }
 
     private void handleEvent(final GisFeatureDeleteAllEvent gisFeatureDeleteAllEvent) {
+	flushIndexingQueue();
 	try {
 	    RetryOnErrorTemplate<Object> retryOnError = new RetryOnErrorTemplate<Object>() {
 		    @Override
@@ -194,6 +215,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
 		};
 		retryOnError.setLoggingSentence("Synchronise SolR : deletion of specific features");
 		retryOnError.times(numberOfRetryOnFailure);
+		notifyCommitListeners();
 	    
 	    
 	} catch (Exception e) {
@@ -228,6 +250,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
      */
     public boolean commit() {
 	try {
+	    flushIndexingQueue();
 	    RetryOnErrorTemplate<Boolean> retryOnError = new RetryOnErrorTemplate<Boolean>() {
 		    @Override
 		    public Boolean tryThat() throws Exception {
@@ -236,7 +259,9 @@ public class SolRSynchroniser implements ISolRSynchroniser {
 		    }
 		};
 		retryOnError.setLoggingSentence("Synchronise SolR : commit");
-		return retryOnError.times(numberOfRetryOnFailure);
+		Boolean committed = retryOnError.times(numberOfRetryOnFailure);
+		notifyCommitListeners();
+		return committed;
 	    
 	    
 	} catch (Exception e) {
@@ -245,12 +270,121 @@ public class SolRSynchroniser implements ISolRSynchroniser {
 	}
     }
 
+    /**
+     * Notify the listeners that the content of the full text search engine
+     * has changed. A listener that throws doesn't prevent the others to be
+     * notified
+     */
+    protected void notifyCommitListeners() {
+	for (ISolRCommitListener listener : commitListeners) {
+	    try {
+		listener.onCommit();
+	    } catch (RuntimeException e) {
+		logger.error("error when notifying commit to " + listener + " : " + e.getMessage(), e);
+	    }
+	}
+    }
+
+    /**
+     * @param commitListeners
+     *            the objects to notify after each commit
+     */
+    public void setCommitListeners(List<ISolRCommitListener> commitListeners) {
+	if (commitListeners == null) {
+	    this.commitListeners = new ArrayList<ISolRCommitListener>();
+	} else {
+	    this.commitListeners = commitListeners;
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.gisgraphy.domain.repository.ISolRSynchroniser#flush()
+     */
+    public void flush() {
+	if (flushIndexingQueue()) {
+	    //the documents added with commitWithin are not visible yet : without
+	    //a commit, the listeners would be refilled with the old documents
+	    //until the commitWithin delay expires
+	    commit();
+	}
+    }
+
+    /**
+     * @return true if there is an indexing queue and it has been flushed,
+     *         false if the documents are sent in the calling thread
+     */
+    private boolean flushIndexingQueue() {
+	SolRIndexingQueue queue;
+	synchronized (this) {
+	    queue = indexingQueue;
+	}
+	if (queue != null) {
+	    queue.flush();
+	    return true;
+	}
+	return false;
+    }
+
+    /**
+     * Send the documents that are still in the indexing queue and stop the
+     * sender threads
+     */
+    public synchronized void shutdown() {
+	if (indexingQueue != null) {
+	    indexingQueue.shutdown();
+	    indexingQueue = null;
+	}
+    }
+
+    /**
+     * @return the queue of the documents to send, or null if the documents are
+     *         sent in the calling thread
+     */
+    protected synchronized SolRIndexingQueue getIndexingQueue() {
+	if (indexingQueue == null && indexingThreads > 0) {
+	    indexingQueue = new SolRIndexingQueue(solClient, indexingThreads, indexingBatchSize, commitWithinMs, numberOfRetryOnFailure);
+	}
+	return indexingQueue;
+    }
+
+    /**
+     * @param indexingThreads
+     *            the number of threads that send the documents to the full
+     *            text search engine by batches, 0 to send each document in the
+     *            thread that stores the feature (the default)
+     */
+    public void setIndexingThreads(int indexingThreads) {
+	this.indexingThreads = indexingThreads;
+    }
+
+    /**
+     * @param indexingBatchSize
+     *            the number of documents sent by request when
+     *            {@link #setIndexingThreads(int)} is positive
+     */
+    public void setIndexingBatchSize(int indexingBatchSize) {
+	this.indexingBatchSize = indexingBatchSize;
+    }
+
+    /**
+     * @param commitWithinMs
+     *            the maximum time in milliseconds before the documents sent
+     *            by batches are visible, 0 or less to wait for an explicit
+     *            {@link #commit()}
+     */
+    public void setCommitWithinMs(int commitWithinMs) {
+	this.commitWithinMs = commitWithinMs;
+    }
+
     /*
      * (non-Javadoc)
      * 
      * @see com.gisgraphy.domain.repository.ISolRSynchroniser#optimize()
      */
     public void optimize() {
+	flushIndexingQueue();
 	try {
 	    RetryOnErrorTemplate<Boolean> retryOnError = new RetryOnErrorTemplate<Boolean>() {
 		    @Override
@@ -269,6 +403,7 @@ public class SolRSynchroniser implements ISolRSynchroniser {
     }
 
     private void handleEvent(final GisFeatureStoredEvent gisfeatureCreatedEventEvent) {
+	final SolRIndexingQueue queue = getIndexingQueue();
 	try {
 	    RetryOnErrorTemplate<Boolean> retryOnError = new RetryOnErrorTemplate<Boolean>() {
 		    @Override
@@ -382,14 +517,12 @@ public class SolRSynchroniser implements ISolRSynchroniser {
 		    	}*/
 		    	SortedSet<HouseNumber> houseNumbersFromEntity = ((Street) gisFeature).getHouseNumbers();
 		    	if (houseNumbersFromEntity!=null && houseNumbersFromEntity.size()!=0){
-			    	//SortedSet<HouseNumber> houseNumbers = new TreeSet<HouseNumber>(houseNumberComparator);
-					//houseNumbers.addAll(houseNumbersFromEntity);
-						 List<String> houseNumbersToAdd= new ArrayList<String>();
-						// Collections.sort(houseNumbers,houseNumberComparator);
-			    		for (HouseNumber houseNumber:houseNumbersFromEntity){
-			    			houseNumbersToAdd.add(houseNumberListSerializer.serialize(houseNumber));
+			    		//only the binary form is stored, the text one (house_numbers)
+			    		//is only read for the documents indexed before
+			    		byte[] encodedHouseNumbers = houseNumberBinaryCodec.encode(houseNumbersFromEntity);
+			    		if (encodedHouseNumbers!=null){
+			    			ex.setField(HouseNumberBinaryCodec.HOUSE_NUMBERS_BINARY_FIELD, encodedHouseNumbers);
 			    		}
-			    		ex.setField(FullTextFields.HOUSE_NUMBERS.getValue(),houseNumbersToAdd );
 		    	}
 				populateAlternateNamesForStreet(gisFeature.getAlternateNames(),ex);
 				ex.setField(FullTextFields.ADM1NAME.getValue(), gisFeature.getAdm1Name());
@@ -543,7 +676,11 @@ public class SolRSynchroniser implements ISolRSynchroniser {
 				}
 			}
 			}
-			solClient.getServer().add(ex);
+			if (queue != null) {
+			    queue.add(ex, gisFeature.getFeatureId());
+			} else {
+			    solClient.getServer().add(ex);
+			}
 			return true;
 		    }
 		};
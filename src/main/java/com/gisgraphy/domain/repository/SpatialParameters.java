@@ -0,0 +1,152 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.domain.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Query;
+
+import com.gisgraphy.domain.valueobject.SRID;
+import com.gisgraphy.helper.GisHelper;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Binds the spatial values (points, envelopes) and the lists of ids of the
+ * queries as typed parameters instead of concatenating them in the query.
+ * The sql of a query is then always the same whatever the values are, so the
+ * jdbc driver can use a server side prepared statement and postgres does not
+ * have to parse and plan the query on each call.
+ * <p>
+ * The size of a list of ids changes the sql (one placeholder per id), so the
+ * lists are padded to the next power of two to limit the number of different
+ * statements.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class SpatialParameters {
+
+    /**
+     * the minimum size of a list of ids once padded
+     */
+    public static final int MIN_PADDED_SIZE = 4;
+
+    private SpatialParameters() {
+    }
+
+    /**
+     * @param query
+     *                the query to bind the point to
+     * @param name
+     *                the name of the parameter
+     * @param point
+     *                the point, its srid is set to {@link SRID#WGS84_SRID}
+     *                if it has none
+     * @return the query
+     */
+    public static Query setPoint(Query query, String name, Point point) {
+	return setGeometry(query, name, point);
+    }
+
+    /**
+     * @param query
+     *                the query to bind the geometry to
+     * @param name
+     *                the name of the parameter
+     * @param geometry
+     *                the geometry, its srid is set to
+     *                {@link SRID#WGS84_SRID} if it has none
+     * @return the query
+     */
+    public static Query setGeometry(Query query, String name, Geometry geometry) {
+	return query.setParameter(name, withSrid(geometry), GenericGisDao.GEOMETRY_TYPE);
+    }
+
+    /**
+     * bind the bounding box around a point (see
+     * {@link GisHelper#createBoundingBox(double, double, double)}), typically
+     * used with the <code>&amp;&amp;</code> operator to use the gist index
+     * before a distance restriction
+     * 
+     * @param query
+     *                the query to bind the box to
+     * @param name
+     *                the name of the parameter
+     * @param center
+     *                the center of the box
+     * @param distance
+     *                the distance from the center to the sides, in meters
+     * @return the query
+     */
+    public static Query setEnvelope(Query query, String name, Point center, double distance) {
+	return setGeometry(query, name, GisHelper.createBoundingBox(center.getY(), center.getX(), distance));
+    }
+
+    /**
+     * @param query
+     *                the query to bind the ids to, the parameter should be
+     *                used with the in operator : <code>in (:ids)</code>
+     * @param name
+     *                the name of the parameter
+     * @param ids
+     *                the ids, must not be empty
+     * @return the query
+     */
+    public static Query setIds(Query query, String name, Collection<Long> ids) {
+	return query.setParameterList(name, pad(ids), Hibernate.LONG);
+    }
+
+    /**
+     * @return the ids padded with the last one to the next power of two (and
+     *         at least {@link #MIN_PADDED_SIZE}), the ids that are repeated
+     *         don't change the result of a <code>in</code>
+     */
+    static List<Long> pad(Collection<Long> ids) {
+	if (ids == null || ids.isEmpty()) {
+	    throw new IllegalArgumentException("can not bind an empty list of ids");
+	}
+	int size = MIN_PADDED_SIZE;
+	while (size < ids.size()) {
+	    size = size << 1;
+	}
+	List<Long> padded = new ArrayList<Long>(size);
+	padded.addAll(ids);
+	Long last = padded.get(padded.size() - 1);
+	while (padded.size() < size) {
+	    padded.add(last);
+	}
+	return padded;
+    }
+
+    private static Geometry withSrid(Geometry geometry) {
+	if (geometry != null && geometry.getSRID() == 0) {
+	    geometry = (Geometry) geometry.clone();
+	    geometry.setSRID(SRID.WGS84_SRID.getSRID());
+	}
+	return geometry;
+    }
+
+}
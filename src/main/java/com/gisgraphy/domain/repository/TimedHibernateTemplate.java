@@ -0,0 +1,63 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.domain.repository;
+
+import org.hibernate.SessionFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.hibernate3.HibernateCallback;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
+
+/**
+ * A {@link HibernateTemplate} that records the latency of each operation as
+ * {@link LatencyType#DATABASE}. All the methods of the template (find, get,
+ * save, execute,...) run their callback with
+ * {@link #doExecute(HibernateCallback, boolean, boolean)}
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class TimedHibernateTemplate extends HibernateTemplate {
+
+    public TimedHibernateTemplate(SessionFactory sessionFactory) {
+	super(sessionFactory);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.springframework.orm.hibernate3.HibernateTemplate#doExecute(org.springframework.orm.hibernate3.HibernateCallback,
+     *      boolean, boolean)
+     */
+    @Override
+    protected <T> T doExecute(HibernateCallback<T> action, boolean enforceNewSession, boolean enforceNativeSession) throws DataAccessException {
+	long start = LatencyStats.start();
+	try {
+	    return super.doExecute(action, enforceNewSession, enforceNativeSession);
+	} finally {
+	    LatencyStats.record(LatencyType.DATABASE, start);
+	}
+    }
+
+}
@@ -22,7 +22,9 @@
  *******************************************************************************/
 package com.gisgraphy.domain.valueobject;
 
+import com.gisgraphy.importer.AbstractSimpleImporterProcessor;
 import com.gisgraphy.importer.IImporterProcessor;
+import com.gisgraphy.importer.ImporterPipeline;
 
 /**
  * Represents a status of an IgeonamesProcessor
@@ -59,6 +61,13 @@ public class ImporterStatusDto {
     private int percent = 0;
     private String statusMessage = "";
     private ImporterStatus status = ImporterStatus.UNKNOW;
+    private boolean pipelined = false;
+    private long numberOfLineRead = 0;
+    private long numberOfLinePrepared = 0;
+    private long numberOfLinePersisted = 0;
+    private long readThroughput = 0;
+    private long prepareThroughput = 0;
+    private long persistThroughput = 0;
 
     /**
      * @param processorName
@@ -100,6 +109,18 @@ public class ImporterStatusDto {
 	this.currentLine = processor.getReadFileLine();
 	this.numberOfLineToProcess = processor.getNumberOfLinesToProcess();
 	this.numberOfLineProcessed = processor.getTotalReadLine();
+	if (processor instanceof AbstractSimpleImporterProcessor) {
+	    ImporterPipeline<?> pipeline = ((AbstractSimpleImporterProcessor) processor).getPipeline();
+	    if (pipeline != null) {
+		this.pipelined = true;
+		this.numberOfLineRead = pipeline.getNumberOfLinesRead();
+		this.numberOfLinePrepared = pipeline.getNumberOfLinesPrepared();
+		this.numberOfLinePersisted = pipeline.getNumberOfLinesPersisted();
+		this.readThroughput = pipeline.getThroughput(numberOfLineRead);
+		this.prepareThroughput = pipeline.getThroughput(numberOfLinePrepared);
+		this.persistThroughput = pipeline.getThroughput(numberOfLinePersisted);
+	    }
+	}
 	calculateFields();
     }
 
@@ -215,6 +236,59 @@ public class ImporterStatusDto {
 	return statusMessage;
     }
 
+    /**
+     * @return true if the processor processes the lines in a pipeline, the
+     *         counters of the stages of the pipeline are only available in
+     *         this case (and are not exported in csv)
+     */
+    public boolean isPipelined() {
+	return pipelined;
+    }
+
+    /**
+     * @return the number of lines of the current file read by the pipeline
+     */
+    public long getNumberOfLineRead() {
+	return numberOfLineRead;
+    }
+
+    /**
+     * @return the number of lines of the current file prepared by the
+     *         workers of the pipeline
+     */
+    public long getNumberOfLinePrepared() {
+	return numberOfLinePrepared;
+    }
+
+    /**
+     * @return the number of lines of the current file persisted by the
+     *         pipeline
+     */
+    public long getNumberOfLinePersisted() {
+	return numberOfLinePersisted;
+    }
+
+    /**
+     * @return the number of lines read per second
+     */
+    public long getReadThroughput() {
+	return readThroughput;
+    }
+
+    /**
+     * @return the number of lines prepared per second
+     */
+    public long getPrepareThroughput() {
+	return prepareThroughput;
+    }
+
+    /**
+     * @return the number of lines persisted per second
+     */
+    public long getPersistThroughput() {
+	return persistThroughput;
+    }
+
     /**
      * @param currentFileName
      *                the currentFileName to set, the CurrentFileName will be
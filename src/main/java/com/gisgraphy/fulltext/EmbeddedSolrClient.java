@@ -0,0 +1,345 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.fulltext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.solr.client.solrj.ResponseParser;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.client.solrj.response.SolrPingResponse;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestHandler;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.BinaryQueryResponseWriter;
+import org.apache.solr.response.QueryResponseWriter;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.servlet.SolrRequestParsers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link IsolrClient} that runs the fulltext engine inside
+ * the Gisgraphy JVM : the core is loaded from a solr home (with the same
+ * schema.xml and solrconfig.xml as the Solr webapp) and the queries don't go
+ * through HTTP.
+ * <p>
+ * The requests that have a {@link ResponseParser} (e.g : the ones of
+ * {@link FullTextSearchEngine#executeAndSerialize(FulltextQuery, java.io.OutputStream)})
+ * are serialized with the response writer of the core, as Solr would do, and
+ * streamed to the parser through a pipe : the response is never fully kept
+ * in memory.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class EmbeddedSolrClient implements IsolrClient {
+
+	protected static final Logger logger = LoggerFactory.getLogger(EmbeddedSolrClient.class);
+
+	private static final String SOLR_HOME_PROPERTY = "solr.solr.home";
+
+	private static final String URL_PREFIX = "embedded:";
+
+	private static final String PARSER_THREAD_NAME_PREFIX = "embedded-solr-parser-";
+
+	/**
+	 * size of the pipe between the response writer and the response parser
+	 */
+	private static final int PIPE_SIZE = 64 * 1024;
+
+	private static final String RESPONSE_ENCODING = "UTF-8";
+
+	private final String solrHome;
+
+	private final String coreName;
+
+	private CoreContainer coreContainer;
+
+	private SerializingEmbeddedSolrServer embeddedServer;
+
+	private SolrServer server;
+
+	/**
+	 * @param solrHome
+	 *            the directory that contains the conf directory of the core
+	 *            (and optionally a solr.xml)
+	 * @param coreName
+	 *            the name of the core to use, empty for the default one
+	 */
+	public EmbeddedSolrClient(String solrHome, String coreName) {
+		Assert.hasText(solrHome, "embedded solr client does not accept empty solr home");
+		File solrHomeDir = new File(solrHome);
+		if (!solrHomeDir.isDirectory()) {
+			throw new RuntimeException("Error starting embedded Solr ! : " + solrHome + " is not a directory");
+		}
+		this.solrHome = solrHomeDir.getAbsolutePath();
+		this.coreName = coreName == null ? "" : coreName;
+		logger.info("starting embedded solr with solr home " + this.solrHome + "...");
+		String previousSolrHome = System.getProperty(SOLR_HOME_PROPERTY);
+		try {
+			System.setProperty(SOLR_HOME_PROPERTY, this.solrHome);
+			this.coreContainer = new CoreContainer.Initializer().initialize();
+		} catch (Exception e) {
+			throw new RuntimeException("Error starting embedded Solr ! : " + e.getMessage(), e);
+		} finally {
+			if (previousSolrHome == null) {
+				System.clearProperty(SOLR_HOME_PROPERTY);
+			} else {
+				System.setProperty(SOLR_HOME_PROPERTY, previousSolrHome);
+			}
+		}
+		this.embeddedServer = new SerializingEmbeddedSolrServer(coreContainer, this.coreName);
+		this.server = new TimedSolrServer(embeddedServer);
+	}
+
+	/**
+	 * {@link EmbeddedSolrServer} that serialize the response when the request
+	 * has a {@link ResponseParser}, the standard {@link EmbeddedSolrServer}
+	 * ignores it. The response is written in the calling thread (the solr
+	 * request info is bound to it) while the parser reads it in a thread of
+	 * its own.
+	 */
+	private static class SerializingEmbeddedSolrServer extends EmbeddedSolrServer {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CoreContainer coreContainer;
+		private final String coreName;
+		private final SolrRequestParsers requestParsers = new SolrRequestParsers(null);
+		private final ExecutorService parserExecutor;
+
+		SerializingEmbeddedSolrServer(CoreContainer coreContainer, String coreName) {
+			super(coreContainer, coreName);
+			this.coreContainer = coreContainer;
+			this.coreName = coreName;
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			this.parserExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, PARSER_THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		@Override
+		public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+			ResponseParser responseParser = request.getResponseParser();
+			if (responseParser == null) {
+				return super.request(request);
+			}
+			SolrCore core = coreContainer.getCore(coreName);
+			if (core == null) {
+				throw new SolrServerException("No such core: " + coreName);
+			}
+			SolrQueryRequest req = null;
+			try {
+				ModifiableSolrParams params = request.getParams() == null ? new ModifiableSolrParams() : new ModifiableSolrParams(request.getParams());
+				params.set(CommonParams.WT, responseParser.getWriterType());
+				SolrRequestHandler handler = getHandler(core, request.getPath(), params);
+				req = requestParsers.buildRequestFrom(core, params, request.getContentStreams());
+				SolrQueryResponse rsp = new SolrQueryResponse();
+				SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+				core.execute(handler, req, rsp);
+				if (rsp.getException() != null) {
+					throw new SolrServerException(rsp.getException());
+				}
+				return writeToParser(parserExecutor, core.getQueryResponseWriter(req), req, rsp, responseParser);
+			} catch (IOException e) {
+				throw e;
+			} catch (SolrServerException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new SolrServerException(e);
+			} finally {
+				if (req != null) {
+					req.close();
+				}
+				SolrRequestInfo.clearRequestInfo();
+				core.close();
+			}
+		}
+
+		private void shutdown() {
+			parserExecutor.shutdownNow();
+		}
+
+		private SolrRequestHandler getHandler(SolrCore core, String path, ModifiableSolrParams params) {
+			if (path == null || !path.startsWith("/")) {
+				path = "/select";
+			}
+			SolrRequestHandler handler = core.getRequestHandler(path);
+			if (handler == null && ("/select".equals(path) || "/select/".equalsIgnoreCase(path))) {
+				handler = core.getRequestHandler(params.get(CommonParams.QT));
+			}
+			if (handler == null) {
+				throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "unknown handler: " + path);
+			}
+			return handler;
+		}
+	}
+
+	/**
+	 * Write the response in the calling thread and parse it in a thread of
+	 * the executor, the two are connected by a pipe
+	 * 
+	 * @return what the parser returns
+	 */
+	static NamedList<Object> writeToParser(ExecutorService parserExecutor, QueryResponseWriter writer, SolrQueryRequest req,
+			SolrQueryResponse rsp, final ResponseParser responseParser) throws IOException, SolrServerException {
+		final PipedInputStream in = new PipedInputStream(PIPE_SIZE);
+		OutputStream out = new PipedOutputStream(in);
+		final AtomicBoolean parserDone = new AtomicBoolean(false);
+		Future<NamedList<Object>> parsed = parserExecutor.submit(new Callable<NamedList<Object>>() {
+			public NamedList<Object> call() throws Exception {
+				try {
+					return responseParser.processResponse(in, RESPONSE_ENCODING);
+				} finally {
+					//the writer must not wait for a parser that has stopped reading
+					parserDone.set(true);
+					in.close();
+				}
+			}
+		});
+		try {
+			if (writer instanceof BinaryQueryResponseWriter) {
+				((BinaryQueryResponseWriter) writer).write(out, req, rsp);
+			} else {
+				Writer charWriter = new OutputStreamWriter(out, RESPONSE_ENCODING);
+				writer.write(charWriter, req, rsp);
+				charWriter.flush();
+			}
+		} catch (IOException e) {
+			if (!parserDone.get()) {
+				throw e;
+			}
+			logger.debug("the response parser has stopped reading before the end of the response : " + e.getMessage());
+		} finally {
+			out.close();
+		}
+		try {
+			return parsed.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SolrServerException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new SolrServerException(e.getCause());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.fulltext.IsolrClient#bindToUrl(java.lang.String)
+	 */
+	public void bindToUrl(String solrUrl) {
+		logger.warn("the fulltext engine is embedded, it can not be bound to " + solrUrl);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.fulltext.IsolrClient#getServer()
+	 */
+	public SolrServer getServer() {
+		return server;
+	}
+
+	/**
+	 * @return a pseudo url with the solr home, the embedded engine can not be
+	 *         reached by http
+	 */
+	public String getURL() {
+		return URL_PREFIX + solrHome;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.fulltext.IsolrClient#isServerAlive()
+	 */
+	public boolean isServerAlive() {
+		try {
+			SolrPingResponse response = getServer().ping();
+			if (response == null) {
+				return false;
+			}
+			return "OK".equals(response.getResponse().get("status"));
+		} catch (Exception e) {
+			logger.error("can not determine if embedded fulltext engine is alive " + e.getMessage(), e);
+			return false;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.fulltext.IsolrClient#setSolRLogLevel(java.util.logging.Level)
+	 */
+	public void setSolRLogLevel(Level level) {
+		Assert.notNull(level, "you can not specify a null level");
+		java.util.logging.Logger.getLogger("org.apache.solr").setLevel(level);
+		logger.info("Set embedded solr log Level to " + level);
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (coreContainer != null) {
+			logger.info("shutdown embedded solr");
+			embeddedServer.shutdown();
+			coreContainer.shutdown();
+			coreContainer = null;
+		}
+	}
+
+}
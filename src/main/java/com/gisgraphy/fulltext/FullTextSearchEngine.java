@@ -22,24 +22,22 @@
  *******************************************************************************/
 package com.gisgraphy.fulltext;
 
-import static com.gisgraphy.helper.StringHelper.isEmptyString;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
-import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.solr.client.solrj.ResponseParser;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
+import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.Base64;
 import org.codehaus.jackson.JsonGenerationException;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
@@ -63,13 +61,13 @@ import com.gisgraphy.fulltext.suggest.GisgraphySearchResponseHeader;
 import com.gisgraphy.fulltext.suggest.GisgraphySearchResult;
 import com.gisgraphy.geocoding.GeocodingHelper;
 import com.gisgraphy.geoloc.ZipcodeNormalizer;
-import com.gisgraphy.helper.GeolocHelper;
 import com.gisgraphy.service.IStatsUsageService;
 import com.gisgraphy.service.ServiceException;
 import com.gisgraphy.stats.StatsUsageType;
+import com.gisgraphy.street.EncodedHouseNumberList;
+import com.gisgraphy.street.HouseNumberBinaryCodec;
 import com.gisgraphy.street.HouseNumberDeserializer;
 import com.gisgraphy.street.HouseNumberDto;
-import com.vividsolutions.jts.geom.Point;
 
 /**
  * Default (threadsafe) implementation of {@link IFullTextSearchEngine}
@@ -88,8 +86,6 @@ public class FullTextSearchEngine implements IFullTextSearchEngine {
 	protected static final Logger logger = LoggerFactory
 			.getLogger(FullTextSearchEngine.class);
 
-	private HttpClient httpClient;
-
 	private IsolrClient solrClient;
 
 	FulltextResultDtoBuilder builder = new FulltextResultDtoBuilder();
@@ -104,41 +100,6 @@ public class FullTextSearchEngine implements IFullTextSearchEngine {
 	@Autowired
 	IStatsUsageService statsUsageService;
 
-	/**
-	 * Default constructor needed by cglib and spring
-	 */
-	@SuppressWarnings("unused")
-	private FullTextSearchEngine() {
-		super();
-	}
-
-	/**
-	 * @param multiThreadedHttpConnectionManager
-	 *                The
-	 * @link {@link MultiThreadedHttpConnectionManager} that the fulltext search
-	 *       engine will use
-	 * @throws FullTextSearchException
-	 *                 If an error occured
-	 */
-	@Autowired
-	public FullTextSearchEngine(
-			@Qualifier("multiThreadedHttpConnectionManager")
-			MultiThreadedHttpConnectionManager multiThreadedHttpConnectionManager)
-					throws FullTextSearchException {
-		Assert.notNull(multiThreadedHttpConnectionManager,
-				"multiThreadedHttpConnectionManager can not be null");
-		HttpConnectionManagerParams p = new HttpConnectionManagerParams();
-		p.setSoTimeout(0);
-		p.setConnectionTimeout(0);
-		multiThreadedHttpConnectionManager.setParams(p);
-		this.httpClient = new HttpClient(multiThreadedHttpConnectionManager);
-		if (this.httpClient == null) {
-			throw new FullTextSearchException(
-					"Can not instanciate http client with multiThreadedHttpConnectionManager : "
-							+ multiThreadedHttpConnectionManager);
-		}
-	}
-
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -158,29 +119,9 @@ public class FullTextSearchEngine implements IFullTextSearchEngine {
 			if (dto !=null && dto.getHouseNumber()!=null){
 				if (!dto.getAddressWithoutHouseNumber().trim().isEmpty()){
 					query.withQuery(dto.getAddressWithoutHouseNumber());
-					try {
-						ByteArrayOutputStream outputStreamString = new ByteArrayOutputStream();
-						doExecuteAndSerialize(query, outputStreamString);
-						String feed  = outputStreamString.toString(Constants.CHARSET);
-						//	String feed = executeQueryToString(query);
-						GisgraphySearchResult feedAsObj = mapper.readValue(feed, GisgraphySearchResult.class);
-						/*for (GisgraphySearchEntry entry:feedAsObj.getResponse().getDocs()){
-							logger.error(entry.toString());
-						}*/
-						feedAsObj = updateFeed(feedAsObj,dto.getHouseNumber());
-						//logger.debug("----------------------------------------------------------------------------------------");
-						/*for (GisgraphySearchEntry entry:feedAsObj.getResponse().getDocs()){
-							logger.error(entry.toString());
-						}*/
-						mapper.writeValue(outputStream, feedAsObj);
-						return;
-					} catch (Exception e) {
-						String message = e.getCause()!=null?e.getCause().getMessage():e.getMessage();
-						logger
-						.error("An error has occurred during suggest search of query "
-								+ query + " : " + message,e);
-						throw new FullTextSearchException(message,e);
-					}
+					//the docs are merged on the fly, see updateFeed
+					doExecuteAndSerialize(query, new SuggestStreamingResponseWrapper(outputStream, mapper, this, dto.getHouseNumber()));
+					return;
 				} else {
 					//query is empty after HN removal
 					GisgraphySearchResult result = new GisgraphySearchResult();
@@ -195,6 +136,7 @@ public class FullTextSearchEngine implements IFullTextSearchEngine {
 								+ query + " : " + message,e);
 						throw new FullTextSearchException(message,e);
 					}
+					return;
 				}
 			}
 			//if no HN found, we do the common process
@@ -210,86 +152,21 @@ public class FullTextSearchEngine implements IFullTextSearchEngine {
 			return feedAsObj;	
 		}
 		
-		String lastName=null;
-		String lastIsin=null;
-		Point lastLocation=null;
-		boolean housenumberFound =false;
-		GisgraphySearchEntry candidate =null; 
-		
-		
-		List<GisgraphySearchEntry> docs = feedAsObj.getResponse().getDocs();
-		List<GisgraphySearchEntry> filtereddocs = new ArrayList<GisgraphySearchEntry>();
-		for (GisgraphySearchEntry entry : docs){
-			Point curLoc = GeolocHelper.createPoint(entry.getLng(),entry.getLat());
-			if (!isEmptyString(entry.getName())){ 
-				double distance;
-				try {
-					distance = GeolocHelper.distance(lastLocation, curLoc);
-				} catch (Exception e) {
-					distance=-1;
-				}
-				if(entry.getName().equalsIgnoreCase(lastName) && ((entry.getIsIn()!=null && entry.getIsIn().equalsIgnoreCase(lastIsin) && (lastLocation!=null && !(distance>12000))) || (lastLocation!=null && !(distance>12000)))){
-					//logger.debug("same street : "+entry.getFeatureId()+" - "+entry.getName()+","+entry.getIsIn()+"(dist="+distance+")");
-					if (housenumberFound){
-						continue;
-						//do nothing it has already been found in the street
-					}else {
-						
-						housenumberFound = updateHouseNumber(number, entry);
-						if (housenumberFound){
-							//logger.debug("find hn for same name "+number+" for "+entry.getFeatureId()+" - "+entry.getLabel());
-							mergeZip(candidate, entry);
-							filtereddocs.add(entry);
-							candidate = null;
-						} else {
-							//logger.debug("don't find hn for same name "+number+" for "+entry.getFeatureId()+" - "+entry.getLabel());
-							mergeZip(candidate, entry);
-							candidate = entry;
-						}
-					}
-				} else { //the streetName is different,
-					//logger.debug("not same street : "+entry.getFeatureId()+" - "+entry.getName()+","+entry.getIsIn()+"(dist="+distance+")");
-					if (candidate!=null){
-						//logger.debug("adding (not same street) candidate "+candidate.getFeatureId()+" - "+candidate.getLabel());
-						filtereddocs.add(candidate);
-					}
-					housenumberFound = updateHouseNumber(number, entry);
-					if (housenumberFound){
-						//logger.debug("find hn for different name "+number+" for "+entry.getFeatureId()+" - "+entry.getLabel());
-						filtereddocs.add(entry);
-						candidate = null;
-					} else {
-						//logger.debug("don't find hn for different name "+number+" for "+entry.getFeatureId()+" - "+entry.getLabel());
-						candidate = entry;
-					}
-				}
-			} else {
-				//logger.debug("no name for "+entry.getLabel());
-				if (candidate!=null){
-				//	logger.debug ("adding candidate without name "+entry.getFeatureId()+" - "+entry.getLabel());
-					filtereddocs.add(candidate);
-					candidate = null;
-				}
-				housenumberFound = updateHouseNumber(number, entry);
-				if (housenumberFound){
-					//logger.debug("find hn for null name "+number+" for "+entry.getFeatureId()+" - "+entry.getLabel());
-					filtereddocs.add(entry);
-					candidate = null;
-				} else {
-					//logger.debug("don't find hn for null name "+number+" for "+entry.getFeatureId()+" - "+entry.getLabel());
-					candidate = entry;
-				}
-				
-				
+		final List<GisgraphySearchEntry> filtereddocs = new ArrayList<GisgraphySearchEntry>();
+		SuggestFeedFilter filter = new SuggestFeedFilter(this, number) {
+			@Override
+			protected void write(GisgraphySearchEntry entry) {
+				filtereddocs.add(entry);
 			}
-			lastName=entry.getName();
-			lastIsin = entry.getIsIn();
-			lastLocation=curLoc;	
-			entry.setLabel(GeocodingHelper.processLabel(entry));
-		}
-		if (candidate!=null){
-			//logger.debug("adding last candidate"+candidate.getFeatureId()+" - "+candidate.getLabel());
-			filtereddocs.add(candidate);
+		};
+		try {
+			for (GisgraphySearchEntry entry : feedAsObj.getResponse().getDocs()){
+				filter.accept(entry);
+			}
+			filter.finish();
+		} catch (IOException e) {
+			//can not happen, the entries are added to a list
+			throw new FullTextSearchException(e.getMessage(), e);
 		}
 		feedAsObj.getResponse().setDocs(filtereddocs);
 		return feedAsObj;
@@ -313,6 +190,21 @@ public class FullTextSearchEngine implements IFullTextSearchEngine {
 	}
 
 	protected boolean updateHouseNumber(String number, GisgraphySearchEntry entry) {
+		if (entry.getEncodedHouseNumbers() != null) {
+			byte[] encodedHouseNumbers = Base64.base64ToByteArray(entry.getEncodedHouseNumbers());
+			if (EncodedHouseNumberList.isSupported(encodedHouseNumbers)) {
+				for (HouseNumberDto dto : new EncodedHouseNumberList(encodedHouseNumbers)) {
+					if (dto.getNumber()!=null &&  dto.getNumber().equals(number) ){
+						entry.setHouseNumber(dto.getNumber());
+						entry.setLat(dto.getLatitude());
+						entry.setLng(dto.getLongitude());
+						return true;
+					}
+				}
+				return false;
+			}
+		}
+		//documents indexed before the binary encoding
 		List<String> house_numbers = entry.getHouseNumbers();
 		if (house_numbers !=null ) {
 			/*String hnstring = "will check ";
@@ -341,27 +233,43 @@ public class FullTextSearchEngine implements IFullTextSearchEngine {
 
 
 
-	@SuppressWarnings("deprecation")
 	protected void doExecuteAndSerialize(FulltextQuery query,
 			OutputStream outputStream) {
+		doExecuteAndSerialize(query, outputStream, null);
+	}
+
+	protected void doExecuteAndSerialize(FulltextQuery query,
+			ResponseParser responseParser) {
+		doExecuteAndSerialize(query, null, responseParser);
+	}
+
+	private void doExecuteAndSerialize(FulltextQuery query,
+			OutputStream outputStream, ResponseParser responseParser) {
 		try {
 			if (!disableLogging){
 				logger.info(query.toString());
 			}
 
 			ModifiableSolrParams params = FulltextQuerySolrHelper.parameterize(query);
-			CommonsHttpSolrServer server = new CommonsHttpSolrServer(solrClient
-					.getURL(), this.httpClient,
-					new OutputstreamResponseWrapper(outputStream, params
-							.get(Constants.OUTPUT_FORMAT_PARAMETER)));
-			server.query(params);
+			if (responseParser == null){
+				responseParser = new OutputstreamResponseWrapper(outputStream, params
+						.get(Constants.OUTPUT_FORMAT_PARAMETER));
+			} else {
+				//the documents are read by the parser instead of being copied
+				//to the output : the binary house numbers can be fetched
+				addBinaryHouseNumbersField(params);
+			}
+			//the response is written by the parser, through http or by the embedded engine
+			QueryRequest request = new QueryRequest(params);
+			request.setResponseParser(responseParser);
+			solrClient.getServer().request(request);
 		} catch (SolrServerException e) {
 			logger.error("Can not execute query " + FulltextQuerySolrHelper.toQueryString(query)
 					+ "for URL : " + solrClient.getURL() + " : "
 					+ e.getCause().getMessage(),e);
 			throw new FullTextSearchException(e.getCause().getMessage());
-		} catch (MalformedURLException e1) {
-			logger.error("The URL " + solrClient.getURL() + " is incorrect",e1);
+		} catch (IOException e1) {
+			logger.error("Can not execute query on " + solrClient.getURL() + " : " + e1.getMessage(),e1);
 			throw new FullTextSearchException(e1);
 		} catch (RuntimeException e2) {
 			String message = e2.getCause()!=null?e2.getCause().getMessage():e2.getMessage();
@@ -436,6 +344,7 @@ public class FullTextSearchEngine implements IFullTextSearchEngine {
 		String queryString = ZipcodeNormalizer.normalize(query.getQuery(), query.getCountryCode());
 		query.withQuery(queryString);
 		ModifiableSolrParams params = FulltextQuerySolrHelper.parameterize(query);
+		addBinaryHouseNumbersField(params);
 		QueryResponse response = null;
 		try {
 			response = solrClient.getServer().query(params);
@@ -457,6 +366,18 @@ public class FullTextSearchEngine implements IFullTextSearchEngine {
 		}
 	}
 
+	/**
+	 * The house numbers of the results are read from their binary form when
+	 * the documents have one, see {@link HouseNumberBinaryCodec}
+	 */
+	protected void addBinaryHouseNumbersField(ModifiableSolrParams params) {
+		String fieldList = params.get(CommonParams.FL);
+		if (fieldList != null && fieldList.contains(FullTextFields.HOUSE_NUMBERS.getValue())
+				&& !fieldList.contains(HouseNumberBinaryCodec.HOUSE_NUMBERS_BINARY_FIELD)) {
+			params.set(CommonParams.FL, fieldList + "," + HouseNumberBinaryCodec.HOUSE_NUMBERS_BINARY_FIELD);
+		}
+	}
+
 	/*public FulltextResultsDto executeAddressQuery(Address address, boolean fuzzy)
     	    throws ServiceException {
     	statsUsageService.increaseUsage(StatsUsageType.FULLTEXT);
@@ -159,7 +159,19 @@ public class OutputStyleHelper {
 
 		    return sb.toString();
 		} else {
-		    return "*,score";
+		    //not '*' : solr can not exclude a field and the binary house
+		    //numbers must not be returned, see HouseNumberBinaryCodec. The
+		    //alternate names are the ones of all the languages
+		    return new StringBuffer(getFulltextFieldList(OutputStyle.LONG,languageCode)).append(",").append(
+			    FullTextFields.COUNTRYNAME.getValue()).append(
+			    FullTextFields.ALTERNATE_NAME_SUFFIX.getValue())
+			    .append(",").append(
+				    FullTextFields.ADM1NAME.getValue()).append(
+				    FullTextFields.ALTERNATE_NAME_SUFFIX
+					    .getValue()).append(",").append(
+				    FullTextFields.ADM2NAME.getValue()).append(
+				    FullTextFields.ALTERNATE_NAME_SUFFIX
+					    .getValue()).toString();
 		}
 	} else { 
 	    throw new RuntimeException(outputStyle+" is not implemented");
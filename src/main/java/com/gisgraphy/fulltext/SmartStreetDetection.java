@@ -2,20 +2,20 @@ package com.gisgraphy.fulltext;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import com.gisgraphy.helper.StreetTypeRecognizer;
 import com.gisgraphy.helper.StringHelper;
 
 /**
-* A class to detect if a text contains a street type
+* A class to detect if a text contains a street type. The words of the text
+* are read once by a {@link StreetTypeRecognizer} built from the street types.
 * 
 * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
 * 
 */
 public class SmartStreetDetection {
 	
-	private static final Pattern STRABE_PATTERN = Pattern.compile("straße",Pattern.CASE_INSENSITIVE);
+	private static final String STRABE = "straße";
 	
 	private final static List<String> STREET_TYPES = new ArrayList<String>(){
 		private static final long serialVersionUID = -3194005170253765829L;
@@ -73,8 +73,7 @@ public class SmartStreetDetection {
 		}
 	};
 	
-	private static final String STREET_REGEXP = getRegexp();
-	private static final Pattern STREET_PATTERN = Pattern.compile(STREET_REGEXP,Pattern.CASE_INSENSITIVE|Pattern.UNICODE_CASE);
+	private static final StreetTypeRecognizer STREET_TYPE_RECOGNIZER = new StreetTypeRecognizer(STREET_TYPES, STREET_TYPES_DECOMPOUND, true);
 
 	public List<String> getStreetTypes(String textToTest){
 		String textToTestNormalize = textToTest;
@@ -86,48 +85,74 @@ public class SmartStreetDetection {
 		} else {
 			return new ArrayList<String>();
 		}
-		Matcher matcher = STREET_PATTERN.matcher(textToTestNormalize);
 		List<String> splitedString = new ArrayList<String>();
 		int counter =0;
-    	while (matcher.find()) {
-    	    for (int j = 1; j <= matcher.groupCount(); j++) {
-    	    	//System.out.println(matcher.group(j));
-    	    	int shift=0;
-    	    	if (nbSpecialchar > 0 && matcher.group(j).indexOf("strasse")>=0){
-    	    		nbSpecialchar--;
-    	    		counter++;
-    	    		shift = 1;
-    	    	}
-    	    	int max =(matcher.end(j)-(shift*counter));
-    	    	int min=matcher.start(j)-(shift*(counter-1));
-    	    	if (max>textToTest.length()){//avoid out of range
-    	    		int decal=(matcher.end(j)-(shift*counter))-textToTest.length();
-    	    		max=textToTest.length();
-    	    		min=min-decal;
-    	    		if (min<0){
-    	    			min=0;
-    	    		}
+		int[] bounds = new int[2];
+		int from = 0;
+    	while (STREET_TYPE_RECOGNIZER.find(textToTestNormalize, from, bounds)) {
+    	    int start = bounds[0];
+    	    int end = bounds[1];
+    	    from = end;
+    	    int shift=0;
+    	    if (nbSpecialchar > 0 && textToTestNormalize.substring(start, end).indexOf("strasse")>=0){
+    	    	nbSpecialchar--;
+    	    	counter++;
+    	    	shift = 1;
+    	    }
+    	    int max =(end-(shift*counter));
+    	    int min=start-(shift*(counter-1));
+    	    if (max>textToTest.length()){//avoid out of range
+    	    	int decal=(end-(shift*counter))-textToTest.length();
+    	    	max=textToTest.length();
+    	    	min=min-decal;
+    	    	if (min<0){
+    	    		min=0;
     	    	}
-			String realTextNotNormalized =  textToTest.substring(min,max);
-    		    if (realTextNotNormalized!= null && !"".equals(realTextNotNormalized.trim())){
-    		    	splitedString.add(realTextNotNormalized);
-    		    }
+    	    }
+    	    String realTextNotNormalized =  textToTest.substring(min,max);
+    	    if (realTextNotNormalized!= null && !"".equals(realTextNotNormalized.trim())){
+    	    	splitedString.add(realTextNotNormalized);
     	    }
     	}
     	return splitedString;
 		
 	}
 	
+	/**
+	 * @return the number of 'straße' in the text, the case of the ASCII
+	 *         letters is ignored
+	 */
 	private int countNumberOfstrasse(String text){
 		int i = 0;
-		
-		Matcher m = STRABE_PATTERN.matcher(text);
-		while (m.find()) {
-		    i++;
+		int index = 0;
+		while (index <= text.length() - STRABE.length()) {
+			if (isStrabe(text, index)) {
+				i++;
+				index += STRABE.length();
+			} else {
+				index++;
+			}
 		}
 		return i;
 	}
+	
+	private boolean isStrabe(String text, int index) {
+		for (int i = 0; i < STRABE.length(); i++) {
+			char c = text.charAt(index + i);
+			if (c >= 'A' && c <= 'Z') {
+				c = (char) (c + ('a' - 'A'));
+			}
+			if (c != STRABE.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
 
+	/**
+	 * @return the regex that finds the same street types as
+	 *         {@link #getStreetTypes(String)}
+	 */
 	static String getRegexp() {
 		StringBuffer sb =new StringBuffer("((?:");
 		for (int i=0;i<STREET_TYPES.size();i++){
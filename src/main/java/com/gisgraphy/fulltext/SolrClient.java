@@ -34,8 +34,11 @@ import javax.xml.xpath.XPathFactory;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.solr.client.solrj.ResponseParser;
 import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
 import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
+import org.apache.solr.client.solrj.impl.XMLResponseParser;
 import org.apache.solr.client.solrj.response.SolrPingResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,11 +59,18 @@ public class SolrClient implements IsolrClient {
 	    .getLogger(SolrClient.class);
 
     private SolrServer server;
+
+    /**
+     * The server that records the latencies of the requests
+     */
+    private SolrServer timedServer;
     
     private MultiThreadedHttpConnectionManager multiThreadedHttpConnectionManager;
 
     private String URL;
 
+    private boolean binaryWireFormat = true;
+
     /**
      * Default constructor needed by spring
      */
@@ -84,6 +94,8 @@ public class SolrClient implements IsolrClient {
 	    this.multiThreadedHttpConnectionManager = multiThreadedHttpConnectionManager;
 	    this.server = new CommonsHttpSolrServer(new URL(solrUrl),
 		    new HttpClient(multiThreadedHttpConnectionManager));
+	    this.timedServer = new TimedSolrServer(server);
+	    applyResponseParser();
 	    this.URL = !solrUrl.endsWith("/") ? solrUrl + "/" : solrUrl ;
 	    logger.info("connecting to solr on " + this.URL + "...");
 	} catch (MalformedURLException e) {
@@ -100,6 +112,8 @@ public class SolrClient implements IsolrClient {
     public void bindToUrl(String solrUrl) {
 	try {
 	    this.server = new CommonsHttpSolrServer(new URL(solrUrl));
+	    this.timedServer = new TimedSolrServer(server);
+	    applyResponseParser();
 	    this.URL = !solrUrl.endsWith("/") ? solrUrl + "/" : solrUrl ;
 	    logger
 		    .info("fulltextSearchUrl for FullTextSearchEngine is changed to "
@@ -109,13 +123,50 @@ public class SolrClient implements IsolrClient {
 	}
     }
 
+    /**
+     * @return the parser used for the responses of the queries sent with
+     *         {@link #getServer()}, the requests that specify their own parser
+     *         (e.g : the raw feeds) are not concerned. The binary parser is
+     *         already the default of {@link CommonsHttpSolrServer}, it is set
+     *         again so that the xml can be switched off
+     */
+    protected ResponseParser createResponseParser() {
+	return binaryWireFormat ? new BinaryResponseParser() : new XMLResponseParser();
+    }
+
+    private void applyResponseParser() {
+	if (server instanceof CommonsHttpSolrServer) {
+	    ((CommonsHttpSolrServer) server).setParser(createResponseParser());
+	}
+    }
+
+    /**
+     * @return true if the internal queries use the binary (javabin) format,
+     *         false if they use xml
+     */
+    public boolean isBinaryWireFormat() {
+	return binaryWireFormat;
+    }
+
+    /**
+     * @param binaryWireFormat
+     *                whether the internal queries should use the binary
+     *                (javabin) format, the default of solrj, that is smaller
+     *                and faster to parse than xml. false to use xml (e.g : to
+     *                read the responses when debugging). default to true
+     */
+    public void setBinaryWireFormat(boolean binaryWireFormat) {
+	this.binaryWireFormat = binaryWireFormat;
+	applyResponseParser();
+    }
+
     /*
      * (non-Javadoc)
      * 
      * @see com.gisgraphy.domain.geoloc.service.fulltextsearch.IsolrClient#getConnection()
      */
     public SolrServer getServer() {
-	return this.server;
+	return this.timedServer;
     }
 
     /*
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.fulltext;
+
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Create the {@link IsolrClient} according to the configuration : a
+ * {@link SolrClient} that connects to a Solr server by HTTP, or an
+ * {@link EmbeddedSolrClient} that runs the core inside the JVM.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class SolrClientFactory {
+
+	protected static final Logger logger = LoggerFactory.getLogger(SolrClientFactory.class);
+
+	/**
+	 * @param embedded
+	 *            whether the fulltext engine should run inside the JVM
+	 * @param solrUrl
+	 *            the url of the Solr server, used if not embedded
+	 * @param multiThreadedHttpConnectionManager
+	 *            the connection manager, used if not embedded
+	 * @param solrHome
+	 *            the solr home of the embedded core, used if embedded
+	 * @return the solr client
+	 */
+	public static IsolrClient createSolrClient(boolean embedded, String solrUrl,
+			MultiThreadedHttpConnectionManager multiThreadedHttpConnectionManager, String solrHome) {
+		return createSolrClient(embedded, solrUrl, multiThreadedHttpConnectionManager, solrHome, true);
+	}
+
+	/**
+	 * @param binaryWireFormat
+	 *            whether the internal queries sent by http should use the
+	 *            binary format (see {@link SolrClient#setBinaryWireFormat(boolean)})
+	 * @see #createSolrClient(boolean, String, MultiThreadedHttpConnectionManager, String)
+	 */
+	public static IsolrClient createSolrClient(boolean embedded, String solrUrl,
+			MultiThreadedHttpConnectionManager multiThreadedHttpConnectionManager, String solrHome, boolean binaryWireFormat) {
+		if (embedded) {
+			logger.info("fulltext engine is embedded");
+			return new EmbeddedSolrClient(solrHome, null);
+		}
+		SolrClient solrClient = new SolrClient(solrUrl, multiThreadedHttpConnectionManager);
+		solrClient.setBinaryWireFormat(binaryWireFormat);
+		return solrClient;
+	}
+
+}
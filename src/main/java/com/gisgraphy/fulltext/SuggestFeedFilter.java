@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.fulltext;
+
+import static com.gisgraphy.helper.StringHelper.isEmptyString;
+
+import java.io.IOException;
+
+import com.gisgraphy.fulltext.suggest.GisgraphySearchEntry;
+import com.gisgraphy.geocoding.GeocodingHelper;
+import com.gisgraphy.helper.GeolocHelper;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Merge the suggest entries of the same street when a house number is
+ * searched : the entries are given one by one in the order of the fulltext
+ * response, and only one entry (the street segment where the house number has
+ * not been found yet) is kept until the next one is known.
+ * 
+ * @see FullTextSearchEngine#updateFeed(com.gisgraphy.fulltext.suggest.GisgraphySearchResult, String)
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+abstract class SuggestFeedFilter {
+
+	private final FullTextSearchEngine fullTextSearchEngine;
+	private final String number;
+
+	private String lastName = null;
+	private String lastIsin = null;
+	private Point lastLocation = null;
+	private boolean housenumberFound = false;
+	private GisgraphySearchEntry candidate = null;
+
+	/**
+	 * @param fullTextSearchEngine
+	 *            the engine used to search the house number in an entry
+	 * @param number
+	 *            the house number to search
+	 */
+	SuggestFeedFilter(FullTextSearchEngine fullTextSearchEngine, String number) {
+		this.fullTextSearchEngine = fullTextSearchEngine;
+		this.number = number;
+	}
+
+	/**
+	 * Called for every entry that is kept, in the order of the response
+	 */
+	protected abstract void write(GisgraphySearchEntry entry) throws IOException;
+
+	/**
+	 * @param entry
+	 *            the next entry of the fulltext response
+	 */
+	public void accept(GisgraphySearchEntry entry) throws IOException {
+		Point curLoc = GeolocHelper.createPoint(entry.getLng(), entry.getLat());
+		boolean writeEntry = false;
+		if (!isEmptyString(entry.getName())) {
+			double distance;
+			try {
+				distance = GeolocHelper.distance(lastLocation, curLoc);
+			} catch (Exception e) {
+				distance = -1;
+			}
+			if (entry.getName().equalsIgnoreCase(lastName) && ((entry.getIsIn() != null && entry.getIsIn().equalsIgnoreCase(lastIsin) && (lastLocation != null && !(distance > 12000))) || (lastLocation != null && !(distance > 12000)))) {
+				if (housenumberFound) {
+					//do nothing it has already been found in the street
+					return;
+				}
+				housenumberFound = fullTextSearchEngine.updateHouseNumber(number, entry);
+				fullTextSearchEngine.mergeZip(candidate, entry);
+				if (housenumberFound) {
+					writeEntry = true;
+					candidate = null;
+				} else {
+					candidate = entry;
+				}
+			} else { //the streetName is different,
+				writeCandidate();
+				housenumberFound = fullTextSearchEngine.updateHouseNumber(number, entry);
+				if (housenumberFound) {
+					writeEntry = true;
+				} else {
+					candidate = entry;
+				}
+			}
+		} else {
+			writeCandidate();
+			housenumberFound = fullTextSearchEngine.updateHouseNumber(number, entry);
+			if (housenumberFound) {
+				writeEntry = true;
+			} else {
+				candidate = entry;
+			}
+		}
+		lastName = entry.getName();
+		lastIsin = entry.getIsIn();
+		lastLocation = curLoc;
+		entry.setLabel(GeocodingHelper.processLabel(entry));
+		if (writeEntry) {
+			write(entry);
+		}
+	}
+
+	/**
+	 * Must be called after the last entry
+	 */
+	public void finish() throws IOException {
+		writeCandidate();
+	}
+
+	private void writeCandidate() throws IOException {
+		if (candidate != null) {
+			write(candidate);
+			candidate = null;
+		}
+	}
+
+}
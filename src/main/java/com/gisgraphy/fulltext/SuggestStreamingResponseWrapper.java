@@ -0,0 +1,204 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.fulltext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+
+import org.apache.solr.client.solrj.ResponseParser;
+import org.apache.solr.common.util.NamedList;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.gisgraphy.domain.valueobject.Constants;
+import com.gisgraphy.fulltext.suggest.GisgraphySearchEntry;
+import com.gisgraphy.fulltext.suggest.GisgraphySearchResponseHeader;
+import com.gisgraphy.fulltext.suggest.GisgraphySearchResult;
+
+/**
+ * Wrapper that rewrite a json suggest response on the fly : the docs are
+ * read one by one from the fulltext response, filtered by a
+ * {@link SuggestFeedFilter} and written to the output stream, the response is
+ * never entirely loaded in memory. The output is the same as the
+ * serialization of the {@link GisgraphySearchResult} returned by
+ * {@link FullTextSearchEngine#updateFeed(GisgraphySearchResult, String)}.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class SuggestStreamingResponseWrapper extends ResponseParser {
+
+	protected static final Logger logger = LoggerFactory.getLogger(SuggestStreamingResponseWrapper.class);
+
+	private static final String WRITER_TYPE = "json";
+
+	private final OutputStream outputStream;
+	private final ObjectMapper mapper;
+	private final FullTextSearchEngine fullTextSearchEngine;
+	private final String number;
+
+	/**
+	 * @param outputStream
+	 *            The OutpuStream to serialize the suggest response in
+	 * @param mapper
+	 *            the mapper used to read and write the entries
+	 * @param fullTextSearchEngine
+	 *            the engine used to search the house number in the entries
+	 * @param number
+	 *            the house number to search
+	 */
+	public SuggestStreamingResponseWrapper(OutputStream outputStream, ObjectMapper mapper, FullTextSearchEngine fullTextSearchEngine, String number) {
+		super();
+		Assert.notNull(outputStream, "outputstream can not be null");
+		Assert.notNull(mapper, "mapper can not be null");
+		this.outputStream = outputStream;
+		this.mapper = mapper;
+		this.fullTextSearchEngine = fullTextSearchEngine;
+		this.number = number;
+	}
+
+	@Override
+	public String getWriterType() {
+		return WRITER_TYPE;
+	}
+
+	@Override
+	public NamedList<Object> processResponse(InputStream inputStream, String encoding) {
+		try {
+			return processResponse(new InputStreamReader(inputStream, encoding == null ? Constants.CHARSET : encoding));
+		} catch (IOException e) {
+			throw new FullTextSearchException("error when reading suggest response : " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public NamedList<Object> processResponse(Reader reader) {
+		try {
+			JsonParser parser = mapper.getJsonFactory().createJsonParser(reader);
+			JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(outputStream, JsonEncoding.UTF8);
+			try {
+				rewrite(parser, generator);
+			} finally {
+				parser.close();
+				generator.close();
+			}
+		} catch (IOException e) {
+			logger.error("error when rewriting suggest response : " + e, e);
+			throw new FullTextSearchException("error when rewriting suggest response : " + e.getMessage(), e);
+		}
+		return new NamedList<Object>();
+	}
+
+	protected void rewrite(JsonParser parser, final JsonGenerator generator) throws IOException {
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			throw new IOException("suggest response is not a json object");
+		}
+		boolean responseWritten = false;
+		boolean responseHeaderWritten = false;
+		generator.writeStartObject();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if ("response".equals(fieldName) && token == JsonToken.START_OBJECT) {
+				generator.writeFieldName(fieldName);
+				rewriteResponse(parser, generator);
+				responseWritten = true;
+			} else if ("responseHeader".equals(fieldName) && token == JsonToken.START_OBJECT) {
+				generator.writeFieldName(fieldName);
+				generator.writeObject(parser.readValueAs(GisgraphySearchResponseHeader.class));
+				responseHeaderWritten = true;
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (!responseWritten) {
+			generator.writeNullField("response");
+		}
+		if (!responseHeaderWritten) {
+			generator.writeNullField("responseHeader");
+		}
+		generator.writeEndObject();
+	}
+
+	private void rewriteResponse(JsonParser parser, final JsonGenerator generator) throws IOException {
+		boolean numFoundWritten = false;
+		boolean startWritten = false;
+		boolean maxScoreWritten = false;
+		boolean docsWritten = false;
+		generator.writeStartObject();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if ("docs".equals(fieldName) && token == JsonToken.START_ARRAY) {
+				generator.writeArrayFieldStart(fieldName);
+				SuggestFeedFilter filter = new SuggestFeedFilter(fullTextSearchEngine, number) {
+					@Override
+					protected void write(GisgraphySearchEntry entry) throws IOException {
+						generator.writeObject(entry);
+					}
+				};
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					filter.accept(parser.readValueAs(GisgraphySearchEntry.class));
+				}
+				filter.finish();
+				generator.writeEndArray();
+				docsWritten = true;
+			} else if ("numFound".equals(fieldName) && token.isNumeric()) {
+				generator.writeNumberField(fieldName, parser.getIntValue());
+				numFoundWritten = true;
+			} else if ("start".equals(fieldName) && token.isNumeric()) {
+				generator.writeNumberField(fieldName, parser.getIntValue());
+				startWritten = true;
+			} else if ("maxScore".equals(fieldName) && token.isNumeric()) {
+				generator.writeNumberField(fieldName, parser.getFloatValue());
+				maxScoreWritten = true;
+			} else {
+				parser.skipChildren();
+			}
+		}
+		//same default values as GisgraphySearchResponse
+		if (!numFoundWritten) {
+			generator.writeNumberField("numFound", 0);
+		}
+		if (!docsWritten) {
+			generator.writeArrayFieldStart("docs");
+			generator.writeEndArray();
+		}
+		if (!maxScoreWritten) {
+			generator.writeNumberField("maxScore", 0f);
+		}
+		if (!startWritten) {
+			generator.writeNumberField("start", 0);
+		}
+		generator.writeEndObject();
+	}
+
+}
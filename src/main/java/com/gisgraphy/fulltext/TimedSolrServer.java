@@ -0,0 +1,100 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.fulltext;
+
+import java.io.IOException;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
+import org.apache.solr.common.util.NamedList;
+
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
+
+/**
+ * A {@link SolrServer} that records the latency of each request sent to the
+ * server it wraps : {@link LatencyType#SOLR_UPDATE} for the updates,
+ * {@link LatencyType#SOLR_QUERY} for the others. All the methods of a
+ * {@link SolrServer} (query, add, commit,...) send their request with
+ * {@link #request(SolrRequest)}
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class TimedSolrServer extends SolrServer {
+
+    /**
+     * Default serialVersionUID
+     */
+    private static final long serialVersionUID = 2867195284315466311L;
+
+    private static final String UPDATE_PATH = "/update";
+
+    private final SolrServer server;
+
+    /**
+     * @param server
+     *                the server to send the requests to
+     */
+    public TimedSolrServer(SolrServer server) {
+	this.server = server;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.solr.client.solrj.SolrServer#request(org.apache.solr.client.solrj.SolrRequest)
+     */
+    @Override
+    public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+	long start = LatencyStats.start();
+	try {
+	    return server.request(request);
+	} finally {
+	    LatencyStats.record(isUpdate(request) ? LatencyType.SOLR_UPDATE : LatencyType.SOLR_QUERY, start);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.solr.client.solrj.SolrServer#getBinder()
+     */
+    @Override
+    public DocumentObjectBinder getBinder() {
+	return server.getBinder();
+    }
+
+    /**
+     * @return the server the requests are sent to
+     */
+    public SolrServer getServer() {
+	return server;
+    }
+
+    static boolean isUpdate(SolrRequest request) {
+	return request.getPath() != null && request.getPath().startsWith(UPDATE_PATH);
+    }
+
+}
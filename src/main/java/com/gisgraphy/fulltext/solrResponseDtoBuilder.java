@@ -1,5 +1,6 @@
 package com.gisgraphy.fulltext;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -8,8 +9,11 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.util.Base64;
 
 import com.gisgraphy.domain.repository.exception.RepositoryException;
+import com.gisgraphy.street.EncodedHouseNumberList;
+import com.gisgraphy.street.HouseNumberBinaryCodec;
 import com.gisgraphy.street.HouseNumberDeserializer;
 import com.gisgraphy.street.HouseNumberDto;
 
@@ -176,6 +180,11 @@ public class solrResponseDtoBuilder {
     
     
 	private List<HouseNumberDto> getHouseNumber(SolrDocument solrDocument) {
+		byte[] encodedHouseNumbers = getFieldAsBytes(solrDocument, HouseNumberBinaryCodec.HOUSE_NUMBERS_BINARY_FIELD);
+		if (EncodedHouseNumberList.isSupported(encodedHouseNumbers)) {
+			return new EncodedHouseNumberList(encodedHouseNumbers);
+		}
+		//documents indexed before the binary encoding
 		List<HouseNumberDto> housenumbers = new ArrayList<HouseNumberDto>();
 		String fieldname = FullTextFields.HOUSE_NUMBERS.getValue();
 		if (solrDocument.getFieldValues(fieldname) != null) {
@@ -198,6 +207,27 @@ public class solrResponseDtoBuilder {
 		return housenumbers;
 	}
 	
+	private byte[] getFieldAsBytes(SolrDocument solrDocument, String fieldname) {
+		Object fieldValue = solrDocument.getFirstValue(fieldname);
+		if (fieldValue == null) {
+			return null;
+		} else if (fieldValue instanceof byte[]) {
+			return (byte[]) fieldValue;
+		} else if (fieldValue instanceof ByteBuffer) {
+			ByteBuffer buffer = ((ByteBuffer) fieldValue).duplicate();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			return bytes;
+		} else if (fieldValue instanceof String) {
+			//text response writers return binary fields base64 encoded
+			return Base64.base64ToByteArray((String) fieldValue);
+		} else {
+			throw new RepositoryException(fieldname
+					+ " is not a binary but a "
+					+ fieldValue.getClass().getSimpleName());
+		}
+	}
+	
     private Map<String, List<String>> getFieldsToMap(SolrDocument solrDocument,
 	    String fieldNamePrefix) {
 	Map<String, List<String>> result = new HashMap<String, List<String>>();
@@ -3,6 +3,7 @@ package com.gisgraphy.fulltext.suggest;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.annotate.JsonProperty;
 
@@ -49,6 +50,27 @@ public class GisgraphySearchEntry {
         this.houseNumbers = houseNumbers;
     }
 
+    /**
+     * the binary house numbers, base64 encoded in the json responses
+     */
+    private String encodedHouseNumbers;
+
+    /**
+     * @return the house numbers encoded by
+     *         {@link com.gisgraphy.street.HouseNumberBinaryCodec}, base64
+     *         encoded. They are read from the full text response but never
+     *         written in the suggest feed
+     */
+    @JsonIgnore
+    public String getEncodedHouseNumbers() {
+        return encodedHouseNumbers;
+    }
+
+    @JsonProperty("house_numbers_bin")
+    public void setEncodedHouseNumbers(String encodedHouseNumbers) {
+        this.encodedHouseNumbers = encodedHouseNumbers;
+    }
+
     @JsonProperty("house_number")
     private String houseNumber;
 
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Gisgraphy Project 
+ *  
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *  
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *    Lesser General Public License for more details.
+ *  
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ *  
+ *   Copyright 2008  Gisgraphy project 
+ * 
+ *   David Masclet <davidmasclet@gisgraphy.com>
+ ******************************************************************************/
+package com.gisgraphy.geocoding;
+
+/**
+ * The formats supported by the batch geocoding and reverse geocoding : one
+ * address (or point) per line in input, one result per line in output, in the
+ * same format
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public enum BatchFormat {
+	/**
+	 * newline delimited JSON : each line is an object with an 'address'
+	 * field and optional 'country' and 'fuzzy' fields (or 'lat' and 'lng'
+	 * fields for the reverse geocoding)
+	 */
+	NDJSON("application/x-ndjson"),
+	/**
+	 * comma separated values : address[,country[,fuzzy]], with an optional
+	 * header line whose first field is 'address' (or lat,lng with an optional
+	 * header starting with 'lat' for the reverse geocoding)
+	 */
+	CSV("text/csv");
+
+	private String contentType;
+
+	private BatchFormat(String contentType) {
+		this.contentType = contentType;
+	}
+
+	/**
+	 * @return the mime type of the format
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @param contentType
+	 *            a content type, can have parameters (e.g : charset)
+	 * @return the format for the content type, or null if the content type
+	 *         is not a batch one
+	 */
+	public static BatchFormat fromContentType(String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+		String mimeType = contentType;
+		int parametersIndex = mimeType.indexOf(';');
+		if (parametersIndex != -1) {
+			mimeType = mimeType.substring(0, parametersIndex);
+		}
+		mimeType = mimeType.trim();
+		for (BatchFormat format : values()) {
+			if (format.getContentType().equalsIgnoreCase(mimeType)) {
+				return format;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param formatName
+	 *            the name of the format (case insensitive)
+	 * @return the format or null if the name is unknown or null
+	 */
+	public static BatchFormat getFromString(String formatName) {
+		if (formatName == null) {
+			return null;
+		}
+		for (BatchFormat format : values()) {
+			if (format.name().equalsIgnoreCase(formatName.trim())) {
+				return format;
+			}
+		}
+		return null;
+	}
+}
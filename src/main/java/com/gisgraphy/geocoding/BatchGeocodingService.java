@@ -0,0 +1,385 @@
+/*******************************************************************************
+ * Gisgraphy Project 
+ *  
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *  
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *    Lesser General Public License for more details.
+ *  
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ *  
+ *   Copyright 2008  Gisgraphy project 
+ * 
+ *   David Masclet <davidmasclet@gisgraphy.com>
+ ******************************************************************************/
+package com.gisgraphy.geocoding;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.gisgraphy.addressparser.Address;
+import com.gisgraphy.addressparser.AddressQuery;
+import com.gisgraphy.addressparser.AddressResultsDto;
+import com.gisgraphy.domain.valueobject.Constants;
+import com.gisgraphy.serializer.UniversalSerializer;
+import com.gisgraphy.serializer.common.OutputFormat;
+
+/**
+ * Geocode a stream of addresses on a bounded pool of workers.
+ * <p>
+ * The number of addresses read and not yet written is bounded : when the
+ * window is full, the input is not read until the oldest address is
+ * geocoded, so a client that sends faster than we geocode is slowed down by
+ * the TCP flow control.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class BatchGeocodingService implements IBatchGeocodingService {
+
+	protected static final Logger logger = LoggerFactory.getLogger(BatchGeocodingService.class);
+
+	public static final int DEFAULT_NUMBER_OF_THREADS = 8;
+
+	public static final int DEFAULT_MAX_PENDING_LINES_PER_THREAD = 4;
+
+	public static final String ADDRESS_FIELD = "address";
+
+	public static final String COUNTRY_FIELD = "country";
+
+	public static final String FUZZY_FIELD = "fuzzy";
+
+	protected static final String CSV_HEADER = "row,lat,lng,geocodingLevel,score,formatedFull,error\n";
+
+	private static final String THREAD_NAME_PREFIX = "batch-geocoding-";
+
+	private static final byte[] NEW_LINE = "\n".getBytes();
+
+	private IGeocodingService geocodingService;
+
+	private int numberOfThreads = DEFAULT_NUMBER_OF_THREADS;
+
+	private int maxPendingLinesPerThread = DEFAULT_MAX_PENDING_LINES_PER_THREAD;
+
+	private ThreadPoolExecutor executor;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.geocoding.IBatchGeocodingService#geocodeBatch(java.io.InputStream, java.io.OutputStream, com.gisgraphy.geocoding.BatchFormat, java.lang.String)
+	 */
+	public long geocodeBatch(InputStream input, OutputStream output, BatchFormat format, String defaultCountryCode) throws IOException {
+		if (input == null) {
+			throw new GeocodingException("Can not geocode a null input");
+		}
+		if (output == null) {
+			throw new GeocodingException("Can not serialize into a null outputStream");
+		}
+		if (format == null) {
+			throw new GeocodingException("the batch format should be specified");
+		}
+		long startTime = System.currentTimeMillis();
+		int maxPendingLines = numberOfThreads * maxPendingLinesPerThread;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, Constants.CHARSET));
+		LinkedList<Future<byte[]>> pendingLines = new LinkedList<Future<byte[]>>();
+		if (format == BatchFormat.CSV) {
+			output.write(CSV_HEADER.getBytes(Constants.CHARSET));
+		}
+		long row = 0;
+		long written = 0;
+		String line;
+		boolean firstLine = true;
+		while ((line = reader.readLine()) != null) {
+			if (firstLine && format == BatchFormat.CSV && isCsvHeader(line)) {
+				firstLine = false;
+				continue;
+			}
+			firstLine = false;
+			if (line.trim().length() == 0) {
+				continue;
+			}
+			row++;
+			pendingLines.add(getExecutor().submit(new LineGeocoder(row, line, format, defaultCountryCode)));
+			//write what is already done without waiting
+			while (!pendingLines.isEmpty() && pendingLines.getFirst().isDone()) {
+				writeLine(pendingLines.removeFirst(), output);
+				written++;
+			}
+			//backpressure
+			while (pendingLines.size() >= maxPendingLines) {
+				writeLine(pendingLines.removeFirst(), output);
+				written++;
+			}
+			//send the lines to the client by batches, not one by one
+			if (written >= maxPendingLines) {
+				output.flush();
+				written = 0;
+			}
+		}
+		while (!pendingLines.isEmpty()) {
+			writeLine(pendingLines.removeFirst(), output);
+		}
+		output.flush();
+		logger.info("batch geocoding of " + row + " lines took " + (System.currentTimeMillis() - startTime) + " ms");
+		return row;
+	}
+
+	private void writeLine(Future<byte[]> future, OutputStream output) throws IOException {
+		byte[] line;
+		try {
+			line = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GeocodingException("batch geocoding has been interrupted", e);
+		} catch (ExecutionException e) {
+			//LineGeocoder never throws
+			throw new GeocodingException("error during batch geocoding : " + e.getCause(), e.getCause());
+		}
+		output.write(line);
+		output.write(NEW_LINE);
+	}
+
+	/**
+	 * @return true if the first field of the line is the name of the address
+	 *         column, a line that only starts with it (e.g : 'Address Road
+	 *         5') is an address
+	 */
+	protected boolean isCsvHeader(String line) {
+		return ADDRESS_FIELD.equalsIgnoreCase(splitCsvLine(line).get(0).trim());
+	}
+
+	/**
+	 * geocode one line of the input and build the line of the output, the
+	 * errors are written in the line
+	 */
+	protected class LineGeocoder implements Callable<byte[]> {
+
+		private final long row;
+		private final String line;
+		private final BatchFormat format;
+		private final String defaultCountryCode;
+
+		public LineGeocoder(long row, String line, BatchFormat format, String defaultCountryCode) {
+			this.row = row;
+			this.line = line;
+			this.format = format;
+			this.defaultCountryCode = defaultCountryCode;
+		}
+
+		public byte[] call() {
+			try {
+				AddressQuery query = parseLine(line, format, defaultCountryCode);
+				AddressResultsDto results = geocodingService.geocode(query);
+				return formatResult(row, results, format);
+			} catch (Exception e) {
+				logger.warn("can not geocode line " + row + " : " + e.getMessage());
+				return formatError(row, e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage(), format);
+			}
+		}
+	}
+
+	protected AddressQuery parseLine(String line, BatchFormat format, String defaultCountryCode) throws IOException {
+		String address;
+		String countryCode = null;
+		String fuzzy = null;
+		if (format == BatchFormat.NDJSON) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> fields = mapper.readValue(line, HashMap.class);
+			address = fields.get(ADDRESS_FIELD) == null ? null : fields.get(ADDRESS_FIELD).toString();
+			countryCode = fields.get(COUNTRY_FIELD) == null ? null : fields.get(COUNTRY_FIELD).toString();
+			fuzzy = fields.get(FUZZY_FIELD) == null ? null : fields.get(FUZZY_FIELD).toString();
+		} else {
+			List<String> fields = splitCsvLine(line);
+			address = fields.get(0);
+			if (fields.size() > 1) {
+				countryCode = fields.get(1);
+			}
+			if (fields.size() > 2) {
+				fuzzy = fields.get(2);
+			}
+		}
+		if (countryCode == null || countryCode.trim().length() == 0) {
+			countryCode = defaultCountryCode;
+		}
+		AddressQuery query = new AddressQuery(address, countryCode);
+		if (fuzzy != null) {
+			query.setFuzzy(Boolean.valueOf(fuzzy.trim()));
+		}
+		return query;
+	}
+
+	protected byte[] formatResult(long row, AddressResultsDto results, BatchFormat format) throws IOException {
+		if (format == BatchFormat.NDJSON) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			outputStream.write(("{\"row\":" + row + ",\"result\":").getBytes(Constants.CHARSET));
+			UniversalSerializer.getInstance().write(outputStream, results, false, new HashMap<String, Object>(), OutputFormat.JSON);
+			outputStream.write('}');
+			return outputStream.toByteArray();
+		}
+		StringBuilder sb = new StringBuilder().append(row).append(",");
+		if (results != null && results.getResult() != null && results.getResult().size() > 0) {
+			Address address = results.getResult().get(0);
+			sb.append(toCsvValue(address.getLat())).append(",")
+			.append(toCsvValue(address.getLng())).append(",")
+			.append(toCsvValue(address.getGeocodingLevel())).append(",")
+			.append(toCsvValue(address.getScore())).append(",")
+			.append(toCsvValue(address.getFormatedFull())).append(",");
+		} else {
+			sb.append(",,,,,");
+		}
+		return sb.toString().getBytes(Constants.CHARSET);
+	}
+
+	protected byte[] formatError(long row, String message, BatchFormat format) {
+		try {
+			if (format == BatchFormat.NDJSON) {
+				return ("{\"row\":" + row + ",\"error\":" + mapper.writeValueAsString(message) + "}").getBytes(Constants.CHARSET);
+			}
+			return (row + ",,,,,," + toCsvValue(message)).getBytes(Constants.CHARSET);
+		} catch (IOException e) {
+			throw new GeocodingException("can not format error for line " + row, e);
+		}
+	}
+
+	public static String toCsvValue(Object value) {
+		if (value == null) {
+			return "";
+		}
+		String str = value.toString();
+		if (str.indexOf(',') != -1 || str.indexOf('"') != -1 || str.indexOf('\n') != -1 || str.indexOf('\r') != -1) {
+			return "\"" + str.replace("\"", "\"\"") + "\"";
+		}
+		return str;
+	}
+
+	/**
+	 * split a CSV line, fields can be quoted with double quotes, a double
+	 * quote in a quoted field is escaped by another double quote
+	 */
+	public static List<String> splitCsvLine(String line) {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder current = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"') {
+					if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						current.append('"');
+						i++;
+					} else {
+						quoted = false;
+					}
+				} else {
+					current.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(current.toString());
+				current.setLength(0);
+			} else {
+				current.append(c);
+			}
+		}
+		fields.add(current.toString());
+		return fields;
+	}
+
+	private synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			logger.info("create batch geocoding pool with " + numberOfThreads + " threads");
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			//the queue is bounded by the window of each batch
+			executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (executor != null) {
+			logger.info("shutdown batch geocoding pool");
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	@Autowired
+	public void setGeocodingService(IGeocodingService geocodingService) {
+		this.geocodingService = geocodingService;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	/**
+	 * @param numberOfThreads
+	 *            the number of addresses geocoded at the same time (for all
+	 *            the batches)
+	 */
+	public void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("the number of threads should be greater than 0");
+		}
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public int getMaxPendingLinesPerThread() {
+		return maxPendingLinesPerThread;
+	}
+
+	/**
+	 * @param maxPendingLinesPerThread
+	 *            the number of lines, per thread, that can be read before
+	 *            the oldest one has been written
+	 */
+	public void setMaxPendingLinesPerThread(int maxPendingLinesPerThread) {
+		if (maxPendingLinesPerThread < 1) {
+			throw new IllegalArgumentException("the max pending lines per thread should be greater than 0");
+		}
+		this.maxPendingLinesPerThread = maxPendingLinesPerThread;
+	}
+
+}
@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Gisgraphy Project 
+ *  
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *  
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *    Lesser General Public License for more details.
+ *  
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ *  
+ *   Copyright 2008  Gisgraphy project 
+ * 
+ *   David Masclet <davidmasclet@gisgraphy.com>
+ ******************************************************************************/
+package com.gisgraphy.geocoding;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gisgraphy.addressparser.Address;
+import com.gisgraphy.addressparser.AddressQuery;
+import com.gisgraphy.addressparser.AddressResultsDto;
+import com.gisgraphy.domain.repository.ISolRCommitListener;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Size bounded cache of the geocoding results, with a time to live. The key
+ * is build from the normalized address and from all the parameters of the
+ * query that can change the results.
+ * <p>
+ * The cache is cleared each time the full text search engine commits, so a
+ * result can not survive a (re)import.
+ * <p>
+ * The entries are spread on several segments, each one is a LRU map
+ * protected by its own lock.
+ * <p>
+ * The results are copied when they are put and when they are got, so a
+ * caller can change the list of results it receives without changing the
+ * ones of the other callers. The {@link Address} themselves are shared and
+ * must not be modified.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class GeocodingCache implements ISolRCommitListener {
+
+	protected static final Logger logger = LoggerFactory.getLogger(GeocodingCache.class);
+
+	public static final int DEFAULT_MAX_SIZE = 100000;
+
+	public static final int DEFAULT_TIME_TO_LIVE_SECONDS = 3600;
+
+	/**
+	 * the points are rounded to this number of decimal degrees (~100 meters)
+	 */
+	public static final double POINT_BUCKET_SIZE = 0.001;
+
+	private static final int NUMBER_OF_SEGMENTS = 16;
+
+	private static final char KEY_SEPARATOR = '|';
+
+	private boolean enabled = true;
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	private long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_SECONDS * 1000L;
+
+	private final Segment[] segments = new Segment[NUMBER_OF_SEGMENTS];
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	public GeocodingCache() {
+		for (int i = 0; i < NUMBER_OF_SEGMENTS; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+	private static class CacheEntry {
+		private final AddressResultsDto results;
+		private final long expirationTime;
+
+		private CacheEntry(AddressResultsDto results, long expirationTime) {
+			this.results = results;
+			this.expirationTime = expirationTime;
+		}
+	}
+
+	private class Segment extends LinkedHashMap<String, CacheEntry> {
+
+		private static final long serialVersionUID = 1L;
+
+		private Segment() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+			if (size() > getMaxSizePerSegment()) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * @param query
+	 *            the query to build the key for
+	 * @return the key of the query, null if the query can not be cached
+	 *         (e.g : it has no raw address)
+	 */
+	public String buildKey(AddressQuery query) {
+		if (query == null || query.getAddress() == null) {
+			return null;
+		}
+		String normalizedAddress = normalize(query.getAddress());
+		if (normalizedAddress.length() == 0) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder(normalizedAddress.length() + 48);
+		sb.append(normalizedAddress).append(KEY_SEPARATOR);
+		if (query.getCountry() != null) {
+			sb.append(query.getCountry().trim().toUpperCase());
+		}
+		sb.append(KEY_SEPARATOR).append(query.isFuzzy())
+		.append(KEY_SEPARATOR).append(query.isPostal())
+		.append(KEY_SEPARATOR).append(query.getLimitNbResult())
+		.append(KEY_SEPARATOR).append(query.getParsedAddressUnlockKey())
+		.append(KEY_SEPARATOR);
+		Point point = query.getPoint();
+		if (point != null) {
+			sb.append(Math.round(point.getX() / POINT_BUCKET_SIZE)).append(',')
+			.append(Math.round(point.getY() / POINT_BUCKET_SIZE)).append(',')
+			.append(query.getRadius());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the address in lower case, trimmed and with only one space
+	 *         between words
+	 */
+	protected static String normalize(String address) {
+		StringBuilder sb = new StringBuilder(address.length());
+		boolean lastIsSpace = true;
+		for (int i = 0; i < address.length(); i++) {
+			char c = address.charAt(i);
+			if (Character.isWhitespace(c)) {
+				if (!lastIsSpace) {
+					sb.append(' ');
+					lastIsSpace = true;
+				}
+			} else {
+				sb.append(c);
+				lastIsSpace = false;
+			}
+		}
+		if (sb.length() > 0 && sb.charAt(sb.length() - 1) == ' ') {
+			sb.setLength(sb.length() - 1);
+		}
+		return sb.toString().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param key
+	 *            a key returned by {@link #buildKey(AddressQuery)}
+	 * @return the cached results or null if there is none or if they are
+	 *         expired
+	 */
+	public AddressResultsDto get(String key) {
+		if (!enabled || key == null) {
+			return null;
+		}
+		Segment segment = getSegment(key);
+		CacheEntry entry;
+		synchronized (segment) {
+			entry = segment.get(key);
+			if (entry != null && entry.expirationTime < System.currentTimeMillis()) {
+				segment.remove(key);
+				evictions.incrementAndGet();
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return copy(entry.results);
+	}
+
+	/**
+	 * @param key
+	 *            a key returned by {@link #buildKey(AddressQuery)}
+	 * @param results
+	 *            the results to cache
+	 */
+	public void put(String key, AddressResultsDto results) {
+		if (!enabled || key == null || results == null) {
+			return;
+		}
+		Segment segment = getSegment(key);
+		CacheEntry entry = new CacheEntry(copy(results), System.currentTimeMillis() + timeToLiveMillis);
+		synchronized (segment) {
+			segment.put(key, entry);
+		}
+	}
+
+	/**
+	 * Remove all the entries
+	 */
+	public void invalidate() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+		invalidations.incrementAndGet();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.repository.ISolRCommitListener#onCommit()
+	 */
+	public void onCommit() {
+		if (enabled) {
+			logger.debug("fulltext engine has committed, the geocoding cache is invalidated");
+			invalidate();
+		}
+	}
+
+	/**
+	 * @return a new {@link AddressResultsDto} with the same fields and a new
+	 *         list of the same addresses
+	 */
+	protected static AddressResultsDto copy(AddressResultsDto results) {
+		List<Address> addresses = results.getResult() == null ? null : new ArrayList<Address>(results.getResult());
+		AddressResultsDto copy = new AddressResultsDto(addresses, results.getQTime());
+		copy.setMessage(results.getMessage());
+		copy.setParsedAddress(results.getParsedAddress());
+		return copy;
+	}
+
+	private Segment getSegment(String key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return segments[(hash & 0x7fffffff) % NUMBER_OF_SEGMENTS];
+	}
+
+	private int getMaxSizePerSegment() {
+		return Math.max(1, maxSize / NUMBER_OF_SEGMENTS);
+	}
+
+	/**
+	 * @return the number of entries in the cache, expired ones included
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of entries removed because the cache was full or
+	 *         because they were expired
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of time the cache has been cleared
+	 */
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of results kept
+	 */
+	public void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("the max size of the cache should be greater than 0");
+		}
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param timeToLiveSeconds
+	 *            the number of seconds a result is kept
+	 */
+	public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+		if (timeToLiveSeconds < 1) {
+			throw new IllegalArgumentException("the time to live of the cache should be greater than 0");
+		}
+		this.timeToLiveMillis = timeToLiveSeconds * 1000L;
+	}
+
+	public int getTimeToLiveSeconds() {
+		return (int) (timeToLiveMillis / 1000);
+	}
+
+	@Override
+	public String toString() {
+		return "GeocodingCache [size=" + size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", invalidations="
+				+ invalidations + "]";
+	}
+
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Gisgraphy Project
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ *
+ *   Copyright 2008  Gisgraphy project
+ *
+ *   David Masclet <davidmasclet@gisgraphy.com>
+ ******************************************************************************/
+package com.gisgraphy.geocoding;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded executor used by the {@link GeocodingService} to send the
+ * independent fulltext queries of a geocoding request (exact match, street,
+ * alternative street, fuzzy pass) at the same time.
+ * <p>
+ * A task that has not been started by a pool thread when its result is
+ * needed is run by the caller thread, so a saturated pool (or nested
+ * submissions) degrades to the sequential behaviour instead of blocking.
+ *
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class GeocodingSearchExecutor {
+
+	protected static final Logger logger = LoggerFactory.getLogger(GeocodingSearchExecutor.class);
+
+	public static final int DEFAULT_NUMBER_OF_THREADS = 16;
+
+	public static final int DEFAULT_QUEUE_SIZE = 256;
+
+	private static final String THREAD_NAME_PREFIX = "geocoding-search-";
+
+	private boolean enabled = true;
+
+	private boolean speculativeFuzzy = false;
+
+	private int numberOfThreads = DEFAULT_NUMBER_OF_THREADS;
+
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * Submit a task. The task is queued if the pool accept it, otherwise it
+	 * will be run by the thread that call {@link #get(Future)}
+	 *
+	 * @param callable
+	 *            the task to run
+	 * @return the future of the task
+	 */
+	public <T> Future<T> submit(Callable<T> callable) {
+		FutureTask<T> task = new FutureTask<T>(callable);
+		if (enabled) {
+			try {
+				getExecutor().execute(task);
+			} catch (RejectedExecutionException e) {
+				logger.debug("geocoding search pool is full, the task will be run by the caller");
+			}
+		}
+		return task;
+	}
+
+	/**
+	 * Wait for the result of a task returned by {@link #submit(Callable)}. If
+	 * the task has not been started yet, it is run in the current thread.
+	 *
+	 * @param future
+	 *            the future to wait for
+	 * @return the result of the task, null if the future is null
+	 * @throws RuntimeException
+	 *             if the task has thrown
+	 */
+	public <T> T get(Future<T> future) {
+		if (future == null) {
+			return null;
+		}
+		if (future instanceof FutureTask<?> && !future.isDone()) {
+			//no-op if a pool thread has already started it
+			((FutureTask<T>) future).run();
+		}
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GeocodingException("geocoding search has been interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new GeocodingException("error during geocoding search : " + cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * Cancel a task whose result is not needed anymore. A task already
+	 * running is not interrupted.
+	 */
+	public void cancel(Future<?> future) {
+		if (future != null) {
+			future.cancel(false);
+		}
+	}
+
+	private synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			logger.info("create geocoding search pool with " + numberOfThreads + " threads and a queue of " + queueSize);
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60L, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+							thread.setDaemon(true);
+							return thread;
+						}
+					}, new ThreadPoolExecutor.AbortPolicy());
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (executor != null) {
+			logger.info("shutdown geocoding search pool");
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * @return true if the queries should be sent in parallel
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            whether the queries should be sent in parallel. if false,
+	 *            every task is run by the caller
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return true if the fuzzy pass should be started at the same time as the
+	 *         strict one when the query is fuzzy
+	 */
+	public boolean isSpeculativeFuzzy() {
+		return speculativeFuzzy;
+	}
+
+	/**
+	 * @param speculativeFuzzy
+	 *            whether the fuzzy pass should be started at the same time as
+	 *            the strict one. It reduces the latency of fuzzy queries but
+	 *            sends more queries to the fulltext engine
+	 */
+	public void setSpeculativeFuzzy(boolean speculativeFuzzy) {
+		this.speculativeFuzzy = speculativeFuzzy;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	public void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("the number of threads should be greater than 0");
+		}
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	public void setQueueSize(int queueSize) {
+		if (queueSize < 1) {
+			throw new IllegalArgumentException("the queue size should be greater than 0");
+		}
+		this.queueSize = queueSize;
+	}
+
+}
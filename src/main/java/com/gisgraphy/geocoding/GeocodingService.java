@@ -30,6 +30,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -69,6 +71,7 @@ import com.gisgraphy.geoloc.ZipcodeNormalizer;
 import com.gisgraphy.helper.CountryDetector;
 import com.gisgraphy.helper.CountryDetectorDto;
 import com.gisgraphy.helper.GeolocHelper;
+import com.gisgraphy.helper.NameMatcher;
 import com.gisgraphy.helper.StringHelper;
 import com.gisgraphy.importer.ImporterConfig;
 import com.gisgraphy.importer.LabelGenerator;
@@ -76,7 +79,10 @@ import com.gisgraphy.reversegeocoding.AddressHelper;
 import com.gisgraphy.serializer.UniversalSerializer;
 import com.gisgraphy.serializer.common.UniversalSerializerConstant;
 import com.gisgraphy.service.IStatsUsageService;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 import com.gisgraphy.stats.StatsUsageType;
+import com.gisgraphy.street.EncodedHouseNumberList;
 import com.gisgraphy.street.HouseNumberDto;
 import com.gisgraphy.street.HouseNumberUtil;
 import com.vividsolutions.jts.geom.Point;
@@ -101,6 +107,13 @@ public class GeocodingService implements IGeocodingService {
 	private IAddressParserService addressParser;
 	private FullTextSearchEngine fullTextSearchEngine;
 	private GisgraphyConfig gisgraphyConfig;
+	private GeocodingSearchExecutor searchExecutor;
+	private GeocodingCache geocodingCache;
+	
+	private static final GeocodingSearchExecutor SEQUENTIAL_SEARCH_EXECUTOR = new GeocodingSearchExecutor();
+	static {
+		SEQUENTIAL_SEARCH_EXECUTOR.setEnabled(false);
+	}
 	
 	private LabelGenerator labelGenerator = LabelGenerator.getInstance();
 	private BasicAddressFormater addressFormater = BasicAddressFormater.getInstance();
@@ -153,7 +166,9 @@ public class GeocodingService implements IGeocodingService {
 		// extraParameter.put(GeolocResultsDtoSerializer.START_PAGINATION_INDEX_EXTRA_PARAMETER,
 		// query.getFirstPaginationIndex());
 		extraParameter.put(UniversalSerializerConstant.CALLBACK_METHOD_NAME, query.getCallback());
+		long serializationStart = LatencyStats.start();
 		UniversalSerializer.getInstance().write(outputStream, geolocResultsDto, false, extraParameter, query.getFormat());
+		LatencyStats.record(LatencyType.SERIALIZATION, serializationStart);
 	}
 
 	/*
@@ -185,6 +200,29 @@ public class GeocodingService implements IGeocodingService {
 		if (query == null) {
 			throw new GeocodingException("Can not geocode a null query");
 		}
+		String cacheKey = null;
+		if (geocodingCache != null && !(query instanceof StructuredAddressQuery)){
+			long startTime = System.currentTimeMillis();
+			cacheKey = geocodingCache.buildKey(query);
+			AddressResultsDto cachedResults = geocodingCache.get(cacheKey);
+			if (cachedResults != null){
+				logger.debug("geocoding results found in cache for "+query);
+				//a hit is a geocoding for the stats, as a miss
+				statsUsageService.increaseUsage(StatsUsageType.GEOCODING);
+				//the cache returns a copy : the time of the lookup replaces the
+				//one of the geocoding that has filled the cache
+				cachedResults.setQTime(System.currentTimeMillis() - startTime);
+				return cachedResults;
+			}
+		}
+		AddressResultsDto results = doGeocode(query);
+		if (cacheKey != null){
+			geocodingCache.put(cacheKey, results);
+		}
+		return results;
+	}
+
+	protected AddressResultsDto doGeocode(AddressQuery query) throws GeocodingException {
 		logger.info(query.toString());
 		String countryCode = query.getCountry();
 		if (countryCode !=null  && countryCode.trim().length() != 2) {
@@ -208,7 +246,9 @@ public class GeocodingService implements IGeocodingService {
 		}
 	//	rawAddress = prepareQuery(rawAddress);
 		//always search for country to remove it
+			long countryDetectionStart = LatencyStats.start();
 			CountryDetectorDto detectorDto = countryDetector.detectAndRemoveCountry(rawAddress);
+			LatencyStats.record(LatencyType.COUNTRY_DETECTION, countryDetectionStart);
 			if (detectorDto != null && detectorDto.getCountryCode()!=null){
 				if (detectorDto.getAddress()!= null && !detectorDto.getAddress().trim().equals("")){
 					rawAddress = detectorDto.getAddress();
@@ -238,7 +278,12 @@ public class GeocodingService implements IGeocodingService {
 		if ((gisgraphyConfig.useAddressParserWhenGeocoding || query.isPostal()) && needParsing) {
 			try {
 				logger.debug("address parser is enabled");
-				addressResultDto = addressParser.execute(addressQuery);
+				long parsingStart = LatencyStats.start();
+				try {
+					addressResultDto = addressParser.execute(addressQuery);
+				} finally {
+					LatencyStats.record(LatencyType.ADDRESS_PARSING, parsingStart);
+				}
 			} catch (AddressParserException e) {
 				logger.error("An error occurs during parsing of address" + e.getMessage(), e);
 			}
@@ -291,6 +336,12 @@ public class GeocodingService implements IGeocodingService {
 					logger.error("don't proces specific german address");
 				}
 			}
+			Future<AddressResultsDto> fuzzyFuture = null;
+			if (query.isFuzzy() && getSearchExecutor().isSpeculativeFuzzy()){
+				//start the fuzzy pass now, it will be ignored if the strict one is good enough
+				fuzzyFuture = submitSearch(newAddress,alternativeGermanAddress, countryCode,
+						needParsing,houseNumber, true, query.getPoint(), query.getRadius(), smartstreetdetected);
+			}
 			results = doSearch(newAddress,alternativeGermanAddress, countryCode, 
 					needParsing,houseNumber, false, query.getPoint(), query.getRadius(), smartstreetdetected);
 
@@ -298,8 +349,14 @@ public class GeocodingService implements IGeocodingService {
 
 			//try in fuzzy
 			if (query.isFuzzy() && (results.getNumFound()==0 || (results.getResult().size()>0 && results.getResult().get(0).getScore()< SCORE_THRESHOLD_FUZZY ))){
+				if (fuzzyFuture!=null){
+					results = getSearchResult(fuzzyFuture);
+				} else {
 				results = doSearch(newAddress,alternativeGermanAddress, countryCode,
 						needParsing,houseNumber, true, query.getPoint(), query.getRadius(), smartstreetdetected);
+				}
+			} else {
+				cancelSearch(fuzzyFuture);
 			}
 					
 				
@@ -329,9 +386,21 @@ public class GeocodingService implements IGeocodingService {
 			String countryCode, boolean needParsing,String houseNumber, boolean fuzzy, Point point, Double radius, boolean smartStreetDetected) {
 		AddressResultsDto results;
 		List<SolrResponseDto> exactMatches  ;
+		//the queries are independent : send them at the same time and merge them when they are all back.
+		//When the exact match can be enough (no parsing needed), the street queries are only sent if it finds nothing
+		boolean exactCanBeEnough = !needParsing && !smartStreetDetected;
+		Future<List<SolrResponseDto>> exactFuture = null;
+		if (!smartStreetDetected){
+			exactFuture = submitSearchExact(rawaddress, countryCode, fuzzy, point, radius);
+		}
+		Future<List<SolrResponseDto>> streetFuture = null;
+		Future<List<SolrResponseDto>> alternativeFuture = null;
+		if (!exactCanBeEnough){
+			streetFuture = submitSearchStreet(rawaddress, countryCode, fuzzy, point, radius);
+			alternativeFuture = submitSearchAlternativeStreet(alternativeStreetAddress, countryCode, fuzzy, point, radius);
+		}
 		if (!smartStreetDetected){
-			 exactMatches = doSearchExact(rawaddress,
-					countryCode, fuzzy, point, radius, null);
+			 exactMatches = getSearchResult(exactFuture);
 		} else {
 			//bypass exact search
 			 exactMatches  =new ArrayList<SolrResponseDto>();
@@ -339,16 +408,18 @@ public class GeocodingService implements IGeocodingService {
 	
 			//have been probably found by exact match, so we search for address and so a street*/
 			if (!needParsing && exactMatches!=null && exactMatches.size() >=1){
-				//only one word and exact match ok
+				//only one word and exact match ok, street results are not needed
+				cancelSearch(streetFuture);
+				cancelSearch(alternativeFuture);
 				results = buildAddressResultDtoFromSolrResponseDto(exactMatches, houseNumber);
 			} else {
-				
-				List<SolrResponseDto> fulltextResultsDto = doSearchStreet(
-						rawaddress, countryCode, fuzzy, point, radius);
-				if(alternativeStreetAddress!=null){
-					logger.error("will search for altenative german Address : "+alternativeStreetAddress);
-					List<SolrResponseDto> alternativeResults = doSearchStreet(
-							alternativeStreetAddress, countryCode, fuzzy, point, radius);
+				if (streetFuture==null){
+					streetFuture = submitSearchStreet(rawaddress, countryCode, fuzzy, point, radius);
+					alternativeFuture = submitSearchAlternativeStreet(alternativeStreetAddress, countryCode, fuzzy, point, radius);
+				}
+				List<SolrResponseDto> fulltextResultsDto = getSearchResult(streetFuture);
+				if(alternativeFuture!=null){
+					List<SolrResponseDto> alternativeResults = getSearchResult(alternativeFuture);
 					if (fulltextResultsDto.size()==0 ||(alternativeResults!=null && alternativeResults.size()>0 && fulltextResultsDto!=null && fulltextResultsDto.size() > 0 
 							&& alternativeResults.get(0)!=null && fulltextResultsDto.get(0)!=null
 							&& alternativeResults.get(0).getScore()>fulltextResultsDto.get(0).getScore())){
@@ -375,6 +446,65 @@ public class GeocodingService implements IGeocodingService {
 		return results;
 	}
 
+	protected Future<AddressResultsDto> submitSearch(final String rawaddress,final String alternativeStreetAddress,
+			final String countryCode, final boolean needParsing,final String houseNumber, final boolean fuzzy, final Point point, final Double radius, final boolean smartStreetDetected) {
+		return getSearchExecutor().submit(new Callable<AddressResultsDto>() {
+			public AddressResultsDto call() {
+				return doSearch(rawaddress, alternativeStreetAddress, countryCode, needParsing, houseNumber, fuzzy, point, radius, smartStreetDetected);
+			}
+		});
+	}
+
+	protected Future<List<SolrResponseDto>> submitSearchExact(final String rawaddress,
+			final String countryCode, final boolean fuzzy, final Point point, final Double radius) {
+		return getSearchExecutor().submit(new Callable<List<SolrResponseDto>>() {
+			public List<SolrResponseDto> call() {
+				return doSearchExact(rawaddress, countryCode, fuzzy, point, radius, null);
+			}
+		});
+	}
+
+	protected Future<List<SolrResponseDto>> submitSearchStreet(final String rawaddress,
+			final String countryCode, final boolean fuzzy, final Point point, final Double radius) {
+		return getSearchExecutor().submit(new Callable<List<SolrResponseDto>>() {
+			public List<SolrResponseDto> call() {
+				return doSearchStreet(rawaddress, countryCode, fuzzy, point, radius);
+			}
+		});
+	}
+
+	/**
+	 * @return the search of the alternative (german) street address, null if there is none
+	 */
+	private Future<List<SolrResponseDto>> submitSearchAlternativeStreet(String alternativeStreetAddress,
+			String countryCode, boolean fuzzy, Point point, Double radius) {
+		if (alternativeStreetAddress==null){
+			return null;
+		}
+		logger.error("will search for altenative german Address : "+alternativeStreetAddress);
+		return submitSearchStreet(alternativeStreetAddress, countryCode, fuzzy, point, radius);
+	}
+
+	protected <T> T getSearchResult(Future<T> future) {
+		return getSearchExecutor().get(future);
+	}
+
+	protected void cancelSearch(Future<?> future) {
+		getSearchExecutor().cancel(future);
+	}
+
+	/**
+	 * @return the executor used to send the fulltext queries, a disabled one
+	 *         (every query is run by the caller) if none has been set
+	 */
+	protected GeocodingSearchExecutor getSearchExecutor() {
+		GeocodingSearchExecutor executor = searchExecutor;
+		if (executor == null) {
+			executor = SEQUENTIAL_SEARCH_EXECUTOR;
+		}
+		return executor;
+	}
+
 	
 
 	protected List<SolrResponseDto> doSearchStreet(String rawaddress,
@@ -390,18 +520,19 @@ public class GeocodingService implements IGeocodingService {
 		logger.debug("will search for exact match "+(fuzzy?"in fuzzy mode":" in strict mode"));
 		List<SolrResponseDto> exactMatches = findExactMatches(rawaddress, countryCode, fuzzy, point, radius, placetype);
 		//filter result where name is not the same
-		if (exactMatches!=null){
+		if (exactMatches!=null && !exactMatches.isEmpty()){
 			List<SolrResponseDto> filterResults = new ArrayList<SolrResponseDto>();
+			NameMatcher.Name expectedName = NameMatcher.expected(rawaddress);
 			for (SolrResponseDto result: exactMatches){
 				boolean added= false;
-				if(result!=null && result.getName()!=null && (StringHelper.isSameName(rawaddress, result.getName(),1) || ZipcodeNormalizer.containsGBPostCode(rawaddress))){
+				if(result!=null && result.getName()!=null && (expectedName.matches(NameMatcher.actual(result.getName()),1) || ZipcodeNormalizer.containsGBPostCode(rawaddress))){
 					filterResults.add(result);
 					added =true;
 					logger.error("filter same name, adding "+(result.getOpenstreetmap_id()!=null?result.getOpenstreetmap_id():result.getFeature_id())+"-"+result.getName()+" / "+result.getFully_qualified_name() );
 				}
 				else if (!added){
 					for (String nameAlternate : result.getName_alternates()){
-						if (nameAlternate!=null && StringHelper.isSameName(rawaddress, nameAlternate,1)){
+						if (nameAlternate!=null && expectedName.matches(NameMatcher.actual(nameAlternate),1)){
 							logger.error("filter same name, adding alternate "+(result.getOpenstreetmap_id()!=null?result.getOpenstreetmap_id():result.getFeature_id())+" :  "+nameAlternate+" / "+result.getFully_qualified_name() );
 							filterResults.add(result);
 							added=true;
@@ -535,6 +666,11 @@ public class GeocodingService implements IGeocodingService {
 			logger.info("no house number to search : ");
 			return null;
 		}
+		boolean skOrCz = countryCode!=null && ("SK".equalsIgnoreCase(countryCode) || "CZ".equalsIgnoreCase(countryCode));
+		if (houseNumbersList instanceof EncodedHouseNumberList && !skOrCz){
+			//the encoded house numbers are sorted by their normalized value
+			return searchEncodedHouseNumber(houseNumberToFindAsInt, (EncodedHouseNumberList) houseNumbersList, doInterpolation);
+		}
 		Integer nearestLower = null;
 		Integer nearestUpper = null;
 		HouseNumberDto nearestHouseLower = null;
@@ -551,7 +687,7 @@ public class GeocodingService implements IGeocodingService {
 		for (HouseNumberDto candidate :houseNumbersList){
 			if (candidate != null && candidate.getNumber()!=null){
 				Integer candidateNormalized;
-				if (countryCode!=null && ("SK".equalsIgnoreCase(countryCode) || "CZ".equalsIgnoreCase(countryCode))){
+				if (skOrCz){
 					candidateNormalized = HouseNumberUtil.normalizeSkCzNumberToInt(candidate.getNumber());
 				} else {
 					candidateNormalized = HouseNumberUtil.normalizeNumberToInt(candidate.getNumber());
@@ -576,6 +712,43 @@ public class GeocodingService implements IGeocodingService {
 		}
 		}
 		logger.info("no exact house number candidate found for "+houseNumberToFindAsInt);
+		return buildHouseNumberInterpolation(houseNumberToFindAsInt, nearestLower, nearestHouseLower, nearestUpper, nearestHouseUpper, doInterpolation);
+	}
+
+	/**
+	 * Same as {@link #searchHouseNumber(Integer, List, String, boolean)} but
+	 * search by binary search, only the blocks that contain the nearest house
+	 * numbers are decoded
+	 */
+	protected HouseNumberDtoInterpolation searchEncodedHouseNumber(Integer houseNumberToFindAsInt, EncodedHouseNumberList houseNumbersList, boolean doInterpolation) {
+		int index = houseNumbersList.lowerBound(houseNumberToFindAsInt);
+		if (index < houseNumbersList.getKeyedSize() && houseNumbersList.getNumberAsInt(index).intValue() == houseNumberToFindAsInt.intValue()){
+			HouseNumberDto candidate = houseNumbersList.get(index);
+			logger.info("house number candidate found : "+candidate.getNumber());
+			HouseNumberDtoInterpolation result = new HouseNumberDtoInterpolation(candidate.getLocation(),houseNumberToFindAsInt);
+			result.setApproximative(false);
+			return result;
+		}
+		logger.info("no exact house number candidate found for "+houseNumberToFindAsInt);
+		Integer nearestLower = null;
+		Integer nearestUpper = null;
+		HouseNumberDto nearestHouseLower = null;
+		HouseNumberDto nearestHouseUpper = null;
+		if (index > 0){
+			nearestLower = houseNumbersList.getNumberAsInt(index - 1);
+			//the first one of the house numbers that have the same value, as the linear search
+			int lowerIndex = houseNumbersList.lowerBound(nearestLower);
+			nearestHouseLower = houseNumbersList.get(lowerIndex);
+		}
+		if (index < houseNumbersList.getKeyedSize()){
+			nearestUpper = houseNumbersList.getNumberAsInt(index);
+			nearestHouseUpper = houseNumbersList.get(index);
+		}
+		return buildHouseNumberInterpolation(houseNumberToFindAsInt, nearestLower, nearestHouseLower, nearestUpper, nearestHouseUpper, doInterpolation);
+	}
+
+	private HouseNumberDtoInterpolation buildHouseNumberInterpolation(Integer houseNumberToFindAsInt, Integer nearestLower, HouseNumberDto nearestHouseLower,
+			Integer nearestUpper, HouseNumberDto nearestHouseUpper, boolean doInterpolation) {
 		//do interpolation
 		if (nearestHouseLower == null && nearestHouseUpper ==null){
 			logger.info(" no lower, nor upper house number found");
@@ -972,4 +1145,14 @@ public class GeocodingService implements IGeocodingService {
 		this.gisgraphyConfig = gisgraphyConfig;
 	}
 
+	@Autowired
+	public void setSearchExecutor(GeocodingSearchExecutor searchExecutor) {
+		this.searchExecutor = searchExecutor;
+	}
+
+	@Autowired
+	public void setGeocodingCache(GeocodingCache geocodingCache) {
+		this.geocodingCache = geocodingCache;
+	}
+
 }
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Gisgraphy Project 
+ *  
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *  
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *    Lesser General Public License for more details.
+ *  
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ *  
+ *   Copyright 2008  Gisgraphy project 
+ * 
+ *   David Masclet <davidmasclet@gisgraphy.com>
+ ******************************************************************************/
+package com.gisgraphy.geocoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Geocode a stream of addresses in one call.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public interface IBatchGeocodingService {
+
+	/**
+	 * Read the addresses from the input (one per line), geocode them in
+	 * parallel and write the results to the output, in the same order than
+	 * the input, as soon as they are available. An address that can not be
+	 * geocoded produces an error line, it doesn't stop the batch.
+	 * 
+	 * @param input
+	 *            the addresses, encoded in UTF-8
+	 * @param output
+	 *            where to write the results
+	 * @param format
+	 *            the format of the input and of the output
+	 * @param defaultCountryCode
+	 *            the country code to use when a line has none, can be null
+	 * @return the number of processed lines
+	 * @throws IOException
+	 *             if the input can not be read or the output can not be
+	 *             written
+	 */
+	public long geocodeBatch(InputStream input, OutputStream output, BatchFormat format, String defaultCountryCode) throws IOException;
+
+}
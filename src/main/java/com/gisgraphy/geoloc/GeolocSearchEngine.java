@@ -47,6 +47,8 @@ import com.gisgraphy.geocoloc.IGeolocSearchEngine;
 import com.gisgraphy.serializer.common.UniversalSerializerConstant;
 import com.gisgraphy.service.IStatsUsageService;
 import com.gisgraphy.service.ServiceException;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 import com.gisgraphy.stats.StatsUsageType;
 
 /**
@@ -132,7 +134,9 @@ public class GeolocSearchEngine implements IGeolocSearchEngine {
 	Map<String, Object> extraParameter = new HashMap<String, Object>();
 	extraParameter.put(GeolocResultsDtoSerializer.START_PAGINATION_INDEX_EXTRA_PARAMETER, query.getFirstPaginationIndex());
 	extraParameter.put(UniversalSerializerConstant.CALLBACK_METHOD_NAME, query.getCallback());
+	long serializationStart = LatencyStats.start();
 	geolocResultsDtoSerializer.serialize(outputStream, query.getOutputFormat(), geolocResultsDto, query.isOutputIndented(),extraParameter);
+	LatencyStats.record(LatencyType.SERIALIZATION, serializationStart);
     }
 
     /*
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.helper;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.utils.CountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read the files of an archive (zip, tar, tar.bz2, gis, tar.gz) or of a
+ * compressed file (bz2, gz) one after the other, without decompressing them
+ * on the disk. The number of compressed bytes read can be used to estimate
+ * the progress.
+ * <p>
+ * Usage :
+ * 
+ * <pre>
+ * ArchiveEntryReader reader = new ArchiveEntryReader(archive, 1);
+ * try {
+ *     String name;
+ *     while ((name = reader.nextEntry()) != null) {
+ * 	InputStream in = reader.getEntryInputStream();
+ * 	...
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class ArchiveEntryReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveEntryReader.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    enum Format {
+	ZIP(".zip"), TAR_BZIP2(".tar.bz2", ".tbz2", ".gis"), TAR_GZIP(".tar.gz", ".tgz"), TAR(".tar"), BZIP2(".bz2"), GZIP(".gz");
+
+	private final String[] extensions;
+
+	private Format(String... extensions) {
+	    this.extensions = extensions;
+	}
+
+	/**
+	 * @return the extension of the file name if it has the format, null
+	 *         otherwise
+	 */
+	String getExtension(String fileName) {
+	    String lowerCaseName = fileName.toLowerCase();
+	    for (String extension : extensions) {
+		if (lowerCaseName.endsWith(extension) && lowerCaseName.length() > extension.length()) {
+		    return extension;
+		}
+	    }
+	    return null;
+	}
+
+	static Format of(String fileName) {
+	    //the order of the values matters : tar.bz2 before bz2
+	    for (Format format : values()) {
+		if (format.getExtension(fileName) != null) {
+		    return format;
+		}
+	    }
+	    return null;
+	}
+    }
+
+    private final File archive;
+
+    private final Format format;
+
+    private final CountingInputStream compressed;
+
+    private final InputStream decompressed;
+
+    private boolean singleEntryRead = false;
+
+    private InputStream entryInputStream;
+
+    /**
+     * @param archive
+     *            the archive or the compressed file
+     * @param bzip2Threads
+     *            the number of threads that decompress the bzip2 files (see
+     *            {@link ParallelBZip2InputStream}), 1 or less to decompress
+     *            them in the calling thread
+     * @throws IOException
+     *             if the archive can not be read or has an unknown format
+     */
+    public ArchiveEntryReader(File archive, int bzip2Threads) throws IOException {
+	this.archive = archive;
+	this.format = Format.of(archive.getName());
+	if (format == null) {
+	    throw new IOException("can not detect the format of " + archive.getName());
+	}
+	this.compressed = new CountingInputStream(new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE));
+	try {
+	    switch (format) {
+	    case ZIP:
+		decompressed = new ZipInputStream(compressed);
+		break;
+	    case TAR_BZIP2:
+		decompressed = new TarArchiveInputStream(new BufferedInputStream(createBZip2InputStream(bzip2Threads), BUFFER_SIZE));
+		break;
+	    case TAR_GZIP:
+		decompressed = new TarArchiveInputStream(new BufferedInputStream(new GZIPInputStream(compressed, BUFFER_SIZE), BUFFER_SIZE));
+		break;
+	    case TAR:
+		decompressed = new TarArchiveInputStream(compressed);
+		break;
+	    case BZIP2:
+		decompressed = createBZip2InputStream(bzip2Threads);
+		break;
+	    default:
+		decompressed = new GZIPInputStream(compressed, BUFFER_SIZE);
+	    }
+	} catch (IOException e) {
+	    compressed.close();
+	    throw e;
+	}
+	logger.info("will read " + archive.getName() + " as a " + format + " stream");
+    }
+
+    private InputStream createBZip2InputStream(int threads) throws IOException {
+	if (threads > 1) {
+	    return new ParallelBZip2InputStream(compressed, threads);
+	}
+	return new BZip2CompressorInputStream(compressed, true);
+    }
+
+    /**
+     * @param fileName
+     *            the name of a file
+     * @return true if the file can be read by an {@link ArchiveEntryReader}
+     */
+    public static boolean isArchive(String fileName) {
+	return fileName != null && Format.of(fileName) != null;
+    }
+
+    /**
+     * @param fileName
+     *            the name of a file
+     * @return the name without the extension of the archive (allCountries
+     *         for allCountries.zip), or the name if the file is not an
+     *         archive
+     * @see #isArchive(String)
+     */
+    public static String getNameWithoutArchiveExtension(String fileName) {
+	Format format = fileName == null ? null : Format.of(fileName);
+	if (format == null) {
+	    return fileName;
+	}
+	return fileName.substring(0, fileName.length() - format.getExtension(fileName).length());
+    }
+
+    /**
+     * Move to the next file of the archive
+     * 
+     * @return the name of the next file (the path in the archive), or null if
+     *         there is no more file. The name of a compressed file is its
+     *         name without the extension
+     * @throws IOException
+     *             if the archive can not be read
+     */
+    public String nextEntry() throws IOException {
+	entryInputStream = null;
+	String name = null;
+	switch (format) {
+	case ZIP:
+	    ZipEntry zipEntry;
+	    while ((zipEntry = ((ZipInputStream) decompressed).getNextEntry()) != null) {
+		if (!zipEntry.isDirectory()) {
+		    name = zipEntry.getName();
+		    break;
+		}
+	    }
+	    break;
+	case TAR_BZIP2:
+	case TAR_GZIP:
+	case TAR:
+	    TarArchiveEntry tarEntry;
+	    while ((tarEntry = ((TarArchiveInputStream) decompressed).getNextTarEntry()) != null) {
+		if (tarEntry.isFile()) {
+		    name = tarEntry.getName();
+		    break;
+		}
+	    }
+	    break;
+	default:
+	    if (!singleEntryRead) {
+		singleEntryRead = true;
+		name = archive.getName().substring(0, archive.getName().length() - format.getExtension(archive.getName()).length());
+	    }
+	}
+	if (name != null) {
+	    entryInputStream = new EntryInputStream(decompressed);
+	}
+	return name;
+    }
+
+    /**
+     * @return the content of the current file, it is closed when the reader
+     *         moves to the next file and closing it does not close the
+     *         archive
+     * @throws IllegalStateException
+     *             if there is no current file
+     */
+    public InputStream getEntryInputStream() {
+	if (entryInputStream == null) {
+	    throw new IllegalStateException("there is no current entry, nextEntry() should be called first");
+	}
+	return entryInputStream;
+    }
+
+    /**
+     * @return the number of bytes of the archive read so far
+     */
+    public long getCompressedBytesRead() {
+	return compressed.getBytesRead();
+    }
+
+    /**
+     * @return the archive
+     */
+    public File getArchive() {
+	return archive;
+    }
+
+    /**
+     * close the archive
+     */
+    public void close() {
+	try {
+	    decompressed.close();
+	} catch (IOException e) {
+	    logger.warn("can not close " + archive.getName() + " : " + e.getMessage());
+	}
+    }
+
+    /**
+     * the stream of an entry, that does not close the archive
+     */
+    private static final class EntryInputStream extends FilterInputStream {
+
+	EntryInputStream(InputStream in) {
+	    super(in);
+	}
+
+	@Override
+	public void close() {
+	}
+    }
+
+}
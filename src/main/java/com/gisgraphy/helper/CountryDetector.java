@@ -22,9 +22,9 @@
  *******************************************************************************/
 package com.gisgraphy.helper;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +32,14 @@ import org.slf4j.LoggerFactory;
 /**
  * 
  * Detect Country
+ * <p>
+ * The country names of {@link CountriesStaticData#countryAlternateNames} are
+ * put once in a trie of the reversed names, the address is then read
+ * backward from its end in the trie : all the names that end the address are
+ * found in a single pass, without regex. When several names end the address,
+ * the most popular country wins (see
+ * {@link CountriesStaticData#countryCodeSortedByPopularity}) and the longest
+ * name for a country.
  * 
  * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
  * 
@@ -43,38 +51,200 @@ public class CountryDetector {
 	 */
 	public static final Logger logger = LoggerFactory.getLogger(CountryDetector.class);
 
+	/**
+	 * The countries whose name is also the name of a city (panama,
+	 * singapour), they are not detected
+	 */
+	private static final List<String> EXCLUDED_COUNTRY_CODES = Arrays.asList("SG", "PA");
+
+	/**
+	 * mexico is also a city and a state, the names that contains it are not
+	 * detected
+	 */
+	private static final String EXCLUDED_NAME = "mexico";
+
+	/**
+	 * The names with regex characters other than the dot (parenthesis,
+	 * brackets,...) were used as patterns and never matched the address, they
+	 * are not detected
+	 */
+	private static final String REGEX_CHARACTERS = "\\[](){}?*+|^$";
+
+	private static Node defaultRoot;
+
+	private final Node root;
+
+	/**
+	 * Detect the countries of {@link CountriesStaticData}
+	 */
+	public CountryDetector() {
+		this.root = getDefaultRoot();
+	}
+
+	/**
+	 * @param countryCodesSortedByPopularity
+	 *            the country codes to detect, the first ones win
+	 * @param countryAlternateNames
+	 *            the lower case names of the countries, sorted by length
+	 *            (longest first), keyed by upper case country code
+	 */
+	CountryDetector(List<String> countryCodesSortedByPopularity, Map<String, List<String>> countryAlternateNames) {
+		this.root = buildTrie(countryCodesSortedByPopularity, countryAlternateNames);
+	}
+
+	private static synchronized Node getDefaultRoot() {
+		if (defaultRoot == null) {
+			defaultRoot = buildTrie(CountriesStaticData.countryCodeSortedByPopularity, CountriesStaticData.countryAlternateNames);
+		}
+		return defaultRoot;
+	}
+
 	 public CountryDetectorDto detectAndRemoveCountry(String address) {
-		 for (String countryCode: com.gisgraphy.helper.CountriesStaticData.countryCodeSortedByPopularity){
-	    	if (countryCode == null || "SG".equalsIgnoreCase(countryCode) || "PA".equalsIgnoreCase(countryCode)) {
-	    		// shortcut for specific country that got countryname and city is
-	    		// the same (panama, singapour
-	    		continue;
-	    	}
-	    	List<String> alternateNames = CountriesStaticData.countryAlternateNames.get(countryCode.toUpperCase());
-	    	if (alternateNames != null) {
-	    		String sanitarizeAddress = address.replaceAll("[\\s\\-\\']+", " ").trim().toLowerCase();
-	    		for (String alternateName : alternateNames) {
-	    			if (alternateName!=null && alternateName.toLowerCase().contains("mexico")){
-	    				 //special case for mexico =>we should not remove because it is also a city and a sate
-	    				continue;
-	    			}
-	    			if (sanitarizeAddress.endsWith(alternateName.toLowerCase())) {
-	    				//String pattern = "(?i)" + alternateName + "\\s*$";
-	    				Matcher matcher = Pattern.compile("(?i)" + alternateName + "\\s*$").matcher(sanitarizeAddress);
-	    				if (matcher.find()){
-	    					int index = matcher.start();
-	    					String result = address.substring(0, index).trim();
-	    					if (result != null && Pattern.matches(".*[,-]$", result) ){
-	    						result = result.substring(0, result.length()-1).trim();
-	    					}
-	    					logger.info("'"+alternateName +"' has been detected as a country name and removed from "+address +" : "+result);
-	    					return new CountryDetectorDto(result, countryCode);
-	    				}
-	    			}
-	    		}
-	    	}
-
-	    }
-		 return new CountryDetectorDto(address, null);
+		if (address == null) {
+			return new CountryDetectorDto(address, null);
+		}
+		//the address is compared as if the separators were replaced by one space, trimmed and in lower case
+		int end = address.length();
+		while (end > 0 && (isSeparator(address.charAt(end - 1)) || address.charAt(end - 1) <= ' ')) {
+			end--;
+		}
+		Node node = root;
+		Node best = null;
+		int bestStart = -1;
+		int position = end;
+		while (position > 0) {
+			char c = address.charAt(position - 1);
+			char folded;
+			int next = position - 1;
+			if (isSeparator(c)) {
+				folded = ' ';
+				while (next > 0 && isSeparator(address.charAt(next - 1))) {
+					next--;
+				}
+			} else {
+				folded = fold(c);
+			}
+			node = node.getChild(folded);
+			if (node == null) {
+				break;
+			}
+			position = next;
+			if (node.name != null && (best == null || node.order < best.order)) {
+				best = node;
+				bestStart = position;
+			}
+		}
+		if (best == null) {
+			return new CountryDetectorDto(address, null);
+		}
+		String result = address.substring(0, bestStart).trim();
+		if (result.length() > 0 && (result.charAt(result.length() - 1) == ',' || result.charAt(result.length() - 1) == '-')) {
+			result = result.substring(0, result.length() - 1).trim();
+		}
+		logger.info("'" + best.name + "' has been detected as a country name and removed from " + address + " : " + result);
+		return new CountryDetectorDto(result, best.countryCode);
 	 }
+
+	static Node buildTrie(List<String> countryCodesSortedByPopularity, Map<String, List<String>> countryAlternateNames) {
+		Node root = new Node();
+		int order = 0;
+		for (String countryCode : countryCodesSortedByPopularity) {
+			if (countryCode == null || EXCLUDED_COUNTRY_CODES.contains(countryCode.toUpperCase())) {
+				continue;
+			}
+			List<String> alternateNames = countryAlternateNames.get(countryCode.toUpperCase());
+			if (alternateNames == null) {
+				continue;
+			}
+			for (String alternateName : alternateNames) {
+				order++;
+				if (alternateName == null || alternateName.length() == 0 || alternateName.toLowerCase().contains(EXCLUDED_NAME)
+						|| containsRegexCharacter(alternateName)) {
+					continue;
+				}
+				Node node = root;
+				for (int i = alternateName.length() - 1; i >= 0; i--) {
+					node = node.getOrCreateChild(fold(alternateName.charAt(i)));
+				}
+				//the first name (most popular country, longest name) wins
+				if (node.name == null) {
+					node.name = alternateName;
+					node.countryCode = countryCode;
+					node.order = order;
+				}
+			}
+		}
+		return root;
+	}
+
+	private static boolean containsRegexCharacter(String name) {
+		for (int i = 0; i < name.length(); i++) {
+			if (REGEX_CHARACTERS.indexOf(name.charAt(i)) != -1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true for the characters that the names don't contain, a run of
+	 *         them is read as one space : the whitespaces, the hyphen and the
+	 *         apostrophe
+	 */
+	private static boolean isSeparator(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r' || c == '-' || c == '\'';
+	}
+
+	private static char fold(char c) {
+		char lowerCase = Character.toLowerCase(c);
+		//the final sigma is a sigma
+		return lowerCase == 'ς' ? 'σ' : lowerCase;
+	}
+
+	/**
+	 * A node of the trie, the children are sorted by character
+	 */
+	static final class Node {
+
+		private static final char[] NO_CHARACTER = new char[0];
+
+		private static final Node[] NO_NODE = new Node[0];
+
+		private char[] characters = NO_CHARACTER;
+
+		private Node[] children = NO_NODE;
+
+		/**
+		 * The name that ends at this node, null if none
+		 */
+		private String name;
+
+		private String countryCode;
+
+		private int order;
+
+		Node getChild(char c) {
+			int index = Arrays.binarySearch(characters, c);
+			return index < 0 ? null : children[index];
+		}
+
+		Node getOrCreateChild(char c) {
+			int index = Arrays.binarySearch(characters, c);
+			if (index >= 0) {
+				return children[index];
+			}
+			int insertion = -index - 1;
+			char[] newCharacters = new char[characters.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(characters, 0, newCharacters, 0, insertion);
+			System.arraycopy(children, 0, newChildren, 0, insertion);
+			newCharacters[insertion] = c;
+			newChildren[insertion] = new Node();
+			System.arraycopy(characters, insertion, newCharacters, insertion + 1, characters.length - insertion);
+			System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+			characters = newCharacters;
+			children = newChildren;
+			return newChildren[insertion];
+		}
+	}
 }
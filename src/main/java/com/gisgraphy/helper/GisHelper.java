@@ -29,7 +29,11 @@ import com.gisgraphy.domain.geoloc.entity.GisFeature;
 import com.gisgraphy.domain.valueobject.Constants;
 import com.gisgraphy.domain.valueobject.FeatureCode;
 import com.gisgraphy.domain.valueobject.SRID;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.PrecisionModel;
 
 /**
  * Provides useful methods for geolocalisation
@@ -44,6 +48,8 @@ public class GisHelper {
     private static final String INTERSECTION = "&&";
     private static final String BBOX = "BOX3D";
     
+    private static final GeometryFactory WGS84_FACTORY = new GeometryFactory(new PrecisionModel(), SRID.WGS84_SRID.getSRID());
+    
     /**
      * The logger
      */
@@ -213,9 +219,54 @@ if (Double.isNaN(maxY)){minX=lat;}
 	return sb.toString();
 
     }
-    
-   
-    
-  
+
+    /**
+     * @param latInDegree
+     *                the latitude in degree
+     * @param longInDegree
+     *                the longitude in degree
+     * @param distance
+     *                the boundingbox distance in meters
+     * @return the coordinates of the bounding box as {minX, minY, maxX,
+     *         maxY}, in degrees, in order to bind them as parameters of a
+     *         query (see {@link #getBoundingBox(String, double, double, double)}
+     *         for the sql version)
+     */
+    public static double[] getBoundingBoxCoordinates(double latInDegree, double longInDegree,
+	    double distance) {
+	double lat = Math.toRadians(latInDegree);
+	double deltaXInDegrees = Math.toDegrees(Math.abs(Math.asin(Math.sin(distance
+		/ Constants.RADIUS_OF_EARTH_IN_METERS)
+		/ Math.cos(lat))));
+	if (Double.isNaN(deltaXInDegrees)) {
+	    //near the poles, the bounding box covers all the longitudes
+	    deltaXInDegrees = 180;
+	}
+	double deltaYInDegrees = Math.toDegrees(Math.abs(distance
+		/ Constants.RADIUS_OF_EARTH_IN_METERS));
+	return new double[] { longInDegree - deltaXInDegrees,
+		latInDegree - deltaYInDegrees, longInDegree + deltaXInDegrees,
+		latInDegree + deltaYInDegrees };
+    }
+
+    /**
+     * @param latInDegree
+     *                the latitude in degree
+     * @param longInDegree
+     *                the longitude in degree
+     * @param distance
+     *                the boundingbox distance in meters
+     * @return the bounding box as a geometry (in {@link SRID#WGS84_SRID}), in
+     *         order to bind it as a parameter of a query
+     * @see #getBoundingBoxCoordinates(double, double, double)
+     */
+    public static Geometry createBoundingBox(double latInDegree, double longInDegree,
+	    double distance) {
+	double[] coordinates = getBoundingBoxCoordinates(latInDegree, longInDegree, distance);
+	Geometry boundingBox = WGS84_FACTORY.toGeometry(new Envelope(coordinates[0],
+		coordinates[2], coordinates[1], coordinates[3]));
+	boundingBox.setSRID(SRID.WGS84_SRID.getSRID());
+	return boundingBox;
+    }
 
 }
@@ -0,0 +1,320 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.helper;
+
+import java.util.regex.Matcher;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 
+ * Compare names with the tolerance of
+ * {@link StringHelper#isSameName(String, String, int)}.
+ * <p>
+ * A name is parsed once in a {@link Name} : the city words are removed, the
+ * name is tokenized and the words that count are normalized. The comparison
+ * of two parsed names is then done on the normalized words and doesn't
+ * allocate anything. The name that is searched is typically parsed once with
+ * {@link #expected(String)} and compared to the names of every candidates
+ * parsed with {@link #actual(String)}.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ * 
+ */
+public class NameMatcher {
+
+	private static final ThreadLocal<Name> EXPECTED_BUFFER = new ThreadLocal<Name>() {
+		@Override
+		protected Name initialValue() {
+			return new Name(false);
+		}
+	};
+
+	private static final ThreadLocal<Name> ACTUAL_BUFFER = new ThreadLocal<Name>() {
+		@Override
+		protected Name initialValue() {
+			return new Name(true);
+		}
+	};
+
+	private NameMatcher() {
+	}
+
+	/**
+	 * @param name
+	 *            the name that is searched, not null
+	 * @return the parsed name, to be compared with
+	 *         {@link Name#matches(Name, int)}
+	 */
+	public static Name expected(String name) {
+		return new Name(false).parse(name);
+	}
+
+	/**
+	 * @param name
+	 *            the name of a candidate, not null
+	 * @return the parsed name, to be given to {@link Name#matches(Name, int)}
+	 */
+	public static Name actual(String name) {
+		return new Name(true).parse(name);
+	}
+
+	/**
+	 * @return the expected name parsed in the buffer of the current thread, it
+	 *         is overwritten by the next call
+	 */
+	static Name expectedBuffer(String name) {
+		return EXPECTED_BUFFER.get().parse(name);
+	}
+
+	/**
+	 * @return the actual name parsed in the buffer of the current thread, it
+	 *         is overwritten by the next call
+	 */
+	static Name actualBuffer(String name) {
+		return ACTUAL_BUFFER.get().parse(name);
+	}
+
+	/**
+	 * A parsed name. The expected and the actual names are not parsed the same
+	 * way : the city words are trimmed and the short numeric words are kept
+	 * only for the actual name.
+	 */
+	public static final class Name {
+
+		private final boolean actual;
+
+		/**
+		 * The name without the city words
+		 */
+		private String stripped;
+
+		/**
+		 * The number of words the name is split in (empty ones included)
+		 */
+		private int splitCount;
+
+		/**
+		 * The normalized words that are compared
+		 */
+		private String[] words = new String[8];
+
+		private int wordCount;
+
+		/**
+		 * The number of 'st' words, they are compared as the saint / santa
+		 * word of the other name
+		 */
+		private int stCount;
+
+		/**
+		 * The first saint / santa word, lowercased
+		 */
+		private String synonym;
+
+		private int[] bounds = new int[16];
+
+		private Name(boolean actual) {
+			this.actual = actual;
+		}
+
+		private Name parse(String name) {
+			stripped = name;
+			Matcher matcherCity = StringHelper.CITY_PATTERN.matcher(name);
+			if (matcherCity.find()) {
+				stripped = name.substring(0, matcherCity.start()) + name.substring(matcherCity.end());
+				if (actual) {
+					stripped = stripped.trim();
+				}
+			}
+			Matcher matcherSynonym = StringHelper.SYNONYMS_PATTERN.matcher(stripped);
+			synonym = matcherSynonym.find() ? matcherSynonym.group(1).toLowerCase() : null;
+
+			String punctuationFree = StringHelper.removePunctuation(stripped);
+			splitCount = split(punctuationFree);
+			wordCount = 0;
+			stCount = 0;
+			for (int i = 0; i < splitCount; i++) {
+				int start = bounds[2 * i];
+				int end = bounds[2 * i + 1];
+				int length = end - start;
+				if (length > 3) {
+					addWord(normalize(punctuationFree, start, end));
+				} else if (length == 2 && punctuationFree.charAt(start) == 's' && punctuationFree.charAt(start + 1) == 't') {
+					stCount++;
+				} else if (actual && isNumeric(punctuationFree, start, end)) {
+					addWord(normalize(punctuationFree, start, end));
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * @return true if the word is empty or has only digits, as
+		 *         {@link StringUtils#isNumeric(String)}
+		 */
+		private boolean isNumeric(String name, int start, int end) {
+			for (int i = start; i < end; i++) {
+				if (!Character.isDigit(name.charAt(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return the word normalized as {@link StringHelper#normalize(String)}
+		 *         does, the words in printable ascii have no accent nor
+		 *         punctuation and are only lowercased
+		 */
+		private String normalize(String name, int start, int end) {
+			for (int i = start; i < end; i++) {
+				char c = name.charAt(i);
+				if (c <= ' ' || c >= 127) {
+					return StringHelper.normalize(name.substring(start, end));
+				}
+			}
+			return name.substring(start, end).toLowerCase();
+		}
+
+		/**
+		 * Split the name as {@link String#split(String)} does : the empty
+		 * words are kept except the trailing ones
+		 * 
+		 * @return the number of words, their bounds are in {@link #bounds}
+		 */
+		private int split(String name) {
+			int count = 0;
+			int start = 0;
+			for (int i = 0; i < name.length(); i++) {
+				if (isDelimiter(name.charAt(i))) {
+					count = addBounds(count, start, i);
+					start = i + 1;
+				}
+			}
+			if (count == 0) {
+				return addBounds(count, 0, name.length());
+			}
+			count = addBounds(count, start, name.length());
+			while (count > 0 && bounds[2 * count - 2] == bounds[2 * count - 1]) {
+				count--;
+			}
+			return count;
+		}
+
+		private boolean isDelimiter(char c) {
+			switch (c) {
+			case ',':
+			case ' ':
+			case '\t':
+			case '\n':
+			case '\u000B':
+			case '\f':
+			case '\r':
+			case '-':
+			case '–':
+			case '一':
+			case '/':
+				return true;
+			case ';':
+				return actual;
+			default:
+				return false;
+			}
+		}
+
+		private int addBounds(int count, int start, int end) {
+			if (2 * count + 1 >= bounds.length) {
+				int[] newBounds = new int[bounds.length * 2];
+				System.arraycopy(bounds, 0, newBounds, 0, bounds.length);
+				bounds = newBounds;
+			}
+			bounds[2 * count] = start;
+			bounds[2 * count + 1] = end;
+			return count + 1;
+		}
+
+		private void addWord(String word) {
+			if (wordCount == words.length) {
+				String[] newWords = new String[words.length * 2];
+				System.arraycopy(words, 0, newWords, 0, words.length);
+				words = newWords;
+			}
+			words[wordCount++] = word;
+		}
+
+		private boolean contains(String word, String otherSynonym) {
+			for (int i = 0; i < wordCount; i++) {
+				if (words[i].equals(word)) {
+					return true;
+				}
+			}
+			return stCount > 0 && otherSynonym != null && otherSynonym.equals(word);
+		}
+
+		/**
+		 * @param actualName
+		 *            the parsed name of a candidate
+		 * @param tolerance
+		 *            the number of word that can be missing if there is more
+		 *            than two words specified
+		 * @return true if this expected name and the actual one are the same,
+		 *         see {@link StringHelper#isSameName(String, String, int)}
+		 */
+		public boolean matches(Name actualName, int tolerance) {
+			if (actual || !actualName.actual) {
+				throw new IllegalArgumentException("an expected name should be compared to an actual one");
+			}
+			if (actualName.stripped.equalsIgnoreCase(stripped)) {
+				return true;
+			}
+			if (Math.abs(actualName.splitCount - splitCount) >= 2) {
+				return false;
+			}
+			//saint jean is not saint jean de luz, but 'la petite maison' is ok for 'petite maison'
+			int actualSize = actualName.wordCount + (synonym != null ? actualName.stCount : 0);
+			int expectedSize = wordCount + (actualName.synonym != null ? stCount : 0);
+			if (actualSize != expectedSize) {
+				return false;
+			}
+			if (actualSize == 0) {
+				return true;
+			}
+			int countMissing = 0;
+			for (int i = 0; i < actualName.wordCount; i++) {
+				if (!contains(actualName.words[i], actualName.synonym)) {
+					countMissing++;
+				}
+			}
+			if (synonym != null && actualName.stCount > 0 && !contains(synonym, actualName.synonym)) {
+				countMissing += actualName.stCount;
+			}
+			if ((expectedSize == 1 || expectedSize == 2) && countMissing > 0) {
+				//if one or two words, every words should be present
+				return false;
+			}
+			return countMissing <= tolerance;
+		}
+	}
+
+}
@@ -0,0 +1,457 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Decompress a bzip2 stream with several threads. The compressed blocks are
+ * found by their magic number (they are not aligned on bytes), each block is
+ * copied in a standalone bzip2 stream and decompressed by a worker, and the
+ * blocks are returned in order. Concatenated streams (e.g. files compressed
+ * by pbzip2) are supported.
+ * <p>
+ * The magic number of a block can appear by chance in the compressed data :
+ * when a block can not be decompressed, it is merged with the following ones
+ * and decompressed again.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class ParallelBZip2InputStream extends InputStream {
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+    private static final long MAGIC_MASK = 0xFFFFFFFFFFFFL;
+
+    private static final int MAGIC_BITS = 48;
+
+    private static final int CRC_BITS = 32;
+
+    /**
+     * the maximum number of bits between the end of stream magic and the next
+     * block magic (or the end of the input) : the stream crc, the padding and
+     * the header of the next stream
+     */
+    private static final int MAX_END_OF_STREAM_BITS = MAGIC_BITS + CRC_BITS + 7 + 32;
+
+    /**
+     * the header of the standalone streams, with the biggest block size so
+     * that any block can be decompressed
+     */
+    private static final byte[] STREAM_HEADER = new byte[] { 'B', 'Z', 'h', '9' };
+
+    /**
+     * the maximum number of blocks merged when a block can not be
+     * decompressed
+     */
+    private static final int MAX_MERGED_BLOCKS = 4;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+
+    private final InputStream in;
+
+    private final ExecutorService executor;
+
+    private final int maxPendingBlocks;
+
+    private final LinkedList<Block> pendingBlocks = new LinkedList<Block>();
+
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+    /**
+     * the bytes read since the one that contains the start of the current
+     * block
+     */
+    private byte[] raw = new byte[READ_BUFFER_SIZE];
+
+    private int rawLength = 0;
+
+    /**
+     * the position of the current block in {@link #raw}, in bits, -1 if no
+     * block has been found yet
+     */
+    private long blockStart = -1;
+
+    /**
+     * the position of the last end of stream magic in {@link #raw}, in bits,
+     * -1 if there is none after the start of the current block
+     */
+    private long endOfStream = -1;
+
+    private long window = 0;
+
+    private boolean endOfInput = false;
+
+    private byte[] current = new byte[0];
+
+    private int position = 0;
+
+    private boolean closed = false;
+
+    /**
+     * @param in
+     *            the compressed stream
+     * @param threads
+     *            the number of threads that decompress the blocks
+     * @throws IOException
+     *             if the stream is not a bzip2 stream
+     */
+    public ParallelBZip2InputStream(InputStream in, int threads) throws IOException {
+	if (threads < 1) {
+	    throw new IllegalArgumentException("the number of threads should be greater than 0");
+	}
+	this.in = in;
+	for (int i = 0; i < 3; i++) {
+	    if (in.read() != STREAM_HEADER[i]) {
+		throw new IOException("the stream is not a bzip2 stream");
+	    }
+	}
+	this.maxPendingBlocks = threads * 2;
+	this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+	    public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "bzip2-decompressor-" + threadNumber.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+    }
+
+    @Override
+    public int read() throws IOException {
+	byte[] single = new byte[1];
+	int read = read(single, 0, 1);
+	return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+	if (closed) {
+	    throw new IOException("the stream is closed");
+	}
+	if (length == 0) {
+	    return 0;
+	}
+	while (position == current.length) {
+	    if (!nextBlock()) {
+		return -1;
+	    }
+	}
+	int read = Math.min(length, current.length - position);
+	System.arraycopy(current, position, buffer, offset, read);
+	position += read;
+	return read;
+    }
+
+    @Override
+    public int available() {
+	return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+	if (!closed) {
+	    closed = true;
+	    executor.shutdownNow();
+	    pendingBlocks.clear();
+	    in.close();
+	}
+    }
+
+    private boolean nextBlock() throws IOException {
+	fill();
+	if (pendingBlocks.isEmpty()) {
+	    return false;
+	}
+	Block block = pendingBlocks.removeFirst();
+	try {
+	    current = block.result.get();
+	} catch (ExecutionException e) {
+	    current = decompressMerged(block, e.getCause());
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException("the decompression has been interrupted");
+	}
+	position = 0;
+	return true;
+    }
+
+    /**
+     * the block has been split by a magic number found by chance in its
+     * compressed data : merge it with the next blocks
+     */
+    private byte[] decompressMerged(Block block, Throwable cause) throws IOException {
+	List<Block> parts = new ArrayList<Block>();
+	parts.add(block);
+	while (parts.size() < MAX_MERGED_BLOCKS) {
+	    fill();
+	    if (pendingBlocks.isEmpty()) {
+		break;
+	    }
+	    Block next = pendingBlocks.removeFirst();
+	    next.result.cancel(false);
+	    parts.add(next);
+	    try {
+		return decompress(toStandaloneStream(parts));
+	    } catch (IOException e) {
+		//try with one more block
+	    }
+	}
+	IOException exception = new IOException("invalid bzip2 block : " + (cause == null ? "" : cause.getMessage()));
+	exception.initCause(cause);
+	throw exception;
+    }
+
+    /**
+     * read the input until enough blocks are being decompressed
+     */
+    private void fill() throws IOException {
+	while (!endOfInput && pendingBlocks.size() < maxPendingBlocks) {
+	    int read = in.read(readBuffer);
+	    if (read == -1) {
+		endOfInput = true;
+		if (blockStart != -1) {
+		    submit(rawLength * 8L);
+		}
+		break;
+	    }
+	    for (int i = 0; i < read; i++) {
+		append(readBuffer[i]);
+	    }
+	}
+    }
+
+    private void append(byte value) {
+	if (rawLength == raw.length) {
+	    raw = Arrays.copyOf(raw, raw.length * 2);
+	}
+	raw[rawLength++] = value;
+	long magicStart = -1;
+	boolean blockMagic = false;
+	for (int bit = 7; bit >= 0; bit--) {
+	    window = ((window << 1) | ((value >>> bit) & 1)) & MAGIC_MASK;
+	    if (window == BLOCK_MAGIC || window == END_OF_STREAM_MAGIC) {
+		//two magic numbers can not start in the same byte
+		magicStart = rawLength * 8L - bit - MAGIC_BITS;
+		blockMagic = window == BLOCK_MAGIC;
+	    }
+	}
+	if (magicStart == -1) {
+	    if (blockStart == -1 && rawLength > MAGIC_BITS) {
+		//no block yet, only the last bytes may contain the start of a magic
+		System.arraycopy(raw, rawLength - 8, raw, 0, 8);
+		rawLength = 8;
+	    }
+	} else if (blockMagic) {
+	    if (blockStart != -1) {
+		submit(magicStart);
+	    }
+	    int firstByte = (int) (magicStart >>> 3);
+	    System.arraycopy(raw, firstByte, raw, 0, rawLength - firstByte);
+	    rawLength -= firstByte;
+	    blockStart = magicStart & 7;
+	    endOfStream = -1;
+	} else if (blockStart != -1) {
+	    endOfStream = magicStart;
+	}
+    }
+
+    /**
+     * submit the current block, that ends at the given position
+     */
+    private void submit(long end) {
+	long dataEnd = end;
+	if (endOfStream != -1 && end - endOfStream <= MAX_END_OF_STREAM_BITS) {
+	    dataEnd = endOfStream;
+	}
+	final Block block = new Block(Arrays.copyOf(raw, (int) ((end + 7) >>> 3)), blockStart, dataEnd, end);
+	block.result = executor.submit(new Callable<byte[]>() {
+	    public byte[] call() throws Exception {
+		List<Block> parts = new ArrayList<Block>(1);
+		parts.add(block);
+		return decompress(toStandaloneStream(parts));
+	    }
+	});
+	pendingBlocks.add(block);
+    }
+
+    static byte[] decompress(byte[] stream) throws IOException {
+	InputStream decompressor = new BZip2CompressorInputStream(new ByteArrayInputStream(stream));
+	try {
+	    ByteArrayOutputStream out = new ByteArrayOutputStream(stream.length * 4);
+	    byte[] buffer = new byte[READ_BUFFER_SIZE];
+	    int read;
+	    while ((read = decompressor.read(buffer)) != -1) {
+		out.write(buffer, 0, read);
+	    }
+	    return out.toByteArray();
+	} finally {
+	    decompressor.close();
+	}
+    }
+
+    /**
+     * @return a bzip2 stream with the header, the data of the blocks (the
+     *         separators between them included), the end of stream magic and
+     *         the crc of the first block as the crc of the stream
+     */
+    static byte[] toStandaloneStream(List<Block> parts) {
+	BitWriter writer = new BitWriter();
+	for (byte header : STREAM_HEADER) {
+	    writer.writeBits(header, 8);
+	}
+	for (int i = 0; i < parts.size(); i++) {
+	    Block part = parts.get(i);
+	    writer.writeBits(part.raw, part.start, i == parts.size() - 1 ? part.dataEnd : part.end);
+	}
+	Block first = parts.get(0);
+	writer.writeBits(END_OF_STREAM_MAGIC >>> 24, 24);
+	writer.writeBits(END_OF_STREAM_MAGIC & 0xFFFFFF, 24);
+	writer.writeBits(BitWriter.readBits(first.raw, first.start + MAGIC_BITS, CRC_BITS), CRC_BITS);
+	return writer.toByteArray();
+    }
+
+    /**
+     * the bits of a block, and the result of its decompression
+     */
+    static final class Block {
+	private final byte[] raw;
+	private final long start;
+	private final long dataEnd;
+	private final long end;
+	private volatile Future<byte[]> result;
+
+	/**
+	 * @param raw
+	 *            the bytes that contain the block
+	 * @param start
+	 *            the position of the block magic, in bits
+	 * @param dataEnd
+	 *            the position of the end of the block data, in bits
+	 * @param end
+	 *            the position of the next block magic or of the end of the
+	 *            input, in bits
+	 */
+	Block(byte[] raw, long start, long dataEnd, long end) {
+	    this.raw = raw;
+	    this.start = start;
+	    this.dataEnd = dataEnd;
+	    this.end = end;
+	}
+    }
+
+    /**
+     * write bits in a byte array, most significant bit first
+     */
+    static final class BitWriter {
+	private byte[] out = new byte[READ_BUFFER_SIZE];
+	private int length = 0;
+	private long accumulator = 0;
+	private int accumulatedBits = 0;
+
+	/**
+	 * write the given number (at most 32) of low bits of the value
+	 */
+	void writeBits(long value, int numberOfBits) {
+	    accumulator = (accumulator << numberOfBits) | (value & ((1L << numberOfBits) - 1));
+	    accumulatedBits += numberOfBits;
+	    while (accumulatedBits >= 8) {
+		accumulatedBits -= 8;
+		put((int) (accumulator >>> accumulatedBits));
+	    }
+	    accumulator &= (1L << accumulatedBits) - 1;
+	}
+
+	/**
+	 * write the bits of the source from the given position (inclusive) to
+	 * the given one (exclusive)
+	 */
+	void writeBits(byte[] source, long from, long to) {
+	    long bit = from;
+	    while (bit < to && (bit & 7) != 0) {
+		writeBits(readBits(source, bit, 1), 1);
+		bit++;
+	    }
+	    int index = (int) (bit >>> 3);
+	    long fullBytes = (to - bit) >>> 3;
+	    for (long i = 0; i < fullBytes; i++) {
+		writeBits(source[index++] & 0xFF, 8);
+	    }
+	    bit += fullBytes * 8;
+	    while (bit < to) {
+		writeBits(readBits(source, bit, 1), 1);
+		bit++;
+	    }
+	}
+
+	/**
+	 * @return the written bytes, the last one padded with zeros
+	 */
+	byte[] toByteArray() {
+	    if (accumulatedBits > 0) {
+		writeBits(0, 8 - accumulatedBits);
+	    }
+	    return Arrays.copyOf(out, length);
+	}
+
+	private void put(int value) {
+	    if (length == out.length) {
+		out = Arrays.copyOf(out, out.length * 2);
+	    }
+	    out[length++] = (byte) value;
+	}
+
+	/**
+	 * @return the given number (at most 32) of bits of the source from the
+	 *         given position
+	 */
+	static long readBits(byte[] source, long from, int numberOfBits) {
+	    long value = 0;
+	    for (long bit = from; bit < from + numberOfBits; bit++) {
+		value = (value << 1) | ((source[(int) (bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+	    }
+	    return value;
+	}
+    }
+
+}
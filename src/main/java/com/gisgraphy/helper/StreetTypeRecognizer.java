@@ -0,0 +1,245 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.helper;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Recognize the street types of a text, word by word, without regex.
+ * <p>
+ * The text is read once from left to right and cut in words (the runs of
+ * letters, digits, '_' and of the marks of a letter, as for \b in a regex).
+ * A word is a street type if it is one of the street types, or if it ends
+ * with one of the ending street types (e.g : 'straße' for
+ * 'Stauffenbergstraße'). The street types are put in a trie, and the ending
+ * ones in a trie of the reversed types that is read from the end of the word,
+ * so that each character is read at most twice whatever the number of types.
+ * <p>
+ * It finds the same street types as the case insensitive regex
+ * <code>(\btype1\b|\btype2\b|...|endingType1\b|endingType2\b|...)</code>. The
+ * types must only contain letters.
+ * <p>
+ * The recognizer is immutable and thread safe.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ * 
+ */
+public class StreetTypeRecognizer {
+
+	private final Node types = new Node();
+
+	private final Node reversedEndingTypes = new Node();
+
+	private final boolean unicodeCase;
+
+	/**
+	 * @param streetTypes
+	 *            the types that are a whole word (e.g : 'rue', 'street'),
+	 *            not null
+	 * @param endingStreetTypes
+	 *            the types that are a whole word or that end a word (e.g :
+	 *            'straße'), not null
+	 * @param unicodeCase
+	 *            true to ignore the case of all the letters as
+	 *            {@link java.util.regex.Pattern#UNICODE_CASE}, false to ignore
+	 *            the case of the US-ASCII letters only
+	 */
+	public StreetTypeRecognizer(Collection<String> streetTypes, Collection<String> endingStreetTypes, boolean unicodeCase) {
+		if (streetTypes == null || endingStreetTypes == null) {
+			throw new IllegalArgumentException("the street types are mandatory for a street type recognizer");
+		}
+		this.unicodeCase = unicodeCase;
+		for (String streetType : streetTypes) {
+			Node node = types;
+			for (int i = 0; i < streetType.length(); i++) {
+				node = node.getOrCreateChild(fold(streetType.charAt(i)));
+			}
+			node.streetType = true;
+		}
+		for (String endingStreetType : endingStreetTypes) {
+			Node node = reversedEndingTypes;
+			for (int i = endingStreetType.length() - 1; i >= 0; i--) {
+				node = node.getOrCreateChild(fold(endingStreetType.charAt(i)));
+			}
+			node.streetType = true;
+		}
+	}
+
+	/**
+	 * @param word
+	 *            a word
+	 * @return true if the word is one of the street types or of the ending
+	 *         street types (the case is ignored)
+	 */
+	public boolean isStreetType(CharSequence word) {
+		if (word == null || word.length() == 0) {
+			return false;
+		}
+		return findStreetType(word, 0, word.length(), true) == 0;
+	}
+
+	/**
+	 * Find the next street type of a text
+	 * 
+	 * @param text
+	 *            the text to search, not null
+	 * @param from
+	 *            the index to start from, typically 0 or the end of the
+	 *            previous street type
+	 * @param bounds
+	 *            an array of two elements that is filled with the start and
+	 *            the end (exclusive) of the street type that is found
+	 * @return true if a street type has been found
+	 */
+	public boolean find(CharSequence text, int from, int[] bounds) {
+		int length = text.length();
+		int index = from;
+		while (index < length) {
+			while (index < length && !isWordCharacter(text, index)) {
+				index += Character.charCount(Character.codePointAt(text, index));
+			}
+			if (index >= length) {
+				return false;
+			}
+			int start = index;
+			//a word that starts before 'from' can only end with a type
+			boolean wholeWord = start == 0 || !isWordCharacter(text, start - Character.charCount(Character.codePointBefore(text, start)));
+			while (index < length && isWordCharacter(text, index)) {
+				index += Character.charCount(Character.codePointAt(text, index));
+			}
+			int streetTypeStart = findStreetType(text, start, index, wholeWord);
+			if (streetTypeStart >= 0) {
+				bounds[0] = streetTypeStart;
+				bounds[1] = index;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the start of the street type of the word between start and end,
+	 *         or -1 if the word is not a street type. It is the start of the
+	 *         word if the whole word is a type, else the start of the longest
+	 *         ending type
+	 */
+	private int findStreetType(CharSequence text, int start, int end, boolean wholeWord) {
+		if (wholeWord) {
+			Node node = types;
+			for (int i = start; i < end && node != null; i++) {
+				node = node.getChild(fold(text.charAt(i)));
+			}
+			if (node != null && node.streetType) {
+				return start;
+			}
+		}
+		int streetTypeStart = -1;
+		Node node = reversedEndingTypes;
+		for (int i = end - 1; i >= start; i--) {
+			node = node.getChild(fold(text.charAt(i)));
+			if (node == null) {
+				break;
+			}
+			if (node.streetType) {
+				streetTypeStart = i;
+			}
+		}
+		return streetTypeStart;
+	}
+
+	private char fold(char c) {
+		if (unicodeCase) {
+			return Character.toLowerCase(Character.toUpperCase(c));
+		}
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	/**
+	 * @return true if the character at the index is part of a word, as for
+	 *         \b in a regex : a letter, a digit, '_' or a mark after one of
+	 *         them
+	 */
+	private static boolean isWordCharacter(CharSequence text, int index) {
+		int codePoint = Character.codePointAt(text, index);
+		if (codePoint == '_' || Character.isLetterOrDigit(codePoint)) {
+			return true;
+		}
+		if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+			return false;
+		}
+		for (int i = index - 1; i >= 0; i--) {
+			codePoint = Character.codePointAt(text, i);
+			if (Character.isLetterOrDigit(codePoint)) {
+				return true;
+			}
+			if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A node of the trie, the children are sorted by character
+	 */
+	private static final class Node {
+
+		private static final char[] NO_CHARACTER = new char[0];
+
+		private static final Node[] NO_NODE = new Node[0];
+
+		private char[] characters = NO_CHARACTER;
+
+		private Node[] children = NO_NODE;
+
+		/**
+		 * true if a street type ends at this node
+		 */
+		private boolean streetType;
+
+		Node getChild(char c) {
+			int index = Arrays.binarySearch(characters, c);
+			return index < 0 ? null : children[index];
+		}
+
+		Node getOrCreateChild(char c) {
+			int index = Arrays.binarySearch(characters, c);
+			if (index >= 0) {
+				return children[index];
+			}
+			int insertion = -index - 1;
+			char[] newCharacters = new char[characters.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(characters, 0, newCharacters, 0, insertion);
+			System.arraycopy(children, 0, newChildren, 0, insertion);
+			newCharacters[insertion] = c;
+			newChildren[insertion] = new Node();
+			System.arraycopy(characters, insertion, newCharacters, insertion + 1, characters.length - insertion);
+			System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+			characters = newCharacters;
+			children = newChildren;
+			return newChildren[insertion];
+		}
+	}
+}
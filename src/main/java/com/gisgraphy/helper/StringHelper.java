@@ -26,7 +26,9 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -72,11 +74,21 @@ public class StringHelper {
 	private final static Pattern RN_PATTERN = Pattern.compile("\\b(rn)\\s?(\\d{1,4}\\b)", Pattern.CASE_INSENSITIVE);
 	private final static Pattern ZIPCONCATENATE_2_3_PATTERN = Pattern.compile("(.*)\\s\\b(\\d{2})[\\s-](\\d{3}\\b)");
 	private final static Pattern ZIPCONCATENATE_3_2__PATTERN = Pattern.compile("(.*)\\s\\b(\\d{3})[\\s-](\\d{2}\\b)");
-	private static final Pattern GERMAN_SYNONYM_PATTEN = Pattern.compile("(str\\b)[\\.]?",Pattern.CASE_INSENSITIVE);
+	/**
+	 * The 'str' that end a word (and its optional dot) are replaced by the street type of the country
+	 */
+	private static final StreetTypeRecognizer GERMAN_STREET_TYPE_ABBREVIATION = new StreetTypeRecognizer(Collections.<String>emptyList(), Arrays.asList("str"), false);
 
 	private static final Pattern DIRECTION_PATTERN = Pattern.compile("((?:\\b\\s[sewn]$)|(?:^[sewn]\\b\\s))",Pattern.CASE_INSENSITIVE);
 	
 	private static Decompounder decompounder = new Decompounder();
+
+	private static final ThreadLocal<StringBuilder> OTHER_FORMAT_BUFFER = new ThreadLocal<StringBuilder>(){
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder();
+		}
+	};
 	
 	private static LevenshteinAlgorithm levenstein = new LevenshteinAlgorithm();
 
@@ -229,18 +241,29 @@ public class StringHelper {
 	public static boolean isSameName(String expected, String actual){
 		
 		if (actual!=null && expected!=null){
-			if (decompounder.isDecompoundName(actual)){
-				return isSameName(expected, actual, MISSING_WORD_TOLERANCE) || isSameName(expected, decompounder.getOtherFormat(actual), MISSING_WORD_TOLERANCE);
-			}
-			else {
-				return isSameName(expected,actual,MISSING_WORD_TOLERANCE);
-			}
+			return isSameName(NameMatcher.expectedBuffer(expected), actual);
 		}
 		return false;
 	}
 
+	/**
+	 * @param expected the parsed expected name
+	 * @param actual the actual name, its other format is tried if it is a decompound name
+	 * @return true if the names are the same with the {@link #MISSING_WORD_TOLERANCE}
+	 */
+	private static boolean isSameName(NameMatcher.Name expected, String actual){
+		if (expected.matches(NameMatcher.actualBuffer(actual), MISSING_WORD_TOLERANCE)){
+			return true;
+		}
+		StringBuilder otherFormat = OTHER_FORMAT_BUFFER.get();
+		otherFormat.setLength(0);
+		return decompounder.appendOtherFormat(actual, otherFormat) && expected.matches(NameMatcher.actualBuffer(otherFormat.toString()), MISSING_WORD_TOLERANCE);
+	}
+
 	
 	/**
+	 * The names are parsed in buffers of the current thread, see {@link NameMatcher}
+	 * to parse a name only once when it is compared several times.
 	 * @param expected
 	 * @param actual
 	 * @param tolerance the number of word that can be missing if there is more than two words specified
@@ -248,86 +271,7 @@ public class StringHelper {
 	 */
 	public static boolean isSameName(String expected, String actual,int tolerance){
 		if (actual!=null && expected!=null){
-			//remove some words
-			
-			Matcher matcherCity = CITY_PATTERN.matcher(actual);
-			StringBuffer sb = new StringBuffer();
-			if (matcherCity.find()){
-				matcherCity.appendReplacement(sb, "");
-				matcherCity.appendTail(sb);
-				actual = sb.toString().trim();
-			}
-			
-			matcherCity = CITY_PATTERN.matcher(expected);
-			sb = new StringBuffer();
-			if (matcherCity.find()){
-				matcherCity.appendReplacement(sb, "");
-				matcherCity.appendTail(sb);
-				expected = sb.toString();
-			}
-			if (actual.equalsIgnoreCase(expected)){ //shortcut
-				return true;
-			}
-			
-			//split the strings
-			String[] actualSplited = StringHelper.removePunctuation(actual).split("[,\\s\\-\\–\\一;//]");
-			String[] expectedSplited = StringHelper.removePunctuation(expected).split("[,\\s\\-\\–\\一//]");
-			
-			if (Math.abs(actualSplited.length -expectedSplited.length) >=2){
-				return false;
-			}
-
-			//first we check if actual has more long words than expected
-			//saint jean is not saint jean de luz, but 'la petite maison' is ok for 'petite maison'
-			List<String> actualSplitedLong = new ArrayList<String>();
-			for (String word:actualSplited){
-				if (word.length()>3){
-					if (word!=null){
-						actualSplitedLong.add(normalize(word));
-					}
-				}  else if (word.equals("st")){
-					Matcher m =SYNONYMS_PATTERN.matcher(expected);
-					if (m.find() && m.groupCount()>=1){
-						actualSplitedLong.add(m.group(1).toLowerCase());
-					}
-				} else if (StringUtils.isNumeric(word)){
-					actualSplitedLong.add(normalize(word));
-				}
-			}
-			List<String> expectedSplitedLong = new ArrayList<String>();
-			for (String word:expectedSplited){
-				if (word.length()>3){
-					if (word!=null){
-						expectedSplitedLong.add(normalize(word));
-					}
-				} else if (word.equals("st")){
-					Matcher m =SYNONYMS_PATTERN.matcher(actual);
-					if (m.find()&&m.groupCount()>=1){
-						expectedSplitedLong.add(m.group(1).toLowerCase());
-					}
-				}
-			}
-			if (actualSplitedLong.size() > expectedSplitedLong.size() ){
-				return false;
-			}
-			if (actualSplitedLong.size() < expectedSplitedLong.size() ){
-				return false;
-			}
-			//same number of word but are they the same ?
-			int countMissing = 0;
-			for (String word :actualSplitedLong){
-				if(!expectedSplitedLong.contains(word)){
-					countMissing++;
-				}
-				if (expectedSplitedLong.size() == actualSplitedLong.size() &&  (expectedSplitedLong.size()==1 || expectedSplitedLong.size()==2)  && countMissing >0){
-					//if one or two words, every words should be present
-					return false;
-				} else if (countMissing > tolerance){
-					return false;
-				}
-			}
-
-			return true;
+			return NameMatcher.expectedBuffer(expected).matches(NameMatcher.actualBuffer(actual), tolerance);
 		}
 		return false;
 	}
@@ -525,9 +469,10 @@ public class StringHelper {
 
 	public static boolean isSameAlternateNames(String name, List<String> name_alternates) {
 		if (name_alternates!=null && name !=null){
+			NameMatcher.Name expected = NameMatcher.expectedBuffer(name);
 			for (String nameAlternate:name_alternates){
 				if (nameAlternate!=null){
-					if (isSameName(name, nameAlternate)){
+					if (isSameName(expected, nameAlternate)){
 						return true;
 					}
 				}
@@ -664,30 +609,44 @@ public class StringHelper {
 					}
 			}
 		}
-		StringBuffer sb = new StringBuffer();
-		Matcher m = GERMAN_SYNONYM_PATTEN.matcher(street);
-		  while (m.find()) {
-			if (countryCode!=null){
-				countryCode = countryCode.toUpperCase();
-				if (countryCode.equals("DE")|countryCode.equals("AT")){
-					m.appendReplacement(sb, "straße");
-				} else if (countryCode.equals("NL")){
-					m.appendReplacement(sb, "straat");
-				} else if (countryCode.equals("CH")){
-					m.appendReplacement(sb, "strasse");
-				}else if (countryCode.equals("DK")){
-					m.appendReplacement(sb, "stræde");
-				}else if (countryCode.equals("MD")){
-					m.appendReplacement(sb, "strada");
-				} 
-			}else {
-				//default to straße
-				m.appendReplacement(sb, "straße");
+		String streetType = null;
+		if (countryCode!=null){
+			countryCode = countryCode.toUpperCase();
+			if (countryCode.equals("DE")|countryCode.equals("AT")){
+				streetType = "straße";
+			} else if (countryCode.equals("NL")){
+				streetType = "straat";
+			} else if (countryCode.equals("CH")){
+				streetType = "strasse";
+			}else if (countryCode.equals("DK")){
+				streetType = "stræde";
+			}else if (countryCode.equals("MD")){
+				streetType = "strada";
+			} 
+		}else {
+			//default to straße
+			streetType = "straße";
+		}
+		if (streetType == null){
+			return street;
+		}
+		StringBuilder sb = null;
+		int[] bounds = new int[2];
+		int end = 0;
+		while (GERMAN_STREET_TYPE_ABBREVIATION.find(street, end, bounds)) {
+			if (sb == null){
+				sb = new StringBuilder(street.length() + 8);
+			}
+			sb.append(street, end, bounds[0]).append(streetType);
+			end = bounds[1];
+			if (end < street.length() && street.charAt(end)=='.'){
+				end++;
 			}
 		}
-		m.appendTail(sb);
-		String s = sb.toString();
-		return s;
+		if (sb == null){
+			return street;
+		}
+		return sb.append(street, end, street.length()).toString();
 	}
 	
 
@@ -753,6 +712,8 @@ public class StringHelper {
     	 }
      };
      
+     private static final StreetTypeRecognizer DE_STREET_TYPE_RECOGNIZER = new StreetTypeRecognizer(DE_STREETTYPE_LIST_AFTER_NORMALIZATION, Collections.<String>emptyList(), true);
+     
      
      public static String removeStreetType(String street,String countryCode){
     	 if (street==null){
@@ -821,7 +782,7 @@ public class StringHelper {
  					hasPoint=true;
  				}
  				if (lastword !=null) {
- 					if (DE_STREETTYPE_LIST_AFTER_NORMALIZATION.contains(lastword.toLowerCase())){
+ 					if (DE_STREET_TYPE_RECOGNIZER.isStreetType(lastword)){
  						String toReplace = hasPoint?lastword+".":lastword;
  						return street.replaceFirst(toReplace, "").trim();
  					}
@@ -835,7 +796,7 @@ public class StringHelper {
  					hasPoint=true;
  				}
  				if (lastword !=null) {
- 					if (DE_STREETTYPE_LIST_AFTER_NORMALIZATION.contains(lastword.toLowerCase())){
+ 					if (DE_STREET_TYPE_RECOGNIZER.isStreetType(lastword)){
  						String toReplace = hasPoint?lastword+".":lastword;
  						return street.replaceFirst(toReplace, "").trim();
  					}
@@ -6,7 +6,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -20,12 +21,19 @@ public class SynonymsFinder {
 	
 	public static final Logger logger = LoggerFactory.getLogger(SynonymsFinder.class);
 
+	/**
+	 * The synonyms lists, they are indexed when the finder is created and
+	 * should not be modified after
+	 */
 	public List<List<String>> synonymsDict = new ArrayList<List<String>>();
 	String sourceInfo = "?"; 
 
+	private SynonymsIndex index;
+
 	public SynonymsFinder(List<List<String>> synonymsDict) {
 		super();
 		this.synonymsDict = synonymsDict;
+		this.index = new SynonymsIndex(synonymsDict);
 	}
 
 
@@ -33,6 +41,7 @@ public class SynonymsFinder {
 	public SynonymsFinder() {
 		super();
 		this.synonymsDict = DEFAULT_SYNONYMS;
+		this.index = new SynonymsIndex(synonymsDict);
 	}
 	
 	public SynonymsFinder(String filePath) {
@@ -85,6 +94,7 @@ public class SynonymsFinder {
 				}
 			    }
 			}
+			index = new SynonymsIndex(synonymsDict);
 		    }
 
 
@@ -115,68 +125,54 @@ public class SynonymsFinder {
 
 
 
+	/**
+	 * @param word a word
+	 * @return the words of all the synonyms lists that contains the word (ignoring case),
+	 * the returned set can not be modified
+	 */
 	public Set<String> getSynonymsFor(String word){
-		Set<String> newWords = new HashSet<String>();
-		if (word==null){
-			return newWords;
+		SynonymsIndex.Entry entry = index.get(word);
+		if (entry==null){
+			return Collections.emptySet();
 		}
-		for (List<String> synonyms : synonymsDict) {
-			if (synonyms!=null){
-				for (String synonym : synonyms) {
-					if (synonym!=null){
-						if (synonym.equalsIgnoreCase(word)){
-							newWords.addAll(synonyms);
-						}
-					}
-				}
-			}
-		}
-		return newWords;
+		return entry.synonyms;
 
 	}
 	
 	public String normalizeSynonyms(String word){
-		if (word!=null){
-			for (List<String> synonyms : synonymsDict) {
-				if (synonyms!=null){
-					if (synonyms!=null && isWordHasASynonymIn(word,synonyms)){
-						return synonyms.get(0);
-					}
-				}
-			}
+		SynonymsIndex.Entry entry = index.get(word);
+		if (entry!=null){
+			return entry.canonical;
 		}
 		return word;
 	}
 
 	
 	public boolean hasSynonyms(String word){
-		return getSynonymsFor(word).size()>0;
+		return index.get(word)!=null;
 	}
 	
 	public boolean isASynonymFor(String word,String syn){
 		if (syn==null || word==null){
 			return false;
 		}
-		Set<String> synonyms = getSynonymsFor(word);
-		for (String synonym:synonyms){
-			if (syn.equals(synonym)){
-				return true;
-			}
-		}
-		return false;
+		SynonymsIndex.Entry entry = index.get(word);
+		return entry!=null && entry.synonyms.contains(syn);
 	}
 	
 	public boolean isWordHasASynonymIn(String word, List<String> words){
 		if (word==null || words==null || words.size()==0){
 			return false;
 		}
-		Set<String> synonyms = getSynonymsFor(word);
-		for (String synonym:synonyms){
-			for (String syn:words){
-			if (syn.equalsIgnoreCase(synonym)){
+		SynonymsIndex.Entry entry = index.get(word);
+		if (entry==null){
+			return false;
+		}
+		for (int i=0;i<words.size();i++){
+			SynonymsIndex.Entry other = index.get(words.get(i));
+			if (other!=null && Arrays.binarySearch(entry.synonymIds, other.id)>=0){
 				return true;
 			}
-			}
 		}
 		return false;
 		
@@ -188,7 +184,20 @@ public class SynonymsFinder {
 	 * @return same as {@link #normalize(String, List)} but with {@link #DEFAULT_SYNONYMS}
 	 */
 	public  String normalize(String sentence) {
-		return normalize(sentence,synonymsDict);
+		sentence = StringHelper.normalize(sentence);
+		if (sentence==null){
+			return null;
+		}
+		String[] wordsArray = sentence.split(" ");
+		if (wordsArray.length >= 2) {
+			for (int i = 0; i < wordsArray.length; i++) {
+				SynonymsIndex.Entry entry = index.get(wordsArray[i]);
+				if (entry!=null && entry.replaced){
+					wordsArray[i] = entry.replacement;
+				}
+			}
+		}
+		return join(wordsArray, " ");
 	}
 
 	/**
@@ -0,0 +1,197 @@
+package com.gisgraphy.helper.synonyms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The synonyms of a {@link SynonymsFinder} indexed by word. The words are
+ * compared ignoring case as {@link String#equalsIgnoreCase(String)} does, the
+ * lookup doesn't allocate anything. Everything the finder answers for a word
+ * is computed once when the index is built.
+ */
+final class SynonymsIndex {
+
+	/**
+	 * A word of the synonyms lists (the words that are equal ignoring case
+	 * share the same entry)
+	 */
+	static final class Entry {
+
+		final String word;
+
+		final int id;
+
+		/**
+		 * The index of the synonyms lists that contains the word
+		 */
+		private final List<Integer> groups = new ArrayList<Integer>();
+
+		/**
+		 * The words of all the lists that contains the word
+		 */
+		Set<String> synonyms;
+
+		/**
+		 * The sorted ids of the entries of {@link #synonyms}
+		 */
+		int[] synonymIds;
+
+		/**
+		 * The first word of the first list that contains a synonym
+		 */
+		String canonical;
+
+		/**
+		 * Whether the word is replaced in a sentence, by {@link #replacement}
+		 */
+		boolean replaced;
+
+		String replacement;
+
+		private Entry(String word, int id) {
+			this.word = word;
+			this.id = id;
+		}
+	}
+
+	private final Entry[] table;
+
+	private int size;
+
+	SynonymsIndex(List<List<String>> synonymsDict) {
+		if (synonymsDict == null) {
+			synonymsDict = Collections.emptyList();
+		}
+		int words = 0;
+		for (List<String> synonyms : synonymsDict) {
+			if (synonyms != null) {
+				words += synonyms.size();
+			}
+		}
+		int capacity = 4;
+		while (capacity < words * 2) {
+			capacity <<= 1;
+		}
+		table = new Entry[capacity];
+		List<Entry> entries = new ArrayList<Entry>();
+		for (int group = 0; group < synonymsDict.size(); group++) {
+			List<String> synonyms = synonymsDict.get(group);
+			if (synonyms == null) {
+				continue;
+			}
+			for (String synonym : synonyms) {
+				if (synonym == null) {
+					continue;
+				}
+				Entry entry = get(synonym);
+				if (entry == null) {
+					entry = put(synonym);
+					entries.add(entry);
+				}
+				if (!entry.groups.contains(group)) {
+					entry.groups.add(group);
+				}
+			}
+		}
+		for (Entry entry : entries) {
+			Set<String> synonyms = new HashSet<String>();
+			for (Integer group : entry.groups) {
+				synonyms.addAll(synonymsDict.get(group));
+			}
+			entry.synonyms = Collections.unmodifiableSet(synonyms);
+			Set<Integer> synonymIds = new HashSet<Integer>();
+			int firstGroup = Integer.MAX_VALUE;
+			for (String synonym : synonyms) {
+				if (synonym != null) {
+					Entry synonymEntry = get(synonym);
+					synonymIds.add(synonymEntry.id);
+					firstGroup = Math.min(firstGroup, synonymEntry.groups.get(0));
+				}
+			}
+			entry.synonymIds = new int[synonymIds.size()];
+			int i = 0;
+			for (Integer synonymId : synonymIds) {
+				entry.synonymIds[i++] = synonymId;
+			}
+			Arrays.sort(entry.synonymIds);
+			entry.canonical = synonymsDict.get(firstGroup).get(0);
+			computeReplacement(entry, synonymsDict);
+		}
+	}
+
+	/**
+	 * Replace the word as {@link SynonymsFinder#normalize(String, List)} does :
+	 * the lists are read in order and the word is replaced by the first word of
+	 * every list where it is an other word
+	 */
+	private void computeReplacement(Entry entry, List<List<String>> synonymsDict) {
+		String word = entry.word;
+		for (List<String> synonyms : synonymsDict) {
+			if (synonyms == null) {
+				continue;
+			}
+			for (int i = 1; i < synonyms.size(); i++) {
+				if (word != null && word.equalsIgnoreCase(synonyms.get(i))) {
+					word = synonyms.get(0);
+					entry.replaced = true;
+				}
+			}
+		}
+		entry.replacement = word;
+	}
+
+	/**
+	 * @return the entry of the word (ignoring case), or null if the word is
+	 *         not in the synonyms lists
+	 */
+	Entry get(String word) {
+		if (word == null) {
+			return null;
+		}
+		int mask = table.length - 1;
+		for (int i = hash(word) & mask;; i = (i + 1) & mask) {
+			Entry entry = table[i];
+			if (entry == null) {
+				return null;
+			}
+			if (entry.word.length() == word.length() && entry.word.regionMatches(true, 0, word, 0, word.length())) {
+				return entry;
+			}
+		}
+	}
+
+	private Entry put(String word) {
+		Entry entry = new Entry(word, size++);
+		int mask = table.length - 1;
+		int i = hash(word) & mask;
+		while (table[i] != null) {
+			i = (i + 1) & mask;
+		}
+		table[i] = entry;
+		return entry;
+	}
+
+	/**
+	 * @return a hash of the word that is the same for the words that are
+	 *         equal ignoring case
+	 */
+	private static int hash(String word) {
+		int hash = 0;
+		for (int i = 0; i < word.length(); i++) {
+			hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(word.charAt(i)));
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * @return the number of distinct words (ignoring case)
+	 */
+	int size() {
+		return size;
+	}
+
+}
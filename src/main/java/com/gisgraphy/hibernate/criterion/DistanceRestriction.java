@@ -24,6 +24,8 @@
 package com.gisgraphy.hibernate.criterion;
 
 import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.criterion.CriteriaQuery;
 import org.hibernate.criterion.Criterion;
@@ -90,8 +92,15 @@ public class DistanceRestriction implements Criterion {
      */
     public TypedValue[] getTypedValues(Criteria criteria,
 	    CriteriaQuery criteriaQuery) throws HibernateException {
-	return new TypedValue[] { criteriaQuery.getTypedValue(criteria,
-		GisFeature.LOCATION_COLUMN_NAME, point) };
+	TypedValue pointValue = criteriaQuery.getTypedValue(criteria,
+		GisFeature.LOCATION_COLUMN_NAME, point);
+	TypedValue distanceValue = new TypedValue(Hibernate.DOUBLE, this.distance, EntityMode.POJO);
+	if (useIndex) {
+	    return new TypedValue[] { pointValue, distanceValue,
+		    criteriaQuery.getTypedValue(criteria, GisFeature.LOCATION_COLUMN_NAME,
+			    GisHelper.createBoundingBox(point.getY(), point.getX(), distance)) };
+	}
+	return new TypedValue[] { pointValue, distanceValue };
 
     }
 
@@ -105,11 +114,11 @@ public class DistanceRestriction implements Criterion {
 	    throws HibernateException {
 	String columnName = criteriaQuery.getColumn(criteria,
 		GisFeature.LOCATION_COLUMN_NAME);
+	//the distance and the bounding box are bound as parameters so that the
+	//sql is always the same
 	StringBuffer result = new StringBuffer("( st_distance_sphere(").append(
-		columnName).append(", ?) <=").append(this.distance).append(")");
-	return useIndex ? result.append(" AND ").append(
-			GisHelper.getBoundingBox(criteriaQuery.getSQLAlias(criteria), this.point
-			.getY(), this.point.getX(), distance)).toString()
+		columnName).append(", ?) <= ?)");
+	return useIndex ? result.append(" AND ").append(columnName).append(" && ?").toString()
 		: result.toString();
 
     }
@@ -89,8 +89,13 @@ public abstract class AbstractFileRetriever implements IImporterProcessor {
 		    logger
 			.info("DownloadFiles option is set to false, we won't download but decompress files");
 		}
-		statusMessage = internationalisationService.getString("import.extract.info");
-		decompressFiles();
+		if (isStreamed()) {
+		    logger.info("the files of " + this.getClass().getSimpleName()
+			    + " will be read directly from the archives, we won't decompress them");
+		} else {
+		    statusMessage = internationalisationService.getString("import.extract.info");
+		    decompressFiles();
+		}
 		this.status = ImporterStatus.PROCESSED ;
 	    } else {
 		this.status = ImporterStatus.SKIPPED;
@@ -149,6 +154,17 @@ public abstract class AbstractFileRetriever implements IImporterProcessor {
 	return importerConfig.isRetrieveFiles();
     }
 
+    /**
+     * Template method that can be override.
+     * 
+     * @return true if the importer reads the files directly from the archives,
+     *         in this case the files are not decompressed
+     * @see AbstractSimpleImporterProcessor#getArchiveDirectory()
+     */
+    protected boolean isStreamed() {
+	return false;
+    }
+
     /**
      * Method to call if files must be decompress (untar or unzip)
      * @throws IOException
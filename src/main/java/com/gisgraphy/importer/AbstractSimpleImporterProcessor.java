@@ -35,6 +35,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,9 +49,13 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 
+import com.gisgraphy.domain.repository.CopyBulkLoader;
 import com.gisgraphy.domain.repository.GisFeatureDao;
 import com.gisgraphy.domain.valueobject.Constants;
 import com.gisgraphy.domain.valueobject.ImporterStatus;
+import com.gisgraphy.fulltext.FullTextSearchEngine;
+import com.gisgraphy.geoloc.GeolocSearchEngine;
+import com.gisgraphy.helper.ArchiveEntryReader;
 import com.gisgraphy.service.IInternationalisationService;
 
 /**
@@ -99,6 +106,40 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 
     private boolean hasConsumedFirstLine = false;
 
+    /**
+     * The pipeline of the current file if the processor is pipelined
+     */
+    private volatile ImporterPipeline<?> pipeline;
+
+    private long pipelinePersistedLines = 0;
+
+    /**
+     * Loads the new entities when {@link #isBulkLoad()}
+     */
+    protected CopyBulkLoader bulkLoader;
+
+    /**
+     * The ids of the entities to index at the end of the import, they are
+     * sorted and deduplicated before the indexation
+     * 
+     * @see #markForIndexation(Long)
+     */
+    private long[] bulkLoadedIds = new long[INITIAL_BULK_LOADED_IDS_CAPACITY];
+
+    private int numberOfBulkLoadedIds = 0;
+
+    private static final int INITIAL_BULK_LOADED_IDS_CAPACITY = 1024;
+
+    private static final Object SEARCH_ENGINES_LOGGING_LOCK = new Object();
+
+    /**
+     * The number of importers that have disabled the logging of the search
+     * engines and not enabled it yet
+     */
+    private static int numberOfImportersDisablingLogging = 0;
+
+    private boolean searchEnginesLoggingDisabled = false;
+
     /**
      * Whether the end of the document has been reached
      */
@@ -109,6 +150,22 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
      */
     protected BufferedReader in;
 
+    /**
+     * The archive that is currently streamed if {@link #isStreaming()}
+     */
+    private volatile ArchiveEntryReader archiveReader;
+
+    /**
+     * The size of the archives to stream, used to estimate the number of
+     * lines to process
+     */
+    private long compressedBytesToProcess = 0;
+
+    /**
+     * The size of the archives that have already been streamed
+     */
+    private volatile long compressedBytesProcessed = 0;
+
     /**
      * The transaction manager
      */
@@ -189,6 +246,41 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
      */
     protected abstract File[] getFiles();
 
+    /**
+     * Template method that can be override. The importers whose files can be
+     * read directly from the downloaded archives must return the directory of
+     * those archives
+     * 
+     * @return the directory of the archives or null if the importer can not
+     *         stream its files
+     * @see #isStreaming()
+     */
+    protected String getArchiveDirectory() {
+	return null;
+    }
+
+    /**
+     * @return true if the files should be read directly from the archives of
+     *         {@link #getArchiveDirectory()} rather than from the extracted
+     *         files
+     * @see ImporterConfig#isStreamingEnabled()
+     */
+    protected boolean isStreaming() {
+	return importerConfig != null && importerConfig.isStreamingEnabled()
+		&& getArchiveDirectory() != null;
+    }
+
+    /**
+     * Template method that can be override.
+     * 
+     * @param entryName
+     *                the name of a file of an archive (without the directory)
+     * @return true if the entry should be processed when {@link #isStreaming()}
+     */
+    protected boolean acceptArchiveEntry(String entryName) {
+	return ImporterHelper.isCountryFileName(entryName);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -233,33 +325,8 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 		} else {
 		    try {
 			this.processData(input);
-		    } catch (MissingRequiredFieldException mrfe) {
-			if (this.importerConfig.isMissingRequiredFieldThrows()) {
-			    logger.error("A requrired field is missing "
-				    + mrfe.getMessage());
-			    throw new ImporterException(
-				    "A requrired field is missing "
-					    + mrfe.getMessage(), mrfe);
-			} else {
-			    logger.warn(mrfe.getMessage());
-			}
-		    } catch (WrongNumberOfFieldsException wnofe) {
-			if (this.importerConfig.isWrongNumberOfFieldsThrows()) {
-			    logger
-				    .error("wrong number of fields during import "
-					    + wnofe.getMessage());
-			    throw new ImporterException(
-				    "Wrong number of fields during import "
-					    + wnofe.getMessage(), wnofe);
-			} else {
-			    logger.warn(wnofe.getMessage());
-			}
 		    } catch (Exception e) {
-			String message= "An Error occurred on Line "
-				+ readFileLine + " for " + input + " : "
-				+ e.getMessage();
-			throw new ImporterException(
-				message, e);
+			handleLineError(e, input, readFileLine);
 		    }
 		}
 	    }
@@ -270,6 +337,108 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 	return readFileLine;
     }
 
+    /**
+     * Apply the error policy of the importer config to an exception thrown
+     * when a line is processed
+     * 
+     * @param e
+     *                the exception
+     * @param input
+     *                the line
+     * @param lineNumber
+     *                the number of the line in the current file
+     * @throws ImporterException
+     *                 if the error should stop the import
+     */
+    void handleLineError(Exception e, String input, long lineNumber) throws ImporterException {
+	if (e instanceof MissingRequiredFieldException) {
+	    if (this.importerConfig.isMissingRequiredFieldThrows()) {
+		logger.error("A requrired field is missing "
+			+ e.getMessage());
+		throw new ImporterException(
+			"A requrired field is missing "
+				+ e.getMessage(), e);
+	    } else {
+		logger.warn(e.getMessage());
+	    }
+	} else if (e instanceof WrongNumberOfFieldsException) {
+	    if (this.importerConfig.isWrongNumberOfFieldsThrows()) {
+		logger
+			.error("wrong number of fields during import "
+				+ e.getMessage());
+		throw new ImporterException(
+			"Wrong number of fields during import "
+				+ e.getMessage(), e);
+	    } else {
+		logger.warn(e.getMessage());
+	    }
+	} else {
+	    String message= "An Error occurred on Line "
+		    + lineNumber + " for " + input + " : "
+		    + e.getMessage();
+	    throw new ImporterException(
+		    message, e);
+	}
+    }
+
+    /**
+     * Read the next line that should be processed (the comments and the
+     * first line are skipped if needed), used by the reader of the
+     * {@link ImporterPipeline}
+     * 
+     * @return the line or null if it is the end of the document
+     */
+    String readNextDataLine() throws IOException {
+	while (!isEndOfDocument()) {
+	    String input = getInput(this.in.readLine());
+	    if (input == null) {
+		this.endOfDocument = true;
+		return null;
+	    }
+	    readFileLine++;
+	    incrementReadedFileLine(1);
+	    if (isNotComment(input)) {
+		if (this.shouldIgnoreFirstLine() && !hasConsumedFirstLine) {
+		    hasConsumedFirstLine = true;
+		} else {
+		    return input;
+		}
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Called by the {@link ImporterPipeline} each time a line has been
+     * persisted, in the thread that owns the transaction
+     */
+    void onPipelinedLinePersisted() {
+	if (++pipelinePersistedLines % this.getMaxInsertsBeforeFlush() == 0) {
+	    logger.info("We need to commit, flushing and clearing: "
+		    + totalReadLine);
+	    commit();
+	    startTransaction();
+	    setCommitFlushMode();
+	}
+    }
+
+    /**
+     * @return true if the lines should be processed by an
+     *         {@link ImporterPipeline}
+     * @see IPipelinedImporterProcessor
+     */
+    protected boolean isPipelined() {
+	return this instanceof IPipelinedImporterProcessor<?> && importerConfig.getPipelineWorkers() > 0;
+    }
+
+    /**
+     * @return the pipeline of the current (or last) processed file, or null
+     *         if the processor does not use a pipeline
+     */
+    public ImporterPipeline<?> getPipeline() {
+	return pipeline;
+    }
+
     /**
      * Process a read line of the geonames file, must be implemented by the
      * concrete class
@@ -292,21 +461,29 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 	    this.status = ImporterStatus.PROCESSING;
 	    this.getNumberOfLinesToProcess();
 	    setup();
-	    this.filesToProcess = getFiles();
+	    this.filesToProcess = isStreaming() ? getArchives() : getFiles();
 	    if (this.filesToProcess.length == 0) {
 	    	logger.info("there is 0 file to process for "
 			+ this.getClass().getSimpleName());
 	    	this.status= ImporterStatus.SKIPPED;
 	    	return;
 	    }
+	    clearBulkLoadedIds();
 	    for (int i = 0; i < filesToProcess.length; i++) {
 			currentFile = filesToProcess[i];
-			this.endOfDocument = false;
-			getBufferReader(filesToProcess[i]);
-			processFile();
-			closeBufferReader();
+			if (isStreaming()) {
+			    processArchive(filesToProcess[i]);
+			} else {
+			    this.endOfDocument = false;
+			    getBufferReader(filesToProcess[i]);
+			    processFile();
+			    closeBufferReader();
+			}
 			onFileProcessed(filesToProcess[i]);
 	    }
+	    if (isBulkLoad()) {
+		indexBulkLoadedEntities();
+	    }
 	} catch (Exception e) {
 	    processError(e);
 	} finally {
@@ -384,6 +561,52 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 	}
     }
 
+    private File[] getArchives() {
+	File[] archives = ImporterHelper.listArchivesToStream(getArchiveDirectory());
+	compressedBytesToProcess = 0;
+	compressedBytesProcessed = 0;
+	for (File archive : archives) {
+	    compressedBytesToProcess += archive.length();
+	}
+	return archives;
+    }
+
+    /**
+     * Process the files of the archive without extracting them
+     */
+    private void processArchive(File archive) throws ImporterException {
+	ArchiveEntryReader reader;
+	try {
+	    reader = new ArchiveEntryReader(archive, importerConfig.getBzip2Threads());
+	} catch (IOException e) {
+	    throw new ImporterException("can not open the archive " + archive.getName() + " : " + e.getMessage(), e);
+	}
+	archiveReader = reader;
+	try {
+	    String entryName;
+	    while ((entryName = reader.nextEntry()) != null) {
+		String fileName = new File(entryName).getName();
+		if (!acceptArchiveEntry(fileName)) {
+		    logger.info(entryName + " of " + archive.getName() + " will be ignored");
+		    continue;
+		}
+		currentFile = new File(archive.getParentFile(), fileName);
+		this.endOfDocument = false;
+		this.in = new BufferedReader(new InputStreamReader(reader.getEntryInputStream(),
+			Constants.CHARSET));
+		processFile();
+	    }
+	} catch (IOException e) {
+	    throw new ImporterException("can not read the archive " + archive.getName() + " : " + e.getMessage(), e);
+	} finally {
+	    compressedBytesProcessed += archive.length();
+	    archiveReader = null;
+	    in = null;
+	    reader.close();
+	    currentFile = archive;
+	}
+    }
+
     private void processFile() throws ImporterException {
 	try {
 	    hasConsumedFirstLine = false;
@@ -398,6 +621,10 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 
 	    startTransaction();
 	    setCommitFlushMode();
+	    if (isPipelined()) {
+		processFileWithPipeline();
+		commit();
+	    } else {
 	    while (!isEndOfDocument()) {
 		this.readLineAndProcessData();
 		incrementReadedFileLine(1);
@@ -415,6 +642,7 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 	    commit();
 	    decrementReadedFileLine(1);// remove a processed line because it has been
 	    // incremented on time more
+	    }
 	} catch (Exception e) {
 	    rollbackTransaction();
 	    throw new ImporterException(
@@ -423,6 +651,14 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 	}
     }
 
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void processFileWithPipeline() throws ImporterException {
+	pipelinePersistedLines = 0;
+	pipeline = new ImporterPipeline(this, (IPipelinedImporterProcessor) this,
+		importerConfig.getPipelineWorkers(), importerConfig.getPipelineQueueSize());
+	pipeline.run();
+    }
+
     protected int incrementReadedFileLine(int increment) {
 	totalReadLine = totalReadLine+increment;
 	return totalReadLine;
@@ -436,6 +672,9 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
     }
 
     protected void rollbackTransaction() {
+	if (bulkLoader != null) {
+	    bulkLoader.clear();
+	}
 	transactionManager.rollback(txStatus);
     }
 
@@ -460,6 +699,45 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
      */
     protected void tearDown() {
 	closeBufferReader();
+	enableSearchEnginesLogging();
+    }
+
+    /**
+     * Temporary disable the logging of the fulltext and geoloc search engines
+     * during the import. The logging is enabled again when the last importer
+     * that has disabled it calls {@link #enableSearchEnginesLogging()}, so
+     * that the importers that run at the same time don't enable it for each
+     * other.
+     */
+    protected void disableSearchEnginesLogging() {
+	synchronized (SEARCH_ENGINES_LOGGING_LOCK) {
+	    if (searchEnginesLoggingDisabled) {
+		return;
+	    }
+	    searchEnginesLoggingDisabled = true;
+	    if (numberOfImportersDisablingLogging++ == 0) {
+		FullTextSearchEngine.disableLogging = true;
+		GeolocSearchEngine.disableLogging = true;
+	    }
+	}
+    }
+
+    /**
+     * Enable the logging of the search engines again if this importer has
+     * disabled it and no other importer still needs it disabled. It is called
+     * by {@link #tearDown()}
+     */
+    protected void enableSearchEnginesLogging() {
+	synchronized (SEARCH_ENGINES_LOGGING_LOCK) {
+	    if (!searchEnginesLoggingDisabled) {
+		return;
+	    }
+	    searchEnginesLoggingDisabled = false;
+	    if (--numberOfImportersDisablingLogging == 0) {
+		FullTextSearchEngine.disableLogging = false;
+		GeolocSearchEngine.disableLogging = false;
+	    }
+	}
     }
 
     private void closeBufferReader() {
@@ -484,9 +762,108 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 
     protected void commit() {
 		flushAndClear();
+		if (isBulkLoad()) {
+		    bulkLoader.flush();
+		}
 		transactionManager.commit(this.txStatus);
     }
 
+    /**
+     * Template method that can be override. The importers that support the
+     * bulk load must use the {@link #bulkLoader} for the new entities, call
+     * {@link #markForIndexation(Long)} for the entities to synchronise and
+     * override {@link #indexBulkLoadedEntities(List)}
+     * 
+     * @return true if the importer can load its entities with the
+     *         {@link CopyBulkLoader}
+     */
+    protected boolean supportsBulkLoad() {
+	return false;
+    }
+
+    /**
+     * @return true if the new entities should be loaded with the
+     *         {@link #bulkLoader} instead of being saved
+     * @see ImporterConfig#isBulkLoadEnabled()
+     */
+    protected boolean isBulkLoad() {
+	return bulkLoader != null && supportsBulkLoad() && importerConfig.isBulkLoadEnabled();
+    }
+
+    /**
+     * Remember an entity to index at the end of the import, because the
+     * entities loaded in bulk do not fire any event
+     * 
+     * @param id
+     *                the id of the entity
+     */
+    protected void markForIndexation(Long id) {
+	if (id == null) {
+	    return;
+	}
+	long value = id.longValue();
+	if (numberOfBulkLoadedIds > 0 && bulkLoadedIds[numberOfBulkLoadedIds - 1] == value) {
+	    //the lines of a same entity are often consecutive
+	    return;
+	}
+	if (numberOfBulkLoadedIds == bulkLoadedIds.length) {
+	    bulkLoadedIds = Arrays.copyOf(bulkLoadedIds, bulkLoadedIds.length * 2);
+	}
+	bulkLoadedIds[numberOfBulkLoadedIds++] = value;
+    }
+
+    /**
+     * Template method that can be override. Index a page of the entities
+     * that have been marked for indexation, it is called in a transaction
+     * 
+     * @param ids
+     *                the ids of the entities
+     * @return the number of indexed entities
+     * @see #markForIndexation(Long)
+     */
+    protected int indexBulkLoadedEntities(List<Long> ids) {
+	return 0;
+    }
+
+    private void indexBulkLoadedEntities() {
+	Arrays.sort(bulkLoadedIds, 0, numberOfBulkLoadedIds);
+	logger.info(numberOfBulkLoadedIds + " entities (before deduplication) will be indexed for " + this.getClass().getSimpleName());
+	List<Long> ids = new ArrayList<Long>();
+	int indexed = 0;
+	for (int i = 0; i < numberOfBulkLoadedIds; i++) {
+	    if (i > 0 && bulkLoadedIds[i] == bulkLoadedIds[i - 1]) {
+		continue;
+	    }
+	    ids.add(Long.valueOf(bulkLoadedIds[i]));
+	    if (ids.size() >= getMaxInsertsBeforeFlush()) {
+		indexed += indexBulkLoadedPage(ids);
+		ids.clear();
+	    }
+	}
+	if (ids.size() > 0) {
+	    indexed += indexBulkLoadedPage(ids);
+	}
+	clearBulkLoadedIds();
+	logger.info(indexed + " entities have been indexed for " + this.getClass().getSimpleName());
+    }
+
+    private void clearBulkLoadedIds() {
+	bulkLoadedIds = new long[INITIAL_BULK_LOADED_IDS_CAPACITY];
+	numberOfBulkLoadedIds = 0;
+    }
+
+    private int indexBulkLoadedPage(List<Long> ids) {
+	startTransaction();
+	try {
+	    int indexed = indexBulkLoadedEntities(ids);
+	    commit();
+	    return indexed;
+	} catch (RuntimeException e) {
+	    rollbackTransaction();
+	    throw e;
+	}
+    }
+
     /**
      * Check that the array is not null, and the fields of the specified
      * position is not empty (after been trimed)
@@ -625,6 +1002,15 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
 	this.importerConfig = importerConfig;
     }
 
+    /**
+     * @param bulkLoader
+     *                the loader of the new entities when the bulk load is
+     *                enabled
+     */
+    public void setBulkLoader(CopyBulkLoader bulkLoader) {
+	this.bulkLoader = bulkLoader;
+    }
+
     /**
      * @return the number of line to process
      */
@@ -679,6 +1065,9 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
      * @see com.gisgraphy.domain.geoloc.importer.IGeonamesProcessor#getNumberOfLinesToProcess()
      */
     public long getNumberOfLinesToProcess() {
+	if (isStreaming()) {
+	    return estimateNumberOfLinesToProcess();
+	}
 	if (this.numberOfLinesToProcess == 0 && this.status == ImporterStatus.PROCESSING) {
 	    // it may not have been calculated yet
 	    this.numberOfLinesToProcess = countLines(getFiles());
@@ -703,11 +1092,34 @@ public abstract class AbstractSimpleImporterProcessor implements IImporterProces
     	return importerConfig.getMaxInsertsBeforeFlush();
     }
 
+    /**
+     * The lines of the archives can not be counted without decompressing them
+     * twice, so the number of lines is extrapolated from the lines already
+     * read and the part of the compressed bytes they come from
+     */
+    private long estimateNumberOfLinesToProcess() {
+	if (this.status != ImporterStatus.PROCESSING) {
+	    return this.totalReadLine;
+	}
+	long compressedBytesRead = compressedBytesProcessed;
+	ArchiveEntryReader reader = archiveReader;
+	if (reader != null) {
+	    compressedBytesRead += reader.getCompressedBytesRead();
+	}
+	if (compressedBytesRead == 0 || this.totalReadLine == 0) {
+	    return 0;
+	}
+	long estimation = (long) ((double) this.totalReadLine * compressedBytesToProcess / compressedBytesRead);
+	return Math.max(estimation, this.totalReadLine);
+    }
+
     public void resetStatus() {
 	this.currentFile = null;
 	this.readFileLine = 0;
 	this.totalReadLine = 0;
 	this.numberOfLinesToProcess = 0;
+	this.compressedBytesToProcess = 0;
+	this.compressedBytesProcessed = 0;
 	this.status = ImporterStatus.WAITING;
 	this.statusMessage = "";
     }
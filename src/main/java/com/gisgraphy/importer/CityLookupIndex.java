@@ -0,0 +1,445 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.importer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gisgraphy.domain.geoloc.entity.AlternateName;
+import com.gisgraphy.domain.geoloc.entity.City;
+import com.gisgraphy.domain.geoloc.entity.CitySubdivision;
+import com.gisgraphy.domain.geoloc.entity.ZipCode;
+import com.gisgraphy.domain.repository.ICityDao;
+import com.gisgraphy.domain.repository.ICitySubdivisionDao;
+import com.gisgraphy.helper.GeolocHelper;
+import com.gisgraphy.helper.GisHelper;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * In memory index of the cities of one country (location, municipality flag,
+ * population, adm names, zip codes, alternate names and shape) and of the
+ * shapes of its subdivisions, used by the {@link OpenStreetMapSimpleImporter}
+ * to fill the is_in fields of the streets without querying the database for
+ * each street.
+ * <p>
+ * Only one country is kept in memory : the index of a country is loaded the
+ * first time one of its streets is looked up and replaces the previous one.
+ * The lookups return the same features as {@link ICityDao#getByShape(Point, String, boolean)},
+ * {@link ICitySubdivisionDao#getByShape(Point, String)} and
+ * {@link ICityDao#getNearests(Point, String, boolean, int, int)}, as detached
+ * {@link City} and {@link CitySubdivision} that must not be saved.
+ * <p>
+ * The number of lookups, of lookups that found a feature and the time spent
+ * are logged for each country.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class CityLookupIndex {
+
+    protected static final Logger logger = LoggerFactory.getLogger(CityLookupIndex.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final ICityDao cityDao;
+
+    private final ICitySubdivisionDao citySubdivisionDao;
+
+    private final int batchSize;
+
+    private volatile CountryIndex current;
+
+    private final Statistics cityByShapeStatistics = new Statistics("city by shape");
+
+    private final Statistics subdivisionByShapeStatistics = new Statistics("subdivision by shape");
+
+    private final Statistics nearestCitiesStatistics = new Statistics("nearest cities");
+
+    private int numberOfLoadedCountries = 0;
+
+    private long loadTime = 0;
+
+    /**
+     * @param cityDao
+     *            the dao to load the cities of a country
+     * @param citySubdivisionDao
+     *            the dao to load the subdivisions of a country
+     * @param batchSize
+     *            the number of cities or subdivisions read from the database
+     *            at a time
+     */
+    public CityLookupIndex(ICityDao cityDao, ICitySubdivisionDao citySubdivisionDao, int batchSize) {
+	if (batchSize < 1) {
+	    throw new IllegalArgumentException("the batch size should be greater than 0");
+	}
+	this.cityDao = cityDao;
+	this.citySubdivisionDao = citySubdivisionDao;
+	this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the smallest city of the country whose shape contains the
+     *         location, or null
+     * @see ICityDao#getByShape(Point, String, boolean)
+     */
+    public City getCityByShape(Point location, String countryCode, boolean filterMunicipality) {
+	CountryIndex index = getCountryIndex(countryCode);
+	long start = System.nanoTime();
+	ShapeEntry<City> smallest = null;
+	for (ShapeEntry<City> entry : index.cityShapes.listContaining(location)) {
+	    if (filterMunicipality && !entry.feature.isMunicipality()) {
+		continue;
+	    }
+	    if (smallest == null || entry.area < smallest.area) {
+		smallest = entry;
+	    }
+	}
+	cityByShapeStatistics.add(start, smallest != null);
+	return smallest == null ? null : smallest.feature;
+    }
+
+    /**
+     * @return the smallest subdivision of the country whose shape contains
+     *         the location, or null
+     * @see ICitySubdivisionDao#getByShape(Point, String)
+     */
+    public CitySubdivision getCitySubdivisionByShape(Point location, String countryCode) {
+	CountryIndex index = getCountryIndex(countryCode);
+	long start = System.nanoTime();
+	ShapeEntry<CitySubdivision> smallest = null;
+	for (ShapeEntry<CitySubdivision> entry : index.subdivisionShapes.listContaining(location)) {
+	    if (smallest == null || entry.area < smallest.area) {
+		smallest = entry;
+	    }
+	}
+	subdivisionByShapeStatistics.add(start, smallest != null);
+	return smallest == null ? null : smallest.feature;
+    }
+
+    /**
+     * @param location
+     *            the point
+     * @param countryCode
+     *            the country code of the cities
+     * @param distance
+     *            the maximum distance in meters
+     * @param limit
+     *            the maximum number of cities, no limit if 0
+     * @return the cities of the country nearer than the distance, the nearest
+     *         first
+     * @see ICityDao#getNearests(Point, String, boolean, int, int)
+     */
+    @SuppressWarnings("unchecked")
+    public List<City> getNearestCities(Point location, String countryCode, int distance, int limit) {
+	CountryIndex index = getCountryIndex(countryCode);
+	long start = System.nanoTime();
+	Envelope envelope = GisHelper.createBoundingBox(location.getY(), location.getX(), distance).getEnvelopeInternal();
+	List<DistanceEntry> candidates = new ArrayList<DistanceEntry>();
+	for (City city : (List<City>) index.cities.query(envelope)) {
+	    if (!envelope.contains(city.getLocation().getCoordinate())) {
+		continue;
+	    }
+	    double cityDistance = GeolocHelper.distance(location, city.getLocation());
+	    if (cityDistance < distance) {
+		candidates.add(new DistanceEntry(city, cityDistance));
+	    }
+	}
+	Collections.sort(candidates, DISTANCE_COMPARATOR);
+	int size = limit > 0 ? Math.min(limit, candidates.size()) : candidates.size();
+	List<City> result = new ArrayList<City>(size);
+	for (int i = 0; i < size; i++) {
+	    result.add(candidates.get(i).city);
+	}
+	nearestCitiesStatistics.add(start, !result.isEmpty());
+	return result;
+    }
+
+    /**
+     * @return the country code of the country in memory, or null
+     */
+    public String getCountryCode() {
+	CountryIndex index = current;
+	return index == null ? null : index.countryCode;
+    }
+
+    /**
+     * @return the number of lookups since the index has been created
+     */
+    public long getNumberOfLookups() {
+	return cityByShapeStatistics.getLookups() + subdivisionByShapeStatistics.getLookups() + nearestCitiesStatistics.getLookups();
+    }
+
+    /**
+     * @return the number of lookups that found at least one feature since
+     *         the index has been created
+     */
+    public long getNumberOfHits() {
+	return cityByShapeStatistics.getHits() + subdivisionByShapeStatistics.getHits() + nearestCitiesStatistics.getHits();
+    }
+
+    /**
+     * Log the number of lookups, of lookups that found a feature and the
+     * average time of a lookup since the index has been created
+     */
+    public void logStatistics() {
+	logger.info("city lookup index : " + numberOfLoadedCountries + " countries loaded in " + loadTime + " ms");
+	cityByShapeStatistics.log();
+	subdivisionByShapeStatistics.log();
+	nearestCitiesStatistics.log();
+    }
+
+    private CountryIndex getCountryIndex(String countryCode) {
+	CountryIndex index = current;
+	if (index != null && index.countryCode.equals(countryCode)) {
+	    return index;
+	}
+	synchronized (this) {
+	    index = current;
+	    if (index == null || !index.countryCode.equals(countryCode)) {
+		if (index != null) {
+		    logStatistics();
+		}
+		//release the previous country before loading the next one
+		current = null;
+		index = load(countryCode);
+		current = index;
+	    }
+	    return index;
+	}
+    }
+
+    private CountryIndex load(String countryCode) {
+	long start = System.currentTimeMillis();
+	CountryIndex index = new CountryIndex(countryCode);
+	PreparedGeometryFactory factory = new PreparedGeometryFactory();
+	Map<Long, City> citiesById = new HashMap<Long, City>();
+	long lastId = Long.MIN_VALUE;
+	List<Object[]> rows;
+	do {
+	    rows = cityDao.listLookupDataByCountryCodeFrom(countryCode, lastId, batchSize);
+	    for (Object[] row : rows) {
+		lastId = (Long) row[0];
+		City city = createCity(row, countryCode);
+		citiesById.put(city.getId(), city);
+		if (city.getLocation() != null) {
+		    index.cities.insert(city.getLocation().getEnvelopeInternal(), city);
+		}
+		Geometry shape = (Geometry) row[4];
+		if (shape != null) {
+		    index.cityShapes.add(new ShapeEntry<City>(city, shape.getArea(), factory.create(shape)), shape);
+		}
+	    }
+	} while (rows.size() == batchSize);
+
+	int numberOfZipCodes = 0;
+	for (Object[] row : cityDao.listZipCodesByCountryCode(countryCode)) {
+	    City city = citiesById.get(row[0]);
+	    if (city != null && row[1] != null) {
+		if (city.getZipCodes() == null) {
+		    city.setZipCodes(new HashSet<ZipCode>());
+		}
+		ZipCode zipCode = new ZipCode();
+		zipCode.setCode((String) row[1]);
+		city.getZipCodes().add(zipCode);
+		numberOfZipCodes++;
+	    }
+	}
+	int numberOfAlternateNames = 0;
+	for (Object[] row : cityDao.listAlternateNamesByCountryCode(countryCode)) {
+	    City city = citiesById.get(row[0]);
+	    if (city != null && row[1] != null) {
+		if (city.getAlternateNames() == null) {
+		    city.setAlternateNames(new HashSet<AlternateName>());
+		}
+		AlternateName alternateName = new AlternateName();
+		alternateName.setName((String) row[1]);
+		city.getAlternateNames().add(alternateName);
+		numberOfAlternateNames++;
+	    }
+	}
+
+	lastId = Long.MIN_VALUE;
+	do {
+	    rows = citySubdivisionDao.listNamesAndShapesByCountryCodeFrom(countryCode, lastId, batchSize);
+	    for (Object[] row : rows) {
+		lastId = (Long) row[0];
+		CitySubdivision subdivision = new CitySubdivision();
+		subdivision.setId(lastId);
+		subdivision.setName((String) row[1]);
+		subdivision.setCountryCode(countryCode);
+		Geometry shape = (Geometry) row[2];
+		index.subdivisionShapes.add(new ShapeEntry<CitySubdivision>(subdivision, shape.getArea(), factory.create(shape)), shape);
+	    }
+	} while (rows.size() == batchSize);
+
+	index.build();
+	long duration = System.currentTimeMillis() - start;
+	numberOfLoadedCountries++;
+	loadTime += duration;
+	logger.info("the city lookup index of " + countryCode + " has been loaded in " + duration + " ms : " + citiesById.size() + " cities, "
+		+ index.cityShapes.size + " city shapes, " + numberOfZipCodes + " zip codes, " + numberOfAlternateNames + " alternate names, "
+		+ index.subdivisionShapes.size + " subdivision shapes");
+	return index;
+    }
+
+    private City createCity(Object[] row, String countryCode) {
+	City city = new City();
+	city.setId((Long) row[0]);
+	city.setFeatureId((Long) row[1]);
+	city.setName((String) row[2]);
+	city.setLocation((Point) row[3]);
+	city.setMunicipality(Boolean.TRUE.equals(row[5]));
+	city.setPopulation((Integer) row[6]);
+	city.setAdm1Name((String) row[7]);
+	city.setAdm2Name((String) row[8]);
+	city.setAdm3Name((String) row[9]);
+	city.setAdm4Name((String) row[10]);
+	city.setAdm5Name((String) row[11]);
+	city.setCountryCode(countryCode);
+	return city;
+    }
+
+    private static final Comparator<DistanceEntry> DISTANCE_COMPARATOR = new Comparator<DistanceEntry>() {
+	public int compare(DistanceEntry entry1, DistanceEntry entry2) {
+	    return Double.compare(entry1.distance, entry2.distance);
+	}
+    };
+
+    private static final class DistanceEntry {
+	private final City city;
+	private final double distance;
+
+	DistanceEntry(City city, double distance) {
+	    this.city = city;
+	    this.distance = distance;
+	}
+    }
+
+    static final class ShapeEntry<T> {
+	private final T feature;
+	private final double area;
+	private final PreparedGeometry shape;
+
+	ShapeEntry(T feature, double area, PreparedGeometry shape) {
+	    this.feature = feature;
+	    this.area = area;
+	    this.shape = shape;
+	}
+    }
+
+    static final class ShapeTree<T> {
+	private final STRtree tree = new STRtree();
+	private int size = 0;
+
+	void add(ShapeEntry<T> entry, Geometry geometry) {
+	    tree.insert(geometry.getEnvelopeInternal(), entry);
+	    size++;
+	}
+
+	@SuppressWarnings("unchecked")
+	List<ShapeEntry<T>> listContaining(Point location) {
+	    List<ShapeEntry<T>> result = new ArrayList<ShapeEntry<T>>();
+	    for (ShapeEntry<T> entry : (List<ShapeEntry<T>>) tree.query(location.getEnvelopeInternal())) {
+		if (entry.shape.contains(location)) {
+		    result.add(entry);
+		}
+	    }
+	    return result;
+	}
+    }
+
+    /**
+     * the trees of one country, read only once built
+     */
+    static final class CountryIndex {
+	private final String countryCode;
+	private final STRtree cities = new STRtree();
+	private final ShapeTree<City> cityShapes = new ShapeTree<City>();
+	private final ShapeTree<CitySubdivision> subdivisionShapes = new ShapeTree<CitySubdivision>();
+
+	CountryIndex(String countryCode) {
+	    this.countryCode = countryCode;
+	}
+
+	/**
+	 * build the trees now, so that the queries never modify them
+	 */
+	void build() {
+	    cities.build();
+	    cityShapes.tree.build();
+	    subdivisionShapes.tree.build();
+	}
+    }
+
+    /**
+     * the number of lookups of one kind, of lookups that found a feature, and
+     * the time spent, updated by several threads
+     */
+    static final class Statistics {
+	private final String name;
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong nanos = new AtomicLong();
+
+	Statistics(String name) {
+	    this.name = name;
+	}
+
+	void add(long start, boolean hit) {
+	    nanos.addAndGet(System.nanoTime() - start);
+	    lookups.incrementAndGet();
+	    if (hit) {
+		hits.incrementAndGet();
+	    }
+	}
+
+	long getLookups() {
+	    return lookups.get();
+	}
+
+	long getHits() {
+	    return hits.get();
+	}
+
+	void log() {
+	    long numberOfLookups = lookups.get();
+	    long averageMicros = numberOfLookups == 0 ? 0 : nanos.get() / numberOfLookups / 1000;
+	    logger.info("city lookup index, " + name + " : " + numberOfLookups + " lookups, " + hits.get() + " hits, " + averageMicros
+		    + " microseconds per lookup (country loads excluded)");
+	}
+    }
+
+}
@@ -33,8 +33,6 @@ import org.springframework.beans.factory.annotation.Required;
 import com.gisgraphy.domain.repository.IOpenStreetMapDao;
 import com.gisgraphy.domain.repository.ISolRSynchroniser;
 import com.gisgraphy.domain.valueobject.NameValueDTO;
-import com.gisgraphy.fulltext.FullTextSearchEngine;
-import com.gisgraphy.geoloc.GeolocSearchEngine;
 
 /**
  * Import the street from an (pre-processed) openStreet map data file .
@@ -60,8 +58,7 @@ public class DatastoreOptimizer extends AbstractSimpleImporterProcessor {
     protected void setup() {
         super.setup();
         //temporary disable logging when importing
-        FullTextSearchEngine.disableLogging=true;
-        GeolocSearchEngine.disableLogging=true;
+        disableSearchEnginesLogging();
     }
     
 
@@ -133,8 +130,6 @@ public class DatastoreOptimizer extends AbstractSimpleImporterProcessor {
     //TODO test
     protected void tearDown() {
     	super.tearDown();
-    	FullTextSearchEngine.disableLogging=false;
-    	GeolocSearchEngine.disableLogging=false;
     	String savedMessage = this.statusMessage;
     	try {
     		this.statusMessage = internationalisationService.getString("import.fulltext.optimize");
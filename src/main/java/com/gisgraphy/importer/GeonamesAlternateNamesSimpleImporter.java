@@ -195,12 +195,50 @@ public class GeonamesAlternateNamesSimpleImporter extends AbstractSimpleImporter
 	    alternateNames = new ArrayList<AlternateName>();
 	}
 	alternateNames.add(alternateName);*/
+	if (isBulkLoad()) {
+	    bulkLoadAlternateName(gisFeature, alternateName);
+	    return;
+	}
 	gisFeature.addAlternateName(alternateName);
 
 	this.gisFeatureDao.save(gisFeature);
 
     }
 
+    /**
+     * Load the alternate name with the bulk loader instead of saving the
+     * feature, the feature is indexed at the end of the import
+     */
+    protected void bulkLoadAlternateName(GisFeature gisFeature, AlternateName alternateName) {
+	if (alternateName.getName() != null && alternateName.getName().length() > GisFeature.MAX_ALTERNATENAME_SIZE
+		|| (alternateName.getLanguage() != null && alternateName.getLanguage().length() > AlternateName.MAX_LANG_SIZE)) {
+	    logger.error("alternate name " + alternateName.getName() + " or language " + alternateName.getLanguage() + " is too long");
+	    return;
+	}
+	this.bulkLoader.add(alternateName);
+	markForIndexation(gisFeature.getId());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#supportsBulkLoad()
+     */
+    @Override
+    protected boolean supportsBulkLoad() {
+	return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#indexBulkLoadedEntities(java.util.List)
+     */
+    @Override
+    protected int indexBulkLoadedEntities(List<Long> ids) {
+	return this.gisFeatureDao.fireStoredEvents(ids);
+    }
+
     protected boolean isAnUnWantedLanguageField(String languageField) {
 	boolean unWanted = false;
 	// TODO v2 option : || languageField.equals("icao") ||
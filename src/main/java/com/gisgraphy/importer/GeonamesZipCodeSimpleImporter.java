@@ -48,7 +48,6 @@ import com.gisgraphy.domain.repository.ISolRSynchroniser;
 import com.gisgraphy.domain.repository.IZipCodeDao;
 import com.gisgraphy.domain.valueobject.GISSource;
 import com.gisgraphy.domain.valueobject.NameValueDTO;
-import com.gisgraphy.fulltext.FullTextSearchEngine;
 import com.gisgraphy.fulltext.FulltextQuery;
 import com.gisgraphy.fulltext.FulltextQuerySolrHelper;
 import com.gisgraphy.fulltext.FulltextResultsDto;
@@ -628,7 +627,7 @@ public class GeonamesZipCodeSimpleImporter extends AbstractSimpleImporterProcess
     @Override
     protected void setup() {
     	super.setup();
-    	FullTextSearchEngine.disableLogging=true;
+    	disableSearchEnginesLogging();
     	IdGenerator.sync();
     }
 
@@ -641,7 +640,6 @@ public class GeonamesZipCodeSimpleImporter extends AbstractSimpleImporterProcess
 	@Override
 	protected void tearDown() {
 		String savedMessage = this.statusMessage;
-		FullTextSearchEngine.disableLogging=false;
 		this.statusMessage = internationalisationService
 				.getString("import.teardown");
 		try {
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.importer;
+
+/**
+ * Interface for the processors that can process the lines of their files in
+ * a pipeline (see {@link ImporterPipeline}) : the lines are read by one
+ * thread, prepared (parsed, enriched,...) by several threads and persisted by
+ * the thread that owns the transaction. A processor that extends
+ * {@link AbstractSimpleImporterProcessor} opts in by implementing this
+ * interface, the pipeline is used if
+ * {@link ImporterConfig#getPipelineWorkers()} is greater than 0, otherwise
+ * {@link AbstractSimpleImporterProcessor#processData(String)} is called.
+ * <p>
+ * The lines are not persisted in the order of the file.
+ * 
+ * @param <T>
+ *                the type of the prepared data
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public interface IPipelinedImporterProcessor<T> {
+
+    /**
+     * Parse and enrich a line. This method is called by several threads at
+     * the same time and outside of the transaction : it must be thread safe
+     * and must not persist anything.
+     * 
+     * @param line
+     *                the line to process
+     * @return the data to persist or null if there is nothing to persist
+     *         for this line
+     */
+    public T prepareData(String line) throws ImporterException;
+
+    /**
+     * Persist the data prepared by {@link #prepareData(String)}. This method
+     * is always called by the thread that owns the transaction.
+     * 
+     * @param data
+     *                the data to persist, never null
+     */
+    public void persistData(T data) throws ImporterException;
+
+}
@@ -105,6 +105,60 @@ public class ImporterConfig {
      */
     private int maxInsertsBeforeFlush = DEFAULT_MAX_INSERT_BEFORE_FLUSH;
 
+    /**
+     * Default value for {@link #pipelineQueueSize}
+     */
+    public final static int DEFAULT_PIPELINE_QUEUE_SIZE = 1000;
+
+    /**
+     * The number of threads that prepare the lines of the pipelined
+     * importers, 0 to process the lines in one thread
+     * 
+     * @see IPipelinedImporterProcessor
+     */
+    private int pipelineWorkers = 0;
+
+    /**
+     * The capacity of the queues between the stages of the pipelined
+     * importers
+     * 
+     * @see ImporterPipeline
+     */
+    private int pipelineQueueSize = DEFAULT_PIPELINE_QUEUE_SIZE;
+
+    /**
+     * Whether the importers that support it load the new entities with the
+     * postgres COPY protocol instead of saving them with hibernate
+     * 
+     * @see com.gisgraphy.domain.repository.CopyBulkLoader
+     */
+    private boolean bulkLoadEnabled = false;
+
+    /**
+     * Whether the openstreetmap importer fills the is_in fields of the
+     * streets from an in-memory index of the cities of the current country
+     * instead of querying the database for each street
+     * 
+     * @see CityLookupIndex
+     */
+    private boolean cityLookupIndexEnabled = false;
+
+    /**
+     * Whether the importers that support it read their files directly from
+     * the downloaded archives instead of decompressing them on the disk
+     * 
+     * @see com.gisgraphy.helper.ArchiveEntryReader
+     */
+    private boolean streamingEnabled = false;
+
+    /**
+     * The number of threads that decompress the bzip2 archives read by the
+     * importers, 1 to decompress them in the importer thread
+     * 
+     * @see com.gisgraphy.helper.ParallelBZip2InputStream
+     */
+    private int bzip2Threads = 1;
+
     public final static String OPENSTREETMAP_DEFAULT_FILES_TO_DOWNLOAD = "allcountries.gis";
     
     public final static String OPENADDRESSES_DEFAULT_FILES_TO_DOWNLOAD = "allcountries.gis";
@@ -1896,6 +1950,114 @@ public class ImporterConfig {
     	return this.maxInsertsBeforeFlush;
     }
 
+    /**
+     * @return the number of threads that prepare the lines of the importers
+     *         that implement {@link IPipelinedImporterProcessor}, 0 if the
+     *         lines are processed in one thread
+     */
+    public int getPipelineWorkers() {
+    	return pipelineWorkers;
+    }
+
+    /**
+     * @param pipelineWorkers
+     *            the number of threads that prepare the lines of the
+     *            importers that implement {@link IPipelinedImporterProcessor}
+     *            , 0 to process the lines in one thread
+     */
+    public void setPipelineWorkers(int pipelineWorkers) {
+    	this.pipelineWorkers = pipelineWorkers;
+    }
+
+    /**
+     * @return the capacity of the queues between the stages of the pipelined
+     *         importers
+     */
+    public int getPipelineQueueSize() {
+    	return pipelineQueueSize;
+    }
+
+    /**
+     * @param pipelineQueueSize
+     *            the capacity of the queues between the stages of the
+     *            pipelined importers
+     */
+    public void setPipelineQueueSize(int pipelineQueueSize) {
+    	this.pipelineQueueSize = pipelineQueueSize;
+    }
+
+    /**
+     * @return true if the importers that support it load the new entities
+     *         with the postgres COPY protocol, the entities are then indexed
+     *         in the full text engine at the end of the importer
+     */
+    public boolean isBulkLoadEnabled() {
+    	return bulkLoadEnabled;
+    }
+
+    /**
+     * @param bulkLoadEnabled
+     *            whether the importers that support it load the new entities
+     *            with the postgres COPY protocol
+     */
+    public void setBulkLoadEnabled(boolean bulkLoadEnabled) {
+    	this.bulkLoadEnabled = bulkLoadEnabled;
+    }
+
+    /**
+     * @return true if the openstreetmap importer fills the is_in fields of
+     *         the streets from an in-memory index of the cities, loaded
+     *         country by country
+     */
+    public boolean isCityLookupIndexEnabled() {
+    	return cityLookupIndexEnabled;
+    }
+
+    /**
+     * @param cityLookupIndexEnabled
+     *            whether the openstreetmap importer fills the is_in fields of
+     *            the streets from an in-memory index of the cities
+     */
+    public void setCityLookupIndexEnabled(boolean cityLookupIndexEnabled) {
+    	this.cityLookupIndexEnabled = cityLookupIndexEnabled;
+    }
+
+    /**
+     * @return true if the importers that support it read their files
+     *         directly from the downloaded archives, the archives are then
+     *         not decompressed by the file retrievers
+     */
+    public boolean isStreamingEnabled() {
+    	return streamingEnabled;
+    }
+
+    /**
+     * @param streamingEnabled
+     *            whether the importers that support it read their files
+     *            directly from the downloaded archives
+     */
+    public void setStreamingEnabled(boolean streamingEnabled) {
+    	this.streamingEnabled = streamingEnabled;
+    }
+
+    /**
+     * @return the number of threads that decompress the bzip2 archives read
+     *         by the importers
+     */
+    public int getBzip2Threads() {
+    	return bzip2Threads;
+    }
+
+    /**
+     * @param bzip2Threads
+     *            the number of threads that decompress the bzip2 archives
+     *            read by the importers, 1 to decompress them in the importer
+     *            thread
+     */
+    public void setBzip2Threads(int bzip2Threads) {
+    	this.bzip2Threads = bzip2Threads;
+    }
+
     /**
      * @param directoryPath
      *            The directory to check. it can be absolute or relative
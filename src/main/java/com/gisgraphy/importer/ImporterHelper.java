@@ -41,6 +41,7 @@ import java.net.ProtocolException;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
@@ -66,6 +67,7 @@ import com.gisgraphy.domain.geoloc.entity.AlternateOsmName;
 import com.gisgraphy.domain.geoloc.entity.GisFeature;
 import com.gisgraphy.domain.geoloc.entity.OpenStreetMap;
 import com.gisgraphy.domain.valueobject.AlternateNameSource;
+import com.gisgraphy.helper.ArchiveEntryReader;
 import com.gisgraphy.helper.FeatureClassCodeHelper;
 import com.gisgraphy.helper.StringHelper;
 
@@ -112,6 +114,27 @@ public class ImporterHelper {
     public static String QUOTE_URL ="https://premium.gisgraphy.com/dump/quote";
     
    private static  Decompounder decompounder = new Decompounder();
+
+   private static final ThreadLocal<StringBuilder> OTHER_FORMAT_BUFFER = new ThreadLocal<StringBuilder>(){
+	   @Override
+	   protected StringBuilder initialValue() {
+		   return new StringBuilder();
+	   }
+   };
+
+   /**
+    * @param name a street name
+    * @return the other format of the name (see {@link Decompounder#getOtherFormat(String)})
+    * or null if it is not a decompound name. The name is scanned only once
+    */
+   private static String getOtherFormat(String name){
+	   StringBuilder otherFormat = OTHER_FORMAT_BUFFER.get();
+	   otherFormat.setLength(0);
+	   if (decompounder.appendOtherFormat(name, otherFormat)){
+		   return otherFormat.toString();
+	   }
+	   return null;
+   }
     
 	
 	public static boolean isUnwantedAlternateName(String alternateName){
@@ -181,16 +204,27 @@ public class ImporterHelper {
 
     public static FileFilter countryFileFilter = new FileFilter() {
 	public boolean accept(File file) {
-	    Pattern patternGeonames = Pattern.compile(GEONAMES_COUNTRY_FILE_ACCEPT_REGEX_STRING,Pattern.CASE_INSENSITIVE);
-	    Pattern patternUKFullZipGeonames = Pattern.compile(GEONAMES_UK_FULLFILE_ACCEPT_REGEX_STRING,Pattern.CASE_INSENSITIVE);
-	    Pattern patternOpenStreetMapUS = Pattern.compile(OPENSTREETMAP_FILE_ACCEPT_REGEX_STRING,Pattern.CASE_INSENSITIVE);
-	    Pattern patternQuattroshapes = Pattern.compile(QUATTROSHAPES_FILE_ACCEPT_REGEX_STRING,Pattern.CASE_INSENSITIVE);
-
-	    return (file.isFile() && file.exists()) && !EXCLUDED_README_FILENAME.equals(file.getName())
-		    && ( patternGeonames.matcher(file.getName()).matches() || patternUKFullZipGeonames.matcher(file.getName()).matches() || ALLCOUTRY_FILENAME.equals(file.getName()) || patternOpenStreetMapUS.matcher(file.getName()).matches() || patternQuattroshapes.matcher(file.getName()).matches());
+	    return (file.isFile() && file.exists()) && isCountryFileName(file.getName());
 	}
     };
     
+    /**
+     * @param fileName
+     *            the name of a file, without the directory
+     * @return true if the file is a country file, an allcountries file or a
+     *         quattroshapes file
+     * @see #countryFileFilter
+     */
+    public static boolean isCountryFileName(String fileName) {
+	Pattern patternGeonames = Pattern.compile(GEONAMES_COUNTRY_FILE_ACCEPT_REGEX_STRING,Pattern.CASE_INSENSITIVE);
+	Pattern patternUKFullZipGeonames = Pattern.compile(GEONAMES_UK_FULLFILE_ACCEPT_REGEX_STRING,Pattern.CASE_INSENSITIVE);
+	Pattern patternOpenStreetMapUS = Pattern.compile(OPENSTREETMAP_FILE_ACCEPT_REGEX_STRING,Pattern.CASE_INSENSITIVE);
+	Pattern patternQuattroshapes = Pattern.compile(QUATTROSHAPES_FILE_ACCEPT_REGEX_STRING,Pattern.CASE_INSENSITIVE);
+
+	return fileName != null && !EXCLUDED_README_FILENAME.equals(fileName)
+		&& ( patternGeonames.matcher(fileName).matches() || patternUKFullZipGeonames.matcher(fileName).matches() || ALLCOUTRY_FILENAME.equals(fileName) || patternOpenStreetMapUS.matcher(fileName).matches() || patternQuattroshapes.matcher(fileName).matches());
+    }
+    
 
 	public static FileFilter splitedFileFilter = new FileFilter() {
 		public boolean accept(File file) {
@@ -210,6 +244,12 @@ public class ImporterHelper {
 	}
     };
 
+    private static FileFilter archiveFileFilter = new FileFilter() {
+	public boolean accept(File file) {
+	    return (file.isFile() && file.exists()) && ArchiveEntryReader.isArchive(file.getName());
+	}
+    };
+
     private static FileFilter gisFileFilter = new FileFilter() {
 	public boolean accept(File file) {
 	    Pattern pattern = Pattern.compile(GIS_FILE_ACCEPT_REGEX_STRING);
@@ -341,6 +381,61 @@ public class ImporterHelper {
     }
 
     
+    /**
+     * @param directoryPath
+     *            The directory where the files have been downloaded
+     * @return the archives and the compressed files present in the
+     *         specified directory, that can be read without being
+     *         decompressed, sorted by name, or an empty array if there is no
+     *         file. Like {@link #listCountryFilesToImport(String)}, only the
+     *         archive of {@link #ALLCOUTRY_FILENAME} (and the one of
+     *         {@link ImporterConfig#GEONAMES_UK_FULL_ZIPCODE_FILE}) is
+     *         returned if it is present
+     * @see ArchiveEntryReader#isArchive(String)
+     */
+    public static File[] listArchivesToStream(String directoryPath) {
+
+	File dir = new File(directoryPath);
+
+	File[] files = dir.listFiles(archiveFileFilter);
+	if (files == null) {
+	    return new File[0];
+	}
+	Arrays.sort(files);
+	File allCountriesArchive = null;
+	File ukFullZipArchive = null;
+	for (File file : files) {
+	    String name = ArchiveEntryReader.getNameWithoutArchiveExtension(file.getName());
+	    if (isNameOf(ALLCOUTRY_FILENAME, name)) {
+		allCountriesArchive = file;
+	    } else if (isNameOf(ImporterConfig.GEONAMES_UK_FULL_ZIPCODE_FILE, name)) {
+		ukFullZipArchive = file;
+	    }
+	}
+	if (allCountriesArchive != null) {
+	    if (ukFullZipArchive != null) {
+		files = new File[] { allCountriesArchive, ukFullZipArchive };
+		logger.info(allCountriesArchive.getName() + " is present. Only this archive and " + ukFullZipArchive.getName()
+			+ " will be imported. all other archives will be ignore");
+	    } else {
+		files = new File[] { allCountriesArchive };
+		logger.info(allCountriesArchive.getName() + " is present. Only this archive will be imported. all other archives will be ignore");
+	    }
+	}
+	for (int i = 0; i < files.length; i++) {
+	    logger.info(files[i].getName() + " will be read without being decompressed");
+	}
+	return files;
+    }
+
+    /**
+     * @return true if the name is the file name, with or without its
+     *         extension (allCountries for allCountries.txt)
+     */
+    private static boolean isNameOf(String fileName, String name) {
+	return fileName.equals(name) || fileName.substring(0, fileName.lastIndexOf('.')).equals(name);
+    }
+
     /**
      * @param URL the HTTP URL
      * @return The size of the HTTP file using HTTP head method 
@@ -866,8 +961,8 @@ public class ImporterHelper {
 						if (name!=null  && !StringHelper.isEmptyString(name) && name.length()<OpenStreetMap.MAX_ALTERNATENAME_SIZE){
 							if (street.getName()==null){
 								street.setName(name);
-								if (lang.equals("de") && decompounder.isDecompoundName(name)){
-									String otherFormat = decompounder.getOtherFormat(name);
+								String otherFormat;
+								if (lang.equals("de") && (otherFormat = getOtherFormat(name))!=null){
 									alternateNameToAdd = new AlternateOsmName(otherFormat,lang.trim().toLowerCase(),AlternateNameSource.OPENSTREETMAP,street.getCountryCode());
 									if (street.getAlternateNames() == null  || !street.getAlternateNames().contains(alternateNameToAdd)){
 										street.addAlternateName(alternateNameToAdd);
@@ -881,8 +976,8 @@ public class ImporterHelper {
 								if (street.getAlternateNames() == null  || !street.getAlternateNames().contains(alternateNameToAdd)){
 									street.addAlternateName(alternateNameToAdd);
 								}
-									if (lang.equalsIgnoreCase("DE") && decompounder.isDecompoundName(name)){
-										String otherFormat = decompounder.getOtherFormat(name);
+									String otherFormat;
+									if (lang.equalsIgnoreCase("DE") && (otherFormat = getOtherFormat(name))!=null){
 										alternateNameToAdd = new AlternateOsmName(otherFormat,lang.trim().toLowerCase(),AlternateNameSource.OPENSTREETMAP,street.getCountryCode());
 										alternateNameToAdd.setCountryCode(street.getCountryCode());
 										if (street.getAlternateNames() == null  || !street.getAlternateNames().contains(alternateNameToAdd)){
@@ -902,8 +997,9 @@ public class ImporterHelper {
 					
 			}	
 		}
-		if (street.getName()!=null && street.getCountryCode()!=null && street.getCountryCode().equals("DE") && decompounder.isDecompoundName(street.getName())){
-						AlternateOsmName alternateNameOtherFormat = new AlternateOsmName(decompounder.getOtherFormat(street.getName()),"DE",AlternateNameSource.OPENSTREETMAP,street.getCountryCode());
+		String otherFormat;
+		if (street.getName()!=null && street.getCountryCode()!=null && street.getCountryCode().equals("DE") && (otherFormat = getOtherFormat(street.getName()))!=null){
+						AlternateOsmName alternateNameOtherFormat = new AlternateOsmName(otherFormat,"DE",AlternateNameSource.OPENSTREETMAP,street.getCountryCode());
 						if (street.getAlternateNames() == null  || !street.getAlternateNames().contains(alternateNameOtherFormat)){
 							alternateNameOtherFormat.setCountryCode(street.getCountryCode());
 							street.addAlternateName(alternateNameOtherFormat);
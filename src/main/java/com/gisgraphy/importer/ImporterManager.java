@@ -26,6 +26,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 import org.slf4j.Logger;
@@ -36,11 +37,14 @@ import org.springframework.beans.factory.annotation.Required;
 import com.gisgraphy.domain.geoloc.entity.GisFeature;
 import com.gisgraphy.domain.repository.IDatabaseHelper;
 import com.gisgraphy.domain.repository.IGisDao;
+import com.gisgraphy.domain.repository.IIdGenerator;
 import com.gisgraphy.domain.repository.IImporterStatusListDao;
+import com.gisgraphy.domain.repository.IShapeIndex;
 import com.gisgraphy.domain.repository.ISolRSynchroniser;
 import com.gisgraphy.domain.valueobject.ImporterStatusDto;
 import com.gisgraphy.fulltext.IsolrClient;
 import com.gisgraphy.helper.FileHelper;
+import com.gisgraphy.reversegeocoding.StreetSpatialIndexLoader;
 import com.gisgraphy.service.impl.StatsUsageServiceImpl;
 import com.gisgraphy.stats.IStatsDataManager;
 
@@ -53,6 +57,18 @@ public class ImporterManager implements IImporterManager {
 
     private List<IImporterProcessor> importers = null;
 
+    /**
+     * The importers that should be processed before an importer
+     * 
+     * @see ImporterScheduler
+     */
+    private Map<IImporterProcessor, List<IImporterProcessor>> prerequisites = null;
+
+    /**
+     * The maximum number of importers that run at the same time
+     */
+    private int parallelism = 1;
+
     private ImporterConfig importerConfig;
 
     @Autowired
@@ -78,6 +94,15 @@ public class ImporterManager implements IImporterManager {
     @Autowired
     private IDatabaseHelper databaseHelper;
     
+    @Autowired(required = false)
+    private IShapeIndex shapeIndex;
+    
+    @Autowired(required = false)
+    private StreetSpatialIndexLoader streetSpatialIndexLoader;
+    
+    @Autowired(required = false)
+    private IIdGenerator idGenerator;
+    
     private String hookURL="";
 
   
@@ -132,11 +157,35 @@ public class ImporterManager implements IImporterManager {
 	    logger.info("temporarily disabling stats");
 	    StatsUsageServiceImpl.disabled=true;
 	    this.inProgress = true;
-	    for (IImporterProcessor importer : importers) {
-		logger.info("will now process "
-			+ importer.getClass().getSimpleName());
-		importer.process();
-	    }
+	    new ImporterScheduler(importers, prerequisites, parallelism) {
+		@Override
+		protected void onStarted(IImporterProcessor importer) {
+		    if (idGenerator != null) {
+			idGenerator.onImporterStarted();
+		    }
+		    if (streetSpatialIndexLoader != null && modifiesStreets(importer)) {
+			streetSpatialIndexLoader.onModificationStarted();
+		    }
+		}
+
+		@Override
+		protected void onEnded(IImporterProcessor importer) {
+		    if (idGenerator != null) {
+			idGenerator.onImporterEnded();
+		    }
+		    if (streetSpatialIndexLoader != null && modifiesStreets(importer)) {
+			streetSpatialIndexLoader.onModificationEnded();
+		    }
+		}
+
+		@Override
+		protected void onProcessed(IImporterProcessor importer) {
+		    reloadShapeIndexIfStale();
+		    if (streetSpatialIndexLoader != null && modifiesStreets(importer)) {
+			streetSpatialIndexLoader.reloadIfStale();
+		    }
+		}
+	    }.process();
 	    try {
 			statsDataManager.exportStats();
 		} catch (Exception e1) {
@@ -278,6 +327,9 @@ public class ImporterManager implements IImporterManager {
 	    warningAndErrorMessage.addAll(creationErrorMessage);
 	    
 	    resetFullTextSearchEngine();
+	    if (streetSpatialIndexLoader != null) {
+		streetSpatialIndexLoader.markStale();
+	    }
 	    setAlreadyDone(false);
 	    for (IImporterProcessor importer :importers){
 		importer.resetStatus();
@@ -335,6 +387,27 @@ public class ImporterManager implements IImporterManager {
 	this.importers = importers;
     }
 
+    /**
+     * @param prerequisites
+     *                the importers that should be processed before an
+     *                importer. An importer that is not a key of the map
+     *                depends on all the importers that are before it in
+     *                {@link #setImporters(List)}
+     */
+    public void setPrerequisites(
+	    Map<IImporterProcessor, List<IImporterProcessor>> prerequisites) {
+	this.prerequisites = prerequisites;
+    }
+
+    /**
+     * @param parallelism
+     *                the maximum number of importers that run at the same
+     *                time, 1 to process them one after the other
+     */
+    public void setParallelism(int parallelism) {
+	this.parallelism = parallelism;
+    }
+
     /**
      * @param daos
      *                the iDaos to set
@@ -402,4 +475,40 @@ public class ImporterManager implements IImporterManager {
     
     
 
+    /**
+     * Reload the in-memory shape index if the last importer has modified the
+     * cities, the subdivisions or the adms, so that the next importers that
+     * search by shape do not fall back to the database
+     */
+    protected void reloadShapeIndexIfStale() {
+	if (shapeIndex != null) {
+	    //importAll holds the lock of the manager while the importers run
+	    synchronized (shapeIndex) {
+		try {
+		    shapeIndex.reloadIfStale();
+		} catch (Exception e) {
+		    logger.error("Can not reload the shape index : " + e.getMessage(), e);
+		}
+	    }
+	}
+    }
+
+    public void setShapeIndex(IShapeIndex shapeIndex) {
+	this.shapeIndex = shapeIndex;
+    }
+
+    /**
+     * @return true if the importer stores or deletes streets or house
+     *         numbers, that are in the street spatial index of the reverse
+     *         geocoding
+     */
+    protected boolean modifiesStreets(IImporterProcessor importer) {
+	return importer instanceof OpenStreetMapSimpleImporter || importer instanceof OpenStreetMapHouseNumberSimpleImporter
+		|| importer instanceof OpenAddressesSimpleImporter;
+    }
+
+    public void setStreetSpatialIndexLoader(StreetSpatialIndexLoader streetSpatialIndexLoader) {
+	this.streetSpatialIndexLoader = streetSpatialIndexLoader;
+    }
+
 }
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.importer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process the lines of a file with one reader thread, several workers that
+ * prepare the data (see {@link IPipelinedImporterProcessor#prepareData(String)})
+ * and the calling thread that persists them, commits and flushes (the
+ * transaction is bound to the calling thread). The stages are linked by
+ * bounded queues, so a slow stage slows down the previous ones instead of
+ * filling the memory.
+ * <p>
+ * The number of lines read, prepared and persisted and the throughput of
+ * each stage can be read while the file is processed.
+ * 
+ * @param <T>
+ *                the type of the prepared data
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class ImporterPipeline<T> {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ImporterPipeline.class);
+
+    /**
+     * the time to wait on a queue before checking if the pipeline has been
+     * aborted, in milliseconds
+     */
+    private static final long POLL_TIMEOUT = 200;
+
+    private static final Object END = new Object();
+
+    private final AbstractSimpleImporterProcessor processor;
+
+    private final IPipelinedImporterProcessor<T> pipelinedProcessor;
+
+    private final int numberOfWorkers;
+
+    private final BlockingQueue<Object> lines;
+
+    private final BlockingQueue<Object> preparedLines;
+
+    private final AtomicLong numberOfLinesRead = new AtomicLong();
+
+    private final AtomicLong numberOfLinesPrepared = new AtomicLong();
+
+    private final AtomicLong numberOfLinesPersisted = new AtomicLong();
+
+    private volatile boolean aborted = false;
+
+    private volatile Throwable failure;
+
+    private long startTime;
+
+    private final class Line {
+	private final String input;
+	private final long lineNumber;
+	private T data;
+
+	private Line(String input, long lineNumber) {
+	    this.input = input;
+	    this.lineNumber = lineNumber;
+	}
+    }
+
+    /**
+     * @param processor
+     *                the processor that reads the lines, handles the errors
+     *                and commits
+     * @param pipelinedProcessor
+     *                the processor that prepares and persists the data
+     *                (typically the same object as processor)
+     * @param numberOfWorkers
+     *                the number of threads that prepare the data
+     * @param queueSize
+     *                the capacity of the queues between the stages
+     */
+    public ImporterPipeline(AbstractSimpleImporterProcessor processor, IPipelinedImporterProcessor<T> pipelinedProcessor, int numberOfWorkers,
+	    int queueSize) {
+	if (numberOfWorkers < 1) {
+	    throw new IllegalArgumentException("the pipeline needs at least one worker");
+	}
+	if (queueSize < 1) {
+	    throw new IllegalArgumentException("the size of the queues must be positive");
+	}
+	this.processor = processor;
+	this.pipelinedProcessor = pipelinedProcessor;
+	this.numberOfWorkers = numberOfWorkers;
+	this.lines = new ArrayBlockingQueue<Object>(queueSize);
+	this.preparedLines = new ArrayBlockingQueue<Object>(queueSize);
+    }
+
+    /**
+     * Process all the lines of the current file of the processor and returns
+     * when they have all been persisted.
+     * 
+     * @throws ImporterException
+     *                 if a line can not be processed (according to the
+     *                 error policy of the processor)
+     */
+    @SuppressWarnings("unchecked")
+    public void run() throws ImporterException {
+	startTime = System.currentTimeMillis();
+	String name = processor.getClass().getSimpleName();
+	Thread[] threads = new Thread[numberOfWorkers + 1];
+	threads[0] = new Thread(new Runnable() {
+	    public void run() {
+		read();
+	    }
+	}, name + "-reader");
+	for (int i = 1; i < threads.length; i++) {
+	    threads[i] = new Thread(new Runnable() {
+		public void run() {
+		    prepare();
+		}
+	    }, name + "-worker-" + i);
+	}
+	for (Thread thread : threads) {
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+	try {
+	    int numberOfEndedWorkers = 0;
+	    while (numberOfEndedWorkers < numberOfWorkers) {
+		checkFailure();
+		Object item = preparedLines.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+		if (item == null) {
+		    continue;
+		}
+		if (item == END) {
+		    numberOfEndedWorkers++;
+		    continue;
+		}
+		Line line = (Line) item;
+		try {
+		    pipelinedProcessor.persistData(line.data);
+		} catch (Exception e) {
+		    processor.handleLineError(e, line.input, line.lineNumber);
+		}
+		numberOfLinesPersisted.incrementAndGet();
+		processor.onPipelinedLinePersisted();
+	    }
+	    checkFailure();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new ImporterException("the pipeline of " + name + " has been interrupted", e);
+	} finally {
+	    aborted = true;
+	    for (Thread thread : threads) {
+		thread.interrupt();
+	    }
+	    for (Thread thread : threads) {
+		try {
+		    thread.join();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		}
+	    }
+	    logger.info(name + " pipeline : " + toString());
+	}
+    }
+
+    private void read() {
+	try {
+	    String input;
+	    while ((input = processor.readNextDataLine()) != null) {
+		if (!put(lines, new Line(input, processor.getReadFileLine()))) {
+		    return;
+		}
+		numberOfLinesRead.incrementAndGet();
+	    }
+	    for (int i = 0; i < numberOfWorkers; i++) {
+		if (!put(lines, END)) {
+		    return;
+		}
+	    }
+	} catch (Throwable t) {
+	    fail(t);
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    private void prepare() {
+	try {
+	    while (!aborted) {
+		Object item = lines.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+		if (item == null) {
+		    continue;
+		}
+		if (item == END) {
+		    put(preparedLines, END);
+		    return;
+		}
+		Line line = (Line) item;
+		try {
+		    line.data = pipelinedProcessor.prepareData(line.input);
+		} catch (Exception e) {
+		    processor.handleLineError(e, line.input, line.lineNumber);
+		}
+		numberOfLinesPrepared.incrementAndGet();
+		if (line.data != null && !put(preparedLines, line)) {
+		    return;
+		}
+	    }
+	} catch (InterruptedException e) {
+	    //the pipeline has been aborted
+	} catch (Throwable t) {
+	    fail(t);
+	}
+    }
+
+    /**
+     * @return false if the pipeline has been aborted before the item has been
+     *         put
+     */
+    private boolean put(BlockingQueue<Object> queue, Object item) throws InterruptedException {
+	while (!aborted) {
+	    if (queue.offer(item, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    private void fail(Throwable t) {
+	if (failure == null) {
+	    failure = t;
+	}
+	aborted = true;
+    }
+
+    private void checkFailure() throws ImporterException {
+	Throwable t = failure;
+	if (t instanceof ImporterException) {
+	    throw (ImporterException) t;
+	}
+	if (t != null) {
+	    throw new ImporterException(t.getMessage(), t);
+	}
+    }
+
+    /**
+     * @return the number of lines read from the file (comments excluded)
+     */
+    public long getNumberOfLinesRead() {
+	return numberOfLinesRead.get();
+    }
+
+    /**
+     * @return the number of lines prepared by the workers
+     */
+    public long getNumberOfLinesPrepared() {
+	return numberOfLinesPrepared.get();
+    }
+
+    /**
+     * @return the number of lines persisted
+     */
+    public long getNumberOfLinesPersisted() {
+	return numberOfLinesPersisted.get();
+    }
+
+    /**
+     * @param numberOfLines
+     *                a counter of the pipeline
+     * @return the number of lines per second since the pipeline has started
+     */
+    public long getThroughput(long numberOfLines) {
+	long duration = System.currentTimeMillis() - startTime;
+	return duration <= 0 ? 0 : numberOfLines * 1000 / duration;
+    }
+
+    @Override
+    public String toString() {
+	return getNumberOfLinesRead() + " lines read (" + getThroughput(getNumberOfLinesRead()) + "/s), " + getNumberOfLinesPrepared() + " prepared ("
+		+ getThroughput(getNumberOfLinesPrepared()) + "/s), " + getNumberOfLinesPersisted() + " persisted ("
+		+ getThroughput(getNumberOfLinesPersisted()) + "/s)";
+    }
+
+}
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.importer;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run the importers according to their prerequisites : an importer is started
+ * when all its prerequisites have been processed, and up to
+ * <code>parallelism</code> importers run at the same time. The importers that
+ * are ready are started in the order of the list.<br/>
+ * An importer that doesn't declare its prerequisites depends on all the
+ * importers that are before it in the list, so that a list without any
+ * prerequisite is processed as before, one importer after the other.<br/>
+ * When an importer fails, no other importer is started, the running ones are
+ * waited for and the error is thrown.<br/>
+ * <br/>
+ * usage :
+ * 
+ * <pre>
+ * new ImporterScheduler(importers, prerequisites, 2) {
+ *     protected void onProcessed(IImporterProcessor importer) {
+ * 	//called in the thread of the importer
+ *     }
+ * }.process();
+ * </pre>
+ * 
+ * @see ImporterManager
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class ImporterScheduler {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ImporterScheduler.class);
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+
+    private final List<IImporterProcessor> importers;
+
+    private final int parallelism;
+
+    /**
+     * The number of prerequisites of each importer
+     */
+    private final int[] numberOfPrerequisites;
+
+    /**
+     * The index of the importers that depend on each importer
+     */
+    private final List<List<Integer>> dependents;
+
+    /**
+     * @param importers
+     *            the importers to process
+     * @param prerequisites
+     *            the importers that should be processed before an importer,
+     *            it can be null
+     * @param parallelism
+     *            the maximum number of importers that run at the same time, 1
+     *            or less to run them one after the other in the calling thread
+     * @throws ImporterException
+     *             if the prerequisites have a cycle
+     */
+    public ImporterScheduler(List<IImporterProcessor> importers, Map<IImporterProcessor, List<IImporterProcessor>> prerequisites, int parallelism) {
+	this.importers = importers;
+	this.parallelism = Math.max(1, parallelism);
+	Map<IImporterProcessor, Integer> indexes = new IdentityHashMap<IImporterProcessor, Integer>();
+	for (int i = 0; i < importers.size(); i++) {
+	    indexes.put(importers.get(i), i);
+	}
+	numberOfPrerequisites = new int[importers.size()];
+	dependents = new ArrayList<List<Integer>>(importers.size());
+	for (int i = 0; i < importers.size(); i++) {
+	    dependents.add(new ArrayList<Integer>());
+	}
+	for (int i = 0; i < importers.size(); i++) {
+	    IImporterProcessor importer = importers.get(i);
+	    if (prerequisites != null && prerequisites.containsKey(importer)) {
+		List<IImporterProcessor> importerPrerequisites = prerequisites.get(importer);
+		if (importerPrerequisites == null) {
+		    continue;
+		}
+		for (IImporterProcessor prerequisite : importerPrerequisites) {
+		    Integer index = indexes.get(prerequisite);
+		    if (index == null) {
+			logger.warn(prerequisite.getClass().getSimpleName() + " is a prerequisite of " + importer.getClass().getSimpleName()
+				+ " but it is not in the importers to process, it will be ignored");
+		    } else if (index != i) {
+			addPrerequisite(i, index);
+		    }
+		}
+	    } else {
+		for (int j = 0; j < i; j++) {
+		    addPrerequisite(i, j);
+		}
+	    }
+	}
+	checkCycles();
+    }
+
+    private void addPrerequisite(int importer, int prerequisite) {
+	if (!dependents.get(prerequisite).contains(importer)) {
+	    dependents.get(prerequisite).add(importer);
+	    numberOfPrerequisites[importer]++;
+	}
+    }
+
+    private void checkCycles() {
+	if (getProcessingOrder().size() != importers.size()) {
+	    throw new ImporterException("the prerequisites of the importers have a cycle");
+	}
+    }
+
+    /**
+     * @return the importers in the order they are started when they run one
+     *         after the other
+     */
+    public List<IImporterProcessor> getProcessingOrder() {
+	int[] remaining = numberOfPrerequisites.clone();
+	TreeSet<Integer> ready = getReadyImporters(remaining);
+	List<IImporterProcessor> order = new ArrayList<IImporterProcessor>(importers.size());
+	while (!ready.isEmpty()) {
+	    int index = ready.pollFirst();
+	    order.add(importers.get(index));
+	    release(index, remaining, ready);
+	}
+	return order;
+    }
+
+    /**
+     * Process all the importers
+     * 
+     * @throws RuntimeException
+     *             the exception thrown by the first importer that fails
+     */
+    public void process() {
+	if (parallelism == 1) {
+	    for (IImporterProcessor importer : getProcessingOrder()) {
+		processImporter(importer);
+	    }
+	    return;
+	}
+	ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+	    public Thread newThread(Runnable runnable) {
+		return new Thread(runnable, "importer-" + threadNumber.incrementAndGet());
+	    }
+	});
+	CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(executor);
+	int[] remaining = numberOfPrerequisites.clone();
+	TreeSet<Integer> ready = getReadyImporters(remaining);
+	Throwable failure = null;
+	int running = 0;
+	try {
+	    while (true) {
+		while (failure == null && !ready.isEmpty() && running < parallelism) {
+		    final int index = ready.pollFirst();
+		    completionService.submit(new Callable<Integer>() {
+			public Integer call() {
+			    processImporter(importers.get(index));
+			    return index;
+			}
+		    });
+		    running++;
+		}
+		if (running == 0) {
+		    break;
+		}
+		try {
+		    int index = completionService.take().get();
+		    release(index, remaining, ready);
+		} catch (ExecutionException e) {
+		    if (failure == null) {
+			failure = e.getCause();
+		    }
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    throw new ImporterException("interrupted while waiting for the importers", e);
+		}
+		running--;
+	    }
+	} finally {
+	    executor.shutdown();
+	}
+	if (failure instanceof RuntimeException) {
+	    throw (RuntimeException) failure;
+	} else if (failure instanceof Error) {
+	    throw (Error) failure;
+	} else if (failure != null) {
+	    throw new ImporterException(failure.getMessage(), failure);
+	}
+    }
+
+    private void processImporter(IImporterProcessor importer) {
+	logger.info("will now process " + importer.getClass().getSimpleName());
+	onStarted(importer);
+	try {
+	    importer.process();
+	} finally {
+	    onEnded(importer);
+	}
+	onProcessed(importer);
+    }
+
+    /**
+     * Template method that can be override. It is called before an importer
+     * is processed, in the thread that will process it
+     * 
+     * @param importer
+     *            the importer to process
+     */
+    protected void onStarted(IImporterProcessor importer) {
+    }
+
+    /**
+     * Template method that can be override. It is called after an importer
+     * has been processed, with or without error, in the thread that has
+     * processed it and before {@link #onProcessed(IImporterProcessor)}
+     * 
+     * @param importer
+     *            the processed importer
+     */
+    protected void onEnded(IImporterProcessor importer) {
+    }
+
+    /**
+     * Template method that can be override. It is called after an importer
+     * has been processed without error, in the thread that has processed it
+     * 
+     * @param importer
+     *            the processed importer
+     */
+    protected void onProcessed(IImporterProcessor importer) {
+    }
+
+    private TreeSet<Integer> getReadyImporters(int[] remaining) {
+	TreeSet<Integer> ready = new TreeSet<Integer>();
+	for (int i = 0; i < remaining.length; i++) {
+	    if (remaining[i] == 0) {
+		ready.add(i);
+	    }
+	}
+	return ready;
+    }
+
+    private void release(int index, int[] remaining, TreeSet<Integer> ready) {
+	for (int dependent : dependents.get(index)) {
+	    if (--remaining[dependent] == 0) {
+		ready.add(dependent);
+	    }
+	}
+    }
+
+}
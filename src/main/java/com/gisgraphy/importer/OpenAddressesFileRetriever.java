@@ -116,4 +116,12 @@ public class OpenAddressesFileRetriever extends AbstractFileRetriever {
 	return true;
     }
 
+    /* (non-Javadoc)
+     * @see com.gisgraphy.importer.AbstractFileRetriever#isStreamed()
+     */
+    @Override
+    protected boolean isStreamed() {
+	return importerConfig.isStreamingEnabled();
+    }
+
 }
@@ -24,7 +24,9 @@ package com.gisgraphy.importer;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,7 +49,6 @@ import com.gisgraphy.domain.valueobject.NameValueDTO;
 import com.gisgraphy.domain.valueobject.Output;
 import com.gisgraphy.domain.valueobject.Output.OutputStyle;
 import com.gisgraphy.domain.valueobject.Pagination;
-import com.gisgraphy.fulltext.FullTextSearchEngine;
 import com.gisgraphy.fulltext.FulltextQuery;
 import com.gisgraphy.fulltext.FulltextResultsDto;
 import com.gisgraphy.fulltext.IFullTextSearchEngine;
@@ -102,6 +103,15 @@ public class OpenAddressesSimpleImporter extends AbstractSimpleImporterProcessor
 	
 	protected OpenStreetMap lastCreatedStreet;
 
+	/**
+	 * The streets of the current country created by the bulk load, by name
+	 * and city : they can not be found by {@link #findNearestStreet} before
+	 * the end of the import
+	 */
+	protected Map<String, OpenStreetMap> bulkLoadedStreets = new HashMap<String, OpenStreetMap>();
+
+	private String bulkLoadedStreetsCountryCode;
+
 	protected String lasthash="?";
 	protected String currentHash="?";
 
@@ -155,8 +165,10 @@ public class OpenAddressesSimpleImporter extends AbstractSimpleImporterProcessor
 	@Override
 	protected void setup() {
 		//temporary disable logging when importing
-		FullTextSearchEngine.disableLogging=true;
+		disableSearchEnginesLogging();
 		idGenerator.sync();
+		bulkLoadedStreets.clear();
+		bulkLoadedStreetsCountryCode = null;
 		super.setup();
 	}
 
@@ -171,6 +183,14 @@ public class OpenAddressesSimpleImporter extends AbstractSimpleImporterProcessor
 		return ImporterHelper.listCountryFilesToImport(importerConfig.getOpenAddressesDir());
 	}
 
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#getArchiveDirectory()
+	 */
+	@Override
+	protected String getArchiveDirectory() {
+		return importerConfig.getOpenAddressesDir();
+	}
+
 
 	/*
 	 * (non-Javadoc)
@@ -270,7 +290,7 @@ public class OpenAddressesSimpleImporter extends AbstractSimpleImporterProcessor
 			}
 		} else {
 			street= createStreet(fields);
-			if (street!=null && street.getId()==null){
+			if (street!=null && street.getId()==null && !isBulkLoad()){
 				logger.debug("lastCreatedStreet need to be saved "+lastCreatedStreet);
 				openStreetMapDao.save(street);
 			}else {
@@ -281,17 +301,25 @@ public class OpenAddressesSimpleImporter extends AbstractSimpleImporterProcessor
 			street.setZipCode(fields[8]);
 		} 
 		HouseNumber hn=null;
-		try {
-			openStreetMapDao.save(street);
-			street.setCountryCode(countryCode);
-			hn = new HouseNumber(cleanedNumber,location,countryCode);
-			hn.setName(housename);
-			hn.setSource(GISSource.OPENADDRESSES);
-			street.addHouseNumber(hn);
-			hn.setCountryCode(street.getCountryCode());
-			houseNumberDao.save(hn);
-		} catch (Exception e) {
-			logger.error("error when savig data : "+e.getMessage(),e);
+		if (isBulkLoad()){
+			try {
+				hn = bulkLoadHouseNumber(street, cleanedNumber, location, countryCode, housename);
+			} catch (Exception e) {
+				logger.error("error when loading data : "+e.getMessage(),e);
+			}
+		} else {
+			try {
+				openStreetMapDao.save(street);
+				street.setCountryCode(countryCode);
+				hn = new HouseNumber(cleanedNumber,location,countryCode);
+				hn.setName(housename);
+				hn.setSource(GISSource.OPENADDRESSES);
+				street.addHouseNumber(hn);
+				hn.setCountryCode(street.getCountryCode());
+				houseNumberDao.save(hn);
+			} catch (Exception e) {
+				logger.error("error when savig data : "+e.getMessage(),e);
+			}
 		}
 
 		logger.debug(currentHash+ " : have save "+hn);
@@ -336,6 +364,74 @@ public class OpenAddressesSimpleImporter extends AbstractSimpleImporterProcessor
 	}
 
 
+	/**
+	 * Load the house number, and the street if it is a new one, with the
+	 * bulk loader. The street is indexed at the end of the import, so a new
+	 * street is only reused by the following lines of the same street or
+	 * with the same name and city (see {@link #bulkLoadedStreets}).
+	 */
+	protected HouseNumber bulkLoadHouseNumber(OpenStreetMap street, String number, Point location, String countryCode, String houseName) {
+		if (street.getId()==null){
+			street = getOrAddBulkLoadedStreet(street, countryCode);
+		} else {
+			street.setCountryCode(countryCode);
+		}
+		HouseNumber hn = new HouseNumber(number,location,countryCode);
+		hn.setName(houseName);
+		hn.setSource(GISSource.OPENADDRESSES);
+		//not added to the house numbers of the street : an existing street
+		//would cascade it at flush
+		hn.setStreet(street);
+		hn.setCountryCode(street.getCountryCode());
+		bulkLoader.add(hn);
+		markForIndexation(street.getId());
+		return hn;
+	}
+
+	/**
+	 * @return the street created by the bulk load with the same name and city
+	 *         or the new street, that is added to the bulk loader
+	 */
+	protected OpenStreetMap getOrAddBulkLoadedStreet(OpenStreetMap street, String countryCode) {
+		if (countryCode==null || !countryCode.equals(bulkLoadedStreetsCountryCode)){
+			//the streets of the previous country will not be reused
+			bulkLoadedStreets.clear();
+			bulkLoadedStreetsCountryCode = countryCode;
+		}
+		String key = null;
+		if (street.getName()!=null && street.getIsIn()!=null){
+			key = street.getName().toLowerCase()+"|"+street.getIsIn().toLowerCase();
+			OpenStreetMap bulkLoadedStreet = bulkLoadedStreets.get(key);
+			if (bulkLoadedStreet!=null){
+				logger.debug("reuse the street created for "+key+" : "+bulkLoadedStreet);
+				lastCreatedStreet = bulkLoadedStreet;
+				return bulkLoadedStreet;
+			}
+		}
+		street.setCountryCode(countryCode);
+		bulkLoader.add(street);
+		if (key!=null){
+			bulkLoadedStreets.put(key, street);
+		}
+		return street;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#supportsBulkLoad()
+	 */
+	@Override
+	protected boolean supportsBulkLoad() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#indexBulkLoadedEntities(java.util.List)
+	 */
+	@Override
+	protected int indexBulkLoadedEntities(List<Long> ids) {
+		return openStreetMapDao.fireStoredEvents(ids);
+	}
+
 	protected OpenStreetMap createStreet(String[] fields) {
 		if (fields!=null && fields.length==getNumberOfColumns() ){
 
@@ -637,7 +733,7 @@ public class OpenAddressesSimpleImporter extends AbstractSimpleImporterProcessor
 	@Override
 	protected void tearDown() {
 		super.tearDown();
-		FullTextSearchEngine.disableLogging=false;
+		solRSynchroniser.flush();
 	}
 
 
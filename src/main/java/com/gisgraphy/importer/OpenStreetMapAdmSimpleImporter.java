@@ -58,7 +58,6 @@ import com.gisgraphy.domain.valueobject.Output;
 import com.gisgraphy.domain.valueobject.Output.OutputStyle;
 import com.gisgraphy.domain.valueobject.Pagination;
 import com.gisgraphy.fulltext.Constants;
-import com.gisgraphy.fulltext.FullTextSearchEngine;
 import com.gisgraphy.fulltext.FulltextQuery;
 import com.gisgraphy.fulltext.FulltextResultsDto;
 import com.gisgraphy.fulltext.IFullTextSearchEngine;
@@ -116,7 +115,7 @@ public class OpenStreetMapAdmSimpleImporter extends AbstractSimpleImporterProces
 	protected void setup() {
 		super.setup();
 		//temporary disable logging when importing
-		FullTextSearchEngine.disableLogging=true;
+		disableSearchEnginesLogging();
 		logger.info("sync idgenerator");
 		idGenerator.sync();
 	}
@@ -130,6 +129,14 @@ public class OpenStreetMapAdmSimpleImporter extends AbstractSimpleImporterProces
 		return ImporterHelper.listCountryFilesToImport(importerConfig.getOpenStreetMapAdmDir());
 	}
 
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#getArchiveDirectory()
+	 */
+	@Override
+	protected String getArchiveDirectory() {
+		return importerConfig.getOpenStreetMapAdmDir();
+	}
+
 	/* (non-Javadoc)
 	 * @see com.gisgraphy.domain.geoloc.importer.AbstractImporterProcessor#getNumberOfColumns()
 	 */
@@ -458,8 +465,8 @@ public class OpenStreetMapAdmSimpleImporter extends AbstractSimpleImporterProces
 	//TODO test
 	protected void tearDown() {
 		super.tearDown();
+		solRSynchroniser.flush();
 		String savedMessage = this.statusMessage;
-		FullTextSearchEngine.disableLogging=false;
 		/*try {
 			this.statusMessage = internationalisationService.getString("import.fulltext.optimize");
 			solRSynchroniser.optimize();
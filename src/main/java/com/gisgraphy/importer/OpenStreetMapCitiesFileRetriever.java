@@ -116,4 +116,12 @@ public class OpenStreetMapCitiesFileRetriever extends AbstractFileRetriever {
 	return false;
     }
 
+    /* (non-Javadoc)
+     * @see com.gisgraphy.importer.AbstractFileRetriever#isStreamed()
+     */
+    @Override
+    protected boolean isStreamed() {
+	return importerConfig.isStreamingEnabled();
+    }
+
 }
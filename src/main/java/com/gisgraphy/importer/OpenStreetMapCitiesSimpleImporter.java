@@ -54,7 +54,6 @@ import com.gisgraphy.domain.valueobject.Output;
 import com.gisgraphy.domain.valueobject.Output.OutputStyle;
 import com.gisgraphy.domain.valueobject.Pagination;
 import com.gisgraphy.fulltext.Constants;
-import com.gisgraphy.fulltext.FullTextSearchEngine;
 import com.gisgraphy.fulltext.FulltextQuery;
 import com.gisgraphy.fulltext.FulltextResultsDto;
 import com.gisgraphy.fulltext.IFullTextSearchEngine;
@@ -119,7 +118,7 @@ public class OpenStreetMapCitiesSimpleImporter extends AbstractSimpleImporterPro
     protected void setup() {
         super.setup();
         //temporary disable logging when importing
-        FullTextSearchEngine.disableLogging=true;
+        disableSearchEnginesLogging();
         logger.info("sync idgenerator");
         idGenerator.sync();
     }
@@ -133,6 +132,14 @@ public class OpenStreetMapCitiesSimpleImporter extends AbstractSimpleImporterPro
 	return ImporterHelper.listCountryFilesToImport(importerConfig.getOpenStreetMapCitiesDir());
     }
 
+    /* (non-Javadoc)
+     * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#getArchiveDirectory()
+     */
+    @Override
+    protected String getArchiveDirectory() {
+	return importerConfig.getOpenStreetMapCitiesDir();
+    }
+
     /* (non-Javadoc)
      * @see com.gisgraphy.domain.geoloc.importer.AbstractImporterProcessor#getNumberOfColumns()
      */
@@ -880,6 +887,7 @@ public class OpenStreetMapCitiesSimpleImporter extends AbstractSimpleImporterPro
     //TODO test
     protected void tearDown() {
     	super.tearDown();
+    	solRSynchroniser.flush();
     	String savedMessage = this.statusMessage;
     	/*try {
     		this.statusMessage = internationalisationService.getString("import.updatecitysubdivision");
@@ -902,7 +910,6 @@ public class OpenStreetMapCitiesSimpleImporter extends AbstractSimpleImporterPro
     	finally {
     	    this.statusMessage = savedMessage;
 		}
-    	FullTextSearchEngine.disableLogging=false;
     	/*try {
     		this.statusMessage = internationalisationService.getString("import.fulltext.optimize");
     		solRSynchroniser.optimize();
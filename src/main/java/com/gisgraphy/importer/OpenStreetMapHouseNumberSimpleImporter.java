@@ -47,7 +47,6 @@ import com.gisgraphy.domain.valueobject.NameValueDTO;
 import com.gisgraphy.domain.valueobject.Output;
 import com.gisgraphy.domain.valueobject.Output.OutputStyle;
 import com.gisgraphy.domain.valueobject.Pagination;
-import com.gisgraphy.fulltext.FullTextSearchEngine;
 import com.gisgraphy.fulltext.FulltextQuery;
 import com.gisgraphy.fulltext.FulltextResultsDto;
 import com.gisgraphy.fulltext.IFullTextSearchEngine;
@@ -128,7 +127,7 @@ public class OpenStreetMapHouseNumberSimpleImporter extends AbstractSimpleImport
 	@Override
 	protected void setup() {
 		//temporary disable logging when importing
-		FullTextSearchEngine.disableLogging=true;
+		disableSearchEnginesLogging();
 		super.setup();
 	}
 
@@ -143,6 +142,14 @@ public class OpenStreetMapHouseNumberSimpleImporter extends AbstractSimpleImport
 		return ImporterHelper.listCountryFilesToImport(importerConfig.getOpenStreetMapHouseNumberDir());
 	}
 
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#getArchiveDirectory()
+	 */
+	@Override
+	protected String getArchiveDirectory() {
+		return importerConfig.getOpenStreetMapHouseNumberDir();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -636,7 +643,47 @@ ___W___house"} SHAPE"
 	}
 
 	protected void saveOsm(OpenStreetMap osm) {
-		openStreetMapDao.save(osm);
+		if (isBulkLoad()) {
+			bulkLoadHouseNumbers(osm);
+		} else {
+			openStreetMapDao.save(osm);
+		}
+	}
+
+	/**
+	 * Load the new house numbers of the street with the bulk loader and
+	 * remove them from the street, otherwise hibernate would cascade them at
+	 * flush. The other changes of the street are flushed by hibernate and
+	 * the street is indexed at the end of the import.
+	 */
+	protected void bulkLoadHouseNumbers(OpenStreetMap osm) {
+		if (osm.getHouseNumbers() != null) {
+			List<HouseNumber> loadedHouseNumbers = new ArrayList<HouseNumber>();
+			for (HouseNumber houseNumber : osm.getHouseNumbers()) {
+				if (houseNumber.getId() == null) {
+					bulkLoader.add(houseNumber);
+					loadedHouseNumbers.add(houseNumber);
+				}
+			}
+			osm.getHouseNumbers().removeAll(loadedHouseNumbers);
+		}
+		markForIndexation(osm.getId());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#supportsBulkLoad()
+	 */
+	@Override
+	protected boolean supportsBulkLoad() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#indexBulkLoadedEntities(java.util.List)
+	 */
+	@Override
+	protected int indexBulkLoadedEntities(List<Long> ids) {
+		return openStreetMapDao.fireStoredEvents(ids);
 	}
 
 	protected List<HouseNumber> processInterpolationHouseNumber(InterpolationHouseNumber house) {
@@ -1089,7 +1136,7 @@ ___W___house"} SHAPE"
 	// TODO test
 	protected void tearDown() {
 		super.tearDown();
-		FullTextSearchEngine.disableLogging=false;
+		solRSynchroniser.flush();
 	}
 
 
@@ -110,7 +110,7 @@ public class OpenStreetMapPoisSimpleImporter extends AbstractSimpleImporterProce
     protected void setup() {
         super.setup();
         //temporary disable logging when importing
-        FullTextSearchEngine.disableLogging=true;
+        disableSearchEnginesLogging();
         idGenerator.sync();
     }
     
@@ -123,6 +123,14 @@ public class OpenStreetMapPoisSimpleImporter extends AbstractSimpleImporterProce
     	return ImporterHelper.listCountryFilesToImport(importerConfig.getOpenStreetMapPoisDir());
     }
 
+    /* (non-Javadoc)
+     * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#getArchiveDirectory()
+     */
+    @Override
+    protected String getArchiveDirectory() {
+	return importerConfig.getOpenStreetMapPoisDir();
+    }
+
     /* (non-Javadoc)
      * @see com.gisgraphy.domain.geoloc.importer.AbstractImporterProcessor#getNumberOfColumns()
      */
@@ -473,6 +481,7 @@ public class OpenStreetMapPoisSimpleImporter extends AbstractSimpleImporterProce
     //TODO test
     protected void tearDown() {
     	super.tearDown();
+    	solRSynchroniser.flush();
     	String savedMessage = this.statusMessage;
     	/*try {
     		 FullTextSearchEngine.disableLogging=true;
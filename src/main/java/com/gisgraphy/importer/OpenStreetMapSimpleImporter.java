@@ -37,6 +37,7 @@ import org.springframework.beans.factory.annotation.Required;
 
 import com.gisgraphy.addressparser.format.BasicAddressFormater;
 import com.gisgraphy.domain.geoloc.entity.AlternateName;
+import com.gisgraphy.domain.geoloc.entity.AlternateOsmName;
 import com.gisgraphy.domain.geoloc.entity.City;
 import com.gisgraphy.domain.geoloc.entity.CitySubdivision;
 import com.gisgraphy.domain.geoloc.entity.GisFeature;
@@ -50,8 +51,6 @@ import com.gisgraphy.domain.repository.ISolRSynchroniser;
 import com.gisgraphy.domain.valueobject.GISSource;
 import com.gisgraphy.domain.valueobject.NameValueDTO;
 import com.gisgraphy.domain.valueobject.SpeedMode;
-import com.gisgraphy.fulltext.FullTextSearchEngine;
-import com.gisgraphy.geoloc.GeolocSearchEngine;
 import com.gisgraphy.helper.GeolocHelper;
 import com.gisgraphy.helper.StringHelper;
 import com.gisgraphy.street.StreetType;
@@ -61,10 +60,15 @@ import com.vividsolutions.jts.geom.Point;
 
 /**
  * Import the street from an (pre-processed) openStreet map data file .
+ * <p>
+ * The lines can be processed by an {@link ImporterPipeline} : they are parsed
+ * by the workers, which also fill the is_in fields and the labels when the
+ * {@link CityLookupIndex} can be used. Otherwise the is_in fields are filled
+ * from the database when the street is persisted.
  * 
  * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
  */
-public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor {
+public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor implements IPipelinedImporterProcessor<OpenStreetMap> {
 	
 	protected static final Logger logger = LoggerFactory.getLogger(OpenStreetMapSimpleImporter.class);
 	
@@ -92,6 +96,12 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
     @Autowired
     protected ICitySubdivisionDao citySubdivisionDao;
     
+    /**
+     * the cities of the current country, null if the is_in fields are
+     * filled from the database
+     */
+    protected CityLookupIndex cityLookupIndex;
+    
     private static final Pattern pattern = Pattern.compile("(\\w+)\\s\\d+.*",Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
     
     
@@ -108,14 +118,32 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
 
     }
     
+    /* (non-Javadoc)
+     * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#supportsBulkLoad()
+     */
+    @Override
+    protected boolean supportsBulkLoad() {
+	return true;
+    }
+
+    /* (non-Javadoc)
+     * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#indexBulkLoadedEntities(java.util.List)
+     */
+    @Override
+    protected int indexBulkLoadedEntities(List<Long> ids) {
+	return openStreetMapDao.fireStoredEvents(ids);
+    }
+    
     @Override
     protected void setup() {
         super.setup();
         //temporary disable logging when importing
-        FullTextSearchEngine.disableLogging=true;
-        GeolocSearchEngine.disableLogging=true;
+        disableSearchEnginesLogging();
         logger.info("reseting Openstreetmap generatedId");
         idGenerator.sync();
+        if (shouldFillIsInField() && importerConfig.isCityLookupIndexEnabled()) {
+        	cityLookupIndex = new CityLookupIndex(cityDao, citySubdivisionDao, CityLookupIndex.DEFAULT_BATCH_SIZE);
+        }
     }
     
     @Override
@@ -123,8 +151,11 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
     protected void tearDown() {
     	logger.error("start teardown");
     	super.tearDown();
-    	FullTextSearchEngine.disableLogging=false;
-    	GeolocSearchEngine.disableLogging=false;
+    	solRSynchroniser.flush();
+    	if (cityLookupIndex != null) {
+    		cityLookupIndex.logStatistics();
+    		cityLookupIndex = null;
+    	}
     	 String savedMessage = this.statusMessage;
      	try {
      		this.statusMessage = internationalisationService.getString("import.message.createIndex");
@@ -149,6 +180,14 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
     	return ImporterHelper.listCountryFilesToImport(importerConfig.getOpenStreetMapDir());
     }
 
+    /* (non-Javadoc)
+     * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#getArchiveDirectory()
+     */
+    @Override
+    protected String getArchiveDirectory() {
+	return importerConfig.getOpenStreetMapDir();
+    }
+
     /* (non-Javadoc)
      * @see com.gisgraphy.domain.geoloc.importer.AbstractImporterProcessor#getNumberOfColumns()
      */
@@ -157,13 +196,21 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
     	return 10;
     }
     
-    private long currentId = 0;
-
     /* (non-Javadoc)
      * @see com.gisgraphy.domain.geoloc.importer.AbstractImporterProcessor#processData(java.lang.String)
      */
     @Override
     protected void processData(String line) throws ImporterException {
+	OpenStreetMap street = prepareData(line);
+	if (street != null) {
+	    persistData(street);
+	}
+    }
+
+    /* (non-Javadoc)
+     * @see com.gisgraphy.importer.IPipelinedImporterProcessor#prepareData(java.lang.String)
+     */
+    public OpenStreetMap prepareData(String line) throws ImporterException {
 	String[] fields = line.split("\t");
 
 	//
@@ -180,6 +227,7 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
 	checkNumberOfColumn(fields);
 	OpenStreetMap street = new OpenStreetMap();
 	street.setSource(GISSource.OSM);
+	Long currentId = null;
 	// set id
 	if (!isEmptyField(fields, 0, false)) {
 	    Long openstreetmapId= null;
@@ -206,7 +254,7 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
 		street.setLocation(location);
 	    } catch (RuntimeException e) {
 	    	logger.warn(currentId+" can not parse location for "+fields[1]+" : "+e);
-	    	return;
+	    	return null;
 	    }
 	}
 	
@@ -264,7 +312,7 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
 	    	street.setShape((LineString)GeolocHelper.convertFromHEXEWKBToGeometry(fields[10]));
 	    } catch (RuntimeException e) {
 		logger.warn(currentId+" can not parse shape for "+fields[0]+"/"+fields[10] +" : "+e);
-		return;
+		return null;
 	    }
 	}
 	
@@ -297,20 +345,6 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
 		street.setSurface(fields[14].trim());
 	}
 	
-	//5 is_in	
-	/*if (!isEmptyField(fields, 5, false)) {
-		street.setIsIn(fields[5].trim());
-	}*/
-	if (shouldFillIsInField()) {
-		//we try to process is_in fields, because we want to fill adm and zip too
-		setIsInFields(street);
-	}
-	
-	
-	long generatedId= idGenerator.getNextGId();
-	street.setGid(new Long(generatedId));
-
-	
 	//azimuth *2
 	if (!isEmptyField(fields, 15, false)){
 		street.setAzimuthStart(parseAzimuth(fields[15]));
@@ -328,25 +362,68 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
 		populateAlternateNames(street,fields[18]);
 	}
 	
-	//labels
-	if (street.getName() !=null){
-	street.setAlternateLabels(labelGenerator.generateLabels(street));
-	street.setLabel(labelGenerator.generateLabel(street));
-	street.setFullyQualifiedName(labelGenerator.getFullyQualifiedName(street, false));
-	street.setLabelPostal(labelGenerator.generatePostal(street));
+	if (!isInFieldsFilledOnPersist(street)) {
+		fillIsInFieldsAndLabels(street);
 	}
-	
-		
+	return street;
+    }
+
+    /* (non-Javadoc)
+     * @see com.gisgraphy.importer.IPipelinedImporterProcessor#persistData(java.lang.Object)
+     */
+    public void persistData(OpenStreetMap street) throws ImporterException {
+	if (isInFieldsFilledOnPersist(street)) {
+		fillIsInFieldsAndLabels(street);
+	}
+	long generatedId= idGenerator.getNextGId();
+	street.setGid(new Long(generatedId));
 	try {
-		openStreetMapDao.save(street);
+		if (isBulkLoad()) {
+			bulkLoader.add(street);
+			if (street.getAlternateNames() != null) {
+				for (AlternateOsmName alternateName : street.getAlternateNames()) {
+					bulkLoader.add(alternateName);
+				}
+			}
+			markForIndexation(street.getId());
+		} else {
+			openStreetMapDao.save(street);
+		}
 	} catch (ConstraintViolationException e) {
-		logger.error(currentId+" Can not save "+dumpFields(fields)+"(ConstraintViolationException) we continue anyway but you should consider this",e);
+		logger.error(street.getOpenstreetmapId()+" Can not save "+street.getName()+"(ConstraintViolationException) we continue anyway but you should consider this",e);
 	}catch (Exception e) {
-		logger.error(currentId+" Can not save "+dumpFields(fields)+" we continue anyway but you should consider this",e);
+		logger.error(street.getOpenstreetmapId()+" Can not save "+street.getName()+" we continue anyway but you should consider this",e);
 	}
-	//logger.error("finish process of openstreetmapId="+currentId );
+    }
 
+    /**
+     * The is_in fields are read from the database, in the transaction of the
+     * thread that persists the streets, unless the city lookup index can be
+     * used : it is thread safe and the workers of the pipeline can use it
+     * 
+     * @return true if the is_in fields and the labels of the street should be
+     *         filled when it is persisted rather than when it is prepared
+     */
+    protected boolean isInFieldsFilledOnPersist(OpenStreetMap street) {
+	return shouldFillIsInField() && (cityLookupIndex == null || street.getCountryCode() == null);
+    }
 
+    private void fillIsInFieldsAndLabels(OpenStreetMap street) {
+	//5 is_in	
+	/*if (!isEmptyField(fields, 5, false)) {
+		street.setIsIn(fields[5].trim());
+	}*/
+	if (shouldFillIsInField()) {
+		//we try to process is_in fields, because we want to fill adm and zip too
+		setIsInFields(street);
+	}
+	//labels
+	if (street.getName() !=null){
+	street.setAlternateLabels(labelGenerator.generateLabels(street));
+	street.setLabel(labelGenerator.generateLabel(street));
+	street.setFullyQualifiedName(labelGenerator.getFullyQualifiedName(street, false));
+	street.setLabelPostal(labelGenerator.generatePostal(street));
+	}
     }
     
     protected void populateZip(String zipAsString, OpenStreetMap osm) {
@@ -381,7 +458,7 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
 			return azimuth.intValue();
 			
 		} catch (NumberFormatException e) {
-			logger.warn(currentId+" can not parse azimuth "+azimutStr +" : "+e);
+			logger.warn("can not parse azimuth "+azimutStr +" : "+e);
 			return null;
 		}
 	}
@@ -426,7 +503,7 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
     protected void setIsInFields(OpenStreetMap street) {
     	if (street != null && street.getLocation() != null) {
     		//first search By Shape because it is the more reliable :
-    		City cityByShape = cityDao.getByShape(street.getLocation(),street.getCountryCode(),true);
+    		City cityByShape = getCityByShape(street.getLocation(),street.getCountryCode());
     		if (cityByShape != null){
     			street.setIsIn(cityByShape.getName());
     			street.setCityId(cityByShape.getId());
@@ -452,7 +529,7 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
     				//AFTER setting admnames, we took the best one
     				street.setIsInAdm(getBestAdmName(cityByShape));//cityByShape.getAdm().getName()
     				//set the is_in_place
-    				CitySubdivision subdivision = citySubdivisionDao.getByShape(street.getLocation(),cityByShape.getCountryCode());
+    				CitySubdivision subdivision = getCitySubdivisionByShape(street.getLocation(),cityByShape.getCountryCode());
     				if (subdivision !=null){
     					street.setIsInPlace(subdivision.getName());
     				}
@@ -626,11 +703,38 @@ public class OpenStreetMapSimpleImporter extends AbstractSimpleImporterProcessor
 		return cityDao.getNearest(location, countryCode, filterMunicipality, DISTANCE);
 	}*/
 	
+	/**
+	 * @return the smallest municipality that contains the location, from the
+	 *         city lookup index when it is enabled and the country is known
+	 */
+	protected City getCityByShape(Point location, String countryCode) {
+		if (cityLookupIndex != null && countryCode != null){
+			return cityLookupIndex.getCityByShape(location, countryCode, true);
+		}
+		return cityDao.getByShape(location,countryCode,true);
+	}
+	
+	/**
+	 * @return the smallest subdivision that contains the location, from the
+	 *         city lookup index when it is enabled and the country is known
+	 */
+	protected CitySubdivision getCitySubdivisionByShape(Point location, String countryCode) {
+		if (cityLookupIndex != null && countryCode != null){
+			return cityLookupIndex.getCitySubdivisionByShape(location, countryCode);
+		}
+		return citySubdivisionDao.getByShape(location,countryCode);
+	}
+	
 	protected List<City> getNearestCities(Point location, String countryCode) {
 		if (location ==null){
 			return null;
 		}
-		List<City> cities = cityDao.getNearests(location, countryCode, false, DISTANCE,10);
+		List<City> cities;
+		if (cityLookupIndex != null && countryCode != null){
+			cities = cityLookupIndex.getNearestCities(location, countryCode, DISTANCE, 10);
+		} else {
+			cities = cityDao.getNearests(location, countryCode, false, DISTANCE,10);
+		}
 		if (cities ==null || cities.size()==0){
 			return null;
 		} else {
@@ -72,6 +72,14 @@ public class QuattroshapesSimpleImporter extends AbstractSimpleImporterProcessor
 	protected File[] getFiles() {
 		return ImporterHelper.listCountryFilesToImport(importerConfig.getQuattroshapesDir());
 	}
+
+	/* (non-Javadoc)
+	 * @see com.gisgraphy.importer.AbstractSimpleImporterProcessor#getArchiveDirectory()
+	 */
+	@Override
+	protected String getArchiveDirectory() {
+		return importerConfig.getQuattroshapesDir();
+	}
 	
 	 @Override
 	    Integer getImportKey() {
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.reversegeocoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.gisgraphy.addressparser.AddressResultsDto;
+import com.gisgraphy.geocoding.BatchFormat;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Reverse geocode several points in one call. The points are processed in
+ * spatial order so that the nearby points share the streets and the house
+ * numbers loaded for their neighbours.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public interface IBatchReverseGeocodingService {
+
+	/**
+	 * @param points
+	 *            the points to reverse geocode, none of them can be null
+	 * @return the results, in the same order than the points
+	 */
+	public List<AddressResultsDto> executeQueries(List<Point> points);
+
+	/**
+	 * Read the points from the input (one per line), reverse geocode them and
+	 * write the results to the output, in the same order than the input. A
+	 * line that can not be read produces an error line, it doesn't stop the
+	 * batch.
+	 * 
+	 * @param input
+	 *            the points, encoded in UTF-8
+	 * @param output
+	 *            where to write the results
+	 * @param format
+	 *            the format of the input and of the output
+	 * @return the number of processed lines
+	 * @throws IOException
+	 *             if the input can not be read or the output can not be
+	 *             written
+	 */
+	public long executeBatchAndSerialize(InputStream input, OutputStream output, BatchFormat format) throws IOException;
+
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.reversegeocoding;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A file mapped in memory by chunks of 1GB, so that it can be bigger than the
+ * 2GB limit of a {@link MappedByteBuffer}. Ints and longs are read and written
+ * at absolute positions ; they must be aligned on their size so that they
+ * never cross two chunks. The absolute getters don't change the state of the
+ * buffers and can be called by several threads once the file is written.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+class MappedFile {
+
+	private static final int CHUNK_BITS = 30;
+
+	private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+
+	private static final int CHUNK_MASK = (int) (CHUNK_SIZE - 1);
+
+	private final File file;
+
+	private final long size;
+
+	private final MappedByteBuffer[] chunks;
+
+	/**
+	 * map a file
+	 * 
+	 * @param file
+	 *            the file to map
+	 * @param size
+	 *            the size of the file, if the file is shorter it is extended
+	 * @param writable
+	 *            whether the file is mapped read-write
+	 */
+	MappedFile(File file, long size, boolean writable) throws IOException {
+		this(file, size, writable, ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * map a file whose values are in the given byte order
+	 */
+	MappedFile(File file, long size, boolean writable, ByteOrder order) throws IOException {
+		this.file = file;
+		this.size = size;
+		int numberOfChunks = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+		chunks = new MappedByteBuffer[numberOfChunks];
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, writable ? "rw" : "r");
+		try {
+			if (writable && randomAccessFile.length() < size) {
+				randomAccessFile.setLength(size);
+			}
+			FileChannel channel = randomAccessFile.getChannel();
+			for (int i = 0; i < numberOfChunks; i++) {
+				long start = ((long) i) << CHUNK_BITS;
+				long length = Math.min(CHUNK_SIZE, size - start);
+				chunks[i] = channel.map(writable ? MapMode.READ_WRITE : MapMode.READ_ONLY, start, length);
+				chunks[i].order(order);
+			}
+		} finally {
+			//the mappings stay valid after the channel is closed
+			randomAccessFile.close();
+		}
+	}
+
+	int getInt(long position) {
+		return chunks[(int) (position >>> CHUNK_BITS)].getInt((int) position & CHUNK_MASK);
+	}
+
+	void putInt(long position, int value) {
+		chunks[(int) (position >>> CHUNK_BITS)].putInt((int) position & CHUNK_MASK, value);
+	}
+
+	long getLong(long position) {
+		return chunks[(int) (position >>> CHUNK_BITS)].getLong((int) position & CHUNK_MASK);
+	}
+
+	void putLong(long position, long value) {
+		chunks[(int) (position >>> CHUNK_BITS)].putLong((int) position & CHUNK_MASK, value);
+	}
+
+	/**
+	 * read bytes that may cross two chunks
+	 */
+	void get(long position, byte[] destination, int length) {
+		for (int i = 0; i < length; i++) {
+			long current = position + i;
+			destination[i] = chunks[(int) (current >>> CHUNK_BITS)].get((int) current & CHUNK_MASK);
+		}
+	}
+
+	/**
+	 * write bytes that may cross two chunks
+	 */
+	void put(long position, byte[] source, int length) {
+		for (int i = 0; i < length; i++) {
+			long current = position + i;
+			chunks[(int) (current >>> CHUNK_BITS)].put((int) current & CHUNK_MASK, source[i]);
+		}
+	}
+
+	/**
+	 * flush the modifications to the disk
+	 */
+	void force() {
+		for (MappedByteBuffer chunk : chunks) {
+			chunk.force();
+		}
+	}
+
+	long getSize() {
+		return size;
+	}
+
+	File getFile() {
+		return file;
+	}
+
+}
@@ -25,16 +25,23 @@
  */
 package com.gisgraphy.reversegeocoding;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Resource;
 
+import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -49,21 +56,32 @@ import com.gisgraphy.domain.geoloc.entity.OpenStreetMap;
 import com.gisgraphy.domain.repository.ICityDao;
 import com.gisgraphy.domain.repository.IOpenStreetMapDao;
 import com.gisgraphy.domain.valueobject.Constants;
+import com.gisgraphy.geocoding.BatchFormat;
+import com.gisgraphy.geocoding.BatchGeocodingService;
+import com.gisgraphy.helper.GeolocHelper;
 import com.gisgraphy.importer.LabelGenerator;
+import com.gisgraphy.serializer.UniversalSerializer;
+import com.gisgraphy.serializer.common.OutputFormat;
 import com.gisgraphy.serializer.common.UniversalSerializerConstant;
 import com.gisgraphy.service.IStatsUsageService;
 import com.gisgraphy.service.ServiceException;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 import com.gisgraphy.stats.StatsUsageType;
+import com.gisgraphy.street.StreetType;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Point;
 
 /**
- * Default (threadsafe) implementation of {@link IReverseGeocodingService}.
+ * Default (threadsafe) implementation of {@link IReverseGeocodingService} and
+ * {@link IBatchReverseGeocodingService}.
  * 
  * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
  * 
  */
 @Service
-public class ReverseGeocodingService implements IReverseGeocodingService {
+public class ReverseGeocodingService implements IReverseGeocodingService, IBatchReverseGeocodingService {
 
 	private static final ArrayList<Address> NO_ADDRESS_LIST = new ArrayList<Address>();
 
@@ -78,6 +96,9 @@ public class ReverseGeocodingService implements IReverseGeocodingService {
 	@Autowired
 	protected ICityDao cityDao;
 	
+	@Autowired(required = false)
+	protected StreetSpatialIndexLoader streetSpatialIndexLoader;
+	
 	AddressResultsDtoSerializer addressResultsDtoSerializer = new AddressResultsDtoSerializer();
 
 	/**
@@ -88,6 +109,41 @@ public class ReverseGeocodingService implements IReverseGeocodingService {
 
 	public static int DEFAULT_CITY_RADIUS = 30000;
 	public static int DEFAULT_STREET_RADIUS = 1000;
+	
+	/**
+	 * the maximum number of points that share the same street candidates in a
+	 * batch
+	 */
+	public static int MAX_POINTS_PER_CLUSTER = 256;
+	/**
+	 * the maximum half size, in meters, of the box of the points that share
+	 * the same street candidates in a batch
+	 */
+	public static int MAX_CLUSTER_HALF_EXTENT = 250;
+	/**
+	 * the maximum number of street candidates read from the database for the
+	 * points of a batch that share them. When there are more streets around,
+	 * the candidates are not reliable and each point is reverse geocoded with
+	 * its own query
+	 */
+	public static int MAX_CANDIDATES_PER_CLUSTER = 1000;
+	/**
+	 * the number of lines of a streamed batch that are reverse geocoded
+	 * together
+	 */
+	public static int BATCH_SIZE = 1000;
+
+	public static final String LAT_FIELD = "lat";
+
+	public static final String LNG_FIELD = "lng";
+
+	protected static final String CSV_HEADER = "row,lat,lng,geocodingLevel,distance,formatedFull,error\n";
+
+	private static final byte[] NEW_LINE = "\n".getBytes();
+
+	private static final double FIXED_POINT_UNITS_PER_DEGREE = 1E7;
+
+	private final ObjectMapper mapper = new ObjectMapper();
 
 	
 
@@ -98,18 +154,86 @@ public class ReverseGeocodingService implements IReverseGeocodingService {
 		Assert.notNull(point, "Can not execute a query without a valid point");
 		long start = System.currentTimeMillis();
 		statsUsageService.increaseUsage(StatsUsageType.REVERSEGEOCODING);
+		StreetSpatialIndex streetSpatialIndex = streetSpatialIndexLoader == null ? null : streetSpatialIndexLoader.getIndex();
+		OpenStreetMap openStreetMap = null;
+		HouseNumberDistance houseNumberDistance = null;
+		if (streetSpatialIndex != null){
+			Long streetId = streetSpatialIndex.getNearestStreetId(point, DEFAULT_STREET_RADIUS, true, true);
+			if (streetId==null){
+				logger.debug("no road found in the street spatial index, try to search deeper");
+				streetId = streetSpatialIndex.getNearestStreetId(point, DEFAULT_STREET_RADIUS, false, false);
+			}
+			if (streetId!=null){
+				openStreetMap = openStreetMapDao.get(streetId);
+				if (openStreetMap==null){
+					streetSpatialIndex = onStaleIndex(streetId);
+				} else {
+					houseNumberDistance = streetSpatialIndex.getNearestHouseNumber(streetId, point);
+					if (houseNumberDistance!=null){
+						houseNumberDistance.getHouseNumber().setStreet(openStreetMap);
+					}
+				}
+			}
+		}
+		if (streetSpatialIndex == null) {
+			openStreetMap = getNearestStreetFromDatabase(point);
+		}
+		return buildResults(query, point, openStreetMap, houseNumberDistance, streetSpatialIndex != null, start);
+	}
+
+	private OpenStreetMap getNearestStreetFromDatabase(Point point) {
 		OpenStreetMap openStreetMap = openStreetMapDao.getNearestRoadFrom(point,DEFAULT_STREET_RADIUS);
-		//AddressResultsDto addressResultsDto = null;
 		if (openStreetMap==null){
 			logger.debug("no road found, try to search deeper");
 			openStreetMap =openStreetMapDao.getNearestFrom(point,DEFAULT_STREET_RADIUS);
 		}
+		return openStreetMap;
+	}
+
+	/**
+	 * Called when a street of the spatial index is not in the database
+	 * anymore : the index is not used until it is rebuilt, the loader
+	 * schedules the rebuild
+	 * 
+	 * @return null, the index to use for the rest of the query
+	 */
+	private StreetSpatialIndex onStaleIndex(Long streetId) {
+		logger.warn("the street " + streetId + " of the street spatial index is not in the database, the index is stale and will be rebuilt");
+		streetSpatialIndexLoader.markStale();
+		return null;
+	}
+
+	/**
+	 * Build the results of a reverse geocoding once the nearest street is
+	 * known : house number level if the street has house numbers, street
+	 * level otherwise, city level if there is no street.
+	 * 
+	 * @param query
+	 *            the query, only used for logging
+	 * @param point
+	 *            the point to reverse geocode
+	 * @param openStreetMap
+	 *            the nearest street, or null if none
+	 * @param houseNumberDistance
+	 *            the nearest house number if it has already been found
+	 * @param houseNumbersFromIndex
+	 *            whether the house numbers have been searched in the street
+	 *            spatial index (houseNumberDistance is then null if the street
+	 *            has none) or should be read from the street
+	 * @param start
+	 *            when the query has started, in ms
+	 */
+	protected AddressResultsDto buildResults(Object query, Point point, OpenStreetMap openStreetMap, HouseNumberDistance houseNumberDistance,
+			boolean houseNumbersFromIndex, long start) {
 		if (openStreetMap!= null){
 			logger.debug("found a street "+openStreetMap);
-			if (openStreetMap.getHouseNumbers()!=null && openStreetMap.getHouseNumbers().size() >=1 ){
-				
-				logger.debug("the street has "+openStreetMap.getHouseNumbers().size()+" housenumbers");
-				HouseNumberDistance houseNumberDistance = labelGenerator.getNearestHouse(openStreetMap.getHouseNumbers(), point);
+			boolean hasHouseNumbers = houseNumbersFromIndex ? houseNumberDistance != null 
+					: openStreetMap.getHouseNumbers()!=null && openStreetMap.getHouseNumbers().size() >=1;
+			if (hasHouseNumbers){
+				if (!houseNumbersFromIndex){
+					logger.debug("the street has "+openStreetMap.getHouseNumbers().size()+" housenumbers");
+					houseNumberDistance = labelGenerator.getNearestHouse(openStreetMap.getHouseNumbers(), point);
+				}
 				if (houseNumberDistance!=null){
 					Address address = labelGenerator.buildAddressFromHouseNumberDistance(houseNumberDistance);
 					if (address!=null){
@@ -183,6 +307,268 @@ public class ReverseGeocodingService implements IReverseGeocodingService {
 		return new AddressResultsDto(NO_ADDRESS_LIST, qTime);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.reversegeocoding.IBatchReverseGeocodingService#executeQueries(java.util.List)
+	 */
+	public List<AddressResultsDto> executeQueries(List<Point> points) {
+		Assert.notNull(points, "Can not execute a null list of points");
+		long batchStart = System.currentTimeMillis();
+		long[] keys = new long[points.size()];
+		for (int i = 0; i < points.size(); i++) {
+			Point point = points.get(i);
+			Assert.notNull(point, "Can not execute a query without a valid point");
+			keys[i] = ((long) StreetSpatialIndex.hilbert(point.getX(), point.getY())) << 32 | i;
+		}
+		Arrays.sort(keys);
+		AddressResultsDto[] results = new AddressResultsDto[points.size()];
+		StreetSpatialIndex streetSpatialIndex = streetSpatialIndexLoader == null ? null : streetSpatialIndexLoader.getIndex();
+		Map<Long, OpenStreetMap> streetsById = new HashMap<Long, OpenStreetMap>();
+		int first = 0;
+		while (first < keys.length) {
+			//group the consecutive points that are close enough to share their candidates
+			Point firstPoint = points.get((int) keys[first]);
+			double minX = firstPoint.getX(), maxX = minX, minY = firstPoint.getY(), maxY = minY;
+			int last = first + 1;
+			while (last < keys.length && last - first < MAX_POINTS_PER_CLUSTER) {
+				Point point = points.get((int) keys[last]);
+				double clusterMinX = Math.min(minX, point.getX()), clusterMaxX = Math.max(maxX, point.getX());
+				double clusterMinY = Math.min(minY, point.getY()), clusterMaxY = Math.max(maxY, point.getY());
+				if (getHalfExtent(clusterMinX, clusterMinY, clusterMaxX, clusterMaxY) > MAX_CLUSTER_HALF_EXTENT) {
+					break;
+				}
+				minX = clusterMinX;
+				maxX = clusterMaxX;
+				minY = clusterMinY;
+				maxY = clusterMaxY;
+				last++;
+			}
+			List<OpenStreetMap> candidates = null;
+			for (int i = first; i < last; i++) {
+				int index = (int) keys[i];
+				Point point = points.get(index);
+				long start = System.currentTimeMillis();
+				statsUsageService.increaseUsage(StatsUsageType.REVERSEGEOCODING);
+				OpenStreetMap openStreetMap = null;
+				HouseNumberDistance houseNumberDistance = null;
+				if (streetSpatialIndex != null) {
+					Long streetId = streetSpatialIndex.getNearestStreetId(point, DEFAULT_STREET_RADIUS, true, true);
+					if (streetId == null) {
+						streetId = streetSpatialIndex.getNearestStreetId(point, DEFAULT_STREET_RADIUS, false, false);
+					}
+					if (streetId != null) {
+						if (!streetsById.containsKey(streetId)) {
+							streetsById.put(streetId, openStreetMapDao.get(streetId));
+						}
+						openStreetMap = streetsById.get(streetId);
+						if (openStreetMap == null) {
+							streetSpatialIndex = onStaleIndex(streetId);
+						} else {
+							houseNumberDistance = streetSpatialIndex.getNearestHouseNumber(streetId, point);
+							if (houseNumberDistance != null) {
+								houseNumberDistance.getHouseNumber().setStreet(openStreetMap);
+							}
+						}
+					}
+				}
+				if (streetSpatialIndex == null) {
+					if (candidates == null) {
+						//the candidates of the cluster are queried once, when the first point needs them
+						Point center = GeolocHelper.createPoint((minX + maxX) / 2, (minY + maxY) / 2);
+						candidates = openStreetMapDao.getNearestsFrom(center, false, false, DEFAULT_STREET_RADIUS + getHalfExtent(minX, minY, maxX, maxY),
+								MAX_CANDIDATES_PER_CLUSTER);
+						if (candidates == null) {
+							candidates = new ArrayList<OpenStreetMap>();
+						}
+						logger.debug((last - first) + " points share " + candidates.size() + " street candidates");
+					}
+					if (candidates.size() >= MAX_CANDIDATES_PER_CLUSTER) {
+						//the nearest street of the point may not be in the candidates
+						openStreetMap = getNearestStreetFromDatabase(point);
+					} else {
+						openStreetMap = getNearestStreet(candidates, point, true, true);
+						if (openStreetMap == null) {
+							openStreetMap = getNearestStreet(candidates, point, false, false);
+						}
+					}
+				}
+				results[index] = buildResults(point, point, openStreetMap, houseNumberDistance, streetSpatialIndex != null, start);
+			}
+			first = last;
+		}
+		logger.info("batch reverse geocoding of " + points.size() + " points took " + (System.currentTimeMillis() - batchStart) + " ms");
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * @return the nearest street of the candidates in the
+	 *         {@link #DEFAULT_STREET_RADIUS}, with the same filters as
+	 *         {@link IOpenStreetMapDao#getNearestFrom(Point, boolean, boolean, double)}
+	 */
+	protected OpenStreetMap getNearestStreet(List<OpenStreetMap> candidates, Point point, boolean onlyRoad, boolean filterEmptyName) {
+		if (candidates == null) {
+			return null;
+		}
+		int x = StreetSpatialIndex.toFixedPoint(point.getX());
+		int y = StreetSpatialIndex.toFixedPoint(point.getY());
+		double cosLatitude = Math.cos(Math.toRadians(point.getY()));
+		OpenStreetMap nearest = null;
+		double smallestDistance = DEFAULT_STREET_RADIUS / StreetSpatialIndex.METERS_PER_UNIT;
+		for (OpenStreetMap candidate : candidates) {
+			if (candidate == null || candidate.getShape() == null
+					|| (onlyRoad && (candidate.getStreetType() == null || candidate.getStreetType() == StreetType.FOOTWAY))
+					|| (filterEmptyName && candidate.getName() == null)) {
+				continue;
+			}
+			Geometry shape = candidate.getShape();
+			//the segments are only between the points of the same part of a multi line
+			for (int part = 0; part < shape.getNumGeometries(); part++) {
+				Coordinate[] coordinates = shape.getGeometryN(part).getCoordinates();
+				for (int i = 0; i < coordinates.length; i++) {
+					Coordinate from = coordinates[i];
+					Coordinate to = i + 1 < coordinates.length ? coordinates[i + 1] : from;
+					double distance = StreetSpatialIndex.distanceToSegment(x, y, cosLatitude, StreetSpatialIndex.toFixedPoint(from.x),
+							StreetSpatialIndex.toFixedPoint(from.y), StreetSpatialIndex.toFixedPoint(to.x), StreetSpatialIndex.toFixedPoint(to.y));
+					if (distance <= smallestDistance) {
+						smallestDistance = distance;
+						nearest = candidate;
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * @return the half of the biggest side of a bounding box, in meters
+	 */
+	private static double getHalfExtent(double minX, double minY, double maxX, double maxY) {
+		double cosLatitude = Math.cos(Math.toRadians((minY + maxY) / 2));
+		double width = (maxX - minX) * cosLatitude * FIXED_POINT_UNITS_PER_DEGREE * StreetSpatialIndex.METERS_PER_UNIT;
+		double height = (maxY - minY) * FIXED_POINT_UNITS_PER_DEGREE * StreetSpatialIndex.METERS_PER_UNIT;
+		return Math.max(width, height) / 2;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.reversegeocoding.IBatchReverseGeocodingService#executeBatchAndSerialize(java.io.InputStream, java.io.OutputStream, com.gisgraphy.geocoding.BatchFormat)
+	 */
+	public long executeBatchAndSerialize(InputStream input, OutputStream output, BatchFormat format) throws IOException {
+		Assert.notNull(input, "Can not reverse geocode a null input");
+		Assert.notNull(output, "Can not serialize into a null outputStream");
+		Assert.notNull(format, "the batch format should be specified");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, Constants.CHARSET));
+		if (format == BatchFormat.CSV) {
+			output.write(CSV_HEADER.getBytes(Constants.CHARSET));
+		}
+		List<Object> pendingLines = new ArrayList<Object>();
+		long row = 0;
+		String line;
+		boolean firstLine = true;
+		while ((line = reader.readLine()) != null) {
+			if (firstLine && format == BatchFormat.CSV && line.trim().toLowerCase().startsWith(LAT_FIELD)) {
+				firstLine = false;
+				continue;
+			}
+			firstLine = false;
+			if (line.trim().length() == 0) {
+				continue;
+			}
+			try {
+				pendingLines.add(parseLine(line, format));
+			} catch (Exception e) {
+				pendingLines.add(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+			}
+			if (pendingLines.size() == BATCH_SIZE) {
+				row = writeLines(pendingLines, row, output, format);
+			}
+		}
+		row = writeLines(pendingLines, row, output, format);
+		output.flush();
+		return row;
+	}
+
+	/**
+	 * reverse geocode the pending lines (a point or an error message) and
+	 * write them
+	 * 
+	 * @return the row of the last written line
+	 */
+	private long writeLines(List<Object> pendingLines, long row, OutputStream output, BatchFormat format) throws IOException {
+		List<Point> points = new ArrayList<Point>();
+		for (Object pendingLine : pendingLines) {
+			if (pendingLine instanceof Point) {
+				points.add((Point) pendingLine);
+			}
+		}
+		Iterator<AddressResultsDto> results = executeQueries(points).iterator();
+		for (Object pendingLine : pendingLines) {
+			row++;
+			if (pendingLine instanceof Point) {
+				output.write(formatResult(row, (Point) pendingLine, results.next(), format));
+			} else {
+				output.write(formatError(row, pendingLine.toString(), format));
+			}
+			output.write(NEW_LINE);
+		}
+		output.flush();
+		pendingLines.clear();
+		return row;
+	}
+
+	protected Point parseLine(String line, BatchFormat format) throws IOException {
+		String latitude;
+		String longitude;
+		if (format == BatchFormat.NDJSON) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> fields = mapper.readValue(line, HashMap.class);
+			latitude = fields.get(LAT_FIELD) == null ? null : fields.get(LAT_FIELD).toString();
+			longitude = fields.get(LNG_FIELD) == null ? null : fields.get(LNG_FIELD).toString();
+		} else {
+			List<String> fields = BatchGeocodingService.splitCsvLine(line);
+			latitude = fields.get(0);
+			longitude = fields.size() > 1 ? fields.get(1) : null;
+		}
+		if (latitude == null || longitude == null) {
+			throw new IllegalArgumentException("a latitude and a longitude are required");
+		}
+		double lat = Double.parseDouble(latitude.trim());
+		double lng = Double.parseDouble(longitude.trim());
+		if (lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+			throw new IllegalArgumentException("invalid point : " + latitude + "," + longitude);
+		}
+		return GeolocHelper.createPoint(lng, lat);
+	}
+
+	protected byte[] formatResult(long row, Point point, AddressResultsDto results, BatchFormat format) throws IOException {
+		if (format == BatchFormat.NDJSON) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			outputStream.write(("{\"row\":" + row + ",\"result\":").getBytes(Constants.CHARSET));
+			UniversalSerializer.getInstance().write(outputStream, results, false, new HashMap<String, Object>(), OutputFormat.JSON);
+			outputStream.write('}');
+			return outputStream.toByteArray();
+		}
+		StringBuilder sb = new StringBuilder().append(row).append(",").append(point.getY()).append(",").append(point.getX()).append(",");
+		if (results != null && results.getResult() != null && results.getResult().size() > 0 && results.getResult().get(0) != null) {
+			Address address = results.getResult().get(0);
+			sb.append(BatchGeocodingService.toCsvValue(address.getGeocodingLevel())).append(",")
+			.append(BatchGeocodingService.toCsvValue(address.getDistance())).append(",")
+			.append(BatchGeocodingService.toCsvValue(address.getFormatedFull())).append(",");
+		} else {
+			sb.append(",,,");
+		}
+		return sb.toString().getBytes(Constants.CHARSET);
+	}
+
+	protected byte[] formatError(long row, String message, BatchFormat format) throws IOException {
+		if (format == BatchFormat.NDJSON) {
+			return ("{\"row\":" + row + ",\"error\":" + mapper.writeValueAsString(message) + "}").getBytes(Constants.CHARSET);
+		}
+		return (row + ",,,,,," + BatchGeocodingService.toCsvValue(message)).getBytes(Constants.CHARSET);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -197,7 +583,9 @@ public class ReverseGeocodingService implements IReverseGeocodingService {
 	AddressResultsDto AddressResultDto = executeQuery(query);
 	Map<String, Object> extraParameter = new HashMap<String, Object>();
 	extraParameter.put(UniversalSerializerConstant.CALLBACK_METHOD_NAME, query.getCallback());
+	long serializationStart = LatencyStats.start();
 	addressResultsDtoSerializer.serialize(outputStream, query.getOutputFormat(), AddressResultDto, false,extraParameter);
+	LatencyStats.record(LatencyType.SERIALIZATION, serializationStart);
 	}
 
 	/*
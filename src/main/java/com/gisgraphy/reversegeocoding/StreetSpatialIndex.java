@@ -0,0 +1,833 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.reversegeocoding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gisgraphy.domain.geoloc.entity.HouseNumber;
+import com.gisgraphy.domain.valueobject.Constants;
+import com.gisgraphy.helper.GeolocHelper;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Read only spatial index of the street segments and of the house numbers,
+ * stored outside of the java heap in a memory mapped file. It allows to find
+ * the nearest street of a point without any query to the database.
+ * <p>
+ * The segments are sorted along a Hilbert curve and indexed by a packed R-tree
+ * : every node of a level groups {@link #DEFAULT_NODE_SIZE} consecutive nodes
+ * of the level below, so the tree doesn't need any pointer and the children
+ * of a node are found by their position. The coordinates are stored as
+ * integers (degrees * 10^7). The file layout is :
+ * <ul>
+ * <li>a header</li>
+ * <li>the streets, sorted by id : id, index of the first house number, flags
+ * and number of house numbers</li>
+ * <li>the segments in the Hilbert order : street index, x1, y1, x2, y2. They
+ * are the leaves of the tree</li>
+ * <li>the bounding boxes of the upper levels of the tree</li>
+ * <li>the house numbers, grouped by street : id, x, y, offset of the labels</li>
+ * <li>the labels of the house numbers : length of the number and of the name
+ * (big endian shorts, -1 if null) then the number and the name in UTF-8</li>
+ * </ul>
+ * Instances are created by a {@link Builder} and are threadsafe.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class StreetSpatialIndex {
+
+	protected static final Logger logger = LoggerFactory.getLogger(StreetSpatialIndex.class);
+
+	public static final int DEFAULT_NODE_SIZE = 16;
+
+	private static final int MAGIC = 0x47535349;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 64;
+
+	private static final int STREET_RECORD_SIZE = 16;
+
+	private static final int SEGMENT_RECORD_SIZE = 20;
+
+	private static final int BOX_RECORD_SIZE = 16;
+
+	private static final int HOUSE_RECORD_SIZE = 24;
+
+	private static final int STAGING_HOUSE_RECORD_SIZE = 32;
+
+	private static final int ROAD_FLAG = 1 << 31;
+
+	private static final int NAMED_FLAG = 1 << 30;
+
+	private static final int HOUSE_COUNT_MASK = NAMED_FLAG - 1;
+
+	private static final double FIXED_POINT_FACTOR = 1E7;
+
+	private static final int HILBERT_SIDE = 1 << 15;
+
+	/**
+	 * length of one fixed point unit of latitude, in meters
+	 */
+	static final double METERS_PER_UNIT = Math.toRadians(1 / FIXED_POINT_FACTOR) * 6371000;
+
+	private final MappedFile data;
+
+	private final int nodeSize;
+
+	private final int numberOfStreets;
+
+	private final int numberOfSegments;
+
+	private final int numberOfHouseNumbers;
+
+	private final long streetsOffset;
+
+	private final long segmentsOffset;
+
+	private final long housesOffset;
+
+	private final long stringsOffset;
+
+	/**
+	 * number of nodes of each level, the level 0 is the segments
+	 */
+	private final int[] levelSizes;
+
+	/**
+	 * offset of the boxes of each level (not used for the level 0)
+	 */
+	private final long[] levelOffsets;
+
+	private StreetSpatialIndex(MappedFile data) {
+		this.data = data;
+		if (data.getSize() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException(data.getFile() + " is not a street spatial index");
+		}
+		if (data.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("unsupported version of street spatial index : " + data.getInt(4));
+		}
+		nodeSize = data.getInt(8);
+		numberOfStreets = data.getInt(12);
+		numberOfSegments = data.getInt(16);
+		numberOfHouseNumbers = data.getInt(20);
+		streetsOffset = data.getLong(24);
+		segmentsOffset = data.getLong(32);
+		long treeOffset = data.getLong(40);
+		housesOffset = data.getLong(48);
+		stringsOffset = data.getLong(56);
+		levelSizes = computeLevelSizes(numberOfSegments, nodeSize);
+		levelOffsets = new long[levelSizes.length];
+		long offset = treeOffset;
+		for (int level = 1; level < levelSizes.length; level++) {
+			levelOffsets[level] = offset;
+			offset += (long) levelSizes[level] * BOX_RECORD_SIZE;
+		}
+	}
+
+	/**
+	 * Open an index previously written by a {@link Builder}
+	 * 
+	 * @param file
+	 *            the file of the index
+	 * @return the index
+	 * @throws IOException
+	 *             if the file can not be mapped
+	 */
+	public static StreetSpatialIndex open(File file) throws IOException {
+		return new StreetSpatialIndex(new MappedFile(file, file.length(), false));
+	}
+
+	/**
+	 * Find the nearest street of a point. the distance is computed on an
+	 * equirectangular projection centered on the point, which is accurate at
+	 * the scale of a street.
+	 * 
+	 * @param longitude
+	 *            the longitude of the point
+	 * @param latitude
+	 *            the latitude of the point
+	 * @param distance
+	 *            the maximum distance, in meters
+	 * @param onlyRoad
+	 *            whether the streets whose type is footway or unknown are
+	 *            ignored
+	 * @param filterEmptyName
+	 *            whether the streets without name are ignored
+	 * @return the id of the nearest street, or null if there is no street in
+	 *         the given distance
+	 */
+	public Long getNearestStreetId(double longitude, double latitude, double distance, boolean onlyRoad, boolean filterEmptyName) {
+		if (numberOfSegments == 0) {
+			return null;
+		}
+		int x = toFixedPoint(longitude);
+		int y = toFixedPoint(latitude);
+		double cosLatitude = Math.cos(Math.toRadians(latitude));
+		double maxDistance = distance / METERS_PER_UNIT;
+		int requiredFlags = (onlyRoad ? ROAD_FLAG : 0) | (filterEmptyName ? NAMED_FLAG : 0);
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+		int topLevel = levelSizes.length - 1;
+		for (int i = 0; i < levelSizes[topLevel]; i++) {
+			offer(queue, topLevel, i, x, y, cosLatitude, maxDistance, requiredFlags);
+		}
+		while (!queue.isEmpty()) {
+			Candidate candidate = queue.poll();
+			if (candidate.level == 0) {
+				//a box is never farther than what it contains, so nothing can be nearer
+				return data.getLong(getStreetPosition(getSegmentStreetIndex(candidate.index)));
+			}
+			int first = candidate.index * nodeSize;
+			int last = Math.min(first + nodeSize, levelSizes[candidate.level - 1]);
+			for (int i = first; i < last; i++) {
+				offer(queue, candidate.level - 1, i, x, y, cosLatitude, maxDistance, requiredFlags);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @see #getNearestStreetId(double, double, double, boolean, boolean)
+	 */
+	public Long getNearestStreetId(Point point, double distance, boolean onlyRoad, boolean filterEmptyName) {
+		if (point == null) {
+			return null;
+		}
+		return getNearestStreetId(point.getX(), point.getY(), distance, onlyRoad, filterEmptyName);
+	}
+
+	/**
+	 * Find the nearest house number of a street. The returned
+	 * {@link HouseNumber} is not attached to an hibernate session and its
+	 * street is not set.
+	 * 
+	 * @param streetId
+	 *            the id of the street
+	 * @param point
+	 *            the point
+	 * @return the nearest house number of the street and its distance to the
+	 *         point, or null if the street is not indexed or has no house
+	 *         number
+	 */
+	public HouseNumberDistance getNearestHouseNumber(Long streetId, Point point) {
+		if (streetId == null || point == null) {
+			return null;
+		}
+		int streetIndex = findStreetIndex(streetId);
+		if (streetIndex < 0) {
+			return null;
+		}
+		long streetPosition = getStreetPosition(streetIndex);
+		int first = data.getInt(streetPosition + 8);
+		int count = data.getInt(streetPosition + 12) & HOUSE_COUNT_MASK;
+		if (count == 0) {
+			return null;
+		}
+		int x = toFixedPoint(point.getX());
+		int y = toFixedPoint(point.getY());
+		double cosLatitude = Math.cos(Math.toRadians(point.getY()));
+		int nearest = -1;
+		double smallestDistance = Double.MAX_VALUE;
+		for (int i = first; i < first + count; i++) {
+			long position = housesOffset + (long) i * HOUSE_RECORD_SIZE;
+			double dx = ((double) data.getInt(position + 8) - x) * cosLatitude;
+			double dy = (double) data.getInt(position + 12) - y;
+			double distance = dx * dx + dy * dy;
+			//same rule as the label generator : the last of the nearest wins
+			if (distance <= smallestDistance) {
+				smallestDistance = distance;
+				nearest = i;
+			}
+		}
+		HouseNumber houseNumber = readHouseNumber(nearest);
+		return new HouseNumberDistance(houseNumber, GeolocHelper.distance(houseNumber.getLocation(), point));
+	}
+
+	/**
+	 * @return the number of house numbers of a street, 0 if the street is not
+	 *         indexed
+	 */
+	public int countHouseNumbers(long streetId) {
+		int streetIndex = findStreetIndex(streetId);
+		if (streetIndex < 0) {
+			return 0;
+		}
+		return data.getInt(getStreetPosition(streetIndex) + 12) & HOUSE_COUNT_MASK;
+	}
+
+	/**
+	 * @return true if the street is in the index
+	 */
+	public boolean containsStreet(long streetId) {
+		return findStreetIndex(streetId) >= 0;
+	}
+
+	public int getNumberOfStreets() {
+		return numberOfStreets;
+	}
+
+	public int getNumberOfSegments() {
+		return numberOfSegments;
+	}
+
+	public int getNumberOfHouseNumbers() {
+		return numberOfHouseNumbers;
+	}
+
+	/**
+	 * @return the size of the mapped file, in bytes
+	 */
+	public long getSizeInBytes() {
+		return data.getSize();
+	}
+
+	public File getFile() {
+		return data.getFile();
+	}
+
+	private void offer(PriorityQueue<Candidate> queue, int level, int index, int x, int y, double cosLatitude, double maxDistance, int requiredFlags) {
+		double distance;
+		if (level == 0) {
+			int streetIndex = getSegmentStreetIndex(index);
+			if (requiredFlags != 0 && (data.getInt(getStreetPosition(streetIndex) + 12) & requiredFlags) != requiredFlags) {
+				return;
+			}
+			long position = segmentsOffset + (long) index * SEGMENT_RECORD_SIZE;
+			distance = distanceToSegment(x, y, cosLatitude, data.getInt(position + 4), data.getInt(position + 8), data.getInt(position + 12), data.getInt(position + 16));
+		} else {
+			long position = levelOffsets[level] + (long) index * BOX_RECORD_SIZE;
+			distance = distanceToBox(x, y, cosLatitude, data.getInt(position), data.getInt(position + 4), data.getInt(position + 8), data.getInt(position + 12));
+		}
+		if (distance <= maxDistance) {
+			queue.add(new Candidate(distance, level, index));
+		}
+	}
+
+	static double distanceToBox(int x, int y, double cosLatitude, int minX, int minY, int maxX, int maxY) {
+		double dx = x < minX ? (double) minX - x : (x > maxX ? (double) x - maxX : 0);
+		double dy = y < minY ? (double) minY - y : (y > maxY ? (double) y - maxY : 0);
+		dx *= cosLatitude;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	static double distanceToSegment(int x, int y, double cosLatitude, int x1, int y1, int x2, int y2) {
+		double ax = ((double) x1 - x) * cosLatitude;
+		double ay = (double) y1 - y;
+		double bx = ((double) x2 - x) * cosLatitude;
+		double by = (double) y2 - y;
+		double abx = bx - ax;
+		double aby = by - ay;
+		double lengthSquare = abx * abx + aby * aby;
+		double t = 0;
+		if (lengthSquare > 0) {
+			t = Math.max(0, Math.min(1, -(ax * abx + ay * aby) / lengthSquare));
+		}
+		double px = ax + t * abx;
+		double py = ay + t * aby;
+		return Math.sqrt(px * px + py * py);
+	}
+
+	private int getSegmentStreetIndex(int segmentIndex) {
+		return data.getInt(segmentsOffset + (long) segmentIndex * SEGMENT_RECORD_SIZE);
+	}
+
+	private long getStreetPosition(int streetIndex) {
+		return streetsOffset + (long) streetIndex * STREET_RECORD_SIZE;
+	}
+
+	private int findStreetIndex(long streetId) {
+		return binarySearchStreet(data, streetsOffset, numberOfStreets, streetId);
+	}
+
+	private HouseNumber readHouseNumber(int index) {
+		long position = housesOffset + (long) index * HOUSE_RECORD_SIZE;
+		HouseNumber houseNumber = new HouseNumber();
+		houseNumber.setId(data.getLong(position));
+		houseNumber.setLocation(GeolocHelper.createPoint(fromFixedPoint(data.getInt(position + 8)), fromFixedPoint(data.getInt(position + 12))));
+		long stringPosition = stringsOffset + data.getLong(position + 16);
+		//the lengths are in big endian, as written by the builder
+		byte[] lengths = new byte[4];
+		data.get(stringPosition, lengths, 4);
+		short numberLength = (short) (((lengths[0] & 0xFF) << 8) | (lengths[1] & 0xFF));
+		short nameLength = (short) (((lengths[2] & 0xFF) << 8) | (lengths[3] & 0xFF));
+		stringPosition += 4;
+		houseNumber.setNumber(readString(stringPosition, numberLength));
+		houseNumber.setName(readString(stringPosition + Math.max(0, numberLength), nameLength));
+		return houseNumber;
+	}
+
+	private String readString(long position, short length) {
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		data.get(position, bytes, length);
+		try {
+			return new String(bytes, Constants.CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("unknow encoding " + Constants.CHARSET);
+		}
+	}
+
+	private static int binarySearchStreet(MappedFile data, long streetsOffset, int numberOfStreets, long streetId) {
+		int low = 0;
+		int high = numberOfStreets - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long id = data.getLong(streetsOffset + (long) middle * STREET_RECORD_SIZE);
+			if (id < streetId) {
+				low = middle + 1;
+			} else if (id > streetId) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	static int[] computeLevelSizes(int numberOfSegments, int nodeSize) {
+		int numberOfLevels = 1;
+		int size = numberOfSegments;
+		while (size > 1) {
+			size = (size + nodeSize - 1) / nodeSize;
+			numberOfLevels++;
+		}
+		int[] levelSizes = new int[numberOfLevels];
+		levelSizes[0] = numberOfSegments;
+		for (int level = 1; level < numberOfLevels; level++) {
+			levelSizes[level] = (levelSizes[level - 1] + nodeSize - 1) / nodeSize;
+		}
+		return levelSizes;
+	}
+
+	static int toFixedPoint(double degrees) {
+		return (int) Math.round(degrees * FIXED_POINT_FACTOR);
+	}
+
+	static Double fromFixedPoint(int value) {
+		return value / FIXED_POINT_FACTOR;
+	}
+
+	/**
+	 * @return the position on a Hilbert curve of the given point, between 0
+	 *         and 2^30
+	 */
+	static int hilbert(double longitude, double latitude) {
+		int x = (int) ((Math.max(-180, Math.min(180, longitude)) + 180) / 360 * (HILBERT_SIDE - 1));
+		int y = (int) ((Math.max(-90, Math.min(90, latitude)) + 90) / 180 * (HILBERT_SIDE - 1));
+		int position = 0;
+		for (int s = HILBERT_SIDE / 2; s > 0; s /= 2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			position += s * s * ((3 * rx) ^ ry);
+			if (ry == 0) {
+				if (rx == 1) {
+					x = s - 1 - x;
+					y = s - 1 - y;
+				}
+				int tmp = x;
+				x = y;
+				y = tmp;
+			}
+		}
+		return position;
+	}
+
+	private static final class Candidate implements Comparable<Candidate> {
+		private final double distance;
+		private final int level;
+		private final int index;
+
+		private Candidate(double distance, int level, int index) {
+			this.distance = distance;
+			this.level = level;
+			this.index = index;
+		}
+
+		public int compareTo(Candidate other) {
+			return Double.compare(distance, other.distance);
+		}
+	}
+
+	/**
+	 * Write a {@link StreetSpatialIndex}. The streets, the segments and the
+	 * house numbers are first written in temporary files, then sorted when
+	 * {@link #build(File)} is called. The sort needs 8 bytes of heap per
+	 * segment and per house number. A builder is not threadsafe and can only
+	 * be used once.
+	 */
+	public static class Builder {
+
+		private final int nodeSize;
+
+		private final File streetsFile;
+
+		private final File segmentsFile;
+
+		private final File housesFile;
+
+		private final File stringsFile;
+
+		private final DataOutputStream streets;
+
+		private final DataOutputStream segments;
+
+		private final DataOutputStream houses;
+
+		private final DataOutputStream strings;
+
+		private int numberOfStreets = 0;
+
+		private int numberOfSegments = 0;
+
+		private int numberOfHouseNumbers = 0;
+
+		private long lastStreetId = Long.MIN_VALUE;
+
+		private long[] segmentKeys = new long[1024];
+
+		/**
+		 * @param stagingDirectory
+		 *            the directory of the temporary files, the system one if
+		 *            null
+		 */
+		public Builder(File stagingDirectory) throws IOException {
+			this(stagingDirectory, DEFAULT_NODE_SIZE);
+		}
+
+		public Builder(File stagingDirectory, int nodeSize) throws IOException {
+			if (nodeSize < 2) {
+				throw new IllegalArgumentException("the node size should be greater than 1");
+			}
+			this.nodeSize = nodeSize;
+			streetsFile = File.createTempFile("streets", ".tmp", stagingDirectory);
+			segmentsFile = File.createTempFile("segments", ".tmp", stagingDirectory);
+			housesFile = File.createTempFile("housenumbers", ".tmp", stagingDirectory);
+			stringsFile = File.createTempFile("labels", ".tmp", stagingDirectory);
+			streets = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(streetsFile)));
+			segments = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentsFile)));
+			houses = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(housesFile)));
+			strings = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(stringsFile)));
+		}
+
+		/**
+		 * Add a street. The streets must be added by increasing id.
+		 * 
+		 * @param id
+		 *            the id of the street
+		 * @param road
+		 *            whether the street is a road (not a footway)
+		 * @param named
+		 *            whether the street has a name
+		 * @return the index of the street, to give to
+		 *         {@link #addSegment(int, double, double, double, double)}
+		 */
+		public int addStreet(long id, boolean road, boolean named) throws IOException {
+			if (id <= lastStreetId) {
+				throw new IllegalArgumentException("the streets should be added by increasing id : " + id + " is after " + lastStreetId);
+			}
+			lastStreetId = id;
+			streets.writeLong(id);
+			streets.writeInt((road ? ROAD_FLAG : 0) | (named ? NAMED_FLAG : 0));
+			return numberOfStreets++;
+		}
+
+		/**
+		 * Add a segment of the shape of a street
+		 */
+		public void addSegment(int streetIndex, double longitude1, double latitude1, double longitude2, double latitude2) throws IOException {
+			if (streetIndex < 0 || streetIndex >= numberOfStreets) {
+				throw new IllegalArgumentException("unknow street index " + streetIndex);
+			}
+			if (numberOfSegments == Integer.MAX_VALUE) {
+				throw new IllegalStateException("too many segments");
+			}
+			segments.writeInt(streetIndex);
+			segments.writeInt(toFixedPoint(longitude1));
+			segments.writeInt(toFixedPoint(latitude1));
+			segments.writeInt(toFixedPoint(longitude2));
+			segments.writeInt(toFixedPoint(latitude2));
+			if (numberOfSegments == segmentKeys.length) {
+				segmentKeys = Arrays.copyOf(segmentKeys, segmentKeys.length * 2);
+			}
+			long key = hilbert((longitude1 + longitude2) / 2, (latitude1 + latitude2) / 2);
+			segmentKeys[numberOfSegments] = key << 32 | numberOfSegments;
+			numberOfSegments++;
+		}
+
+		/**
+		 * Add an house number. The house numbers can be added in any order,
+		 * those whose street is not in the index are ignored
+		 */
+		public void addHouseNumber(long id, long streetId, double longitude, double latitude, String number, String name) throws IOException {
+			if (numberOfHouseNumbers == Integer.MAX_VALUE) {
+				throw new IllegalStateException("too many house numbers");
+			}
+			houses.writeLong(id);
+			houses.writeLong(streetId);
+			houses.writeInt(toFixedPoint(longitude));
+			houses.writeInt(toFixedPoint(latitude));
+			houses.writeLong(strings.size());
+			byte[] numberBytes = toBytes(number);
+			byte[] nameBytes = toBytes(name);
+			strings.writeShort(numberBytes == null ? -1 : numberBytes.length);
+			strings.writeShort(nameBytes == null ? -1 : nameBytes.length);
+			if (numberBytes != null) {
+				strings.write(numberBytes);
+			}
+			if (nameBytes != null) {
+				strings.write(nameBytes);
+			}
+			numberOfHouseNumbers++;
+		}
+
+		/**
+		 * Sort the data and write the index.
+		 * 
+		 * @param file
+		 *            the file of the index, overwritten if it exists
+		 * @return the index, ready to be queried
+		 */
+		public StreetSpatialIndex build(File file) throws IOException {
+			streets.close();
+			segments.close();
+			houses.close();
+			strings.close();
+			try {
+				int[] levelSizes = computeLevelSizes(numberOfSegments, nodeSize);
+				long numberOfBoxes = 0;
+				for (int level = 1; level < levelSizes.length; level++) {
+					numberOfBoxes += levelSizes[level];
+				}
+				long streetsOffset = HEADER_SIZE;
+				long segmentsOffset = streetsOffset + (long) numberOfStreets * STREET_RECORD_SIZE;
+				long treeOffset = align(segmentsOffset + (long) numberOfSegments * SEGMENT_RECORD_SIZE);
+				long housesOffset = treeOffset + numberOfBoxes * BOX_RECORD_SIZE;
+				long stringsOffset = housesOffset + (long) numberOfHouseNumbers * HOUSE_RECORD_SIZE;
+				long size = stringsOffset + stringsFile.length();
+				if (file.exists() && !file.delete()) {
+					throw new IOException("can not delete " + file);
+				}
+				MappedFile target = new MappedFile(file, size, true);
+				writeStreets(target, streetsOffset);
+				writeSegments(target, segmentsOffset);
+				writeTree(target, segmentsOffset, treeOffset, levelSizes);
+				int numberOfIndexedHouseNumbers = writeHouseNumbers(target, streetsOffset, housesOffset);
+				writeStrings(target, stringsOffset);
+				target.putInt(0, MAGIC);
+				target.putInt(4, VERSION);
+				target.putInt(8, nodeSize);
+				target.putInt(12, numberOfStreets);
+				target.putInt(16, numberOfSegments);
+				target.putInt(20, numberOfIndexedHouseNumbers);
+				target.putLong(24, streetsOffset);
+				target.putLong(32, segmentsOffset);
+				target.putLong(40, treeOffset);
+				target.putLong(48, housesOffset);
+				target.putLong(56, stringsOffset);
+				target.force();
+				logger.info("street spatial index " + file + " has been written : " + numberOfStreets + " streets, " + numberOfSegments + " segments, "
+						+ numberOfIndexedHouseNumbers + " house numbers, " + size + " bytes");
+				return new StreetSpatialIndex(target);
+			} finally {
+				segmentKeys = null;
+				deleteStagingFiles();
+			}
+		}
+
+		/**
+		 * Delete the temporary files without writing the index
+		 */
+		public void abort() {
+			try {
+				streets.close();
+				segments.close();
+				houses.close();
+				strings.close();
+			} catch (IOException e) {
+				logger.warn("can not close the staging files of the street spatial index : " + e.getMessage());
+			}
+			deleteStagingFiles();
+		}
+
+		private void writeStreets(MappedFile target, long streetsOffset) throws IOException {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(streetsFile)));
+			try {
+				for (int i = 0; i < numberOfStreets; i++) {
+					long position = streetsOffset + (long) i * STREET_RECORD_SIZE;
+					target.putLong(position, input.readLong());
+					target.putInt(position + 8, 0);
+					target.putInt(position + 12, input.readInt());
+				}
+			} finally {
+				input.close();
+			}
+		}
+
+		private void writeSegments(MappedFile target, long segmentsOffset) throws IOException {
+			long[] keys = segmentKeys;
+			Arrays.sort(keys, 0, numberOfSegments);
+			MappedFile staging = openStagingFile(segmentsFile);
+			for (int i = 0; i < numberOfSegments; i++) {
+				long source = (keys[i] & 0xFFFFFFFFL) * SEGMENT_RECORD_SIZE;
+				long position = segmentsOffset + (long) i * SEGMENT_RECORD_SIZE;
+				for (int field = 0; field < SEGMENT_RECORD_SIZE; field += 4) {
+					target.putInt(position + field, staging.getInt(source + field));
+				}
+			}
+		}
+
+		private void writeTree(MappedFile target, long segmentsOffset, long treeOffset, int[] levelSizes) {
+			long childrenOffset = segmentsOffset;
+			long levelOffset = treeOffset;
+			for (int level = 1; level < levelSizes.length; level++) {
+				for (int node = 0; node < levelSizes[level]; node++) {
+					int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+					int last = Math.min((node + 1) * nodeSize, levelSizes[level - 1]);
+					for (int child = node * nodeSize; child < last; child++) {
+						if (level == 1) {
+							long position = childrenOffset + (long) child * SEGMENT_RECORD_SIZE;
+							int x1 = target.getInt(position + 4), y1 = target.getInt(position + 8);
+							int x2 = target.getInt(position + 12), y2 = target.getInt(position + 16);
+							minX = Math.min(minX, Math.min(x1, x2));
+							minY = Math.min(minY, Math.min(y1, y2));
+							maxX = Math.max(maxX, Math.max(x1, x2));
+							maxY = Math.max(maxY, Math.max(y1, y2));
+						} else {
+							long position = childrenOffset + (long) child * BOX_RECORD_SIZE;
+							minX = Math.min(minX, target.getInt(position));
+							minY = Math.min(minY, target.getInt(position + 4));
+							maxX = Math.max(maxX, target.getInt(position + 8));
+							maxY = Math.max(maxY, target.getInt(position + 12));
+						}
+					}
+					long position = levelOffset + (long) node * BOX_RECORD_SIZE;
+					target.putInt(position, minX);
+					target.putInt(position + 4, minY);
+					target.putInt(position + 8, maxX);
+					target.putInt(position + 12, maxY);
+				}
+				childrenOffset = levelOffset;
+				levelOffset += (long) levelSizes[level] * BOX_RECORD_SIZE;
+			}
+		}
+
+		private int writeHouseNumbers(MappedFile target, long streetsOffset, long housesOffset) throws IOException {
+			MappedFile staging = openStagingFile(housesFile);
+			long[] keys = new long[numberOfHouseNumbers];
+			int numberOfKeys = 0;
+			for (int i = 0; i < numberOfHouseNumbers; i++) {
+				long streetId = staging.getLong((long) i * STAGING_HOUSE_RECORD_SIZE + 8);
+				int streetIndex = binarySearchStreet(target, streetsOffset, numberOfStreets, streetId);
+				if (streetIndex >= 0) {
+					keys[numberOfKeys++] = ((long) streetIndex) << 32 | i;
+				}
+			}
+			if (numberOfKeys < numberOfHouseNumbers) {
+				logger.info((numberOfHouseNumbers - numberOfKeys) + " house numbers are not indexed because their street is not in the index");
+			}
+			Arrays.sort(keys, 0, numberOfKeys);
+			int currentStreet = -1;
+			for (int i = 0; i < numberOfKeys; i++) {
+				int streetIndex = (int) (keys[i] >>> 32);
+				long source = (keys[i] & 0xFFFFFFFFL) * STAGING_HOUSE_RECORD_SIZE;
+				long position = housesOffset + (long) i * HOUSE_RECORD_SIZE;
+				target.putLong(position, staging.getLong(source));
+				target.putInt(position + 8, staging.getInt(source + 16));
+				target.putInt(position + 12, staging.getInt(source + 20));
+				target.putLong(position + 16, staging.getLong(source + 24));
+				long streetPosition = streetsOffset + (long) streetIndex * STREET_RECORD_SIZE;
+				if (streetIndex != currentStreet) {
+					currentStreet = streetIndex;
+					target.putInt(streetPosition + 8, i);
+				}
+				target.putInt(streetPosition + 12, target.getInt(streetPosition + 12) + 1);
+			}
+			return numberOfKeys;
+		}
+
+		private void writeStrings(MappedFile target, long stringsOffset) throws IOException {
+			InputStream input = new BufferedInputStream(new FileInputStream(stringsFile));
+			try {
+				byte[] buffer = new byte[8192];
+				long position = stringsOffset;
+				int read;
+				while ((read = input.read(buffer)) != -1) {
+					target.put(position, buffer, read);
+					position += read;
+				}
+			} finally {
+				input.close();
+			}
+		}
+
+		private void deleteStagingFiles() {
+			for (File file : new File[] { streetsFile, segmentsFile, housesFile, stringsFile }) {
+				if (file.exists() && !file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+		}
+
+		/**
+		 * the staging files are written by a {@link DataOutputStream}, in big
+		 * endian
+		 */
+		private static MappedFile openStagingFile(File file) throws IOException {
+			return new MappedFile(file, file.length(), false, ByteOrder.BIG_ENDIAN);
+		}
+
+		private static long align(long offset) {
+			return (offset + 7) & ~7L;
+		}
+
+		private static byte[] toBytes(String value) throws UnsupportedEncodingException {
+			if (value == null) {
+				return null;
+			}
+			byte[] bytes = value.getBytes(Constants.CHARSET);
+			if (bytes.length > Short.MAX_VALUE) {
+				return Arrays.copyOf(bytes, Short.MAX_VALUE);
+			}
+			return bytes;
+		}
+
+	}
+
+}
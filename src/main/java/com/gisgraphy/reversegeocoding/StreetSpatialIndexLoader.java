@@ -0,0 +1,443 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.reversegeocoding;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.gisgraphy.domain.geoloc.entity.GisFeature;
+import com.gisgraphy.domain.geoloc.entity.Street;
+import com.gisgraphy.domain.geoloc.entity.event.GisFeatureEvent;
+import com.gisgraphy.domain.geoloc.entity.event.GisFeaturesEvent;
+import com.gisgraphy.domain.geoloc.entity.event.IEvent;
+import com.gisgraphy.domain.geoloc.entity.event.IEventListener;
+import com.gisgraphy.domain.geoloc.entity.event.PlaceTypeDeleteAllEvent;
+import com.gisgraphy.domain.repository.IOpenStreetMapDao;
+import com.gisgraphy.domain.repository.IhouseNumberDao;
+import com.gisgraphy.street.StreetType;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Build the {@link StreetSpatialIndex} from the database when the application
+ * starts. The index is built in a background thread ; until it is ready,
+ * {@link #getIndex()} returns null and the reverse geocoding uses the
+ * database.
+ * <p>
+ * The importers do not store the streets and the house numbers through the
+ * repository events, so the importer manager tells the loader when an
+ * importer starts and ends to modify them : the index is stale (and
+ * {@link #getIndex()} returns null) from the start of the modifications until
+ * the index has been rebuilt, in the background, after the last one.
+ * <p>
+ * The streets stored or deleted outside of an import (e.g : by the street
+ * editor) are notified by the repository events : the index is stale and a
+ * rebuild is scheduled {@link #setReloadDelaySeconds(int) a few seconds}
+ * later, so that the modifications done in the meantime are rebuilt at once.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class StreetSpatialIndexLoader implements IEventListener {
+
+	protected static final Logger logger = LoggerFactory.getLogger(StreetSpatialIndexLoader.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+
+	public static final int DEFAULT_RELOAD_DELAY_SECONDS = 10;
+
+	private static final String THREAD_NAME = "street-spatial-index-loader";
+
+	private static final String SCHEDULER_THREAD_NAME = "street-spatial-index-reload-scheduler";
+
+	@Autowired
+	protected IOpenStreetMapDao openStreetMapDao;
+
+	@Autowired
+	protected IhouseNumberDao houseNumberDao;
+
+	private boolean enabled = false;
+
+	private String directory;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private int reloadDelaySeconds = DEFAULT_RELOAD_DELAY_SECONDS;
+
+	private volatile StreetSpatialIndex index;
+
+	/**
+	 * the number of modifications of the streets and of the house numbers,
+	 * the index is stale when it has been built before the last one
+	 */
+	private final AtomicLong modifications = new AtomicLong();
+
+	private volatile long modificationsOfIndex = 0;
+
+	private final AtomicInteger runningModifications = new AtomicInteger();
+
+	private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+
+	private Thread loaderThread;
+
+	private ScheduledExecutorService reloadScheduler;
+
+	@PostConstruct
+	public synchronized void init() {
+		if (!enabled) {
+			logger.info("the street spatial index is disabled, the reverse geocoding will use the database");
+			return;
+		}
+		reloadScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, SCHEDULER_THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		startLoader();
+	}
+
+	/**
+	 * Build the index in a new background thread, the build in progress (if
+	 * any) is interrupted
+	 */
+	private synchronized void startLoader() {
+		final Thread previousLoaderThread = loaderThread;
+		if (previousLoaderThread != null) {
+			previousLoaderThread.interrupt();
+		}
+		loaderThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					if (previousLoaderThread != null) {
+						previousLoaderThread.join();
+					}
+					reload();
+				} catch (InterruptedException e) {
+					logger.warn("the build of the street spatial index has been interrupted");
+				} catch (Exception e) {
+					logger.error("can not build the street spatial index, the reverse geocoding will use the database : " + e.getMessage(), e);
+				}
+			}
+		}, THREAD_NAME);
+		loaderThread.setDaemon(true);
+		loaderThread.start();
+	}
+
+	/**
+	 * Tell the loader that the streets or the house numbers are going to be
+	 * modified : the index is not used until {@link #reloadIfStale()} has
+	 * rebuilt it
+	 */
+	public void onModificationStarted() {
+		runningModifications.incrementAndGet();
+		modifications.incrementAndGet();
+	}
+
+	/**
+	 * Tell the loader that a modification started by
+	 * {@link #onModificationStarted()} is over
+	 */
+	public void onModificationEnded() {
+		if (runningModifications.decrementAndGet() < 0) {
+			runningModifications.set(0);
+		}
+	}
+
+	/**
+	 * Tell the loader that the streets and the house numbers have been
+	 * modified without notice (e.g : the database has been reset), the index
+	 * is not used until it is rebuilt. The rebuild is scheduled if no
+	 * modification is running, it is done by {@link #reloadIfStale()} at the
+	 * end of the modifications otherwise
+	 */
+	public void markStale() {
+		modifications.incrementAndGet();
+		scheduleReload();
+	}
+
+	/**
+	 * Call {@link #reloadIfStale()} in {@link #getReloadDelaySeconds()}
+	 * seconds, unless a call is already scheduled, the index is disabled or a
+	 * modification is running
+	 */
+	private void scheduleReload() {
+		ScheduledExecutorService scheduler = reloadScheduler;
+		if (scheduler == null || runningModifications.get() > 0 || !reloadScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			scheduler.schedule(new Runnable() {
+				public void run() {
+					reloadScheduled.set(false);
+					reloadIfStale();
+				}
+			}, reloadDelaySeconds, TimeUnit.SECONDS);
+		} catch (RejectedExecutionException e) {
+			//the application is stopping
+			reloadScheduled.set(false);
+		}
+	}
+
+	/**
+	 * Rebuild the index in the background if the streets or the house numbers
+	 * have been modified since it has been built, no modification is running
+	 * and the index is enabled
+	 */
+	public void reloadIfStale() {
+		if (enabled && isStale() && runningModifications.get() == 0) {
+			logger.info("the streets or the house numbers have been modified, the street spatial index will be rebuilt");
+			startLoader();
+		}
+	}
+
+	/**
+	 * Build a new index from the database and replace the current one when it
+	 * is ready
+	 * 
+	 * @throws IOException
+	 *             if the index can not be written
+	 * @throws InterruptedException
+	 *             if the thread is interrupted during the build
+	 */
+	public void reload() throws IOException, InterruptedException {
+		long start = System.currentTimeMillis();
+		//the modifications done during the build will make it stale again
+		long modificationsOfNewIndex = modifications.get();
+		File indexDirectory = getIndexDirectory();
+		StreetSpatialIndex.Builder builder = new StreetSpatialIndex.Builder(indexDirectory);
+		boolean built = false;
+		try {
+			addStreets(builder);
+			addHouseNumbers(builder);
+			StreetSpatialIndex newIndex = builder.build(new File(indexDirectory, "streets-" + start + ".idx"));
+			built = true;
+			StreetSpatialIndex oldIndex = index;
+			index = newIndex;
+			modificationsOfIndex = modificationsOfNewIndex;
+			if (oldIndex != null && !oldIndex.getFile().delete()) {
+				//the file stays mapped until the old index is garbage collected
+				oldIndex.getFile().deleteOnExit();
+			}
+			newIndex.getFile().deleteOnExit();
+			logger.info("the street spatial index has been loaded in " + (System.currentTimeMillis() - start) + " ms");
+		} finally {
+			if (!built) {
+				builder.abort();
+			}
+		}
+	}
+
+	private void addStreets(StreetSpatialIndex.Builder builder) throws IOException, InterruptedException {
+		long lastId = Long.MIN_VALUE;
+		List<Object[]> streets;
+		do {
+			checkInterrupted();
+			streets = openStreetMapDao.listShapesFrom(lastId, batchSize);
+			for (Object[] street : streets) {
+				lastId = (Long) street[0];
+				Geometry shape = (Geometry) street[1];
+				StreetType streetType = (StreetType) street[2];
+				boolean road = streetType != null && streetType != StreetType.FOOTWAY;
+				int streetIndex = builder.addStreet(lastId, road, street[3] != null);
+				for (int i = 0; i < shape.getNumGeometries(); i++) {
+					Coordinate[] coordinates = shape.getGeometryN(i).getCoordinates();
+					if (coordinates.length == 1) {
+						builder.addSegment(streetIndex, coordinates[0].x, coordinates[0].y, coordinates[0].x, coordinates[0].y);
+					}
+					for (int j = 1; j < coordinates.length; j++) {
+						builder.addSegment(streetIndex, coordinates[j - 1].x, coordinates[j - 1].y, coordinates[j].x, coordinates[j].y);
+					}
+				}
+			}
+		} while (streets.size() == batchSize);
+	}
+
+	private void addHouseNumbers(StreetSpatialIndex.Builder builder) throws IOException, InterruptedException {
+		long lastId = Long.MIN_VALUE;
+		List<Object[]> houseNumbers;
+		do {
+			checkInterrupted();
+			houseNumbers = houseNumberDao.listLocationsFrom(lastId, batchSize);
+			for (Object[] houseNumber : houseNumbers) {
+				lastId = (Long) houseNumber[0];
+				Point location = (Point) houseNumber[2];
+				builder.addHouseNumber(lastId, (Long) houseNumber[1], location.getX(), location.getY(), (String) houseNumber[3], (String) houseNumber[4]);
+			}
+		} while (houseNumbers.size() == batchSize);
+	}
+
+	private void checkInterrupted() throws InterruptedException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	private File getIndexDirectory() throws IOException {
+		File indexDirectory = new File(directory == null || "".equals(directory.trim()) ? System.getProperty("java.io.tmpdir") : directory);
+		if (!indexDirectory.exists() && !indexDirectory.mkdirs()) {
+			throw new IOException("can not create the directory of the street spatial index : " + indexDirectory);
+		}
+		return indexDirectory;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (reloadScheduler != null) {
+			reloadScheduler.shutdownNow();
+			reloadScheduler = null;
+		}
+		if (loaderThread != null) {
+			loaderThread.interrupt();
+			loaderThread = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.geoloc.entity.event.IEventListener#supports(com.gisgraphy.domain.geoloc.entity.event.IEvent)
+	 */
+	public boolean supports(IEvent event) {
+		if (event instanceof GisFeatureEvent) {
+			return ((GisFeatureEvent) event).getGisFeature() instanceof Street;
+		}
+		if (event instanceof GisFeaturesEvent) {
+			for (GisFeature gisFeature : ((GisFeaturesEvent) event).getGisFeatures()) {
+				if (gisFeature instanceof Street) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (event instanceof PlaceTypeDeleteAllEvent) {
+			Class<?> placeType = ((PlaceTypeDeleteAllEvent) event).getPlaceType();
+			return placeType != null && (Street.class.isAssignableFrom(placeType) || placeType.isAssignableFrom(Street.class));
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.gisgraphy.domain.geoloc.entity.event.IEventListener#handleEvent(com.gisgraphy.domain.geoloc.entity.event.IEvent)
+	 */
+	public void handleEvent(IEvent event) {
+		markStale();
+	}
+
+	private boolean isStale() {
+		return modificationsOfIndex != modifications.get();
+	}
+
+	/**
+	 * @return the index, or null if it is disabled, not built yet, empty or
+	 *         stale
+	 */
+	public StreetSpatialIndex getIndex() {
+		//read the index after the modifications it has been built from
+		boolean stale = isStale();
+		StreetSpatialIndex current = index;
+		if (current == null || stale || runningModifications.get() > 0 || current.getNumberOfStreets() == 0) {
+			return null;
+		}
+		return current;
+	}
+
+	/**
+	 * @return true if the index is built at startup
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            whether the index should be built at startup
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public String getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @param directory
+	 *            the directory of the index file, the temporary directory of
+	 *            the system if empty
+	 */
+	public void setDirectory(String directory) {
+		this.directory = directory;
+	}
+
+	public int getReloadDelaySeconds() {
+		return reloadDelaySeconds;
+	}
+
+	/**
+	 * @param reloadDelaySeconds
+	 *            the number of seconds between a modification of the streets
+	 *            outside of an import and the rebuild of the index
+	 */
+	public void setReloadDelaySeconds(int reloadDelaySeconds) {
+		if (reloadDelaySeconds < 0) {
+			throw new IllegalArgumentException("the reload delay should not be negative");
+		}
+		this.reloadDelaySeconds = reloadDelaySeconds;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize
+	 *            the number of rows read from the database at a time
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("the batch size should be greater than 0");
+		}
+		this.batchSize = batchSize;
+	}
+
+}
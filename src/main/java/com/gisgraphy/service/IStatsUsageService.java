@@ -37,10 +37,9 @@ import com.gisgraphy.stats.StatsUsageType;
 public interface IStatsUsageService {
 
     /**
-     * The satsUsage will be flush into the database every ... It is recommended
-     * to increase this value to a higher value to improve performances. if the
-     * server is stopped, you can loose FLUSH_THRESHOLD usage at most because the
-     * value won't be persist in the datastore
+     * The order of magnitude of the number of usages between two saves in
+     * the database, displayed in the statistics page. The statsUsage are
+     * saved periodically by a background thread and when the server stops
      */
     int FLUSH_THRESHOLD = 50;
 
@@ -77,4 +76,10 @@ public interface IStatsUsageService {
      */
     void flush(StatsUsageType statsUsageType);
 
+    /**
+     * flush the value of all the {@link StatsUsageType} that have changed
+     * since the last flush into database
+     */
+    void flushAll();
+
 }
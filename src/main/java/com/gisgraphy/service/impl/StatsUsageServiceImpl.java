@@ -22,11 +22,17 @@
  *******************************************************************************/
 package com.gisgraphy.service.impl;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -38,13 +44,39 @@ import com.gisgraphy.service.IStatsUsageService;
 import com.gisgraphy.stats.StatsUsage;
 import com.gisgraphy.stats.StatsUsageType;
 
+/**
+ * The counters are striped : each thread increases one of the
+ * {@link #STRIPES} cells of a counter (a cell per cache line), so that the
+ * request threads don't contend on the same value and no increment is lost.
+ * The usage is the sum of the cells.<br/>
+ * The counters are not persisted by the request threads but every
+ * {@link #setFlushIntervalSeconds(int)} by a background thread, and when the
+ * application stops.
+ */
 public class StatsUsageServiceImpl implements IStatsUsageService {
 
+    protected static final Logger logger = LoggerFactory.getLogger(StatsUsageServiceImpl.class);
 
-    private static final Long RESET_COUNTER_VALUE = Long.valueOf(0L);
+    /**
+     * The number of cells of a counter, the power of two above twice the
+     * number of processors
+     */
+    static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) * 2;
+
+    /**
+     * The distance between two cells, so that two cells are not in the same
+     * cache line (8 longs = 64 bytes)
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray counters = new AtomicLongArray(StatsUsageType.values().length * STRIPES * PADDING);
+
+    /**
+     * The last usage saved in the database for each {@link StatsUsageType}
+     * ordinal, guarded by this
+     */
+    private final long[] persistedUsages = new long[StatsUsageType.values().length];
 
-    private Map<String, Long> counterMap = new HashMap<String, Long>();
-    
     @Autowired
     IStatsUsageDao statsUsageDao;
 
@@ -53,13 +85,55 @@ public class StatsUsageServiceImpl implements IStatsUsageService {
     
     public static boolean disabled = false;
 
+    private int flushIntervalSeconds = 0;
+
+    private ScheduledExecutorService flushScheduler;
+
 
     @PostConstruct
     protected void init() {
 	for (StatsUsageType statsUsageType : StatsUsageType.values()) {
 	    initCounter(statsUsageType);
 	}
+	if (flushIntervalSeconds > 0) {
+	    flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+		    Thread thread = new Thread(runnable, "stats-usage-flusher");
+		    thread.setDaemon(true);
+		    return thread;
+		}
+	    });
+	    flushScheduler.scheduleWithFixedDelay(new Runnable() {
+		public void run() {
+		    try {
+			flushAll();
+		    } catch (RuntimeException e) {
+			logger.error("Can not save the usage statistics : " + e.getMessage(), e);
+		    }
+		}
+	    }, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+	}
+    }
 
+    /**
+     * Stop the background flush and save the counters
+     */
+    @PreDestroy
+    public void destroy() {
+	if (flushScheduler != null) {
+	    flushScheduler.shutdown();
+	    try {
+		flushScheduler.awaitTermination(30, TimeUnit.SECONDS);
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    flushScheduler = null;
+	}
+	try {
+	    flushAll();
+	} catch (RuntimeException e) {
+	    logger.error("Can not save the usage statistics on shutdown : " + e.getMessage(), e);
+	}
     }
 
     private StatsUsage initCounter(StatsUsageType statsUsageType) {
@@ -69,18 +143,38 @@ public class StatsUsageServiceImpl implements IStatsUsageService {
 	statsUsage = new StatsUsage(statsUsageType);
 	statsUsageDao.save(statsUsage);
 	}
-	this.counterMap.put(statsUsage.getStatsUsageType().toString(),
-	    statsUsage.getUsage());
+	long usage = statsUsage.getUsage() == null ? 0 : statsUsage.getUsage();
+	add(statsUsageType, usage - sum(statsUsageType));
+	synchronized (this) {
+	    persistedUsages[statsUsageType.ordinal()] = usage;
+	}
 	return statsUsage;
     }
 
+    private static int cellIndex(StatsUsageType statsUsageType, int stripe) {
+	return (statsUsageType.ordinal() * STRIPES + stripe) * PADDING;
+    }
+
+    private void add(StatsUsageType statsUsageType, long delta) {
+	int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+	counters.addAndGet(cellIndex(statsUsageType, stripe), delta);
+    }
+
+    private long sum(StatsUsageType statsUsageType) {
+	long sum = 0;
+	for (int stripe = 0; stripe < STRIPES; stripe++) {
+	    sum += counters.get(cellIndex(statsUsageType, stripe));
+	}
+	return sum;
+    }
+
     /*
      * (non-Javadoc)
      * 
      * @see com.gisgraphy.service.IStatsUsageService#GetNumberOfCounter()
      */
     public int getNumberOfCounter() {
-    	return counterMap.size();
+    	return StatsUsageType.values().length;
     }
 
     /*
@@ -89,7 +183,7 @@ public class StatsUsageServiceImpl implements IStatsUsageService {
      * @see com.gisgraphy.service.IStatsUsageService#GetUsage(com.gisgraphy.stats.StatsUsageType)
      */
     public Long getUsage(StatsUsageType statsUsageType) {
-    	return counterMap.get(statsUsageType.toString());
+    	return sum(statsUsageType);
     }
 
     /*
@@ -99,22 +193,19 @@ public class StatsUsageServiceImpl implements IStatsUsageService {
      */
     public void increaseUsage(StatsUsageType statsUsageType) {
     	if (!disabled){
-    		long newValue = counterMap.get(statsUsageType.toString()) + 1;
-    		counterMap.put(statsUsageType.toString(), newValue);
-    		if (newValue % IStatsUsageService.FLUSH_THRESHOLD == 0) {
-    			flush(statsUsageType);
-    		}
+    		add(statsUsageType, 1);
     	}
     }
 
     public void resetUsage(StatsUsageType statsUsageType) {
     	if (!disabled){
-    		counterMap.put(statsUsageType.toString(), RESET_COUNTER_VALUE);
+    		//the increments done during the reset are kept
+    		add(statsUsageType, -sum(statsUsageType));
     		flush(statsUsageType);
     	}
     }
 
-    public void flush(StatsUsageType statsUsageType) {
+    public synchronized void flush(StatsUsageType statsUsageType) {
     	if (!disabled){
     		statsUsageDao.flushAndClear();
     		StatsUsage statsUsage = statsUsageDao.getByUsageType(statsUsageType);
@@ -127,11 +218,60 @@ public class StatsUsageServiceImpl implements IStatsUsageService {
     		txDefinition.setReadOnly(false);
 
     		txStatus = transactionManager.getTransaction(txDefinition);
-    		statsUsage.setUsage(counterMap.get(statsUsageType.toString()));
+    		long usage = sum(statsUsageType);
+    		statsUsage.setUsage(usage);
     		statsUsageDao.save(statsUsage);
     		transactionManager.commit(txStatus);
+    		persistedUsages[statsUsageType.ordinal()] = usage;
     	}
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.gisgraphy.service.IStatsUsageService#flushAll()
+     */
+    public synchronized void flushAll() {
+	if (disabled) {
+	    return;
+	}
+	DefaultTransactionDefinition txDefinition = new DefaultTransactionDefinition();
+	txDefinition.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+	txDefinition.setReadOnly(false);
+	TransactionStatus txStatus = transactionManager.getTransaction(txDefinition);
+	long[] usages = new long[persistedUsages.length];
+	try {
+	    for (StatsUsageType statsUsageType : StatsUsageType.values()) {
+		int ordinal = statsUsageType.ordinal();
+		usages[ordinal] = sum(statsUsageType);
+		if (usages[ordinal] == persistedUsages[ordinal]) {
+		    continue;
+		}
+		StatsUsage statsUsage = statsUsageDao.getByUsageType(statsUsageType);
+		if (statsUsage == null) {
+		    statsUsage = new StatsUsage(statsUsageType);
+		}
+		statsUsage.setUsage(usages[ordinal]);
+		statsUsageDao.save(statsUsage);
+	    }
+	    transactionManager.commit(txStatus);
+	} catch (RuntimeException e) {
+	    transactionManager.rollback(txStatus);
+	    throw e;
+	}
+	System.arraycopy(usages, 0, persistedUsages, 0, usages.length);
+    }
+
+    /**
+     * @param flushIntervalSeconds
+     *                the number of seconds between two saves of the counters
+     *                by the background thread, 0 or less to save them only
+     *                when {@link #flush(StatsUsageType)} is called and when
+     *                the application stops
+     */
+    public void setFlushIntervalSeconds(int flushIntervalSeconds) {
+	this.flushIntervalSeconds = flushIntervalSeconds;
+    }
+
 
 }
@@ -25,6 +25,7 @@ package com.gisgraphy.servlet;
 import java.io.IOException;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
@@ -36,6 +37,8 @@ import com.gisgraphy.addressparser.AddressQuery;
 import com.gisgraphy.addressparser.IAddressParserService;
 import com.gisgraphy.domain.valueobject.GisgraphyServiceType;
 import com.gisgraphy.service.IStatsUsageService;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 import com.gisgraphy.stats.StatsUsageType;
 
 /**
@@ -101,6 +104,19 @@ public class AddressParserServlet extends AbstractAddressServlet {
 
 
 
+    /**
+     * Record the latency of the request, see {@link LatencyStats}
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	long start = LatencyStats.start();
+	try {
+	    super.service(req, resp);
+	} finally {
+	    LatencyStats.record(LatencyType.ADDRESSPARSER, start);
+	}
+    }
+
     @Override
     public void processRequest(AddressQuery query, HttpServletResponse resp) throws IOException {
    	statsUsageService.increaseUsage(StatsUsageType.ADDRESSPARSER);
@@ -43,6 +43,8 @@ import com.gisgraphy.fulltext.IFullTextSearchEngine;
 import com.gisgraphy.helper.HTMLHelper;
 import com.gisgraphy.serializer.common.IoutputFormatVisitor;
 import com.gisgraphy.serializer.common.OutputFormat;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 
 /**
  * Provides a servlet Wrapper around The Gisgraphy fulltext Service
@@ -86,6 +88,19 @@ public class FulltextServlet extends GisgraphyServlet {
 
     private IFullTextSearchEngine fullTextSearchEngine;
 
+    /**
+     * Record the latency of the request, see {@link LatencyStats}
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	long start = LatencyStats.start();
+	try {
+	    super.service(req, resp);
+	} finally {
+	    LatencyStats.record(LatencyType.FULLTEXT, start);
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
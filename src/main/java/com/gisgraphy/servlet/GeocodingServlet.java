@@ -25,6 +25,7 @@ package com.gisgraphy.servlet;
 import java.io.IOException;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
@@ -33,12 +34,19 @@ import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
 import com.gisgraphy.addressparser.AddressQuery;
+import com.gisgraphy.domain.valueobject.Constants;
 import com.gisgraphy.domain.valueobject.GisgraphyServiceType;
+import com.gisgraphy.geocoding.BatchFormat;
+import com.gisgraphy.geocoding.IBatchGeocodingService;
 import com.gisgraphy.geocoding.IGeocodingService;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 
 /**
  * Provides a servlet Wrapper around The Gisgraphy geocoding Service, it Maps web
- * parameters to create a {@linkplain AddressQuery}
+ * parameters to create a {@linkplain AddressQuery}.
+ * A POST with a newline delimited JSON or CSV body (see {@link BatchFormat})
+ * geocodes all the addresses of the body in one request.
  * 
  * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
  */
@@ -51,6 +59,10 @@ public class GeocodingServlet extends AbstractAddressServlet {
         this.geocodingService = geocodingService;
     }
 
+    public void setBatchGeocodingService(IBatchGeocodingService batchGeocodingService) {
+        this.batchGeocodingService = batchGeocodingService;
+    }
+
 
 
     /**
@@ -66,6 +78,19 @@ public class GeocodingServlet extends AbstractAddressServlet {
   
 
     private IGeocodingService geocodingService;
+    
+    private IBatchGeocodingService batchGeocodingService;
+
+    /**
+     * the name of the parameter to force the batch mode when the content
+     * type is not a batch one, the value is the format (ndjson or csv)
+     */
+    public static final String BATCH_PARAMETER = "batch";
+
+    /**
+     * the name of the parameter for the country code of the lines that have none
+     */
+    public static final String BATCH_COUNTRY_PARAMETER = "country";
 
   
 
@@ -95,6 +120,11 @@ public class GeocodingServlet extends AbstractAddressServlet {
 	    logger
 		    .info("geocodingService is injected :"
 			    + geocodingService);
+	    batchGeocodingService = (IBatchGeocodingService) springContext
+		    .getBean("batchGeocodingService");
+	    logger
+		    .info("batchGeocodingService is injected :"
+			    + batchGeocodingService);
 	} catch (Exception e) {
 	    logger.error("Can not start GeocodingServlet : " + e.getMessage(),e);
 	}
@@ -102,11 +132,64 @@ public class GeocodingServlet extends AbstractAddressServlet {
 
 
 
+    /**
+     * Record the latency of the request, see {@link LatencyStats}
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	if (getBatchFormat(req) != null) {
+	    //a batch takes much longer than a request, it is not recorded
+	    super.service(req, resp);
+	    return;
+	}
+	long start = LatencyStats.start();
+	try {
+	    super.service(req, resp);
+	} finally {
+	    LatencyStats.record(LatencyType.GEOCODING, start);
+	}
+    }
+
     @Override
     public void processRequest(AddressQuery query, HttpServletResponse resp) throws IOException {
     	geocodingService.geocodeAndSerialize(query, resp.getOutputStream());
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see javax.servlet.http.HttpServlet#doPost(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	BatchFormat format = getBatchFormat(req);
+	if (format == null) {
+	    super.doPost(req, resp);
+	    return;
+	}
+	resp.setContentType(format.getContentType() + ";charset=" + Constants.CHARSET);
+	try {
+	    batchGeocodingService.geocodeBatch(req.getInputStream(), resp.getOutputStream(), format, req.getParameter(BATCH_COUNTRY_PARAMETER));
+	} catch (RuntimeException e) {
+	    logger.error("error during batch geocoding : " + e.getMessage(), e);
+	    if (!resp.isCommitted()) {
+		resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+	    }
+	}
+    }
+
+    /**
+     * @return the batch format of the request, from the batch parameter or the
+     *         content type, null if the request is not a batch one
+     */
+    protected BatchFormat getBatchFormat(HttpServletRequest req) {
+	BatchFormat format = BatchFormat.getFromString(req.getParameter(BATCH_PARAMETER));
+	if (format == null) {
+	    format = BatchFormat.fromContentType(req.getContentType());
+	}
+	return format;
+    }
+
 
 
 	/* (non-Javadoc)
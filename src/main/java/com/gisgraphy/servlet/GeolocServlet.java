@@ -43,6 +43,8 @@ import com.gisgraphy.geoloc.GeolocQueryHttpBuilder;
 import com.gisgraphy.helper.HTMLHelper;
 import com.gisgraphy.serializer.common.IoutputFormatVisitor;
 import com.gisgraphy.serializer.common.OutputFormat;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 
 /**
  * Provides a servlet Wrapper around The Gisgraphy geoloc Service, it Maps web
@@ -92,6 +94,19 @@ public class GeolocServlet extends GisgraphyServlet {
 
     private IGeolocSearchEngine geolocSearchEngine;
 
+    /**
+     * Record the latency of the request, see {@link LatencyStats}
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	long start = LatencyStats.start();
+	try {
+	    super.service(req, resp);
+	} finally {
+	    LatencyStats.record(LatencyType.GEOLOC, start);
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.gisgraphy.domain.valueobject.Constants;
+import com.gisgraphy.stats.LatencyHistogram;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
+
+/**
+ * Write the latencies of the web services and of their stages as plain text,
+ * one line per {@link LatencyType}, the durations are in milliseconds. The
+ * same values are available through JMX
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class MetricsServlet extends HttpServlet {
+
+    /**
+     * Default serialVersionUID
+     */
+    private static final long serialVersionUID = 6305839436146932751L;
+
+    public static final String CONTENT_TYPE = "text/plain";
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest,
+     *      javax.servlet.http.HttpServletResponse)
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	resp.setContentType(CONTENT_TYPE);
+	resp.setCharacterEncoding(Constants.CHARSET);
+	resp.setHeader("Cache-Control", "no-cache");
+	PrintWriter writer = resp.getWriter();
+	writeMetrics(writer);
+	writer.flush();
+    }
+
+    /**
+     * Write a header line, then a line per {@link LatencyType} with the count,
+     * the p50, p90, p99 and max latencies
+     */
+    protected void writeMetrics(PrintWriter writer) {
+	writer.println("# type count p50(ms) p90(ms) p99(ms) max(ms)");
+	for (LatencyType type : LatencyType.values()) {
+	    LatencyHistogram.Snapshot snapshot = LatencyStats.getHistogram(type).snapshot();
+	    writer.println(String.format(Locale.US, "%s %d %.3f %.3f %.3f %.3f", type.name().toLowerCase(), snapshot.getCount(),
+		    toMillis(snapshot.getValueAtPercentile(50)), toMillis(snapshot.getValueAtPercentile(90)),
+		    toMillis(snapshot.getValueAtPercentile(99)), toMillis(snapshot.getMax())));
+	}
+    }
+
+    private static double toMillis(long micros) {
+	return micros / 1000D;
+    }
+
+}
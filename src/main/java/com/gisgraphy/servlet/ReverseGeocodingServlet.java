@@ -36,14 +36,18 @@ import org.springframework.web.context.support.WebApplicationContextUtils;
 
 import com.gisgraphy.domain.valueobject.Constants;
 import com.gisgraphy.domain.valueobject.GisgraphyServiceType;
+import com.gisgraphy.geocoding.BatchFormat;
 import com.gisgraphy.geoloc.GeolocErrorVisitor;
 import com.gisgraphy.geoloc.GeolocQuery;
 import com.gisgraphy.helper.HTMLHelper;
+import com.gisgraphy.reversegeocoding.IBatchReverseGeocodingService;
 import com.gisgraphy.reversegeocoding.IReverseGeocodingService;
 import com.gisgraphy.reversegeocoding.ReverseGeocodingQuery;
 import com.gisgraphy.reversegeocoding.ReverseGeocodingQueryHttpBuilder;
 import com.gisgraphy.serializer.common.IoutputFormatVisitor;
 import com.gisgraphy.serializer.common.OutputFormat;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 
 /**
  * Provides a servlet Wrapper around The Gisgraphy Reverse geocoding Service, it Maps web
@@ -67,6 +71,8 @@ public class ReverseGeocodingServlet extends GisgraphyServlet {
 		    .getWebApplicationContext(getServletContext());
 	    reverseGeocodingService = (IReverseGeocodingService) springContext
 		    .getBean("reverseGeocodingService");
+	    batchReverseGeocodingService = (IBatchReverseGeocodingService) springContext
+		    .getBean("reverseGeocodingService");
 	    logger
 		    .info("geolocSearchEngine is injected :"
 			    + reverseGeocodingService);
@@ -89,6 +95,26 @@ public class ReverseGeocodingServlet extends GisgraphyServlet {
 
     private IReverseGeocodingService reverseGeocodingService;
 
+    private IBatchReverseGeocodingService batchReverseGeocodingService;
+
+    /**
+     * Record the latency of the request, see {@link LatencyStats}
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	if (getBatchFormat(req) != null) {
+	    //a batch takes much longer than a request, it is not recorded
+	    super.service(req, resp);
+	    return;
+	}
+	long start = LatencyStats.start();
+	try {
+	    super.service(req, resp);
+	} finally {
+	    LatencyStats.record(LatencyType.REVERSEGEOCODING, start);
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -135,6 +161,44 @@ public class ReverseGeocodingServlet extends GisgraphyServlet {
     }
 
 
+    /**
+     * Reverse geocode a batch of points if the request has a batch parameter
+     * or a batch content type (see {@link BatchFormat}), the points are read
+     * from the body of the request, one per line.
+     * 
+     * @see javax.servlet.http.HttpServlet#doPost(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	BatchFormat format = getBatchFormat(req);
+	if (format == null) {
+	    super.doPost(req, resp);
+	    return;
+	}
+	resp.setContentType(format.getContentType() + ";charset=" + Constants.CHARSET);
+	try {
+	    batchReverseGeocodingService.executeBatchAndSerialize(req.getInputStream(), resp.getOutputStream(), format);
+	} catch (RuntimeException e) {
+	    logger.error("error during batch reverse geocoding : " + e.getMessage(), e);
+	    if (!resp.isCommitted()) {
+		resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+	    }
+	}
+    }
+
+    /**
+     * @return the batch format of the request, from the batch parameter or the
+     *         content type, null if the request is not a batch one
+     */
+    protected BatchFormat getBatchFormat(HttpServletRequest req) {
+	BatchFormat format = BatchFormat.getFromString(req.getParameter(GeocodingServlet.BATCH_PARAMETER));
+	if (format == null) {
+	    format = BatchFormat.fromContentType(req.getContentType());
+	}
+	return format;
+    }
+
+
     /* (non-Javadoc)
      * @see com.gisgraphy.servlet.GisgraphyServlet#getGisgraphyServiceType()
      */
@@ -159,4 +223,9 @@ public class ReverseGeocodingServlet extends GisgraphyServlet {
 		this.reverseGeocodingService = reverseGeocodingService;
 	}
 
+	public void setBatchReverseGeocodingService(
+			IBatchReverseGeocodingService batchReverseGeocodingService) {
+		this.batchReverseGeocodingService = batchReverseGeocodingService;
+	}
+
 }
@@ -42,6 +42,8 @@ import com.gisgraphy.geoloc.GisgraphyCommunicationException;
 import com.gisgraphy.helper.HTMLHelper;
 import com.gisgraphy.serializer.common.IoutputFormatVisitor;
 import com.gisgraphy.serializer.common.OutputFormat;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 import com.gisgraphy.street.IStreetSearchEngine;
 import com.gisgraphy.street.StreetSearchErrorVisitor;
 import com.gisgraphy.street.StreetSearchQuery;
@@ -93,6 +95,19 @@ public class StreetServlet extends GisgraphyServlet {
 
     private IStreetSearchEngine streetSearchEngine;
 
+    /**
+     * Record the latency of the request, see {@link LatencyStats}
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	long start = LatencyStats.start();
+	try {
+	    super.service(req, resp);
+	} finally {
+	    LatencyStats.record(LatencyType.STREET, start);
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram with a fixed memory : the durations are counted in
+ * microseconds, in buckets that grow exponentially. Each power of two is
+ * divided in {@link #SUB_BUCKETS} buckets, so that a percentile is at most
+ * 1/{@link #SUB_BUCKETS} (6%) above the real value, from one microsecond to
+ * several days.<br/>
+ * Recording a duration is one atomic increment (no lock, no allocation), the
+ * percentiles are computed on a {@link Snapshot} when they are read.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * The number of buckets per power of two
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The values under {@link #SUB_BUCKETS} have a bucket each, then there is
+     * {@link #SUB_BUCKETS} buckets for each power of two up to 2^62
+     */
+    static final int NUMBER_OF_BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param durationInNanos
+     *                the duration to record, in nanoseconds, a negative
+     *                duration is recorded as 0
+     */
+    public void record(long durationInNanos) {
+	long micros = Math.max(0, durationInNanos / 1000);
+	counts.incrementAndGet(getBucketIndex(micros));
+	long currentMax = max.get();
+	while (micros > currentMax && !max.compareAndSet(currentMax, micros)) {
+	    currentMax = max.get();
+	}
+    }
+
+    /**
+     * @return a copy of the counters, the recordings that happen during the
+     *         copy may or may not be in it
+     */
+    public Snapshot snapshot() {
+	long[] copy = new long[NUMBER_OF_BUCKETS];
+	for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+	    copy[i] = counts.get(i);
+	}
+	return new Snapshot(copy, max.get());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.gisgraphy.stats.LatencyHistogramMBean#reset()
+     */
+    public void reset() {
+	for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+	    counts.set(i, 0);
+	}
+	max.set(0);
+    }
+
+    public long getCount() {
+	return snapshot().getCount();
+    }
+
+    public double getP50() {
+	return toMillis(snapshot().getValueAtPercentile(50));
+    }
+
+    public double getP90() {
+	return toMillis(snapshot().getValueAtPercentile(90));
+    }
+
+    public double getP99() {
+	return toMillis(snapshot().getValueAtPercentile(99));
+    }
+
+    public double getMax() {
+	return toMillis(max.get());
+    }
+
+    static double toMillis(long micros) {
+	return micros / 1000D;
+    }
+
+    static int getBucketIndex(long value) {
+	if (value < SUB_BUCKETS) {
+	    return (int) value;
+	}
+	int exponent = 63 - Long.numberOfLeadingZeros(value);
+	int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+	return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the highest value that is counted in the bucket
+     */
+    static long getBucketUpperBound(int index) {
+	if (index < SUB_BUCKETS) {
+	    return index;
+	}
+	int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+	long lowerBound = (long) (SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+	return lowerBound + (1L << shift) - 1;
+    }
+
+    /**
+     * The counters of a {@link LatencyHistogram} at a given time, the values
+     * are in microseconds
+     */
+    public static class Snapshot {
+
+	private final long[] counts;
+
+	private final long count;
+
+	private final long max;
+
+	Snapshot(long[] counts, long max) {
+	    this.counts = counts;
+	    long sum = 0;
+	    for (long bucketCount : counts) {
+		sum += bucketCount;
+	    }
+	    this.count = sum;
+	    this.max = max;
+	}
+
+	/**
+	 * @return the number of recorded durations
+	 */
+	public long getCount() {
+	    return count;
+	}
+
+	/**
+	 * @return the longest duration
+	 */
+	public long getMax() {
+	    return max;
+	}
+
+	/**
+	 * @param percentile
+	 *                the percentile between 0 and 100
+	 * @return the duration under which the given percentage of the
+	 *         durations are, or 0 if there is no duration
+	 */
+	public long getValueAtPercentile(double percentile) {
+	    if (count == 0) {
+		return 0;
+	    }
+	    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+	    long seen = 0;
+	    for (int i = 0; i < counts.length; i++) {
+		seen += counts[i];
+		if (seen >= rank) {
+		    return Math.min(getBucketUpperBound(i), max);
+		}
+	    }
+	    return max;
+	}
+    }
+
+}
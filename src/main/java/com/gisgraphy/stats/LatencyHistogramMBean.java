@@ -0,0 +1,63 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.stats;
+
+/**
+ * The JMX view of a {@link LatencyHistogram}, the durations are in
+ * milliseconds
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public interface LatencyHistogramMBean {
+
+    /**
+     * @return the number of recorded durations
+     */
+    long getCount();
+
+    /**
+     * @return the median duration
+     */
+    double getP50();
+
+    /**
+     * @return the duration under which 90% of the durations are
+     */
+    double getP90();
+
+    /**
+     * @return the duration under which 99% of the durations are
+     */
+    double getP99();
+
+    /**
+     * @return the longest duration
+     */
+    double getMax();
+
+    /**
+     * Forget the recorded durations
+     */
+    void reset();
+
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.stats;
+
+/**
+ * Hold a {@link LatencyHistogram} per {@link LatencyType}, so that the
+ * servlets, the services and the daos can record their durations without
+ * being wired to it :
+ * 
+ * <pre>
+ * long start = LatencyStats.start();
+ * try {
+ *     ...
+ * } finally {
+ *     LatencyStats.record(LatencyType.GEOCODING, start);
+ * }
+ * </pre>
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public final class LatencyStats {
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[LatencyType.values().length];
+
+    static {
+	for (int i = 0; i < histograms.length; i++) {
+	    histograms[i] = new LatencyHistogram();
+	}
+    }
+
+    private LatencyStats() {
+    }
+
+    /**
+     * @return the start time to give to {@link #record(LatencyType, long)}
+     */
+    public static long start() {
+	return System.nanoTime();
+    }
+
+    /**
+     * Record the duration since the given start time
+     * 
+     * @param type
+     *                what has been measured
+     * @param start
+     *                the value returned by {@link #start()}
+     */
+    public static void record(LatencyType type, long start) {
+	histograms[type.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * @return the histogram of the given type
+     */
+    public static LatencyHistogram getHistogram(LatencyType type) {
+	return histograms[type.ordinal()];
+    }
+
+    /**
+     * Forget all the recorded durations
+     */
+    public static void reset() {
+	for (LatencyHistogram histogram : histograms) {
+	    histogram.reset();
+	}
+    }
+
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.stats;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Register the {@link LatencyHistogram}s of {@link LatencyStats} in the
+ * platform MBean server, as com.gisgraphy:type=Latency,name=&lt;type&gt;
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class LatencyStatsExporter {
+
+    protected static final Logger logger = LoggerFactory.getLogger(LatencyStatsExporter.class);
+
+    public static final String DOMAIN = "com.gisgraphy";
+
+    private MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    private final List<ObjectName> registeredNames = new ArrayList<ObjectName>();
+
+    /**
+     * @return the name of the MBean of the given type
+     */
+    public static ObjectName getObjectName(LatencyType type) {
+	try {
+	    return new ObjectName(DOMAIN + ":type=Latency,name=" + type.name());
+	} catch (JMException e) {
+	    throw new IllegalArgumentException("can not create the MBean name of " + type, e);
+	}
+    }
+
+    @PostConstruct
+    public synchronized void register() {
+	for (LatencyType type : LatencyType.values()) {
+	    ObjectName name = getObjectName(type);
+	    try {
+		if (mBeanServer.isRegistered(name)) {
+		    //an other gisgraphy in the same JVM, the histograms are shared
+		    logger.warn("The latency MBean " + name + " is already registered");
+		    continue;
+		}
+		mBeanServer.registerMBean(LatencyStats.getHistogram(type), name);
+		registeredNames.add(name);
+	    } catch (JMException e) {
+		logger.error("can not register the latency MBean " + name + " : " + e.getMessage(), e);
+	    }
+	}
+	logger.info(registeredNames.size() + " latency MBeans have been registered");
+    }
+
+    @PreDestroy
+    public synchronized void unregister() {
+	for (ObjectName name : registeredNames) {
+	    try {
+		mBeanServer.unregisterMBean(name);
+	    } catch (JMException e) {
+		logger.warn("can not unregister the latency MBean " + name + " : " + e.getMessage());
+	    }
+	}
+	registeredNames.clear();
+    }
+
+    /**
+     * @param mBeanServer
+     *                the server to register the MBeans in, default to the
+     *                platform one
+     */
+    public void setMBeanServer(MBeanServer mBeanServer) {
+	this.mBeanServer = mBeanServer;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ *   Gisgraphy Project 
+ * 
+ *   This library is free software; you can redistribute it and/or
+ *   modify it under the terms of the GNU Lesser General Public
+ *   License as published by the Free Software Foundation; either
+ *   version 2.1 of the License, or (at your option) any later version.
+ * 
+ *   This library is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *   Lesser General Public License for more details.
+ * 
+ *   You should have received a copy of the GNU Lesser General Public
+ *   License along with this library; if not, write to the Free Software
+ *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ * 
+ *  Copyright 2008  Gisgraphy project 
+ *  David Masclet <davidmasclet@gisgraphy.com>
+ *  
+ *  
+ *******************************************************************************/
+package com.gisgraphy.stats;
+
+/**
+ * Represent what a {@link LatencyHistogram} measures : a web service (the same
+ * names as {@link StatsUsageType}) or a stage of the requests
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ * 
+ */
+public enum LatencyType {
+
+    GEOLOC, FULLTEXT, STREET, GEOCODING, ADDRESSPARSER, REVERSEGEOCODING,
+    /**
+     * The detection of the country in a raw address
+     */
+    COUNTRY_DETECTION,
+    /**
+     * The parsing of a raw address by the address parser
+     */
+    ADDRESS_PARSING,
+    /**
+     * A search sent to the fulltext engine
+     */
+    SOLR_QUERY,
+    /**
+     * An update (add, delete, commit, optimize) sent to the fulltext engine
+     */
+    SOLR_UPDATE,
+    /**
+     * A hibernate operation on the database
+     */
+    DATABASE,
+    /**
+     * The serialization of the results in the output format
+     */
+    SERIALIZATION
+}
@@ -0,0 +1,219 @@
+package com.gisgraphy.street;
+
+import static com.gisgraphy.street.HouseNumberBinaryCodec.BLOCK_INDEX_ENTRY_SIZE;
+import static com.gisgraphy.street.HouseNumberBinaryCodec.BLOCK_SIZE;
+import static com.gisgraphy.street.HouseNumberBinaryCodec.CHARSET;
+import static com.gisgraphy.street.HouseNumberBinaryCodec.HEADER_SIZE;
+import static com.gisgraphy.street.HouseNumberBinaryCodec.VERSION_1;
+import static com.gisgraphy.street.HouseNumberBinaryCodec.fromFixedPoint;
+import static com.gisgraphy.street.HouseNumberBinaryCodec.readInt;
+import static com.gisgraphy.street.HouseNumberBinaryCodec.unzigzag;
+
+import java.io.UnsupportedEncodingException;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import com.gisgraphy.helper.GeolocHelper;
+
+/**
+ * Read only list view of house numbers encoded by
+ * {@link HouseNumberBinaryCodec}. Only the block of the requested house
+ * number is decoded, and {@link #lowerBound(int)} finds a number by binary
+ * search.
+ * <p>
+ * The house numbers are sorted by their normalized int value, the ones that
+ * don't have one are at the end of the list.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class EncodedHouseNumberList extends AbstractList<HouseNumberDto> implements RandomAccess {
+
+	private final byte[] bytes;
+	private final int size;
+	private final int keyedSize;
+	private final int blockCount;
+	private final int dataStart;
+
+	/**
+	 * the last decoded block, most of the accesses are in the same block
+	 */
+	private volatile DecodedBlock lastBlock;
+
+	private static class DecodedBlock {
+		private final int block;
+		private final int[] keys;
+		private final int[] lngs;
+		private final int[] lats;
+		private final String[] numbers;
+
+		private DecodedBlock(int block, int length) {
+			this.block = block;
+			this.keys = new int[length];
+			this.lngs = new int[length];
+			this.lats = new int[length];
+			this.numbers = new String[length];
+		}
+	}
+
+	/**
+	 * @param bytes
+	 *            the bytes returned by {@link HouseNumberBinaryCodec#encode(java.util.Collection)}
+	 * @throws IllegalArgumentException
+	 *             if the bytes are null or if the version is not supported
+	 */
+	public EncodedHouseNumberList(byte[] bytes) {
+		if (bytes == null || bytes.length < HEADER_SIZE) {
+			throw new IllegalArgumentException("house numbers can not be decoded : too short");
+		}
+		if (bytes[0] != VERSION_1) {
+			throw new IllegalArgumentException("house numbers can not be decoded : unknow version " + bytes[0]);
+		}
+		this.bytes = bytes;
+		this.size = readInt(bytes, 1);
+		this.keyedSize = readInt(bytes, 5);
+		this.blockCount = readInt(bytes, 9);
+		this.dataStart = HEADER_SIZE + blockCount * BLOCK_INDEX_ENTRY_SIZE;
+	}
+
+	/**
+	 * @return true if the bytes are in a version that can be decoded
+	 */
+	public static boolean isSupported(byte[] bytes) {
+		return bytes != null && bytes.length >= HEADER_SIZE && bytes[0] == VERSION_1;
+	}
+
+	@Override
+	public HouseNumberDto get(int index) {
+		DecodedBlock decoded = getBlock(index);
+		int i = index % BLOCK_SIZE;
+		String number = decoded.numbers[i];
+		if (number == null) {
+			number = String.valueOf(decoded.keys[i]);
+		}
+		return new HouseNumberDto(GeolocHelper.createPoint(fromFixedPoint(decoded.lngs[i]), fromFixedPoint(decoded.lats[i])), number);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of house numbers that have a normalized int value
+	 *         (they are the first ones of the list)
+	 */
+	public int getKeyedSize() {
+		return keyedSize;
+	}
+
+	/**
+	 * @return the normalized int value of the house number at the specified
+	 *         index, null if it has none
+	 */
+	public Integer getNumberAsInt(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		if (index >= keyedSize) {
+			return null;
+		}
+		return getBlock(index).keys[index % BLOCK_SIZE];
+	}
+
+	/**
+	 * @param number
+	 *            a normalized house number
+	 * @return the index of the first house number whose normalized int value
+	 *         is greater or equals to the specified one, or
+	 *         {@link #getKeyedSize()} if there is none
+	 */
+	public int lowerBound(int number) {
+		int keyedBlocks = (keyedSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		//search the last block whose first number is lower than the number
+		int low = 0;
+		int high = keyedBlocks - 1;
+		int candidateBlock = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (getBlockFirstKey(middle) < number) {
+				candidateBlock = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if (candidateBlock == -1) {
+			return 0;
+		}
+		DecodedBlock decoded = decodeBlock(candidateBlock);
+		int blockStart = candidateBlock * BLOCK_SIZE;
+		int blockEnd = Math.min(blockStart + BLOCK_SIZE, keyedSize);
+		for (int index = blockStart; index < blockEnd; index++) {
+			if (decoded.keys[index - blockStart] >= number) {
+				return index;
+			}
+		}
+		return blockEnd;
+	}
+
+	private int getBlockFirstKey(int block) {
+		return readInt(bytes, HEADER_SIZE + block * BLOCK_INDEX_ENTRY_SIZE);
+	}
+
+	private DecodedBlock getBlock(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return decodeBlock(index / BLOCK_SIZE);
+	}
+
+	private DecodedBlock decodeBlock(int block) {
+		DecodedBlock decoded = lastBlock;
+		if (decoded != null && decoded.block == block) {
+			return decoded;
+		}
+		int blockStart = block * BLOCK_SIZE;
+		int length = Math.min(BLOCK_SIZE, size - blockStart);
+		decoded = new DecodedBlock(block, length);
+		int[] position = new int[] { dataStart + readInt(bytes, HEADER_SIZE + block * BLOCK_INDEX_ENTRY_SIZE + 4) };
+		int previousKey = getBlockFirstKey(block);
+		int previousLng = 0;
+		int previousLat = 0;
+		for (int i = 0; i < length; i++) {
+			boolean keyed = blockStart + i < keyedSize;
+			if (keyed) {
+				previousKey += unzigzag(readVarInt(position));
+				decoded.keys[i] = previousKey;
+			}
+			previousLng += unzigzag(readVarInt(position));
+			previousLat += unzigzag(readVarInt(position));
+			decoded.lngs[i] = previousLng;
+			decoded.lats[i] = previousLat;
+			int numberLength = readVarInt(position);
+			if (numberLength > 0) {
+				numberLength--;
+				try {
+					decoded.numbers[i] = new String(bytes, position[0], numberLength, CHARSET);
+				} catch (UnsupportedEncodingException e) {
+					throw new RuntimeException("unknow encoding " + CHARSET);
+				}
+				position[0] += numberLength;
+			}
+		}
+		lastBlock = decoded;
+		return decoded;
+	}
+
+	private int readVarInt(int[] position) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[position[0]++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+}
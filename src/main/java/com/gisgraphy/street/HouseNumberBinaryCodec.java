@@ -0,0 +1,208 @@
+package com.gisgraphy.street;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.gisgraphy.domain.geoloc.entity.HouseNumber;
+
+/**
+ * Compact binary encoding of the house numbers of a street, stored in the
+ * fulltext engine in {@link #HOUSE_NUMBERS_BINARY_FIELD} (the text
+ * encoding of {@link HouseNumberSerializer} is still written and read for
+ * the documents indexed before).
+ * <p>
+ * The house numbers are sorted once by their normalized int value (see
+ * {@link HouseNumberUtil#normalizeNumberToInt(String)}), the house numbers
+ * that have no int value are put at the end. They are grouped in blocks of
+ * {@link #BLOCK_SIZE}; a fixed width index gives the first number and the
+ * offset of each block so that a number can be found by binary search
+ * without decoding the whole list (see {@link EncodedHouseNumberList}).
+ * 
+ * <pre>
+ * byte    version
+ * int32   number of house numbers
+ * int32   number of house numbers that have an int value
+ * int32   number of blocks
+ * blocks  (int32 first int value, int32 offset of the block in data)
+ * data    for each house number : 
+ *            zigzag varint delta of the int value (only if it has one),
+ *            zigzag varint delta of the longitude and of the latitude, as fixed point ints,
+ *            varint 0 if the number is the int value as string, or length+1 followed by the UTF-8 bytes
+ * </pre>
+ * 
+ * The deltas are reset at the beginning of each block.
+ * 
+ * @author <a href="mailto:david.masclet@gisgraphy.com">David Masclet</a>
+ */
+public class HouseNumberBinaryCodec {
+
+	public static final String HOUSE_NUMBERS_BINARY_FIELD = "house_numbers_bin";
+
+	public static final byte VERSION_1 = 1;
+
+	public static final int BLOCK_SIZE = 16;
+
+	/**
+	 * coordinates are stored as int in 1/10 000 000 degree (~1cm)
+	 */
+	public static final double FIXED_POINT_SCALE = 1E7;
+
+	static final int HEADER_SIZE = 1 + 4 + 4 + 4;
+
+	static final int BLOCK_INDEX_ENTRY_SIZE = 4 + 4;
+
+	static final String CHARSET = "UTF-8";
+
+	private static class Entry {
+		private final Integer key;
+		private final int lng;
+		private final int lat;
+		private final String number;
+
+		private Entry(Integer key, int lng, int lat, String number) {
+			this.key = key;
+			this.lng = lng;
+			this.lat = lat;
+			this.number = number;
+		}
+	}
+
+	private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			if (e1.key == null) {
+				return e2.key == null ? 0 : 1;
+			}
+			if (e2.key == null) {
+				return -1;
+			}
+			return e1.key.compareTo(e2.key);
+		}
+	};
+
+	/**
+	 * @param houseNumbers
+	 *            the house numbers to encode, the ones without number or
+	 *            location are ignored. for house numbers with the same int
+	 *            value, the order of the collection is kept
+	 * @return the encoded house numbers or null if there is nothing to encode
+	 */
+	public byte[] encode(Collection<HouseNumber> houseNumbers) {
+		if (houseNumbers == null || houseNumbers.size() == 0) {
+			return null;
+		}
+		List<Entry> entries = new ArrayList<Entry>(houseNumbers.size());
+		for (HouseNumber houseNumber : houseNumbers) {
+			if (houseNumber == null || houseNumber.getNumber() == null || houseNumber.getLocation() == null) {
+				continue;
+			}
+			entries.add(new Entry(HouseNumberUtil.normalizeNumberToInt(houseNumber.getNumber()), toFixedPoint(houseNumber.getLongitude()),
+					toFixedPoint(houseNumber.getLatitude()), houseNumber.getNumber()));
+		}
+		if (entries.size() == 0) {
+			return null;
+		}
+		//stable sort
+		Collections.sort(entries, ENTRY_COMPARATOR);
+		int keyedCount = 0;
+		for (Entry entry : entries) {
+			if (entry.key != null) {
+				keyedCount++;
+			}
+		}
+		int blockCount = (entries.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int[] blockFirstKeys = new int[blockCount];
+		int[] blockOffsets = new int[blockCount];
+		ByteArrayOutputStream data = new ByteArrayOutputStream(entries.size() * 8);
+		int previousKey = 0;
+		int previousLng = 0;
+		int previousLat = 0;
+		for (int i = 0; i < entries.size(); i++) {
+			Entry entry = entries.get(i);
+			if (i % BLOCK_SIZE == 0) {
+				int block = i / BLOCK_SIZE;
+				blockOffsets[block] = data.size();
+				blockFirstKeys[block] = entry.key == null ? Integer.MAX_VALUE : entry.key;
+				previousKey = blockFirstKeys[block];
+				previousLng = 0;
+				previousLat = 0;
+			}
+			if (entry.key != null) {
+				writeVarInt(data, zigzag(entry.key - previousKey));
+				previousKey = entry.key;
+			}
+			writeVarInt(data, zigzag(entry.lng - previousLng));
+			writeVarInt(data, zigzag(entry.lat - previousLat));
+			previousLng = entry.lng;
+			previousLat = entry.lat;
+			if (entry.key != null && entry.number.equals(entry.key.toString())) {
+				writeVarInt(data, 0);
+			} else {
+				byte[] number = toBytes(entry.number);
+				writeVarInt(data, number.length + 1);
+				data.write(number, 0, number.length);
+			}
+		}
+		byte[] dataBytes = data.toByteArray();
+		int dataStart = HEADER_SIZE + blockCount * BLOCK_INDEX_ENTRY_SIZE;
+		byte[] result = new byte[dataStart + dataBytes.length];
+		result[0] = VERSION_1;
+		writeInt(result, 1, entries.size());
+		writeInt(result, 5, keyedCount);
+		writeInt(result, 9, blockCount);
+		for (int block = 0; block < blockCount; block++) {
+			writeInt(result, HEADER_SIZE + block * BLOCK_INDEX_ENTRY_SIZE, blockFirstKeys[block]);
+			writeInt(result, HEADER_SIZE + block * BLOCK_INDEX_ENTRY_SIZE + 4, blockOffsets[block]);
+		}
+		System.arraycopy(dataBytes, 0, result, dataStart, dataBytes.length);
+		return result;
+	}
+
+	static int toFixedPoint(Double coordinate) {
+		return (int) Math.round(coordinate.doubleValue() * FIXED_POINT_SCALE);
+	}
+
+	static double fromFixedPoint(int coordinate) {
+		return coordinate / FIXED_POINT_SCALE;
+	}
+
+	static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	static void writeInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+	static int readInt(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+	}
+
+	private static byte[] toBytes(String number) {
+		try {
+			return number.getBytes(CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("unknow encoding " + CHARSET);
+		}
+	}
+
+}
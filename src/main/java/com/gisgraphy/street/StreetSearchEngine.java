@@ -45,6 +45,8 @@ import com.gisgraphy.domain.valueobject.StreetSearchResultsDto;
 import com.gisgraphy.serializer.common.UniversalSerializerConstant;
 import com.gisgraphy.service.IStatsUsageService;
 import com.gisgraphy.service.ServiceException;
+import com.gisgraphy.stats.LatencyStats;
+import com.gisgraphy.stats.LatencyType;
 import com.gisgraphy.stats.StatsUsageType;
 
 /**
@@ -106,9 +108,11 @@ public class StreetSearchEngine implements IStreetSearchEngine {
 	Map<String, Object> extraParameter = new HashMap<String, Object>();
 	extraParameter.put(StreetSearchResultsDtoSerializer.START_PAGINATION_INDEX_EXTRA_PARAMETER, query.getFirstPaginationIndex());
 	extraParameter.put(UniversalSerializerConstant.CALLBACK_METHOD_NAME, query.getCallback());
+	long serializationStart = LatencyStats.start();
 	streetSearchResultsDtoSerializer.serialize(outputStream, query
 		.getOutputFormat(), streetSearchResultsDto, query.isOutputIndented(),
 		extraParameter);
+	LatencyStats.record(LatencyType.SERIALIZATION, serializationStart);
 	}
 
     /*
@@ -31,6 +31,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.gisgraphy.compound.Decompounder.state;
+import com.gisgraphy.test.GisgraphyTestHelper;
 
 public class DecompoudTest {
 	@SuppressWarnings("serial")
@@ -233,4 +234,86 @@ public class DecompoudTest {
 		Assert.assertTrue(Decompounder.isDecompoudCountryCode("DE"));
 	}
 
+	@Test
+	public void loadWords(){
+		List<String> compoundWords = Decompounder.loadWords(Decompounder.COMPOUND_FILE);
+		Assert.assertTrue(compoundWords.contains("strasse."));
+		Assert.assertTrue(compoundWords.contains("chaussee"));
+		for (String word : compoundWords){
+			Assert.assertTrue("'"+word+"' should have been trimmed",word.trim().length()==word.length() && word.length()>0);
+			Assert.assertFalse(word.startsWith("#"));
+		}
+		Assert.assertEquals(state.SEPARATE,new Decompounder(compoundWords).getSate("Birken Weg"));
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void loadWordsWithAnUnknownFile(){
+		Decompounder.loadWords("notExisting.txt");
+	}
+
+	@Test
+	public void shouldReturnTheRecordedResults() throws Exception {
+		List<String[]> fixture = GisgraphyTestHelper.readFixture(DecompoudTest.class, "DecompoudTest.txt");
+		Assert.assertFalse(fixture.isEmpty());
+		Decompounder d = null;
+		List<String> words = null;
+		for (String[] fields : fixture){
+			if ("DEFAULT_WORD".equals(fields[0])){
+				words = Decompounder.DEFAULT_WORD;
+			} else if ("COMPOUND_FILE".equals(fields[0])){
+				words = Decompounder.loadWords(Decompounder.COMPOUND_FILE);
+			} else if ("words".equals(fields[0])){
+				words = new ArrayList<String>();
+				for (int i = 1; i < fields.length; i++){
+					words.add(unescape(fields[i]));
+				}
+			} else {
+				String text = unescape(fields[1]);
+				String message = words+" / '"+text+"'";
+				Assert.assertEquals(message, state.valueOf(fields[2]), d.getSate(text));
+				Assert.assertEquals(message, Boolean.valueOf(fields[3]), d.isDecompoundName(text));
+				Assert.assertEquals(message, unescape(fields[4]), d.getOtherFormat(text));
+				Assert.assertEquals(message, unescape(fields[5]), d.getOtherFormatForText(text));
+				Assert.assertEquals(message, unescape(fields[6]), d.addOtherFormat(text));
+				String[] parts = new String[fields.length - 7];
+				for (int i = 0; i < parts.length; i++){
+					parts[i] = unescape(fields[i + 7]);
+				}
+				Assert.assertArrayEquals(message, parts, d.decompound(text));
+				StringBuilder out = new StringBuilder("prefix ");
+				Assert.assertEquals(message, d.isDecompoundName(text), d.appendOtherFormat(text, out));
+				Assert.assertEquals(message, "prefix "+(d.isDecompoundName(text)?d.getOtherFormat(text):""), out.toString());
+				continue;
+			}
+			d = new Decompounder(words);
+		}
+	}
+
+	/**
+	 * @return the field of the fixture without the escaped characters, null for \N
+	 */
+	private static String unescape(String field){
+		if ("\\N".equals(field)){
+			return null;
+		}
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < field.length(); i++){
+			char c = field.charAt(i);
+			if (c == '\\' && i + 1 < field.length()){
+				char next = field.charAt(++i);
+				result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+			} else {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	@Test
+	public void getOtherFormatShouldKeepTheRegexCharactersOfTheName(){
+		Decompounder d = new Decompounder(words);
+		Assert.assertEquals("foo$1 str", d.getOtherFormat("foo$1str"));
+		Assert.assertEquals("a\\bstr", d.getOtherFormat("a\\b str"));
+	}
+
 }
@@ -67,6 +67,25 @@ public class GisHelperTest {
 	Assert.assertNull(clazz);
     }
     
+    @Test
+    public void getBoundingBoxCoordinates(){
+    	double[] bbox = GisHelper.getBoundingBoxCoordinates(0d, 10d, 111000);
+    	Assert.assertEquals(4, bbox.length);
+    	Assert.assertEquals(9d, bbox[0], 0.01);
+    	Assert.assertEquals(-1d, bbox[1], 0.01);
+    	Assert.assertEquals(11d, bbox[2], 0.01);
+    	Assert.assertEquals(1d, bbox[3], 0.01);
+    	//the longitudes are shrunk
+    	bbox = GisHelper.getBoundingBoxCoordinates(60d, 10d, 111000);
+    	Assert.assertEquals(8d, bbox[0], 0.02);
+    	Assert.assertEquals(12d, bbox[2], 0.02);
+    	//near the poles
+    	bbox = GisHelper.getBoundingBoxCoordinates(-90d, 0d, 40000);
+    	for (double coordinate : bbox){
+    		Assert.assertFalse(Double.isNaN(coordinate));
+    	}
+    }
+    
     @Test
     public void testMakeEnvelope(){
     	String envelope = GisHelper.makeEnvelope("C", -30d, 20d, 40000);
@@ -30,6 +30,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -38,6 +39,7 @@ import javax.annotation.Resource;
 import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
 
 import com.gisgraphy.domain.geoloc.entity.AlternateName;
 import com.gisgraphy.domain.geoloc.entity.City;
@@ -324,6 +326,61 @@ public class CityDaoTest extends AbstractIntegrationHttpSolrTestCase {
     }
     
     
+    @Test
+    public void testGetNearestAndDistanceFromShouldReturnTheSameResultsWithOrWithoutKnnQuery() {
+	City p1 = GisgraphyTestHelper.createCity("paris", 48.86667F, 2.3333F, 1L);
+	City p2 = GisgraphyTestHelper.createCity("bordeaux", 44.83333F, -0.56667F,
+		3L);
+	City p3 = GisgraphyTestHelper.createCity("goussainville", 49.01667F,
+		2.46667F, 2L);
+	City p4 = GisgraphyTestHelper.createCity("vanves", 48.82F, 2.289F, 4L);
+	p4.addZipCode(new ZipCode("92170","fr"));
+	this.cityDao.save(p1);
+	this.cityDao.save(p2);
+	this.cityDao.save(p3);
+	this.cityDao.save(p4);
+
+	GenericGisDao<?> dao = AopTestUtils.getUltimateTargetObject(cityDao);
+	boolean knnQueryEnabled = dao.isKnnQueryEnabled();
+	try {
+	    int[][] paginations = { { -1, -1 }, { 0, 2 }, { 1, 2 }, { 2, 10 } };
+	    double[] distances = { 1000000, 50000 };
+	    for (double distance : distances) {
+		for (int[] pagination : paginations) {
+		    dao.setKnnQueryEnabled(false);
+		    List<GisFeatureDistance> criteriaResults = cityDao.getNearestAndDistanceFrom(p1.getLocation(), distance,
+			    pagination[0], pagination[1], true, false);
+		    List<GisFeatureDistance> criteriaResultsFromFeature = cityDao.getNearestAndDistanceFromGisFeature(p1,
+			    distance, pagination[0], pagination[1], true);
+		    dao.setKnnQueryEnabled(true);
+		    List<GisFeatureDistance> knnResults = cityDao.getNearestAndDistanceFrom(p1.getLocation(), distance,
+			    pagination[0], pagination[1], true, false);
+		    List<GisFeatureDistance> knnResultsFromFeature = cityDao.getNearestAndDistanceFromGisFeature(p1,
+			    distance, pagination[0], pagination[1], true);
+		    String context = "distance=" + distance + ", firstResult=" + pagination[0] + ", maxResults=" + pagination[1];
+		    assertSameResults(context, criteriaResults, knnResults);
+		    assertSameResults(context + " (from feature)", criteriaResultsFromFeature, knnResultsFromFeature);
+		}
+	    }
+	} finally {
+	    dao.setKnnQueryEnabled(knnQueryEnabled);
+	}
+    }
+
+    private void assertSameResults(String context, List<GisFeatureDistance> expected,
+	    List<GisFeatureDistance> actual) {
+	assertEquals(context, expected.size(), actual.size());
+	for (int i = 0; i < expected.size(); i++) {
+	    GisFeatureDistance expectedResult = expected.get(i);
+	    GisFeatureDistance actualResult = actual.get(i);
+	    assertEquals(context, expectedResult.getFeatureId(), actualResult.getFeatureId());
+	    assertEquals(context, expectedResult.getName(), actualResult.getName());
+	    assertEquals(context, new HashSet<String>(expectedResult.getZipCodes()),
+		    new HashSet<String>(actualResult.getZipCodes()));
+	    assertEquals(context, expectedResult.getDistance(), actualResult.getDistance(), 0.01);
+	}
+    }
+
     @Test
     public void testGetNearest() {
 	City p1 = GisgraphyTestHelper.createCity("paris", 48.86667F, 2.3333F, 1L);
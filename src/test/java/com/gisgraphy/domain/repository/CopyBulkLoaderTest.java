@@ -0,0 +1,97 @@
+package com.gisgraphy.domain.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gisgraphy.domain.geoloc.entity.AlternateName;
+import com.gisgraphy.domain.geoloc.entity.City;
+import com.gisgraphy.domain.geoloc.entity.GisFeature;
+import com.gisgraphy.domain.geoloc.entity.HouseNumber;
+import com.gisgraphy.domain.geoloc.entity.OpenStreetMap;
+import com.gisgraphy.domain.valueobject.SRID;
+import com.gisgraphy.helper.GeolocHelper;
+import com.vividsolutions.jts.geom.Point;
+
+public class CopyBulkLoaderTest {
+
+	@Test
+	public void escapeShouldEscapeTheSeparatorsAndTheBackslashes() {
+		Assert.assertEquals("rue de la paix", CopyBulkLoader.escape("rue de la paix"));
+		Assert.assertEquals("a\\tb\\nc\\rd\\\\e", CopyBulkLoader.escape("a\tb\nc\rd\\e"));
+		Assert.assertEquals("", CopyBulkLoader.escape(""));
+	}
+
+	@Test
+	public void formatShouldUseTheTextFormatOfCopy() {
+		Assert.assertEquals("\\N", CopyBulkLoader.format(null));
+		Assert.assertEquals("t", CopyBulkLoader.format(Boolean.TRUE));
+		Assert.assertEquals("f", CopyBulkLoader.format(Boolean.FALSE));
+		Assert.assertEquals("12", CopyBulkLoader.format(12L));
+		Assert.assertEquals("\\\\x00FF10", CopyBulkLoader.format(new byte[] { 0, (byte) 255, 16 }));
+		Assert.assertEquals("a\\tb", CopyBulkLoader.format("a\tb"));
+	}
+
+	@Test
+	public void captureShouldRecordTheBoundValues() throws Exception {
+		Object[] values = new Object[3];
+		PreparedStatement statement = CopyBulkLoader.capture(values);
+		statement.setString(1, "name");
+		statement.setNull(2, Types.VARCHAR);
+		statement.setLong(3, 5L);
+		Assert.assertEquals("name", values[0]);
+		Assert.assertNull(values[1]);
+		Assert.assertEquals(5L, values[2]);
+		try {
+			statement.executeUpdate();
+			Assert.fail("only the setters should be supported");
+		} catch (UnsupportedOperationException e) {
+			//ok
+		}
+	}
+
+	@Test
+	public void getCopyOrderShouldCopyTheReferencedTablesFirst() {
+		//a house number of an existing street is added, then a new street
+		//and its house number
+		Map<Class<?>, Set<Class<?>>> references = new LinkedHashMap<Class<?>, Set<Class<?>>>();
+		references.put(HouseNumber.class, Collections.<Class<?>>singleton(OpenStreetMap.class));
+		references.put(OpenStreetMap.class, Collections.<Class<?>>emptySet());
+		Assert.assertEquals(Arrays.asList(OpenStreetMap.class, HouseNumber.class), CopyBulkLoader.getCopyOrder(references));
+
+		references = new LinkedHashMap<Class<?>, Set<Class<?>>>();
+		references.put(OpenStreetMap.class, Collections.<Class<?>>emptySet());
+		references.put(HouseNumber.class, Collections.<Class<?>>singleton(OpenStreetMap.class));
+		Assert.assertEquals(Arrays.asList(OpenStreetMap.class, HouseNumber.class), CopyBulkLoader.getCopyOrder(references));
+	}
+
+	@Test
+	public void getCopyOrderShouldCopyTheReferencedSubclassesFirstAndKeepTheOrderOfUseOtherwise() {
+		Map<Class<?>, Set<Class<?>>> references = new LinkedHashMap<Class<?>, Set<Class<?>>>();
+		references.put(AlternateName.class, Collections.<Class<?>>singleton(GisFeature.class));
+		references.put(HouseNumber.class, Collections.<Class<?>>singleton(OpenStreetMap.class));
+		references.put(City.class, Collections.<Class<?>>emptySet());
+		references.put(OpenStreetMap.class, Collections.<Class<?>>emptySet());
+		Assert.assertEquals(Arrays.asList(City.class, AlternateName.class, OpenStreetMap.class, HouseNumber.class),
+				CopyBulkLoader.getCopyOrder(references));
+	}
+
+	@Test
+	public void toEWKBShouldIncludeTheSrid() {
+		Point point = GeolocHelper.createPoint(2F, 48F);
+		point.setSRID(0);
+		String ewkb = CopyBulkLoader.toEWKB(point);
+		//little endian, point type with the srid flag, srid 4326
+		Assert.assertTrue(ewkb, ewkb.startsWith("0101000020E6100000"));
+		Assert.assertEquals("the geometry of the entity should not be modified", 0, point.getSRID());
+		Assert.assertEquals((1 + 4 + 4 + 16) * 2, ewkb.length());
+	}
+
+}
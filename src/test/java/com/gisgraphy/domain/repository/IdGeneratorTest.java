@@ -96,4 +96,38 @@ public class IdGeneratorTest {
 		
 	    }
 
+	 @Test
+	    public void syncShouldNotRewindWhenAnOtherImporterIsRunning(){
+		IdGenerator idgenerator = new IdGenerator() ;
+
+		IGisFeatureDao gisFeatureDao = EasyMock.createMock(IGisFeatureDao.class);
+		long maxFeatureId = IdGenerator.FEATUREID_INCREMENT_NO_CONFLICT+1000;
+		EasyMock.expect(gisFeatureDao.getMaxFeatureId()).andStubReturn(maxFeatureId);
+		EasyMock.replay(gisFeatureDao);
+		idgenerator.setGisFeatureDao(gisFeatureDao);
+
+		IOpenStreetMapDao openStreetMapDao = EasyMock.createMock(IOpenStreetMapDao.class);
+		long maxGid = IdGenerator.OPENSTREETMAP_GID_NO_CONFLICT+1000;
+		EasyMock.expect(openStreetMapDao.getMaxGid()).andStubReturn(maxGid);
+		EasyMock.replay(openStreetMapDao);
+		idgenerator.setOpenStreetMapDao(openStreetMapDao);
+		
+		idgenerator.sync();
+		idgenerator.onImporterStarted();
+		idgenerator.onImporterStarted();
+		//the ids generated by the running importers are not in the database yet
+		idgenerator.getNextFeatureId();
+		idgenerator.getNextGId();
+		
+		idgenerator.sync();
+		Assert.assertEquals(maxFeatureId+1, idgenerator.getFeatureId());
+		Assert.assertEquals(maxGid+1, idgenerator.getGid());
+		
+		idgenerator.onImporterEnded();
+		//no other importer is running, the generator is rewinded
+		idgenerator.sync();
+		Assert.assertEquals(maxFeatureId, idgenerator.getFeatureId());
+		Assert.assertEquals(maxGid, idgenerator.getGid());
+	    }
+
 }
@@ -0,0 +1,61 @@
+package com.gisgraphy.domain.repository;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gisgraphy.helper.GeolocHelper;
+import com.gisgraphy.helper.GisHelper;
+
+public class KnnNearestQueryTest {
+
+	@Test
+	public void getNumberOfCandidatesShouldIncreaseWithTheLatitude() {
+		Assert.assertEquals(10 * KnnNearestQuery.CANDIDATES_FACTOR, KnnNearestQuery.getNumberOfCandidates(GeolocHelper.createPoint(2F, 0F), 10));
+		Assert.assertEquals(40, KnnNearestQuery.getNumberOfCandidates(GeolocHelper.createPoint(2F, 60F), 10));
+		Assert.assertEquals(KnnNearestQuery.getNumberOfCandidates(GeolocHelper.createPoint(2F, 60F), 10),
+				KnnNearestQuery.getNumberOfCandidates(GeolocHelper.createPoint(2F, -60F), 10));
+		Assert.assertTrue("the number of candidates should be bounded near the poles",
+				KnnNearestQuery.getNumberOfCandidates(GeolocHelper.createPoint(2F, 90F), 10) <= 10 * KnnNearestQuery.CANDIDATES_FACTOR * 20);
+	}
+
+	@Test
+	public void getMinSphereDistanceShouldBeLowerThanTheDistanceOnTheSphere() {
+		Random random = new Random(12345);
+		for (double latitude : new double[] { 0, 45, -60, 80 }) {
+			double[] boundingBox = GisHelper.getBoundingBoxCoordinates(latitude, 2, 200000);
+			for (int i = 0; i < 10000; i++) {
+				double lng1 = boundingBox[0] + random.nextDouble() * (boundingBox[2] - boundingBox[0]);
+				double lat1 = boundingBox[1] + random.nextDouble() * (boundingBox[3] - boundingBox[1]);
+				double lng2 = boundingBox[0] + random.nextDouble() * (boundingBox[2] - boundingBox[0]);
+				double lat2 = boundingBox[1] + random.nextDouble() * (boundingBox[3] - boundingBox[1]);
+				double degrees = Math.sqrt((lng1 - lng2) * (lng1 - lng2) + (lat1 - lat2) * (lat1 - lat2));
+				double minDistance = KnnNearestQuery.getMinSphereDistance(degrees, boundingBox);
+				Assert.assertTrue(minDistance + " should not be greater than the distance between " + lng1 + "," + lat1 + " and " + lng2 + ","
+						+ lat2, minDistance <= haversine(lng1, lat1, lng2, lat2) * (1 + 1E-9));
+			}
+		}
+	}
+
+	@Test
+	public void getMinSphereDistanceShouldBeNearTheDistanceAtTheEquator() {
+		double[] boundingBox = GisHelper.getBoundingBoxCoordinates(0, 2, 200000);
+		Assert.assertEquals(haversine(2, 0, 3, 0), KnnNearestQuery.getMinSphereDistance(1, boundingBox), 100);
+	}
+
+	@Test
+	public void getMinSphereDistanceShouldBeZeroWhenTheBoundingBoxCoversHalfTheLongitudes() {
+		double[] boundingBox = GisHelper.getBoundingBoxCoordinates(89.9, 2, 200000);
+		Assert.assertEquals(0, KnnNearestQuery.getMinSphereDistance(10, boundingBox), 0);
+	}
+
+	private static double haversine(double lng1, double lat1, double lng2, double lat2) {
+		double dLat = Math.toRadians(lat2 - lat1);
+		double dLng = Math.toRadians(lng2 - lng1);
+		double h = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+				* Math.sin(dLng / 2) * Math.sin(dLng / 2);
+		return 2 * KnnNearestQuery.SPHERE_RADIUS_IN_METERS * Math.asin(Math.min(1, Math.sqrt(h)));
+	}
+
+}
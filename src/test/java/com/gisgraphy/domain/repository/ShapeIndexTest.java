@@ -0,0 +1,114 @@
+package com.gisgraphy.domain.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gisgraphy.domain.geoloc.entity.Adm;
+import com.gisgraphy.domain.geoloc.entity.City;
+import com.gisgraphy.domain.geoloc.entity.GisFeature;
+import com.gisgraphy.domain.geoloc.entity.OpenStreetMap;
+import com.gisgraphy.domain.geoloc.entity.event.GisFeatureStoredEvent;
+import com.gisgraphy.domain.geoloc.entity.event.PlaceTypeDeleteAllEvent;
+import com.gisgraphy.helper.GeolocHelper;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class ShapeIndexTest {
+
+	private static final String BIG_SQUARE = "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))";
+
+	private static final String SMALL_SQUARE = "POLYGON((1 1, 3 1, 3 3, 1 3, 1 1))";
+
+	private static final String OTHER_SQUARE = "POLYGON((20 20, 30 20, 30 30, 20 30, 20 20))";
+
+	private ShapeIndex shapeIndex;
+
+	@Before
+	public void setUp() throws Exception {
+		List<Object[]> cities = new ArrayList<Object[]>();
+		cities.add(new Object[] { 1L, shape(BIG_SQUARE), "FR", true });
+		cities.add(new Object[] { 2L, shape(SMALL_SQUARE), "FR", false });
+		cities.add(new Object[] { 3L, shape(OTHER_SQUARE), "DE", true });
+		List<Object[]> adms = new ArrayList<Object[]>();
+		adms.add(new Object[] { 10L, shape(SMALL_SQUARE), "FR" });
+		adms.add(new Object[] { 11L, shape(BIG_SQUARE), "FR" });
+
+		shapeIndex = new ShapeIndex();
+		shapeIndex.setEnabled(true);
+		shapeIndex.setBatchSize(100);
+		shapeIndex.cityDao = mockDao(ICityDao.class, cities);
+		shapeIndex.citySubdivisionDao = mockDao(ICitySubdivisionDao.class, new ArrayList<Object[]>());
+		shapeIndex.admDao = mockDao(IAdmDao.class, adms);
+	}
+
+	@Test
+	public void isReadyShouldBeFalseBeforeTheLoad() {
+		Assert.assertFalse(shapeIndex.isReady());
+		Assert.assertNull(shapeIndex.getCityIdByShape(GeolocHelper.createPoint(2F, 2F), "FR", false));
+		Assert.assertEquals(0, shapeIndex.getNumberOfShapes());
+	}
+
+	@Test
+	public void getCityIdByShapeShouldReturnTheSmallestShape() {
+		shapeIndex.reload();
+		Assert.assertTrue(shapeIndex.isReady());
+		Assert.assertEquals(5, shapeIndex.getNumberOfShapes());
+		Assert.assertTrue(shapeIndex.getMemoryFootprint() > 0);
+		Assert.assertEquals(Long.valueOf(2L), shapeIndex.getCityIdByShape(GeolocHelper.createPoint(2F, 2F), "FR", false));
+		Assert.assertEquals(Long.valueOf(2L), shapeIndex.getCityIdByShape(GeolocHelper.createPoint(2F, 2F), "fr", false));
+		Assert.assertEquals(Long.valueOf(2L), shapeIndex.getCityIdByShape(GeolocHelper.createPoint(2F, 2F), null, false));
+		Assert.assertEquals(Long.valueOf(1L), shapeIndex.getCityIdByShape(GeolocHelper.createPoint(5F, 5F), "FR", false));
+		Assert.assertNull(shapeIndex.getCityIdByShape(GeolocHelper.createPoint(2F, 2F), "DE", false));
+		Assert.assertNull(shapeIndex.getCityIdByShape(GeolocHelper.createPoint(15F, 15F), null, false));
+		Assert.assertEquals(Long.valueOf(3L), shapeIndex.getCityIdByShape(GeolocHelper.createPoint(25F, 25F), null, false));
+	}
+
+	@Test
+	public void getCityIdByShapeShouldFilterMunicipality() {
+		shapeIndex.reload();
+		Assert.assertEquals(Long.valueOf(1L), shapeIndex.getCityIdByShape(GeolocHelper.createPoint(2F, 2F), "FR", true));
+	}
+
+	@Test
+	public void listAdmIdsByShapeShouldReturnTheBiggestFirst() {
+		shapeIndex.reload();
+		List<Long> ids = shapeIndex.listAdmIdsByShape(GeolocHelper.createPoint(2F, 2F), "FR");
+		Assert.assertEquals(2, ids.size());
+		Assert.assertEquals(Long.valueOf(11L), ids.get(0));
+		Assert.assertEquals(Long.valueOf(10L), ids.get(1));
+		Assert.assertEquals(1, shapeIndex.listAdmIdsByShape(GeolocHelper.createPoint(5F, 5F), "FR").size());
+		Assert.assertNull(shapeIndex.getCitySubdivisionIdByShape(GeolocHelper.createPoint(2F, 2F), "FR"));
+	}
+
+	@Test
+	public void eventsShouldMakeTheIndexStale() {
+		shapeIndex.reload();
+		Assert.assertFalse(shapeIndex.supports(new GisFeatureStoredEvent(new OpenStreetMap())));
+		Assert.assertFalse(shapeIndex.supports(new GisFeatureStoredEvent(new GisFeature())));
+		Assert.assertTrue(shapeIndex.supports(new PlaceTypeDeleteAllEvent(Adm.class)));
+		City city = new City();
+		GisFeatureStoredEvent event = new GisFeatureStoredEvent(city);
+		Assert.assertTrue(shapeIndex.supports(event));
+		shapeIndex.handleEvent(event);
+		Assert.assertFalse("a stale index should not be used", shapeIndex.isReady());
+		shapeIndex.reloadIfStale();
+		Assert.assertTrue(shapeIndex.isReady());
+	}
+
+	private static Geometry shape(String wkt) throws Exception {
+		return new WKTReader().read(wkt);
+	}
+
+	private static <T extends IGisDao<?>> T mockDao(Class<T> daoClass, List<Object[]> shapes) {
+		T dao = EasyMock.createMock(daoClass);
+		EasyMock.expect(dao.listShapesFrom(EasyMock.anyLong(), EasyMock.anyInt())).andStubReturn(shapes);
+		EasyMock.replay(dao);
+		return dao;
+	}
+
+}
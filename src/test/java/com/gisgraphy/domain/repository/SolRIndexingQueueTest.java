@@ -0,0 +1,120 @@
+package com.gisgraphy.domain.repository;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.easymock.EasyMock;
+import org.easymock.IMocksControl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gisgraphy.fulltext.IsolrClient;
+import com.gisgraphy.geoloc.GisgraphyCommunicationException;
+
+public class SolRIndexingQueueTest {
+
+    @Test
+    public void flushShouldSendTheDocumentsByBatchesWithCommitWithin() throws Exception {
+	SolrServer mockSolrServer = EasyMock.createMock(SolrServer.class);
+	EasyMock.expect(mockSolrServer.add(EasyMock.<Collection<SolrInputDocument>> anyObject(), EasyMock.eq(1000))).andReturn(null).times(2);
+	EasyMock.replay(mockSolrServer);
+
+	SolRIndexingQueue queue = new SolRIndexingQueue(createSolrClient(mockSolrServer), 1, 2, 1000, 3);
+	queue.add(new SolrInputDocument(), 1L);
+	queue.add(new SolrInputDocument(), 2L);
+	queue.add(new SolrInputDocument(), 3L);
+	queue.flush();
+
+	Assert.assertEquals(3, queue.getNumberOfDocumentsSent());
+	EasyMock.verify(mockSolrServer);
+	queue.shutdown();
+    }
+
+    @Test
+    public void flushShouldSendTheDocumentsWithoutCommitWithin() throws Exception {
+	SolrServer mockSolrServer = EasyMock.createMock(SolrServer.class);
+	EasyMock.expect(mockSolrServer.add(EasyMock.<Collection<SolrInputDocument>> anyObject())).andReturn(null).times(2);
+	EasyMock.replay(mockSolrServer);
+
+	SolRIndexingQueue queue = new SolRIndexingQueue(createSolrClient(mockSolrServer), 2, 10, 0, 3);
+	queue.add(new SolrInputDocument(), 1L);
+	queue.add(new SolrInputDocument(), 2L);
+	queue.flush();
+	queue.flush();
+
+	Assert.assertEquals(2, queue.getNumberOfDocumentsSent());
+	EasyMock.verify(mockSolrServer);
+	queue.shutdown();
+    }
+
+    @Test
+    public void flushShouldThrowsWhenABatchCanNotBeSent() throws Exception {
+	SolrServer mockSolrServer = EasyMock.createMock(SolrServer.class);
+	EasyMock.expect(mockSolrServer.add(EasyMock.<Collection<SolrInputDocument>> anyObject())).andThrow(new SolrServerException("exception")).times(3);
+	EasyMock.replay(mockSolrServer);
+
+	SolRIndexingQueue queue = new SolRIndexingQueue(createSolrClient(mockSolrServer), 1, 10, 0, 3);
+	queue.add(new SolrInputDocument(), 1L);
+	try {
+	    queue.flush();
+	    Assert.fail("the error should be thrown by flush");
+	} catch (GisgraphyCommunicationException ignore) {
+	}
+	Assert.assertEquals(0, queue.getNumberOfDocumentsSent());
+	EasyMock.verify(mockSolrServer);
+	//the error has been reported
+	queue.flush();
+	queue.shutdown();
+    }
+
+    @Test
+    public void synchroniserFlushShouldCommitAndThenNotifyTheCommitListenersWhenThereIsAnIndexingQueue() throws Exception {
+	IMocksControl control = EasyMock.createStrictControl();
+	SolrServer mockSolrServer = control.createMock(SolrServer.class);
+	ISolRCommitListener listener = control.createMock(ISolRCommitListener.class);
+	EasyMock.expect(mockSolrServer.add(EasyMock.<Collection<SolrInputDocument>> anyObject(), EasyMock.eq(1000))).andReturn(null);
+	//the documents sent with commitWithin must be visible before the
+	//listeners are notified
+	EasyMock.expect(mockSolrServer.commit(true, true)).andReturn(null);
+	listener.onCommit();
+	control.replay();
+
+	SolRSynchroniser synchroniser = new SolRSynchroniser(createSolrClient(mockSolrServer));
+	synchroniser.setCommitListeners(Arrays.asList(listener));
+	synchroniser.setIndexingThreads(1);
+	synchroniser.setCommitWithinMs(1000);
+	synchroniser.getIndexingQueue().add(new SolrInputDocument(), 1L);
+	synchroniser.flush();
+
+	control.verify();
+	synchroniser.shutdown();
+    }
+
+    @Test
+    public void synchroniserFlushShouldNotNotifyTheCommitListenersWhenThereIsNoIndexingQueue() {
+	ISolRCommitListener listener = EasyMock.createMock(ISolRCommitListener.class);
+	EasyMock.replay(listener);
+
+	SolRSynchroniser synchroniser = new SolRSynchroniser(EasyMock.createMock(IsolrClient.class));
+	synchroniser.setCommitListeners(Arrays.asList(listener));
+	synchroniser.flush();
+
+	EasyMock.verify(listener);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void queueShouldHaveAtLeastOneThread() {
+	new SolRIndexingQueue(EasyMock.createMock(IsolrClient.class), 0, 10, 0, 3);
+    }
+
+    private static IsolrClient createSolrClient(SolrServer solrServer) {
+	IsolrClient mockSolrClient = EasyMock.createMock(IsolrClient.class);
+	EasyMock.expect(mockSolrClient.getServer()).andStubReturn(solrServer);
+	EasyMock.replay(mockSolrClient);
+	return mockSolrClient;
+    }
+
+}
@@ -87,7 +87,8 @@ import com.gisgraphy.geoloc.GisgraphyCommunicationException;
 import com.gisgraphy.helper.FileHelper;
 import com.gisgraphy.helper.GeolocHelper;
 import com.gisgraphy.serializer.common.OutputFormat;
-import com.gisgraphy.street.HouseNumberSerializer;
+import com.gisgraphy.street.HouseNumberBinaryCodec;
+import com.gisgraphy.street.HouseNumberDto;
 import com.gisgraphy.street.StreetType;
 import com.gisgraphy.test.FeedChecker;
 import com.gisgraphy.test.GisgraphyTestHelper;
@@ -1281,7 +1282,6 @@ public class SolRSynchroniserTest extends AbstractIntegrationHttpSolrTestCase {
 		street.addAlternateLabel("alternateLabel");
 		street.addAlternateLabel("alternateLabel2");
    
-		HouseNumberSerializer houseNumberSerializer = new HouseNumberSerializer();
     	openStreetMapDao.save(street);
 
         this.solRSynchroniser.commit();
@@ -1415,10 +1415,9 @@ public class SolRSynchroniserTest extends AbstractIntegrationHttpSolrTestCase {
 			+ "'][./str[1]/.='"+zipIterator.next()+"']",
 			"//*[@name='" + FullTextFields.IS_IN_ZIP.getValue()
 			+ "'][./str[2]/.='"+zipIterator.next()+"']",
-			"//*[@name='" + FullTextFields.HOUSE_NUMBERS.getValue()
-			+ "'][./str[1][.='"+houseNumberSerializer.serialize(houseNumber2)+"']]"
-		, "//*[@name='" + FullTextFields.HOUSE_NUMBERS.getValue()
-		+ "'][./str[2][.='"+houseNumberSerializer.serialize(houseNumber1)+"']]",
+			//only the binary house numbers are stored, and they are not public
+			"not(//*[@name='" + FullTextFields.HOUSE_NUMBERS.getValue() + "'])",
+			"not(//*[@name='" + HouseNumberBinaryCodec.HOUSE_NUMBERS_BINARY_FIELD + "'])",
 		//altnames
 		"//*[@name='" + FullTextFields.NAME.getValue()
 		+ FullTextFields.ALTERNATE_NAME_SUFFIX.getValue()
@@ -1429,6 +1428,14 @@ public class SolRSynchroniserTest extends AbstractIntegrationHttpSolrTestCase {
 		
 	);
 
+	FulltextResultsDto results = fullTextSearchEngine.executeQuery(new FulltextQuery(name,
+		paginate().from(1).to(10), Output.withDefaultFormat().withStyle(OutputStyle.MEDIUM),
+		new Class[]{Street.class},null).withoutSpellChecking());
+	List<HouseNumberDto> houseNumbersDto = results.getResults().get(0).getHouse_numbers();
+	assertEquals(2, houseNumbersDto.size());
+	assertEquals(houseNumber2.getNumber(), houseNumbersDto.get(0).getNumber());
+	assertEquals(houseNumber1.getNumber(), houseNumbersDto.get(1).getNumber());
+
 	// delete temp dir
 	assertTrue("the tempDir has not been deleted", GisgraphyTestHelper
 		.DeleteNonEmptyDirectory(tempDir));
@@ -0,0 +1,36 @@
+package com.gisgraphy.domain.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpatialParametersTest {
+
+	@Test
+	public void padShouldPadToTheNextPowerOfTwo() {
+		List<Long> padded = SpatialParameters.pad(Arrays.asList(1L));
+		Assert.assertEquals(Arrays.asList(1L, 1L, 1L, 1L), padded);
+
+		padded = SpatialParameters.pad(Arrays.asList(1L, 2L, 3L, 4L));
+		Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), padded);
+
+		padded = SpatialParameters.pad(Arrays.asList(1L, 2L, 3L, 4L, 5L));
+		Assert.assertEquals(8, padded.size());
+		Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 5L, 5L, 5L), padded);
+
+		List<Long> ids = new ArrayList<Long>();
+		for (long i = 0; i < 33; i++) {
+			ids.add(i);
+		}
+		Assert.assertEquals(64, SpatialParameters.pad(ids).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void padShouldNotAcceptEmptyList() {
+		SpatialParameters.pad(new ArrayList<Long>());
+	}
+
+}
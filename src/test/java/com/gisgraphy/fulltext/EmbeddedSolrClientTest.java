@@ -0,0 +1,121 @@
+package com.gisgraphy.fulltext;
+
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.solr.client.solrj.ResponseParser;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.QueryResponseWriter;
+import org.apache.solr.response.SolrQueryResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EmbeddedSolrClientTest {
+
+	@Test
+	public void constructorShouldNotAcceptEmptySolrHome() {
+		try {
+			new EmbeddedSolrClient(null, null);
+			fail("embedded solr client does not accept null solr home");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new EmbeddedSolrClient(" ", null);
+			fail("embedded solr client does not accept empty solr home");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void constructorShouldNotAcceptASolrHomeThatDoesNotExist() {
+		try {
+			new EmbeddedSolrClient(System.getProperty("java.io.tmpdir") + File.separator + "notExistingSolrHome" + System.currentTimeMillis(), null);
+			fail("embedded solr client does not accept a solr home that does not exist");
+		} catch (RuntimeException e) {
+		}
+	}
+
+	@Test
+	public void createSolrClientShouldReturnAnHttpClientWhenNotEmbedded() {
+		IsolrClient client = SolrClientFactory.createSolrClient(false, "http://127.0.0.1/solr", new MultiThreadedHttpConnectionManager(), null);
+		Assert.assertTrue(client instanceof SolrClient);
+		Assert.assertEquals("http://127.0.0.1/solr/", client.getURL());
+	}
+
+	@Test
+	public void writeToParserShouldStreamAResponseBiggerThanThePipe() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			EmbeddedSolrClient.writeToParser(executor, new LinesResponseWriter(100000), null, null, new OutputstreamResponseWrapper(out, "XML"));
+			String response = out.toString("UTF-8");
+			Assert.assertTrue(response.startsWith("line 0 \u00e9\n"));
+			Assert.assertTrue(response.endsWith("line 99999 \u00e9\n"));
+			Assert.assertEquals(100000, response.split("\n").length);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void writeToParserShouldNotBlockWhenTheParserStopsReading() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			EmbeddedSolrClient.writeToParser(executor, new LinesResponseWriter(100000), null, null, new ResponseParser() {
+				@Override
+				public String getWriterType() {
+					return "XML";
+				}
+
+				@Override
+				public NamedList<Object> processResponse(InputStream body, String encoding) {
+					throw new RuntimeException("the parser has failed");
+				}
+
+				@Override
+				public NamedList<Object> processResponse(Reader reader) {
+					throw new RuntimeException("the parser has failed");
+				}
+			});
+			fail("the error of the parser should be thrown");
+		} catch (Exception e) {
+			Assert.assertEquals("the parser has failed", e.getCause().getMessage());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class LinesResponseWriter implements QueryResponseWriter {
+
+		private final int numberOfLines;
+
+		private LinesResponseWriter(int numberOfLines) {
+			this.numberOfLines = numberOfLines;
+		}
+
+		public void write(Writer writer, SolrQueryRequest request, SolrQueryResponse response) throws IOException {
+			for (int i = 0; i < numberOfLines; i++) {
+				writer.write("line " + i + " \u00e9\n");
+			}
+		}
+
+		public String getContentType(SolrQueryRequest request, SolrQueryResponse response) {
+			return CONTENT_TYPE_TEXT_UTF8;
+		}
+
+		@SuppressWarnings("rawtypes")
+		public void init(NamedList args) {
+		}
+	}
+
+}
@@ -45,7 +45,6 @@ import java.util.Set;
 
 import javax.annotation.Resource;
 
-import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
@@ -100,8 +99,7 @@ public class FulltextSearchEngineTest extends
     @Test
     public void testIsAlive() {
 	assertTrue(fullTextSearchEngine.isAlive());
-	FullTextSearchEngine fullTextSearchEngineTobadUrl = new FullTextSearchEngine(
-		new MultiThreadedHttpConnectionManager());
+	FullTextSearchEngine fullTextSearchEngineTobadUrl = new FullTextSearchEngine();
 	IsolrClient mockSolClient = EasyMock.createMock(IsolrClient.class);
 	EasyMock.expect(mockSolClient.isServerAlive()).andReturn(false);
 	EasyMock.replay(mockSolClient);
@@ -110,8 +108,7 @@ public class FulltextSearchEngineTest extends
 	assertFalse(fullTextSearchEngineTobadUrl.isAlive());
 	EasyMock.verify(mockSolClient);
 
-	FullTextSearchEngine fullTextSearchEngineWithNullSolrClient = new FullTextSearchEngine(
-		new MultiThreadedHttpConnectionManager());
+	FullTextSearchEngine fullTextSearchEngineWithNullSolrClient = new FullTextSearchEngine();
 	fullTextSearchEngineWithNullSolrClient.setSolrClient(null);
 	assertFalse(fullTextSearchEngineWithNullSolrClient.isAlive());
     }
@@ -120,8 +117,7 @@ public class FulltextSearchEngineTest extends
     public void testGetUrl() {
 	String urlOfSolrClient = "URLOfSolRclient";
 	assertTrue(fullTextSearchEngine.isAlive());
-	FullTextSearchEngine fullTextSearchEngineTest = new FullTextSearchEngine(
-		new MultiThreadedHttpConnectionManager());
+	FullTextSearchEngine fullTextSearchEngineTest = new FullTextSearchEngine();
 	IsolrClient mockSolClient = EasyMock.createMock(IsolrClient.class);
 	EasyMock.expect(mockSolClient.getURL()).andReturn(urlOfSolrClient);
 	EasyMock.replay(mockSolClient);
@@ -132,19 +128,6 @@ public class FulltextSearchEngineTest extends
 
     }
 
-    @Test
-    public void testConstructorCanNotHaveNullParam() {
-	try {
-	    new FullTextSearchEngine(null);
-	    fail("FullTextSearchEngine does not accept null MultiThreadedHttpConnectionManager");
-	} catch (IllegalArgumentException e) {
-
-	} catch (FullTextSearchException e) {
-	    fail("FullTextSearchEngine does not accept null MultiThreadedHttpConnectionManager and must throws an exception of type IllegalArgumentException, not FullTextSearchException");
-	}
-
-    }
-
     @Test
     public void testExecuteAndSerializeCanNotHaveNullParam() {
 	try {
@@ -1731,8 +1714,7 @@ public class FulltextSearchEngineTest extends
     @Test
     public void testUpdateFeed(){
     	GisgraphySearchResult actual = new GisgraphySearchResult();
-    	FullTextSearchEngine fullTextSearchEngineTest = new FullTextSearchEngine(
-    			new MultiThreadedHttpConnectionManager());
+    	FullTextSearchEngine fullTextSearchEngineTest = new FullTextSearchEngine();
     	GisgraphySearchResult updated = fullTextSearchEngineTest.updateFeed(actual, null);
     	Assert.assertEquals(updated, actual);
     	
@@ -1832,8 +1814,7 @@ public class FulltextSearchEngineTest extends
 	 @Test
 	    public void testUpdateFeed_dedup(){
 	    	GisgraphySearchResult actual = new GisgraphySearchResult();
-	    	FullTextSearchEngine fullTextSearchEngineTest = new FullTextSearchEngine(
-	    			new MultiThreadedHttpConnectionManager());
+	    	FullTextSearchEngine fullTextSearchEngineTest = new FullTextSearchEngine();
 	    	
 	    	///name1/name1/name1
 	    	GisgraphySearchResponse solrResponse =new GisgraphySearchResponse();
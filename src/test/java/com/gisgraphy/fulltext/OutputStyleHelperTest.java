@@ -29,6 +29,7 @@ import org.junit.Test;
 
 import com.gisgraphy.domain.valueobject.Output;
 import com.gisgraphy.domain.valueobject.Output.OutputStyle;
+import com.gisgraphy.street.HouseNumberBinaryCodec;
 
 
 public class OutputStyleHelperTest {
@@ -109,7 +110,9 @@ public class OutputStyleHelperTest {
 	String list = outputStyleHelper.getFulltextFieldList(OutputStyle.FULL,null);
 	assertEquals(
 		"The field list has a wrong size for FULL without countryCode :"
-			+ list, 2, list.split(",").length);
+			+ list, 75, list.split(",").length);
+	assertFalse("The field list for FULL must not contains the binary house numbers : " + list,
+		list.contains(HouseNumberBinaryCodec.HOUSE_NUMBERS_BINARY_FIELD) || list.contains("*"));
 	assertFalse("The field list for FULL must not contains ',,' : " + list,
 		list.contains(",,"));
 	assertFalse("The field list for FULL must not ends with ',' : " + list,
@@ -118,6 +121,8 @@ public class OutputStyleHelperTest {
 	assertEquals(
 		"The field list for medium should be different for a specified country :"
 			+ list, 80, list.split(",").length);
+	assertFalse("The field list for FULL must not contains the binary house numbers : " + list,
+		list.contains(HouseNumberBinaryCodec.HOUSE_NUMBERS_BINARY_FIELD));
 	assertFalse("The field list for FULL must not ends with ',' : " + list,
 		list.endsWith(","));
 
@@ -0,0 +1,46 @@
+package com.gisgraphy.fulltext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gisgraphy.test.GisgraphyTestHelper;
+import com.gisgraphy.test.MicroBenchmark;
+
+/**
+ * Time {@link SmartStreetDetection#getStreetTypes(String)} on the texts of
+ * SmartStreetDetectionTest.txt (some names and the addresses of
+ * integrationGeococodingUrls.csv).
+ * <p>
+ * usage : SmartStreetDetectionBenchmark [numberOfIterations]
+ * <p>
+ * It is not a unit test.
+ */
+public class SmartStreetDetectionBenchmark {
+
+	private static final int DEFAULT_NUMBER_OF_ITERATIONS = 50;
+
+	private static final int WARM_UP_ITERATIONS = 10;
+
+	private static int found;
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_ITERATIONS;
+		final List<String> addresses = new ArrayList<String>();
+		for (String[] fields : GisgraphyTestHelper.readFixture(SmartStreetDetectionTest.class, "SmartStreetDetectionTest.txt")) {
+			addresses.add(fields[0]);
+		}
+		final SmartStreetDetection detection = new SmartStreetDetection();
+
+		Runnable detect = new Runnable() {
+			public void run() {
+				for (String address : addresses) {
+					found += detection.getStreetTypes(address).size();
+				}
+			}
+		};
+		System.out.println(addresses.size() + " addresses, " + iterations + " iterations");
+		MicroBenchmark.print("detect", MicroBenchmark.time(detect, WARM_UP_ITERATIONS, iterations), addresses.size() * iterations, "address");
+		System.out.println(found);
+	}
+
+}
@@ -1,10 +1,14 @@
 package com.gisgraphy.fulltext;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.gisgraphy.test.GisgraphyTestHelper;
+
 public class SmartStreetDetectionTest {
 
 	@Test
@@ -90,4 +94,16 @@ public class SmartStreetDetectionTest {
 		
 	}
 
+	@Test
+	public void getStreetTypesShouldReturnTheRecordedResults() throws Exception {
+		SmartStreetDetection ssd =new SmartStreetDetection();
+		List<String[]> fixture = GisgraphyTestHelper.readFixture(SmartStreetDetectionTest.class, "SmartStreetDetectionTest.txt");
+		Assert.assertFalse(fixture.isEmpty());
+		for (String[] fields : fixture){
+			Assert.assertEquals(fields[0], Arrays.asList(fields).subList(1, fields.length), ssd.getStreetTypes(fields[0]));
+		}
+		Assert.assertEquals(0, ssd.getStreetTypes("").size());
+		Assert.assertEquals(0, ssd.getStreetTypes(null).size());
+	}
+
 }
@@ -0,0 +1,133 @@
+package com.gisgraphy.fulltext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.common.util.Base64;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gisgraphy.domain.geoloc.entity.HouseNumber;
+import com.gisgraphy.fulltext.suggest.GisgraphySearchEntry;
+import com.gisgraphy.fulltext.suggest.GisgraphySearchResponse;
+import com.gisgraphy.fulltext.suggest.GisgraphySearchResult;
+import com.gisgraphy.helper.GeolocHelper;
+import com.gisgraphy.street.HouseNumberBinaryCodec;
+
+public class SuggestStreamingResponseWrapperTest {
+
+	private ObjectMapper mapper = new ObjectMapper();
+
+	private FullTextSearchEngine fullTextSearchEngine = new FullTextSearchEngine();
+
+	private GisgraphySearchEntry createEntry(long featureId, String name, double lat, double lng, String... houseNumbers) {
+		GisgraphySearchEntry entry = new GisgraphySearchEntry();
+		List<String> houseNumbersList = new ArrayList<String>();
+		for (String houseNumber : houseNumbers) {
+			houseNumbersList.add(houseNumber);
+		}
+		entry.setHouseNumbers(houseNumbersList);
+		entry.setFeatureId(featureId);
+		entry.setName(name);
+		entry.setIsIn("isIn");
+		entry.setLat(lat);
+		entry.setLng(lng);
+		return entry;
+	}
+
+	private String rewrite(String json, String number) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		SuggestStreamingResponseWrapper wrapper = new SuggestStreamingResponseWrapper(outputStream, mapper, fullTextSearchEngine, number);
+		wrapper.processResponse(new ByteArrayInputStream(json.getBytes("UTF-8")), "UTF-8");
+		return outputStream.toString("UTF-8");
+	}
+
+	@Test
+	public void processResponseShouldGiveTheSameDocsAsUpdateFeed() throws Exception {
+		GisgraphySearchResult feed = new GisgraphySearchResult();
+		GisgraphySearchResponse response = new GisgraphySearchResponse();
+		List<GisgraphySearchEntry> docs = new ArrayList<GisgraphySearchEntry>();
+		//two segments of the same street, the house number is in the second one
+		docs.add(createEntry(1L, "foo", 48.1, 2.1, "10:2.1,48.1", "12:2.1,48.1"));
+		docs.add(createEntry(2L, "foo", 48.1001, 2.1001, "9:2.2,48.2", "11:2.3,48.3"));
+		docs.add(createEntry(3L, "foo", 48.1002, 2.1002, "11:2.4,48.4"));
+		//an other street without the house number
+		docs.add(createEntry(4L, "bar", 10, 20, "1:20,10"));
+		docs.add(createEntry(5L, null, 30, 40, "11:40.5,30.5"));
+		response.setDocs(docs);
+		response.setNumFound(5);
+		feed.setResponse(response);
+		String json = mapper.writeValueAsString(feed);
+
+		String actual = rewrite(json, "11");
+
+		GisgraphySearchResult expected = fullTextSearchEngine.updateFeed(mapper.readValue(json, GisgraphySearchResult.class), "11");
+		GisgraphySearchResult actualAsObj = mapper.readValue(actual, GisgraphySearchResult.class);
+		Assert.assertEquals(5, actualAsObj.getResponse().getNumFound().intValue());
+		List<GisgraphySearchEntry> expectedDocs = expected.getResponse().getDocs();
+		List<GisgraphySearchEntry> actualDocs = actualAsObj.getResponse().getDocs();
+		Assert.assertEquals(3, expectedDocs.size());
+		Assert.assertEquals(expectedDocs.size(), actualDocs.size());
+		for (int i = 0; i < expectedDocs.size(); i++) {
+			Assert.assertEquals(expectedDocs.get(i).getFeatureId(), actualDocs.get(i).getFeatureId());
+			Assert.assertEquals(expectedDocs.get(i).getHouseNumber(), actualDocs.get(i).getHouseNumber());
+			Assert.assertEquals(expectedDocs.get(i).getLat(), actualDocs.get(i).getLat(), 0.0000001);
+			Assert.assertEquals(expectedDocs.get(i).getLng(), actualDocs.get(i).getLng(), 0.0000001);
+			Assert.assertEquals(expectedDocs.get(i).getLabel(), actualDocs.get(i).getLabel());
+		}
+		Assert.assertEquals(2L, actualDocs.get(0).getFeatureId());
+		Assert.assertEquals("11", actualDocs.get(0).getHouseNumber());
+		Assert.assertEquals(4L, actualDocs.get(1).getFeatureId());
+		Assert.assertNull(actualDocs.get(1).getHouseNumber());
+		Assert.assertEquals(5L, actualDocs.get(2).getFeatureId());
+		Assert.assertEquals("11", actualDocs.get(2).getHouseNumber());
+	}
+
+	@Test
+	public void processResponseShouldIgnoreUnknownFields() throws Exception {
+		String json = "{\"responseHeader\":{\"status\":0,\"QTime\":3,\"params\":{\"q\":\"foo\"}},"
+				+ "\"response\":{\"numFound\":1,\"start\":0,\"maxScore\":1.5,\"docs\":[{\"feature_id\":1,\"name\":\"foo\",\"lat\":1.0,\"lng\":2.0,\"house_numbers\":[\"11:3.0,4.0\"],\"unknown\":[1,2]}]},"
+				+ "\"spellcheck\":{\"suggestions\":[]}}";
+
+		GisgraphySearchResult actual = mapper.readValue(rewrite(json, "11"), GisgraphySearchResult.class);
+
+		Assert.assertEquals(3, actual.getResponseHeader().getQTime().intValue());
+		Assert.assertEquals(1.5f, actual.getResponse().getMaxScore(), 0.0001);
+		Assert.assertEquals(1, actual.getResponse().getDocs().size());
+		Assert.assertEquals("11", actual.getResponse().getDocs().get(0).getHouseNumber());
+		Assert.assertEquals(4.0, actual.getResponse().getDocs().get(0).getLat(), 0.0000001);
+		Assert.assertEquals(3.0, actual.getResponse().getDocs().get(0).getLng(), 0.0000001);
+	}
+
+	@Test
+	public void processResponseShouldReadTheBinaryHouseNumbersWithoutWritingThem() throws Exception {
+		List<HouseNumber> houseNumbers = new ArrayList<HouseNumber>();
+		houseNumbers.add(new HouseNumber("9", GeolocHelper.createPoint(3.5F, 4.5F), "FR"));
+		houseNumbers.add(new HouseNumber("11", GeolocHelper.createPoint(3.0F, 4.0F), "FR"));
+		byte[] encodedHouseNumbers = new HouseNumberBinaryCodec().encode(houseNumbers);
+		String json = "{\"response\":{\"numFound\":1,\"start\":0,\"docs\":[{\"feature_id\":1,\"name\":\"foo\",\"lat\":1.0,\"lng\":2.0,\""
+				+ HouseNumberBinaryCodec.HOUSE_NUMBERS_BINARY_FIELD + "\":\"" + Base64.byteArrayToBase64(encodedHouseNumbers, 0, encodedHouseNumbers.length) + "\"}]}}";
+
+		String rewritten = rewrite(json, "11");
+		GisgraphySearchResult actual = mapper.readValue(rewritten, GisgraphySearchResult.class);
+
+		Assert.assertEquals(1, actual.getResponse().getDocs().size());
+		Assert.assertEquals("11", actual.getResponse().getDocs().get(0).getHouseNumber());
+		Assert.assertEquals(4.0, actual.getResponse().getDocs().get(0).getLat(), 0.0001);
+		Assert.assertEquals(3.0, actual.getResponse().getDocs().get(0).getLng(), 0.0001);
+		Assert.assertFalse("the binary house numbers should not be in the suggest feed : " + rewritten,
+				rewritten.contains(HouseNumberBinaryCodec.HOUSE_NUMBERS_BINARY_FIELD));
+	}
+
+	@Test
+	public void processResponseShouldWriteAnEmptyResponseWhenThereIsNoDocs() throws Exception {
+		GisgraphySearchResult actual = mapper.readValue(rewrite("{\"response\":{\"numFound\":0}}", "11"), GisgraphySearchResult.class);
+
+		Assert.assertEquals(0, actual.getResponse().getDocs().size());
+		Assert.assertNull(actual.getResponseHeader());
+	}
+
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Gisgraphy Project 
+ *  
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *  
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *    Lesser General Public License for more details.
+ *  
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ *  
+ *   Copyright 2008  Gisgraphy project 
+ * 
+ *   David Masclet <davidmasclet@gisgraphy.com>
+ ******************************************************************************/
+package com.gisgraphy.geocoding;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gisgraphy.addressparser.Address;
+import com.gisgraphy.addressparser.AddressQuery;
+import com.gisgraphy.addressparser.AddressResultsDto;
+
+public class BatchGeocodingServiceTest {
+
+    @Test
+    public void splitCsvLine() {
+	List<String> fields = BatchGeocodingService.splitCsvLine("\"1, rue de \"\"la\"\" paix\",FR,true");
+	Assert.assertEquals(3, fields.size());
+	Assert.assertEquals("1, rue de \"la\" paix", fields.get(0));
+	Assert.assertEquals("FR", fields.get(1));
+	Assert.assertEquals("true", fields.get(2));
+
+	fields = BatchGeocodingService.splitCsvLine("paris");
+	Assert.assertEquals(1, fields.size());
+	Assert.assertEquals("paris", fields.get(0));
+    }
+
+    @Test
+    public void isCsvHeader() {
+	BatchGeocodingService batchGeocodingService = new BatchGeocodingService();
+	Assert.assertTrue(batchGeocodingService.isCsvHeader("address,country,fuzzy"));
+	Assert.assertTrue(batchGeocodingService.isCsvHeader(" Address , Country"));
+	Assert.assertTrue(batchGeocodingService.isCsvHeader("\"ADDRESS\""));
+	Assert.assertFalse("an address that starts with the name of the column is not a header", batchGeocodingService.isCsvHeader("Address Road 5,GB"));
+	Assert.assertFalse(batchGeocodingService.isCsvHeader("addresses,country"));
+	Assert.assertFalse(batchGeocodingService.isCsvHeader(""));
+    }
+
+    @Test
+    public void geocodeBatchShouldGeocodeAFirstLineThatStartsWithTheNameOfTheAddressColumn() throws Exception {
+	BatchGeocodingService batchGeocodingService = new BatchGeocodingService();
+	IGeocodingService geocodingService = EasyMock.createMock(IGeocodingService.class);
+	final List<String> geocodedAddresses = Collections.synchronizedList(new ArrayList<String>());
+	EasyMock.expect(geocodingService.geocode((AddressQuery) EasyMock.anyObject())).andAnswer(new IAnswer<AddressResultsDto>() {
+	    public AddressResultsDto answer() throws Throwable {
+		geocodedAddresses.add(((AddressQuery) EasyMock.getCurrentArguments()[0]).getAddress());
+		return new AddressResultsDto(new ArrayList<Address>(), 0L);
+	    }
+	}).times(2);
+	EasyMock.replay(geocodingService);
+	batchGeocodingService.setGeocodingService(geocodingService);
+	ByteArrayOutputStream output = new ByteArrayOutputStream();
+	try {
+	    Assert.assertEquals(2, batchGeocodingService.geocodeBatch(new ByteArrayInputStream("Address Road 5,GB\n10 Downing Street,GB\n".getBytes("UTF-8")), output,
+		    BatchFormat.CSV, null));
+	} finally {
+	    batchGeocodingService.shutdown();
+	}
+	EasyMock.verify(geocodingService);
+	Assert.assertTrue(geocodedAddresses.contains("Address Road 5"));
+	Assert.assertTrue(geocodedAddresses.contains("10 Downing Street"));
+    }
+
+    @Test
+    public void fromContentType() {
+	Assert.assertEquals(BatchFormat.NDJSON, BatchFormat.fromContentType("application/x-ndjson; charset=UTF-8"));
+	Assert.assertEquals(BatchFormat.CSV, BatchFormat.fromContentType("text/CSV"));
+	Assert.assertNull(BatchFormat.fromContentType("application/x-www-form-urlencoded"));
+	Assert.assertNull(BatchFormat.fromContentType(null));
+    }
+
+    @Test
+    public void geocodeBatchShouldWriteTheResultsInTheInputOrderAndTheErrorsPerLine() throws Exception {
+	BatchGeocodingService batchGeocodingService = new BatchGeocodingService();
+	batchGeocodingService.setNumberOfThreads(4);
+	batchGeocodingService.setMaxPendingLinesPerThread(1);
+	IGeocodingService geocodingService = EasyMock.createMock(IGeocodingService.class);
+	StringBuilder input = new StringBuilder("address,country\n");
+	for (int i = 1; i <= 20; i++) {
+	    input.append("street ").append(i).append(",FR\n");
+	}
+	EasyMock.expect(geocodingService.geocode((AddressQuery) EasyMock.anyObject())).andAnswer(new IAnswer<AddressResultsDto>() {
+	    public AddressResultsDto answer() throws Throwable {
+		AddressQuery query = (AddressQuery) EasyMock.getCurrentArguments()[0];
+		Assert.assertEquals("FR", query.getCountry());
+		if ("street 5".equals(query.getAddress())) {
+		    throw new GeocodingException("wrong address");
+		}
+		List<Address> addresses = new ArrayList<Address>();
+		Address address = new Address();
+		address.setFormatedFull(query.getAddress());
+		addresses.add(address);
+		return new AddressResultsDto(addresses, 0L);
+	    }
+	}).times(20);
+	EasyMock.replay(geocodingService);
+	batchGeocodingService.setGeocodingService(geocodingService);
+	ByteArrayOutputStream output = new ByteArrayOutputStream();
+	try {
+	    long count = batchGeocodingService.geocodeBatch(new ByteArrayInputStream(input.toString().getBytes("UTF-8")), output, BatchFormat.CSV, null);
+	    Assert.assertEquals(20, count);
+	} finally {
+	    batchGeocodingService.shutdown();
+	}
+	String[] lines = output.toString("UTF-8").split("\n");
+	Assert.assertEquals(21, lines.length);
+	for (int i = 1; i <= 20; i++) {
+	    Assert.assertTrue("line " + i + " is not in order : " + lines[i], lines[i].startsWith(i + ","));
+	    if (i == 5) {
+		Assert.assertTrue(lines[i].endsWith("wrong address"));
+	    } else {
+		Assert.assertTrue(lines[i].endsWith("street " + i + ","));
+	    }
+	}
+	EasyMock.verify(geocodingService);
+    }
+
+    @Test
+    public void geocodeBatchShouldFlushByBatchesOfLines() throws Exception {
+	BatchGeocodingService batchGeocodingService = new BatchGeocodingService();
+	batchGeocodingService.setNumberOfThreads(2);
+	batchGeocodingService.setMaxPendingLinesPerThread(5);
+	IGeocodingService geocodingService = EasyMock.createMock(IGeocodingService.class);
+	StringBuilder input = new StringBuilder();
+	for (int i = 1; i <= 100; i++) {
+	    input.append("street ").append(i).append("\n");
+	}
+	EasyMock.expect(geocodingService.geocode((AddressQuery) EasyMock.anyObject())).andStubReturn(new AddressResultsDto(new ArrayList<Address>(), 0L));
+	EasyMock.replay(geocodingService);
+	batchGeocodingService.setGeocodingService(geocodingService);
+	final int[] flushes = new int[1];
+	ByteArrayOutputStream output = new ByteArrayOutputStream() {
+	    @Override
+	    public void flush() {
+		flushes[0]++;
+	    }
+	};
+	try {
+	    Assert.assertEquals(100, batchGeocodingService.geocodeBatch(new ByteArrayInputStream(input.toString().getBytes("UTF-8")), output, BatchFormat.CSV, "FR"));
+	} finally {
+	    batchGeocodingService.shutdown();
+	}
+	Assert.assertEquals("header and lines", 101, output.toString("UTF-8").split("\n").length);
+	Assert.assertTrue("the output should be flushed by batches of 10 lines and at the end, not " + flushes[0] + " times", flushes[0] >= 1 && flushes[0] <= 11);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Gisgraphy Project 
+ *  
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *  
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *    Lesser General Public License for more details.
+ *  
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ *  
+ *   Copyright 2008  Gisgraphy project 
+ * 
+ *   David Masclet <davidmasclet@gisgraphy.com>
+ ******************************************************************************/
+package com.gisgraphy.geocoding;
+
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gisgraphy.addressparser.Address;
+import com.gisgraphy.addressparser.AddressQuery;
+import com.gisgraphy.addressparser.AddressResultsDto;
+
+public class GeocodingCacheTest {
+
+    private AddressResultsDto newResults() {
+	return new AddressResultsDto(new ArrayList<Address>(), 0L);
+    }
+
+    @Test
+    public void buildKeyShouldNormalizeTheAddress() {
+	GeocodingCache cache = new GeocodingCache();
+	Assert.assertEquals(cache.buildKey(new AddressQuery("  1 Rue   de la  Paix ", "fr")), cache.buildKey(new AddressQuery("1 rue de la paix", "FR")));
+	Assert.assertFalse(cache.buildKey(new AddressQuery("1 rue de la paix", "FR")).equals(cache.buildKey(new AddressQuery("1 rue de la paix", "BE"))));
+	Assert.assertNull(cache.buildKey(new AddressQuery(" ", "FR")));
+    }
+
+    @Test
+    public void buildKeyShouldTakeFuzzyIntoAccount() {
+	GeocodingCache cache = new GeocodingCache();
+	AddressQuery fuzzyQuery = new AddressQuery("paris", "FR");
+	fuzzyQuery.setFuzzy(true);
+	Assert.assertFalse(cache.buildKey(fuzzyQuery).equals(cache.buildKey(new AddressQuery("paris", "FR"))));
+    }
+
+    @Test
+    public void getShouldReturnWhatHasBeenPutAndCountHitsAndMisses() {
+	GeocodingCache cache = new GeocodingCache();
+	String key = cache.buildKey(new AddressQuery("paris", "FR"));
+	Assert.assertNull(cache.get(key));
+	AddressResultsDto results = newResults();
+	results.getResult().add(new Address());
+	cache.put(key, results);
+	AddressResultsDto cached = cache.get(key);
+	Assert.assertEquals(1, cached.getResult().size());
+	Assert.assertSame(results.getResult().get(0), cached.getResult().get(0));
+	Assert.assertEquals(1, cache.getHits());
+	Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void getShouldReturnACopyOfTheResults() {
+	GeocodingCache cache = new GeocodingCache();
+	AddressResultsDto results = newResults();
+	results.getResult().add(new Address());
+	cache.put("key", results);
+	results.getResult().clear();
+	AddressResultsDto first = cache.get("key");
+	Assert.assertNotSame(results, first);
+	Assert.assertEquals("a change of the put results should not change the cached ones", 1, first.getResult().size());
+	first.getResult().clear();
+	AddressResultsDto second = cache.get("key");
+	Assert.assertNotSame(first, second);
+	Assert.assertEquals("a change of the got results should not change the cached ones", 1, second.getResult().size());
+    }
+
+    @Test
+    public void cacheShouldBeSizeBounded() {
+	GeocodingCache cache = new GeocodingCache();
+	cache.setMaxSize(32);
+	for (int i = 0; i < 1000; i++) {
+	    cache.put("key" + i, newResults());
+	}
+	Assert.assertTrue(cache.size() <= 32);
+	Assert.assertEquals(1000 - cache.size(), cache.getEvictions());
+    }
+
+    @Test
+    public void onCommitShouldInvalidateTheCache() {
+	GeocodingCache cache = new GeocodingCache();
+	cache.put("key", newResults());
+	cache.onCommit();
+	Assert.assertNull(cache.get("key"));
+	Assert.assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void disabledCacheShouldNotStoreAnything() {
+	GeocodingCache cache = new GeocodingCache();
+	cache.setEnabled(false);
+	cache.put("key", newResults());
+	Assert.assertNull(cache.get("key"));
+	Assert.assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Gisgraphy Project 
+ *  
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *  
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *    Lesser General Public License for more details.
+ *  
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA
+ *  
+ *   Copyright 2008  Gisgraphy project 
+ * 
+ *   David Masclet <davidmasclet@gisgraphy.com>
+ ******************************************************************************/
+package com.gisgraphy.geocoding;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GeocodingSearchExecutorTest {
+
+    @Test
+    public void getShouldReturnTheResultOfTheTask() {
+	GeocodingSearchExecutor executor = new GeocodingSearchExecutor();
+	try {
+	    Future<String> future = executor.submit(new Callable<String>() {
+		public String call() {
+		    return "foo";
+		}
+	    });
+	    Assert.assertEquals("foo", executor.get(future));
+	} finally {
+	    executor.shutdown();
+	}
+    }
+
+    @Test
+    public void disabledExecutorShouldRunTheTaskInTheCallerThread() {
+	GeocodingSearchExecutor executor = new GeocodingSearchExecutor();
+	executor.setEnabled(false);
+	final Thread caller = Thread.currentThread();
+	Future<Thread> future = executor.submit(new Callable<Thread>() {
+	    public Thread call() {
+		return Thread.currentThread();
+	    }
+	});
+	Assert.assertFalse("the task should not be run before get is called", future.isDone());
+	Assert.assertEquals(caller, executor.get(future));
+    }
+
+    @Test
+    public void cancelledTaskShouldNotBeRun() {
+	GeocodingSearchExecutor executor = new GeocodingSearchExecutor();
+	executor.setEnabled(false);
+	final boolean[] called = new boolean[] { false };
+	Future<String> future = executor.submit(new Callable<String>() {
+	    public String call() {
+		called[0] = true;
+		return "foo";
+	    }
+	});
+	executor.cancel(future);
+	Assert.assertFalse(called[0]);
+    }
+
+    @Test
+    public void nestedTasksShouldNotDeadLockWhenThePoolIsFull() {
+	final GeocodingSearchExecutor executor = new GeocodingSearchExecutor();
+	executor.setNumberOfThreads(1);
+	executor.setQueueSize(1);
+	try {
+	    Future<String> outer = executor.submit(new Callable<String>() {
+		public String call() {
+		    Future<String> inner1 = executor.submit(new Callable<String>() {
+			public String call() {
+			    return "foo";
+			}
+		    });
+		    Future<String> inner2 = executor.submit(new Callable<String>() {
+			public String call() {
+			    return "bar";
+			}
+		    });
+		    return executor.get(inner1) + executor.get(inner2);
+		}
+	    });
+	    Assert.assertEquals("foobar", executor.get(outer));
+	} finally {
+	    executor.shutdown();
+	}
+    }
+
+    @Test
+    public void getShouldRethrowRuntimeException() {
+	GeocodingSearchExecutor executor = new GeocodingSearchExecutor();
+	executor.setEnabled(false);
+	Future<String> future = executor.submit(new Callable<String>() {
+	    public String call() {
+		throw new IllegalStateException("error");
+	    }
+	});
+	try {
+	    executor.get(future);
+	    Assert.fail("the exception of the task should be rethrown");
+	} catch (IllegalStateException e) {
+	    //ok
+	}
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setNumberOfThreadsShouldNotAcceptZero() {
+	new GeocodingSearchExecutor().setNumberOfThreads(0);
+    }
+
+}
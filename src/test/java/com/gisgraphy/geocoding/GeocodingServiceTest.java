@@ -1888,6 +1888,23 @@ public class GeocodingServiceTest {
 	EasyMock.verify(statsUsageService);
     }
 
+    @Test
+    public void testStatsShouldBeIncreaseForGeocode_cacheHit() {
+	GeocodingService geocodingService = new GeocodingService();
+	geocodingService.setStatsUsageService(statsUsageService);
+	GeocodingCache geocodingCache = new GeocodingCache();
+	geocodingService.setGeocodingCache(geocodingCache);
+	AddressQuery addressQuery = new AddressQuery("paris", "fr");
+	geocodingCache.put(geocodingCache.buildKey(addressQuery), new AddressResultsDto(new ArrayList<Address>(), 5000L));
+	statsUsageService.increaseUsage(StatsUsageType.GEOCODING);
+	EasyMock.replay(statsUsageService);
+	AddressResultsDto results = geocodingService.geocode(addressQuery);
+	EasyMock.verify(statsUsageService);
+	Assert.assertTrue("the qTime of a cache hit should be the time of the lookup", results.getQTime() < 5000L);
+	Assert.assertTrue("the cached qTime should not be modified",
+		geocodingCache.get(geocodingCache.buildKey(addressQuery)).getQTime() == 5000L);
+    }
+
     @Test
     public void testStatsShouldBeIncreaseForGeocode_address() {
 	GeocodingService geocodingService = new GeocodingService() {
@@ -2539,8 +2556,37 @@ public class GeocodingServiceTest {
 		Assert.assertEquals("isinadm", address.getState());
     	
     }
-    
 
+    @Test
+    public void doSearchShouldNotSearchTheStreetsWhenTheExactMatchIsEnough() {
+	final List<SolrResponseDto> exactMatches = new ArrayList<SolrResponseDto>();
+	exactMatches.add(EasyMock.createMock(SolrResponseDto.class));
+	final List<String> streetSearches = new ArrayList<String>();
+	GeocodingService geocodingService = new GeocodingService(){
+	    @Override
+	    protected List<SolrResponseDto> doSearchExact(String rawaddress, String countryCode, boolean fuzzy, Point point, Double radius, Class[] placetype) {
+		return new ArrayList<SolrResponseDto>(exactMatches);
+	    }
+	    @Override
+	    protected List<SolrResponseDto> doSearchStreet(String rawaddress, String countryCode, boolean fuzzy, Point point, Double radius) {
+		streetSearches.add(rawaddress);
+		return new ArrayList<SolrResponseDto>();
+	    }
+	    @Override
+	    protected AddressResultsDto buildAddressResultDtoFromSolrResponseDto(List<SolrResponseDto> solResponseDtos, String houseNumberToFind) {
+		return new AddressResultsDto();
+	    }
+	};
+	geocodingService.doSearch("paris", "parisalternative", "FR", false, null, false, null, null, false);
+	Assert.assertTrue("the streets should not be searched when the exact match has results", streetSearches.isEmpty());
+
+	exactMatches.clear();
+	geocodingService.doSearch("paris", "parisalternative", "FR", false, null, false, null, null, false);
+	Assert.assertEquals("the streets should be searched when the exact match has no result", 2, streetSearches.size());
+
+	streetSearches.clear();
+	geocodingService.doSearch("paris", null, "FR", true, null, false, null, null, false);
+	Assert.assertEquals("the streets should be searched when the address needs parsing", 1, streetSearches.size());
+    }
 
-   
 }
@@ -0,0 +1,159 @@
+package com.gisgraphy.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArchiveEntryReaderTest {
+
+    @Test
+    public void isArchive() {
+	Assert.assertTrue(ArchiveEntryReader.isArchive("FR.gis"));
+	Assert.assertTrue(ArchiveEntryReader.isArchive("FR.zip"));
+	Assert.assertTrue(ArchiveEntryReader.isArchive("FR.tar.bz2"));
+	Assert.assertTrue(ArchiveEntryReader.isArchive("FR.TXT.GZ"));
+	Assert.assertFalse(ArchiveEntryReader.isArchive("FR.txt"));
+	Assert.assertFalse(ArchiveEntryReader.isArchive(".zip"));
+	Assert.assertFalse(ArchiveEntryReader.isArchive(null));
+    }
+
+    @Test
+    public void getNameWithoutArchiveExtension() {
+	Assert.assertEquals("allCountries", ArchiveEntryReader.getNameWithoutArchiveExtension("allCountries.zip"));
+	Assert.assertEquals("FR", ArchiveEntryReader.getNameWithoutArchiveExtension("FR.tar.bz2"));
+	Assert.assertEquals("FR.TXT", ArchiveEntryReader.getNameWithoutArchiveExtension("FR.TXT.GZ"));
+	Assert.assertEquals("FR.txt", ArchiveEntryReader.getNameWithoutArchiveExtension("FR.txt"));
+	Assert.assertNull(ArchiveEntryReader.getNameWithoutArchiveExtension(null));
+    }
+
+    @Test
+    public void nextEntryShouldReadTheFilesOfATar() throws IOException {
+	ArchiveEntryReader reader = new ArchiveEntryReader(new File("./data/tests/gis/test.tar"), 1);
+	try {
+	    Assert.assertEquals("tarwocompression.txt", reader.nextEntry());
+	    Assert.assertEquals(13, read(reader.getEntryInputStream()).length);
+	    Assert.assertNull(reader.nextEntry());
+	    Assert.assertEquals(new File("./data/tests/gis/test.tar").length(), reader.getCompressedBytesRead());
+	} finally {
+	    reader.close();
+	}
+    }
+
+    @Test
+    public void nextEntryShouldReadTheFilesOfAGisFile() throws IOException {
+	for (int threads = 1; threads <= 2; threads++) {
+	    ArchiveEntryReader reader = new ArchiveEntryReader(new File("./data/tests/gis/test.gis"), threads);
+	    try {
+		Assert.assertEquals("testgis", reader.nextEntry());
+		Assert.assertEquals(0, read(reader.getEntryInputStream()).length);
+		Assert.assertNull(reader.nextEntry());
+	    } finally {
+		reader.close();
+	    }
+	}
+    }
+
+    @Test
+    public void nextEntryShouldSkipTheDirectoriesOfAZip() throws IOException {
+	File zip = File.createTempFile("archive", ".zip");
+	zip.deleteOnExit();
+	ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+	try {
+	    out.putNextEntry(new ZipEntry("dir/"));
+	    out.closeEntry();
+	    out.putNextEntry(new ZipEntry("dir/FR.txt"));
+	    out.write("line1\nline2\n".getBytes("UTF-8"));
+	    out.closeEntry();
+	    out.putNextEntry(new ZipEntry("DE.txt"));
+	    out.write("line3\n".getBytes("UTF-8"));
+	    out.closeEntry();
+	} finally {
+	    out.close();
+	}
+	ArchiveEntryReader reader = new ArchiveEntryReader(zip, 1);
+	try {
+	    Assert.assertEquals("dir/FR.txt", reader.nextEntry());
+	    InputStream entry = reader.getEntryInputStream();
+	    Assert.assertEquals("line1\nline2\n", new String(read(entry), "UTF-8"));
+	    entry.close();
+	    Assert.assertEquals("closing an entry should not close the archive", "DE.txt", reader.nextEntry());
+	    Assert.assertEquals("line3\n", new String(read(reader.getEntryInputStream()), "UTF-8"));
+	    Assert.assertNull(reader.nextEntry());
+	} finally {
+	    reader.close();
+	    zip.delete();
+	}
+    }
+
+    @Test
+    public void nextEntryShouldReadACompressedFileAsOneEntry() throws IOException {
+	byte[] content = createContent(100000);
+	File bzip2 = File.createTempFile("country", ".txt.bz2");
+	bzip2.deleteOnExit();
+	//small blocks, so that there is several blocks to decompress
+	OutputStream out = new BZip2CompressorOutputStream(new FileOutputStream(bzip2), 1);
+	try {
+	    out.write(content);
+	} finally {
+	    out.close();
+	}
+	for (int threads = 1; threads <= 3; threads++) {
+	    ArchiveEntryReader reader = new ArchiveEntryReader(bzip2, threads);
+	    try {
+		String name = reader.nextEntry();
+		Assert.assertTrue(name, name.endsWith(".txt"));
+		Assert.assertArrayEquals("the content is not the same with " + threads + " threads", content, read(reader.getEntryInputStream()));
+		Assert.assertNull(reader.nextEntry());
+		Assert.assertEquals(bzip2.length(), reader.getCompressedBytesRead());
+	    } finally {
+		reader.close();
+	    }
+	}
+	bzip2.delete();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getEntryInputStreamShouldThrowsBeforeNextEntry() throws IOException {
+	ArchiveEntryReader reader = new ArchiveEntryReader(new File("./data/tests/gis/test.tar"), 1);
+	try {
+	    reader.getEntryInputStream();
+	} finally {
+	    reader.close();
+	}
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownFormatShouldThrows() throws IOException {
+	new ArchiveEntryReader(new File("./data/tests/gis/test.tar.unknowext"), 1);
+    }
+
+    private static byte[] createContent(int lines) {
+	Random random = new Random(1);
+	StringBuilder builder = new StringBuilder();
+	for (int i = 0; i < lines; i++) {
+	    builder.append(i).append('\t').append(random.nextInt(100000)).append('\t').append("street ").append(random.nextInt(1000)).append('\n');
+	}
+	return builder.toString().getBytes();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	byte[] buffer = new byte[8192];
+	int read;
+	while ((read = in.read(buffer)) != -1) {
+	    out.write(buffer, 0, read);
+	}
+	return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.gisgraphy.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gisgraphy.test.GisgraphyTestHelper;
+import com.gisgraphy.test.MicroBenchmark;
+
+/**
+ * Time {@link CountryDetector#detectAndRemoveCountry(String)} on the
+ * addresses of CountryDetectorTest.txt (the country names in every language
+ * and the addresses of integrationGeococodingUrls.csv, with and without their
+ * country), and the build of the trie of the country names.
+ * <p>
+ * usage : CountryDetectorBenchmark [numberOfIterations]
+ * <p>
+ * It is not a unit test.
+ */
+public class CountryDetectorBenchmark {
+
+	private static final int DEFAULT_NUMBER_OF_ITERATIONS = 20;
+
+	private static final int WARM_UP_ITERATIONS = 5;
+
+	private static int found;
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_ITERATIONS;
+		final List<String> addresses = new ArrayList<String>();
+		for (String[] fields : GisgraphyTestHelper.readFixture(CountryDetectorTest.class, "CountryDetectorTest.txt")) {
+			addresses.add(fields[0]);
+		}
+		final CountryDetector detector = new CountryDetector();
+
+		Runnable detect = new Runnable() {
+			public void run() {
+				for (String address : addresses) {
+					if (detector.detectAndRemoveCountry(address).getCountryCode() != null) {
+						found++;
+					}
+				}
+			}
+		};
+		Runnable build = new Runnable() {
+			public void run() {
+				found += new CountryDetector(CountriesStaticData.countryCodeSortedByPopularity, CountriesStaticData.countryAlternateNames).hashCode() & 1;
+			}
+		};
+		System.out.println(addresses.size() + " addresses, " + iterations + " iterations");
+		MicroBenchmark.print("detect", MicroBenchmark.time(detect, WARM_UP_ITERATIONS, iterations), addresses.size() * iterations, "address");
+		MicroBenchmark.print("build", MicroBenchmark.time(build, WARM_UP_ITERATIONS, iterations), iterations, "trie");
+		System.out.println(found);
+	}
+
+}
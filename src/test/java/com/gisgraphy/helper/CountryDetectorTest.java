@@ -1,8 +1,15 @@
 package com.gisgraphy.helper;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.gisgraphy.test.GisgraphyTestHelper;
+
 public class CountryDetectorTest {
 
 	
@@ -44,4 +51,50 @@ public class CountryDetectorTest {
 		System.out.println(System.currentTimeMillis()-start);
 	}
 
+	@Test
+	public void detectAndRemoveCountryShouldPreferTheMostPopularCountryThenTheLongestName() {
+		Map<String, List<String>> names = new HashMap<String, List<String>>();
+		names.put("AA", Arrays.asList("north land", "land"));
+		names.put("BB", Arrays.asList("big north land"));
+		names.put("CC", Arrays.asList("new mexico land"));
+		CountryDetector detector = new CountryDetector(Arrays.asList("CC", "AA", "BB"), names);
+
+		CountryDetectorDto dto = detector.detectAndRemoveCountry("1 main street, big NORTH  land ");
+		Assert.assertEquals("AA", dto.getCountryCode());
+		Assert.assertEquals("1 main street, big", dto.getAddress());
+		dto = detector.detectAndRemoveCountry("1 main street, Land");
+		Assert.assertEquals("AA", dto.getCountryCode());
+		Assert.assertEquals("1 main street", dto.getAddress());
+		dto = detector.detectAndRemoveCountry("1 main street - North-Land");
+		Assert.assertEquals("AA", dto.getCountryCode());
+		Assert.assertEquals("1 main street", dto.getAddress());
+		dto = detector.detectAndRemoveCountry("1 main street, new mexico land");
+		Assert.assertEquals("the names with mexico are not detected", "AA", dto.getCountryCode());
+		Assert.assertEquals("1 main street, new mexico", dto.getAddress());
+
+		detector = new CountryDetector(Arrays.asList("BB", "AA"), names);
+		dto = detector.detectAndRemoveCountry("1 main street, big north land");
+		Assert.assertEquals("BB", dto.getCountryCode());
+		Assert.assertEquals("1 main street,", detector.detectAndRemoveCountry("1 main street,, big north land").getAddress());
+		dto = detector.detectAndRemoveCountry("big north isle");
+		Assert.assertNull(dto.getCountryCode());
+		Assert.assertEquals("big north isle", dto.getAddress());
+	}
+
+	@Test
+	public void detectAndRemoveCountryShouldReturnTheRecordedResults() throws Exception {
+		CountryDetector detector = new CountryDetector();
+		List<String[]> fixture = GisgraphyTestHelper.readFixture(CountryDetectorTest.class, "CountryDetectorTest.txt");
+		Assert.assertFalse(fixture.isEmpty());
+		for (String[] fields : fixture) {
+			CountryDetectorDto dto = detector.detectAndRemoveCountry(fields[0]);
+			Assert.assertEquals(fields[0], fields[1].length() == 0 ? null : fields[1], dto.getCountryCode());
+			Assert.assertEquals(fields[0], fields[2], dto.getAddress());
+		}
+		//the former implementation applied the index found in the sanitized address to the original one
+		CountryDetectorDto dto = detector.detectAndRemoveCountry("10 main street  -  Great  Britain ");
+		Assert.assertEquals("GB", dto.getCountryCode());
+		Assert.assertEquals("10 main street", dto.getAddress());
+	}
+
 }
@@ -0,0 +1,42 @@
+package com.gisgraphy.helper;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gisgraphy.test.GisgraphyTestHelper;
+
+public class NameMatcherTest {
+
+	@Test
+	public void matchesShouldReturnTheRecordedResults() throws Exception {
+		List<String[]> fixture = GisgraphyTestHelper.readFixture(NameMatcherTest.class, "NameMatcherTest.txt");
+		Assert.assertFalse(fixture.isEmpty());
+		for (String[] fields : fixture) {
+			NameMatcher.Name expectedName = NameMatcher.expected(fields[0]);
+			NameMatcher.Name actualName = NameMatcher.actual(fields[1]);
+			for (int tolerance = 0; tolerance <= 2; tolerance++) {
+				boolean same = fields[2].charAt(tolerance) == 'T';
+				Assert.assertEquals(fields[0] + " / " + fields[1] + " / " + tolerance, same, expectedName.matches(actualName, tolerance));
+				Assert.assertEquals(fields[0] + " / " + fields[1] + " / " + tolerance, same, StringHelper.isSameName(fields[0], fields[1], tolerance));
+			}
+		}
+	}
+
+	@Test
+	public void matchesShouldBeReusable() {
+		NameMatcher.Name expectedName = NameMatcher.expected("notre dame des anges");
+		Assert.assertTrue(expectedName.matches(NameMatcher.actual("notre dame anges"), 1));
+		Assert.assertFalse(expectedName.matches(NameMatcher.actual("saint jean de luz"), 1));
+		Assert.assertTrue(expectedName.matches(NameMatcher.actual("Notre-Dame des Anges"), 1));
+		Assert.assertTrue(NameMatcher.expectedBuffer("st omer").matches(NameMatcher.actualBuffer("Saint omer"), 1));
+		Assert.assertFalse(NameMatcher.expectedBuffer("Le Breuil").matches(NameMatcher.actualBuffer("Le Breuil-Mingot"), 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void matchesShouldNotAcceptAnExpectedNameAsActual() {
+		NameMatcher.expected("paris").matches(NameMatcher.expected("paris"), 1);
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.gisgraphy.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gisgraphy.helper.ParallelBZip2InputStream.Block;
+
+public class ParallelBZip2InputStreamTest {
+
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+    /**
+     * the position of the first block magic, after the 'BZh1' header
+     */
+    private static final long FIRST_BLOCK_START = 32;
+
+    @Test
+    public void readShouldReturnTheSameBytesAsTheSequentialDecompressor() throws IOException {
+	byte[] data = createData(500000, 1);
+	byte[] compressed = compress(data);
+	Assert.assertArrayEquals(data, readSequentially(compressed));
+	Assert.assertArrayEquals(readSequentially(compressed), readInParallel(compressed, 3));
+	Assert.assertArrayEquals(readSequentially(compressed), readInParallel(compressed, 1));
+    }
+
+    @Test
+    public void readShouldReadTheConcatenatedStreams() throws IOException {
+	ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+	concatenated.write(compress(createData(250000, 2)));
+	concatenated.write(compress(createData(10, 3)));
+	concatenated.write(compress(createData(150000, 4)));
+	byte[] compressed = concatenated.toByteArray();
+	Assert.assertEquals(250000 + 10 + 150000, readSequentially(compressed).length);
+	Assert.assertArrayEquals(readSequentially(compressed), readInParallel(compressed, 2));
+    }
+
+    @Test
+    public void aBlockSplitByAFalseMagicShouldBeDecompressedOnceMerged() throws IOException {
+	byte[] data = createData(50000, 5);
+	byte[] compressed = compress(data);
+	long endOfStream = findLastEndOfStreamMagic(compressed);
+	//a block magic found by chance in the data splits the block in two parts
+	long falseMagic = (FIRST_BLOCK_START + endOfStream) / 2 + 3;
+	Block first = new Block(compressed, FIRST_BLOCK_START, falseMagic, falseMagic);
+	Block second = new Block(compressed, falseMagic, endOfStream, compressed.length * 8L);
+
+	List<Block> parts = new ArrayList<Block>();
+	parts.add(first);
+	try {
+	    ParallelBZip2InputStream.decompress(ParallelBZip2InputStream.toStandaloneStream(parts));
+	    Assert.fail("the first part of a split block should not be decompressed");
+	} catch (IOException expected) {
+	    //the part is merged with the next one
+	}
+	parts.add(second);
+	byte[] merged = ParallelBZip2InputStream.decompress(ParallelBZip2InputStream.toStandaloneStream(parts));
+	Assert.assertArrayEquals(readSequentially(compressed), merged);
+    }
+
+    private static byte[] createData(int size, long seed) {
+	Random random = new Random(seed);
+	String[] words = { "rue", "avenue", "de", "la", "paris", "strasse", "12", "boulevard", "saint", "gisgraphy" };
+	ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+	while (out.size() < size) {
+	    byte[] word = (words[random.nextInt(words.length)] + (random.nextInt(8) == 0 ? "\n" : "\t")).getBytes();
+	    out.write(word, 0, Math.min(word.length, size - out.size()));
+	    if (random.nextInt(4) == 0) {
+		out.write(random.nextInt(256));
+	    }
+	}
+	return Arrays.copyOf(out.toByteArray(), size);
+    }
+
+    /**
+     * @return the data compressed with the smallest block size, so that it is
+     *         split in several blocks
+     */
+    private static byte[] compress(byte[] data) throws IOException {
+	ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+	OutputStream out = new BZip2CompressorOutputStream(compressed, 1);
+	out.write(data);
+	out.close();
+	return compressed.toByteArray();
+    }
+
+    private static byte[] readSequentially(byte[] compressed) throws IOException {
+	return read(new BZip2CompressorInputStream(new ByteArrayInputStream(compressed), true));
+    }
+
+    private static byte[] readInParallel(byte[] compressed, int threads) throws IOException {
+	return read(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed), threads));
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+	try {
+	    ByteArrayOutputStream out = new ByteArrayOutputStream();
+	    byte[] buffer = new byte[4096];
+	    int read;
+	    while ((read = in.read(buffer)) != -1) {
+		out.write(buffer, 0, read);
+	    }
+	    return out.toByteArray();
+	} finally {
+	    in.close();
+	}
+    }
+
+    /**
+     * @return the position in bits of the last end of stream magic
+     */
+    private static long findLastEndOfStreamMagic(byte[] compressed) {
+	long window = 0;
+	long found = -1;
+	for (long bit = 0; bit < compressed.length * 8L; bit++) {
+	    int value = (compressed[(int) (bit >>> 3)] >>> (7 - (bit & 7))) & 1;
+	    window = ((window << 1) | value) & 0xFFFFFFFFFFFFL;
+	    if (window == END_OF_STREAM_MAGIC) {
+		found = bit + 1 - 48;
+	    }
+	}
+	Assert.assertTrue("the stream should have an end of stream magic", found > 0);
+	return found;
+    }
+
+}
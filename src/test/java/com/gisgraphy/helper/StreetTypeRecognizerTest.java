@@ -0,0 +1,127 @@
+package com.gisgraphy.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreetTypeRecognizerTest {
+
+	private static final List<String> STREET_TYPES = Arrays.asList("rue", "route", "rte", "bd", "street", "straße");
+
+	private static final List<String> ENDING_STREET_TYPES = Arrays.asList("str", "straße", "strasse", "landstrasse", "platz");
+
+	@Test
+	public void findShouldFindTheStreetTypes() {
+		StreetTypeRecognizer recognizer = new StreetTypeRecognizer(STREET_TYPES, ENDING_STREET_TYPES, true);
+		Assert.assertEquals(Arrays.asList("rue"), find(recognizer, "rue de la paix"));
+		Assert.assertEquals(Arrays.asList("RUE", "Route"), find(recognizer, "RUE de la Route"));
+		Assert.assertEquals(Collections.emptyList(), find(recognizer, "ruelle des routes"));
+		Assert.assertEquals(Arrays.asList("straße"), find(recognizer, "Stauffenbergstraße"));
+		Assert.assertEquals(Arrays.asList("STRASSE", "str"), find(recognizer, "HAUPTSTRASSE Nebenstr. 1"));
+		Assert.assertEquals("the longest ending type should win", Arrays.asList("landstrasse"), find(recognizer, "Bundeslandstrasse"));
+		Assert.assertEquals("a type should end the word", Collections.emptyList(), find(recognizer, "strassen platze"));
+		Assert.assertEquals(Arrays.asList("bd", "platz"), find(recognizer, "bd_ 12bd,bd-parkplatz"));
+		Assert.assertEquals(Collections.emptyList(), find(recognizer, ""));
+	}
+
+	@Test
+	public void findShouldStartFromTheGivenIndex() {
+		StreetTypeRecognizer recognizer = new StreetTypeRecognizer(STREET_TYPES, ENDING_STREET_TYPES, true);
+		int[] bounds = new int[2];
+		Assert.assertTrue(recognizer.find("rue Hauptstr", 1, bounds));
+		Assert.assertEquals(9, bounds[0]);
+		Assert.assertEquals(12, bounds[1]);
+		Assert.assertTrue("only the end of a word that starts before the index is read", recognizer.find("bundeslandstrasse", 7, bounds));
+		Assert.assertEquals(10, bounds[0]);
+		Assert.assertFalse(recognizer.find("rue Hauptstr", 12, bounds));
+	}
+
+	@Test
+	public void findShouldIgnoreTheCaseOfTheAsciiLettersOnlyIfNotUnicodeCase() {
+		StreetTypeRecognizer recognizer = new StreetTypeRecognizer(STREET_TYPES, ENDING_STREET_TYPES, false);
+		Assert.assertEquals(Arrays.asList("STR"), find(recognizer, "HAUPTSTR"));
+		Assert.assertEquals(Collections.emptyList(), find(recognizer, "HAUPTSTRAẞE"));
+		recognizer = new StreetTypeRecognizer(STREET_TYPES, ENDING_STREET_TYPES, true);
+		Assert.assertEquals(Arrays.asList("STRAẞE"), find(recognizer, "HAUPTSTRAẞE"));
+	}
+
+	@Test
+	public void isStreetType() {
+		StreetTypeRecognizer recognizer = new StreetTypeRecognizer(STREET_TYPES, ENDING_STREET_TYPES, true);
+		Assert.assertTrue(recognizer.isStreetType("Rue"));
+		Assert.assertTrue(recognizer.isStreetType("PLATZ"));
+		Assert.assertFalse(recognizer.isStreetType("parkplatz"));
+		Assert.assertFalse(recognizer.isStreetType("rue,"));
+		Assert.assertFalse(recognizer.isStreetType("ru"));
+		Assert.assertFalse(recognizer.isStreetType(""));
+		Assert.assertFalse(recognizer.isStreetType(null));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void streetTypesAreMandatory() {
+		new StreetTypeRecognizer(null, ENDING_STREET_TYPES, true);
+	}
+
+	@Test
+	public void findShouldReturnTheSameResultsAsTheRegex() {
+		Pattern pattern = Pattern.compile(getRegexp(STREET_TYPES, ENDING_STREET_TYPES), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+		StreetTypeRecognizer recognizer = new StreetTypeRecognizer(STREET_TYPES, ENDING_STREET_TYPES, true);
+		Random random = new Random(25);
+		String letters = "rueoStRaßEsplatzdbLnÄ1_ -.,́é";
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int j = random.nextInt(30); j > 0; j--) {
+				if (random.nextInt(4) == 0) {
+					List<String> words = random.nextBoolean() ? STREET_TYPES : ENDING_STREET_TYPES;
+					text.append(words.get(random.nextInt(words.size())));
+				} else {
+					text.append(letters.charAt(random.nextInt(letters.length())));
+				}
+			}
+			List<String> expected = new ArrayList<String>();
+			Matcher matcher = pattern.matcher(text);
+			while (matcher.find()) {
+				expected.add(matcher.start() + "-" + matcher.end());
+			}
+			List<String> actual = new ArrayList<String>();
+			int[] bounds = new int[2];
+			int from = 0;
+			while (recognizer.find(text, from, bounds)) {
+				actual.add(bounds[0] + "-" + bounds[1]);
+				from = bounds[1];
+			}
+			Assert.assertEquals(text.toString(), expected, actual);
+		}
+	}
+
+	private static List<String> find(StreetTypeRecognizer recognizer, String text) {
+		List<String> streetTypes = new ArrayList<String>();
+		int[] bounds = new int[2];
+		int from = 0;
+		while (recognizer.find(text, from, bounds)) {
+			streetTypes.add(text.substring(bounds[0], bounds[1]));
+			from = bounds[1];
+		}
+		return streetTypes;
+	}
+
+	private static String getRegexp(List<String> streetTypes, List<String> endingStreetTypes) {
+		StringBuilder sb = new StringBuilder("(?:");
+		for (String streetType : streetTypes) {
+			sb.append("\\b").append(streetType).append("\\b|");
+		}
+		for (String endingStreetType : endingStreetTypes) {
+			sb.append(endingStreetType).append("\\b|");
+		}
+		sb.setLength(sb.length() - 1);
+		return sb.append(')').toString();
+	}
+
+}
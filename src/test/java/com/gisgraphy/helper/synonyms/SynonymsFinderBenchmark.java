@@ -0,0 +1,112 @@
+package com.gisgraphy.helper.synonyms;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.gisgraphy.test.MicroBenchmark;
+
+/**
+ * Time the lookups of {@link SynonymsFinder} for every file under synonyms/,
+ * and print the memory used by a finder loaded from the file and by its
+ * index alone.
+ * <p>
+ * usage : SynonymsFinderBenchmark [numberOfIterations]
+ * <p>
+ * It is not a unit test.
+ */
+public class SynonymsFinderBenchmark {
+
+	private static final String SYNONYMS_DIRECTORY = "synonyms";
+
+	private static final int DEFAULT_NUMBER_OF_ITERATIONS = 2000;
+
+	private static final int WARM_UP_ITERATIONS = 500;
+
+	private static final int COPIES = 1000;
+
+	private static int found;
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_ITERATIONS;
+		for (String filePath : listSynonymsFiles()) {
+			final SynonymsFinder synonymsFinder = new SynonymsFinder(filePath);
+			List<List<String>> dict = synonymsFinder.synonymsDict;
+			final List<String> words = new ArrayList<String>();
+			for (List<String> synonyms : dict) {
+				for (String synonym : synonyms) {
+					words.add(synonym.toUpperCase(Locale.ENGLISH));
+					words.add(synonym + "x");
+				}
+			}
+			final List<String> sentence = dict.get(dict.size() - 1);
+
+			Runnable lookup = new Runnable() {
+				public void run() {
+					for (String word : words) {
+						if (synonymsFinder.hasSynonyms(word) && synonymsFinder.isWordHasASynonymIn(word, sentence)) {
+							found++;
+						}
+						found += synonymsFinder.normalizeSynonyms(word).length();
+					}
+				}
+			};
+			System.out.println(filePath + " : " + dict.size() + " lists, " + words.size() + " words looked up, " + iterations + " iterations");
+			MicroBenchmark.print("lookup", MicroBenchmark.time(lookup, WARM_UP_ITERATIONS, iterations), words.size() * iterations, "word");
+			System.out.println(String.format("%-10s %10d bytes", "finder", finderMemory(filePath)));
+			System.out.println(String.format("%-10s %10d bytes", "index", indexMemory(dict)));
+		}
+		System.out.println(found);
+	}
+
+	/**
+	 * @return the paths of the files of the synonyms directory of the
+	 *         classpath, sorted by name
+	 */
+	private static List<String> listSynonymsFiles() throws IOException {
+		URL url = Thread.currentThread().getContextClassLoader().getResource(SYNONYMS_DIRECTORY);
+		if (url == null || !"file".equals(url.getProtocol())) {
+			throw new IOException(SYNONYMS_DIRECTORY + " is not a directory of the classpath : " + url);
+		}
+		String[] names = new File(url.getPath()).list();
+		Arrays.sort(names);
+		List<String> filePaths = new ArrayList<String>();
+		for (String name : names) {
+			filePaths.add(SYNONYMS_DIRECTORY + "/" + name);
+		}
+		return filePaths;
+	}
+
+	/**
+	 * @return the memory used by a finder loaded from the file : the synonyms
+	 *         lists and their index
+	 */
+	private static long finderMemory(String filePath) {
+		SynonymsFinder[] finders = new SynonymsFinder[COPIES];
+		long before = MicroBenchmark.usedMemory();
+		for (int i = 0; i < finders.length; i++) {
+			finders[i] = new SynonymsFinder(filePath);
+		}
+		long after = MicroBenchmark.usedMemory();
+		return (after - before) / finders.length;
+	}
+
+	/**
+	 * @return the memory used by the index of the synonyms lists (the lists
+	 *         themselves are shared)
+	 */
+	private static long indexMemory(List<List<String>> dict) {
+		SynonymsFinder[] finders = new SynonymsFinder[COPIES];
+		long before = MicroBenchmark.usedMemory();
+		for (int i = 0; i < finders.length; i++) {
+			finders[i] = new SynonymsFinder(dict);
+		}
+		long after = MicroBenchmark.usedMemory();
+		return (after - before) / finders.length;
+	}
+
+}
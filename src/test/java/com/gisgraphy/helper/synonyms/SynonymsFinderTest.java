@@ -1,13 +1,20 @@
 package com.gisgraphy.helper.synonyms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.gisgraphy.helper.Language;
+import com.gisgraphy.test.GisgraphyTestHelper;
+
 public class SynonymsFinderTest {
 
 	public static final List<List<String>> TEST_SYNONYMS = new ArrayList<List<String>>(){{
@@ -220,6 +227,48 @@ public class SynonymsFinderTest {
 		Assert.assertFalse(synonymsFinder.isWordHasASynonymIn("bar", wordsOfSentence));
 	}
 	
+	@Test
+	public void lookupsShouldReturnTheRecordedResults() throws Exception {
+		Map<String, List<List<String>>> dicts = new HashMap<String, List<List<String>>>();
+		dicts.put("DEFAULT_SYNONYMS", SynonymsFinder.DEFAULT_SYNONYMS);
+		dicts.put("TEST_SYNONYMS", TEST_SYNONYMS);
+		dicts.put("mySynonyms", mySynonyms);
+		dicts.put("mySynonyms_deep", mySynonyms_deep);
+		dicts.put("mySynonyms_streets", mySynonyms_streets);
+		dicts.put("br_synonyms_test.txt", new SynonymsFinder("br_synonyms_test.txt").synonymsDict);
+		for (Language language : Language.values()){
+			String filePath = "synonyms/"+language.toString().toLowerCase()+"_street_types.txt";
+			if (Thread.currentThread().getContextClassLoader().getResource(filePath)!=null){
+				dicts.put(filePath, new SynonymsFinder(filePath).synonymsDict);
+			}
+		}
+		List<String[]> fixture = GisgraphyTestHelper.readFixture(SynonymsFinderTest.class, "SynonymsFinderTest.txt");
+		Assert.assertFalse(fixture.isEmpty());
+		for (String[] fields : fixture){
+			List<List<String>> dict = dicts.get(fields[0]);
+			Assert.assertNotNull(fields[0], dict);
+			SynonymsFinder synonymsFinder = new SynonymsFinder(dict);
+			String word = fields[1];
+			Set<String> synonyms = new HashSet<String>(Arrays.asList(fields).subList(6, fields.length));
+			Assert.assertEquals(word, synonyms, synonymsFinder.getSynonymsFor(word));
+			Assert.assertEquals(word, fields[2], synonymsFinder.normalizeSynonyms(word));
+			Assert.assertEquals(word, !synonyms.isEmpty(), synonymsFinder.hasSynonyms(word));
+			Assert.assertEquals(fields[3], fields[4], synonymsFinder.normalize(fields[3]));
+			for (int i = 0; i < dict.size(); i++){
+				Assert.assertEquals(word+" in "+dict.get(i), fields[5].charAt(i) == 'T', synonymsFinder.isWordHasASynonymIn(word, dict.get(i)));
+				for (String other : dict.get(i)){
+					Assert.assertEquals(word+" / "+other, synonyms.contains(other), synonymsFinder.isASynonymFor(word, other));
+				}
+			}
+			Assert.assertTrue(synonymsFinder.getSynonymsFor(null).isEmpty());
+			Assert.assertNull(synonymsFinder.normalizeSynonyms(null));
+			Assert.assertFalse(synonymsFinder.hasSynonyms(null));
+			Assert.assertFalse(synonymsFinder.isASynonymFor(null, word));
+			Assert.assertFalse(synonymsFinder.isWordHasASynonymIn(null, dict.get(0)));
+			Assert.assertNull(synonymsFinder.normalize(null));
+		}
+	}
+
 	@Test
 	public void findSynonymsInSentence(){
 		//TODO
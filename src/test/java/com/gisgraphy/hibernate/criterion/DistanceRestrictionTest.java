@@ -65,14 +65,13 @@ public class DistanceRestrictionTest extends
 		criteriaQuery.getColumn((Criteria) EasyMock.anyObject(),
 			EasyMock.eq(GisFeature.LOCATION_COLUMN_NAME)))
 		.andReturn("").once();
-	EasyMock.expect(
-		criteriaQuery.getSQLAlias((Criteria) EasyMock.anyObject()))
-		.andReturn("").once();
 	EasyMock.replay(criteriaQuery);
 	DistanceRestriction dr = new DistanceRestriction(GisgraphyTestHelper
 		.createPoint(3F, 4F), 4D, true);
 	String sqlString = dr.toSqlString(null, criteriaQuery);
 	assertTrue(sqlString.contains(" && "));
+	assertTrue("the bounding box should be bound as a parameter",!sqlString.contains("BOX3D"));
+	assertTrue("the distance should be bound as a parameter",!sqlString.contains("4.0"));
 	EasyMock.verify(criteriaQuery);
     }
 
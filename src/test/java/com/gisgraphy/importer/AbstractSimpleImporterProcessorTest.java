@@ -2,13 +2,25 @@ package com.gisgraphy.importer;
 
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
+import com.gisgraphy.domain.repository.CopyBulkLoader;
+import com.gisgraphy.domain.valueobject.Constants;
 import com.gisgraphy.domain.valueobject.NameValueDTO;
+import com.gisgraphy.fulltext.FullTextSearchEngine;
+import com.gisgraphy.geoloc.GeolocSearchEngine;
 
 public class AbstractSimpleImporterProcessorTest {
 
@@ -128,4 +140,149 @@ public class AbstractSimpleImporterProcessorTest {
 	}
 	
 
+	@Test
+	public void processShouldIndexEachMarkedEntityOnce() throws Exception {
+		final File file = File.createTempFile("bulkload", ".txt");
+		file.deleteOnExit();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), Constants.CHARSET);
+		try {
+			for (String line : new String[] { "5", "5", "3000000000", "5", "3000000000", "7" }) {
+				writer.write(line);
+				writer.write("\n");
+			}
+		} finally {
+			writer.close();
+		}
+		final List<Long> indexed = new ArrayList<Long>();
+		AbstractSimpleImporterProcessor importerProcessor = new AbstractSimpleImporterProcessor() {
+
+			public List<NameValueDTO<Integer>> rollback() {
+				return null;
+			}
+
+			@Override
+			protected boolean shouldIgnoreFirstLine() {
+				return false;
+			}
+
+			@Override
+			protected boolean shouldIgnoreComments() {
+				return false;
+			}
+
+			@Override
+			protected void setCommitFlushMode() {
+			}
+
+			@Override
+			protected void processData(String line) throws ImporterException {
+				markForIndexation(Long.valueOf(line));
+			}
+
+			@Override
+			protected int getNumberOfColumns() {
+				return 1;
+			}
+
+			@Override
+			protected File[] getFiles() {
+				return new File[] { file };
+			}
+
+			@Override
+			protected void flushAndClear() {
+			}
+
+			@Override
+			protected boolean supportsBulkLoad() {
+				return true;
+			}
+
+			@Override
+			protected int indexBulkLoadedEntities(List<Long> ids) {
+				indexed.addAll(ids);
+				return ids.size();
+			}
+		};
+		ImporterConfig importerConfig = new ImporterConfig();
+		importerConfig.setBulkLoadEnabled(true);
+		importerConfig.setMaxInsertsBeforeFlush(2);
+		importerProcessor.setImporterConfig(importerConfig);
+		CopyBulkLoader bulkLoader = EasyMock.createNiceMock(CopyBulkLoader.class);
+		EasyMock.replay(bulkLoader);
+		importerProcessor.setBulkLoader(bulkLoader);
+		PlatformTransactionManager transactionManager = EasyMock.createNiceMock(PlatformTransactionManager.class);
+		EasyMock.expect(transactionManager.getTransaction((TransactionDefinition) EasyMock.anyObject())).andStubReturn(null);
+		EasyMock.replay(transactionManager);
+		importerProcessor.setTransactionManager(transactionManager);
+
+		importerProcessor.process();
+
+		Assert.assertEquals("the ids greater than Integer.MAX_VALUE should be indexed too",
+				Arrays.asList(5L, 7L, 3000000000L), indexed);
+		file.delete();
+	}
+
+	@Test
+	public void searchEnginesLoggingShouldBeEnabledWhenTheLastImporterEnds() {
+		AbstractSimpleImporterProcessor first = createEmptyImporter();
+		AbstractSimpleImporterProcessor second = createEmptyImporter();
+		first.disableSearchEnginesLogging();
+		second.disableSearchEnginesLogging();
+		second.disableSearchEnginesLogging();
+		Assert.assertTrue(FullTextSearchEngine.disableLogging);
+		Assert.assertTrue(GeolocSearchEngine.disableLogging);
+
+		first.tearDown();
+		Assert.assertTrue("the logging should stay disabled while an other importer runs", FullTextSearchEngine.disableLogging);
+		Assert.assertTrue(GeolocSearchEngine.disableLogging);
+		first.tearDown();
+		Assert.assertTrue(FullTextSearchEngine.disableLogging);
+
+		second.tearDown();
+		Assert.assertFalse(FullTextSearchEngine.disableLogging);
+		Assert.assertFalse(GeolocSearchEngine.disableLogging);
+	}
+
+	private AbstractSimpleImporterProcessor createEmptyImporter() {
+		return new AbstractSimpleImporterProcessor() {
+
+			public List<NameValueDTO<Integer>> rollback() {
+				return null;
+			}
+
+			@Override
+			protected boolean shouldIgnoreFirstLine() {
+				return false;
+			}
+
+			@Override
+			protected boolean shouldIgnoreComments() {
+				return false;
+			}
+
+			@Override
+			protected void setCommitFlushMode() {
+			}
+
+			@Override
+			protected void processData(String line) throws ImporterException {
+			}
+
+			@Override
+			protected int getNumberOfColumns() {
+				return 0;
+			}
+
+			@Override
+			protected File[] getFiles() {
+				return null;
+			}
+
+			@Override
+			protected void flushAndClear() {
+			}
+		};
+	}
+
 }
@@ -0,0 +1,108 @@
+package com.gisgraphy.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gisgraphy.domain.geoloc.entity.City;
+import com.gisgraphy.domain.geoloc.entity.CitySubdivision;
+import com.gisgraphy.domain.geoloc.entity.ZipCode;
+import com.gisgraphy.domain.repository.ICityDao;
+import com.gisgraphy.domain.repository.ICitySubdivisionDao;
+import com.gisgraphy.helper.GeolocHelper;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class CityLookupIndexTest {
+
+	private static final String BIG_SQUARE = "POLYGON((2 48, 2.2 48, 2.2 48.2, 2 48.2, 2 48))";
+
+	private static final String SMALL_SQUARE = "POLYGON((2.05 48.05, 2.1 48.05, 2.1 48.1, 2.05 48.1, 2.05 48.05))";
+
+	private ICityDao cityDao;
+
+	private ICitySubdivisionDao citySubdivisionDao;
+
+	private CityLookupIndex index;
+
+	@Before
+	public void setUp() throws Exception {
+		List<Object[]> cities = new ArrayList<Object[]>();
+		cities.add(new Object[] { 1L, 101L, "big", GeolocHelper.createPoint(2.1F, 48.1F), shape(BIG_SQUARE), true, 2000000, "adm1", null, null, null, null });
+		cities.add(new Object[] { 2L, 102L, "small", GeolocHelper.createPoint(2.07F, 48.07F), shape(SMALL_SQUARE), false, 1000, "adm1", null, null, null, null });
+		cities.add(new Object[] { 3L, 103L, "far", GeolocHelper.createPoint(2.5F, 48.5F), null, true, 500, "adm1", null, null, null, null });
+		List<Object[]> zipCodes = new ArrayList<Object[]>();
+		zipCodes.add(new Object[] { 1L, "75001" });
+		zipCodes.add(new Object[] { 1L, "75002" });
+		List<Object[]> alternateNames = new ArrayList<Object[]>();
+		alternateNames.add(new Object[] { 2L, "petite" });
+		List<Object[]> subdivisions = new ArrayList<Object[]>();
+		subdivisions.add(new Object[] { 20L, "district", shape(SMALL_SQUARE) });
+
+		cityDao = EasyMock.createMock(ICityDao.class);
+		EasyMock.expect(cityDao.listLookupDataByCountryCodeFrom("FR", Long.MIN_VALUE, 2)).andReturn(cities.subList(0, 2));
+		EasyMock.expect(cityDao.listLookupDataByCountryCodeFrom("FR", 2L, 2)).andReturn(cities.subList(2, 3));
+		EasyMock.expect(cityDao.listZipCodesByCountryCode("FR")).andReturn(zipCodes);
+		EasyMock.expect(cityDao.listAlternateNamesByCountryCode("FR")).andReturn(alternateNames);
+		EasyMock.replay(cityDao);
+		citySubdivisionDao = EasyMock.createMock(ICitySubdivisionDao.class);
+		EasyMock.expect(citySubdivisionDao.listNamesAndShapesByCountryCodeFrom("FR", Long.MIN_VALUE, 2)).andReturn(subdivisions);
+		EasyMock.replay(citySubdivisionDao);
+
+		index = new CityLookupIndex(cityDao, citySubdivisionDao, 2);
+	}
+
+	@Test
+	public void getCityByShapeShouldReturnTheSmallestShape() {
+		City city = index.getCityByShape(GeolocHelper.createPoint(2.07F, 48.07F), "FR", false);
+		Assert.assertEquals(Long.valueOf(2), city.getId());
+		Assert.assertEquals("small", city.getName());
+		Assert.assertEquals("petite", city.getAlternateNames().iterator().next().getName());
+		city = index.getCityByShape(GeolocHelper.createPoint(2.07F, 48.07F), "FR", true);
+		Assert.assertEquals("the small city is not a municipality", Long.valueOf(1), city.getId());
+		Assert.assertEquals(2, city.getZipCodes().size());
+		Assert.assertTrue(city.getZipCodes().contains(new ZipCode("75001", "FR")));
+		Assert.assertEquals(Integer.valueOf(2000000), city.getPopulation());
+		Assert.assertEquals("adm1", city.getAdm1Name());
+		Assert.assertNull(index.getCityByShape(GeolocHelper.createPoint(3F, 49F), "FR", false));
+		Assert.assertEquals("FR", index.getCountryCode());
+		EasyMock.verify(cityDao, citySubdivisionDao);
+	}
+
+	@Test
+	public void getCitySubdivisionByShapeShouldReturnTheSubdivisionThatContainsThePoint() {
+		CitySubdivision subdivision = index.getCitySubdivisionByShape(GeolocHelper.createPoint(2.07F, 48.07F), "FR");
+		Assert.assertEquals("district", subdivision.getName());
+		Assert.assertNull(index.getCitySubdivisionByShape(GeolocHelper.createPoint(2.15F, 48.15F), "FR"));
+	}
+
+	@Test
+	public void getNearestCitiesShouldReturnTheCitiesInTheDistanceSortedByDistance() {
+		List<City> cities = index.getNearestCities(GeolocHelper.createPoint(2.08F, 48.08F), "FR", OpenStreetMapSimpleImporter.DISTANCE, 10);
+		Assert.assertEquals("the far city is more than 40 km away", 2, cities.size());
+		Assert.assertEquals(Long.valueOf(2), cities.get(0).getId());
+		Assert.assertEquals(Long.valueOf(1), cities.get(1).getId());
+		cities = index.getNearestCities(GeolocHelper.createPoint(2.08F, 48.08F), "FR", OpenStreetMapSimpleImporter.DISTANCE, 1);
+		Assert.assertEquals(1, cities.size());
+		Assert.assertEquals(Long.valueOf(2), cities.get(0).getId());
+	}
+
+	@Test
+	public void theCountryShouldBeLoadedOnce() {
+		index.getCityByShape(GeolocHelper.createPoint(2.07F, 48.07F), "FR", false);
+		index.getNearestCities(GeolocHelper.createPoint(2.07F, 48.07F), "FR", OpenStreetMapSimpleImporter.DISTANCE, 10);
+		index.getCitySubdivisionByShape(GeolocHelper.createPoint(3F, 49F), "FR");
+		Assert.assertEquals(3, index.getNumberOfLookups());
+		Assert.assertEquals(2, index.getNumberOfHits());
+		EasyMock.verify(cityDao, citySubdivisionDao);
+	}
+
+	private static Geometry shape(String wkt) throws Exception {
+		return new WKTReader().read(wkt);
+	}
+
+}
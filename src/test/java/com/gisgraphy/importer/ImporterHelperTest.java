@@ -235,6 +235,39 @@ public class ImporterHelperTest {
 		}
 	}
 
+	@Test
+	public void listArchivesToStreamShouldOnlyReturnTheAllCountriesArchiveWhenItIsPresent() throws IOException {
+		File tempDir = FileHelper.createTempDir(this.getClass().getSimpleName());
+		try {
+			String tempDirectoryPath = tempDir.getAbsolutePath();
+			new File(tempDir, "FR.zip").createNewFile();
+			new File(tempDir, "DE.tar.bz2").createNewFile();
+			new File(tempDir, "FR.txt").createNewFile();
+
+			File[] archives = ImporterHelper.listArchivesToStream(tempDirectoryPath);
+			assertEquals(2, archives.length);
+			assertEquals("DE.tar.bz2", archives[0].getName());
+			assertEquals("FR.zip", archives[1].getName());
+
+			new File(tempDir, "GB_full.csv.zip").createNewFile();
+			File allCountries = new File(tempDir, "allCountries.zip");
+			allCountries.createNewFile();
+			archives = ImporterHelper.listArchivesToStream(tempDirectoryPath);
+			assertEquals("When the archive of " + ImporterHelper.ALLCOUTRY_FILENAME + " is present, only this archive and the uk one should be returned", 2, archives.length);
+			assertEquals("allCountries.zip", archives[0].getName());
+			assertEquals("GB_full.csv.zip", archives[1].getName());
+
+			assertTrue(allCountries.delete());
+			new File(tempDir, "allCountries.txt.bz2").createNewFile();
+			new File(tempDir, "GB_full.csv.zip").delete();
+			archives = ImporterHelper.listArchivesToStream(tempDirectoryPath);
+			assertEquals(1, archives.length);
+			assertEquals("allCountries.txt.bz2", archives[0].getName());
+		} finally {
+			assertTrue("the tempDir has not been deleted", GisgraphyTestHelper.DeleteNonEmptyDirectory(tempDir));
+		}
+	}
+
 	@Test
 	public void listSplitedFilesToImport() throws IOException {
 
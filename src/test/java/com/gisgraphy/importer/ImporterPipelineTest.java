@@ -0,0 +1,185 @@
+package com.gisgraphy.importer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import com.gisgraphy.domain.valueobject.Constants;
+import com.gisgraphy.domain.valueobject.ImporterStatus;
+import com.gisgraphy.domain.valueobject.ImporterStatusDto;
+import com.gisgraphy.domain.valueobject.NameValueDTO;
+
+public class ImporterPipelineTest {
+
+	@Test
+	public void processShouldPersistAllTheLines() throws Exception {
+		File file = createFile("# a comment", "header", "1", "2", "3", "4", "5", "6", "7");
+		PipelinedImporter importer = new PipelinedImporter(file, true);
+		importer.setImporterConfig(createImporterConfig(2, false));
+		importer.setTransactionManager(createTransactionManager());
+
+		importer.process();
+
+		Assert.assertEquals(ImporterStatus.PROCESSED, importer.getStatus());
+		Set<String> expected = new HashSet<String>();
+		for (int i = 1; i <= 7; i++) {
+			expected.add("line " + i);
+		}
+		Assert.assertEquals("all the lines except the comment and the header should be persisted", expected, new HashSet<String>(importer.persisted));
+		Assert.assertEquals(7, importer.persisted.size());
+		Assert.assertEquals(9, importer.getTotalReadLine());
+		ImporterPipeline<?> pipeline = importer.getPipeline();
+		Assert.assertNotNull(pipeline);
+		Assert.assertEquals(7, pipeline.getNumberOfLinesRead());
+		Assert.assertEquals(7, pipeline.getNumberOfLinesPrepared());
+		Assert.assertEquals(7, pipeline.getNumberOfLinesPersisted());
+
+		ImporterStatusDto dto = new ImporterStatusDto(importer);
+		Assert.assertTrue(dto.isPipelined());
+		Assert.assertEquals(7, dto.getNumberOfLinePersisted());
+		file.delete();
+	}
+
+	@Test
+	public void processShouldNotUseThePipelineWhenThereIsNoWorker() throws Exception {
+		File file = createFile("1", "2");
+		PipelinedImporter importer = new PipelinedImporter(file, false);
+		importer.setImporterConfig(createImporterConfig(0, false));
+		importer.setTransactionManager(createTransactionManager());
+
+		importer.process();
+
+		Assert.assertEquals(ImporterStatus.PROCESSED, importer.getStatus());
+		Assert.assertNull(importer.getPipeline());
+		Assert.assertFalse(new ImporterStatusDto(importer).isPipelined());
+		file.delete();
+	}
+
+	@Test
+	public void processShouldApplyTheErrorPolicyOfTheImporterConfig() throws Exception {
+		File file = createFile("1", "missing", "2", "3");
+		PipelinedImporter importer = new PipelinedImporter(file, false);
+		importer.setImporterConfig(createImporterConfig(2, false));
+		importer.setTransactionManager(createTransactionManager());
+		importer.process();
+		Assert.assertEquals("a missing field should be logged when missingRequiredFieldThrows is false", ImporterStatus.PROCESSED, importer.getStatus());
+		Assert.assertEquals(3, importer.persisted.size());
+
+		importer = new PipelinedImporter(file, false);
+		importer.setImporterConfig(createImporterConfig(2, true));
+		importer.setTransactionManager(createTransactionManager());
+		try {
+			importer.process();
+			Assert.fail("a missing field should stop the import when missingRequiredFieldThrows is true");
+		} catch (ImporterException e) {
+			Assert.assertEquals(ImporterStatus.ERROR, importer.getStatus());
+		}
+		file.delete();
+	}
+
+	private static ImporterConfig createImporterConfig(int workers, boolean missingRequiredFieldThrows) {
+		ImporterConfig importerConfig = new ImporterConfig();
+		importerConfig.setPipelineWorkers(workers);
+		importerConfig.setPipelineQueueSize(2);
+		importerConfig.setMaxInsertsBeforeFlush(3);
+		importerConfig.setMissingRequiredFieldThrows(missingRequiredFieldThrows);
+		return importerConfig;
+	}
+
+	private static PlatformTransactionManager createTransactionManager() {
+		PlatformTransactionManager transactionManager = EasyMock.createNiceMock(PlatformTransactionManager.class);
+		EasyMock.expect(transactionManager.getTransaction((TransactionDefinition) EasyMock.anyObject())).andStubReturn(null);
+		EasyMock.replay(transactionManager);
+		return transactionManager;
+	}
+
+	private static File createFile(String... lines) throws Exception {
+		File file = File.createTempFile("pipeline", ".txt");
+		file.deleteOnExit();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), Constants.CHARSET);
+		try {
+			for (String line : lines) {
+				writer.write(line);
+				writer.write("\n");
+			}
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	private static class PipelinedImporter extends AbstractSimpleImporterProcessor implements IPipelinedImporterProcessor<String> {
+
+		private final File file;
+
+		private final boolean ignoreFirstLine;
+
+		private final List<String> persisted = Collections.synchronizedList(new ArrayList<String>());
+
+		public PipelinedImporter(File file, boolean ignoreFirstLine) {
+			this.file = file;
+			this.ignoreFirstLine = ignoreFirstLine;
+		}
+
+		public String prepareData(String line) {
+			if ("missing".equals(line)) {
+				throw new MissingRequiredFieldException("the field is missing");
+			}
+			return "line " + line;
+		}
+
+		public void persistData(String data) {
+			persisted.add(data);
+		}
+
+		public List<NameValueDTO<Integer>> rollback() {
+			return null;
+		}
+
+		@Override
+		protected boolean shouldIgnoreFirstLine() {
+			return ignoreFirstLine;
+		}
+
+		@Override
+		protected boolean shouldIgnoreComments() {
+			return true;
+		}
+
+		@Override
+		protected void setCommitFlushMode() {
+		}
+
+		@Override
+		protected void processData(String line) throws ImporterException {
+			persistData(prepareData(line));
+		}
+
+		@Override
+		protected int getNumberOfColumns() {
+			return 1;
+		}
+
+		@Override
+		protected File[] getFiles() {
+			return new File[] { file };
+		}
+
+		@Override
+		protected void flushAndClear() {
+		}
+	}
+
+}
@@ -0,0 +1,214 @@
+package com.gisgraphy.importer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gisgraphy.domain.valueobject.ImporterStatus;
+import com.gisgraphy.domain.valueobject.NameValueDTO;
+
+public class ImporterSchedulerTest {
+
+	private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+	@Test
+	public void importersWithoutPrerequisitesShouldBeProcessedInOrder() {
+		List<IImporterProcessor> importers = Arrays.<IImporterProcessor> asList(new FakeImporter("a"), new FakeImporter("b"), new FakeImporter("c"));
+		for (int parallelism = 1; parallelism <= 3; parallelism++) {
+			events.clear();
+			new ImporterScheduler(importers, null, parallelism).process();
+			Assert.assertEquals(Arrays.asList("start a", "end a", "start b", "end b", "start c", "end c"), events);
+		}
+	}
+
+	@Test
+	public void processShouldRunTheIndependentImportersAtTheSameTime() {
+		final CountDownLatch bothStarted = new CountDownLatch(2);
+		FakeImporter a = new FakeImporter("a") {
+			@Override
+			public void process() {
+				bothStarted.countDown();
+				await(bothStarted);
+				super.process();
+			}
+		};
+		FakeImporter b = new FakeImporter("b") {
+			@Override
+			public void process() {
+				bothStarted.countDown();
+				await(bothStarted);
+				super.process();
+			}
+		};
+		FakeImporter c = new FakeImporter("c");
+		Map<IImporterProcessor, List<IImporterProcessor>> prerequisites = new HashMap<IImporterProcessor, List<IImporterProcessor>>();
+		prerequisites.put(a, new ArrayList<IImporterProcessor>());
+		prerequisites.put(b, new ArrayList<IImporterProcessor>());
+		prerequisites.put(c, Arrays.<IImporterProcessor> asList(a, b));
+		final List<IImporterProcessor> processed = Collections.synchronizedList(new ArrayList<IImporterProcessor>());
+
+		new ImporterScheduler(Arrays.<IImporterProcessor> asList(a, b, c), prerequisites, 2) {
+			@Override
+			protected void onProcessed(IImporterProcessor importer) {
+				processed.add(importer);
+			}
+		}.process();
+
+		Assert.assertEquals(ImporterStatus.PROCESSED, c.getStatus());
+		Assert.assertEquals("c should start when a and b are done", "start c", events.get(4));
+		Assert.assertEquals(c, processed.get(2));
+	}
+
+	@Test
+	public void getProcessingOrderShouldRespectThePrerequisites() {
+		FakeImporter a = new FakeImporter("a");
+		FakeImporter b = new FakeImporter("b");
+		FakeImporter c = new FakeImporter("c");
+		Map<IImporterProcessor, List<IImporterProcessor>> prerequisites = new HashMap<IImporterProcessor, List<IImporterProcessor>>();
+		prerequisites.put(a, Arrays.<IImporterProcessor> asList(c));
+		prerequisites.put(b, new ArrayList<IImporterProcessor>());
+		prerequisites.put(c, new ArrayList<IImporterProcessor>());
+		Assert.assertEquals(Arrays.asList(b, c, a), new ImporterScheduler(Arrays.<IImporterProcessor> asList(a, b, c), prerequisites, 1).getProcessingOrder());
+	}
+
+	@Test
+	public void processShouldNotStartTheOtherImportersWhenAnImporterFails() {
+		FakeImporter a = new FakeImporter("a") {
+			@Override
+			public void process() {
+				throw new ImporterException("error");
+			}
+		};
+		FakeImporter b = new FakeImporter("b");
+		for (int parallelism = 1; parallelism <= 2; parallelism++) {
+			try {
+				new ImporterScheduler(Arrays.<IImporterProcessor> asList(a, b), null, parallelism).process();
+				Assert.fail("the error of the importer should be thrown");
+			} catch (ImporterException e) {
+				Assert.assertEquals("error", e.getMessage());
+			}
+			Assert.assertEquals(ImporterStatus.WAITING, b.getStatus());
+		}
+	}
+
+	@Test
+	public void onEndedShouldBeCalledEvenWhenAnImporterFails() {
+		FakeImporter a = new FakeImporter("a");
+		FakeImporter b = new FakeImporter("b") {
+			@Override
+			public void process() {
+				throw new ImporterException("error");
+			}
+		};
+		final List<String> hooks = new ArrayList<String>();
+		try {
+			new ImporterScheduler(Arrays.<IImporterProcessor> asList(a, b), null, 1) {
+				@Override
+				protected void onStarted(IImporterProcessor importer) {
+					hooks.add("started " + importer);
+				}
+
+				@Override
+				protected void onEnded(IImporterProcessor importer) {
+					hooks.add("ended " + importer);
+				}
+
+				@Override
+				protected void onProcessed(IImporterProcessor importer) {
+					hooks.add("processed " + importer);
+				}
+			}.process();
+			Assert.fail("the error of the importer should be thrown");
+		} catch (ImporterException e) {
+			Assert.assertEquals("error", e.getMessage());
+		}
+		Assert.assertEquals(Arrays.asList("started a", "ended a", "processed a", "started b", "ended b"), hooks);
+	}
+
+	@Test(expected = ImporterException.class)
+	public void prerequisitesWithACycleShouldThrows() {
+		FakeImporter a = new FakeImporter("a");
+		FakeImporter b = new FakeImporter("b");
+		Map<IImporterProcessor, List<IImporterProcessor>> prerequisites = new HashMap<IImporterProcessor, List<IImporterProcessor>>();
+		prerequisites.put(a, Arrays.<IImporterProcessor> asList(b));
+		prerequisites.put(b, Arrays.<IImporterProcessor> asList(a));
+		new ImporterScheduler(Arrays.<IImporterProcessor> asList(a, b), prerequisites, 2);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			if (!latch.await(10, TimeUnit.SECONDS)) {
+				throw new ImporterException("the importers don't run at the same time");
+			}
+		} catch (InterruptedException e) {
+			throw new ImporterException(e);
+		}
+	}
+
+	private class FakeImporter implements IImporterProcessor {
+
+		private final String name;
+
+		private volatile ImporterStatus status = ImporterStatus.WAITING;
+
+		FakeImporter(String name) {
+			this.name = name;
+		}
+
+		public void process() {
+			events.add("start " + name);
+			status = ImporterStatus.PROCESSED;
+			events.add("end " + name);
+		}
+
+		public long getReadFileLine() {
+			return 0;
+		}
+
+		public long getTotalReadLine() {
+			return 0;
+		}
+
+		public String getCurrentFileName() {
+			return null;
+		}
+
+		public long getNumberOfLinesToProcess() {
+			return 0;
+		}
+
+		public ImporterStatus getStatus() {
+			return status;
+		}
+
+		public String getStatusMessage() {
+			return null;
+		}
+
+		public List<NameValueDTO<Integer>> rollback() {
+			return null;
+		}
+
+		public boolean shouldBeSkipped() {
+			return false;
+		}
+
+		public void resetStatus() {
+			status = ImporterStatus.WAITING;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+}
@@ -2,9 +2,15 @@ package com.gisgraphy.importer;
 
 
 import org.apache.commons.lang.RandomStringUtils;
+import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.gisgraphy.domain.geoloc.entity.HouseNumber;
+import com.gisgraphy.domain.geoloc.entity.OpenStreetMap;
+import com.gisgraphy.domain.repository.CopyBulkLoader;
+import com.gisgraphy.helper.GeolocHelper;
+
 public class OpenAddressesSimpleImporterTest {
 
 	@Test
@@ -136,4 +142,55 @@ public class OpenAddressesSimpleImporterTest {
 		Assert.assertEquals("32",importer.extractCasaNumber(" lot 4 CASA  32"));
 	}
 	
+	@Test
+	public void bulkLoadHouseNumberShouldReuseTheStreetsCreatedWithTheSameNameAndCity(){
+		OpenAddressesSimpleImporter importer = new OpenAddressesSimpleImporter();
+		OpenStreetMap street = createStreet("Rue de la paix", "Paris");
+		OpenStreetMap sameStreet = createStreet("rue de la Paix", "Paris");
+		OpenStreetMap otherCityStreet = createStreet("Rue de la paix", "Lyon");
+		CopyBulkLoader bulkLoader = EasyMock.createMock(CopyBulkLoader.class);
+		EasyMock.expect(bulkLoader.add(street)).andReturn(null);
+		EasyMock.expect(bulkLoader.add(otherCityStreet)).andReturn(null);
+		EasyMock.expect(bulkLoader.add(EasyMock.isA(HouseNumber.class))).andReturn(null).times(3);
+		EasyMock.replay(bulkLoader);
+		importer.setBulkLoader(bulkLoader);
+
+		HouseNumber houseNumber = importer.bulkLoadHouseNumber(street, "1", GeolocHelper.createPoint(2F, 48F), "FR", null);
+		Assert.assertSame(street, houseNumber.getStreet());
+		houseNumber = importer.bulkLoadHouseNumber(sameStreet, "3", GeolocHelper.createPoint(2F, 48F), "FR", null);
+		Assert.assertSame("the street created with the same name and city should be reused", street, houseNumber.getStreet());
+		houseNumber = importer.bulkLoadHouseNumber(otherCityStreet, "5", GeolocHelper.createPoint(4F, 45F), "FR", null);
+		Assert.assertSame(otherCityStreet, houseNumber.getStreet());
+		EasyMock.verify(bulkLoader);
+	}
+
+	@Test
+	public void bulkLoadHouseNumberShouldAddANewStreetAfterTheHouseNumberOfAnExistingStreet(){
+		OpenAddressesSimpleImporter importer = new OpenAddressesSimpleImporter();
+		OpenStreetMap existingStreet = createStreet("Rue de la paix", "Paris");
+		existingStreet.setId(1L);
+		OpenStreetMap newStreet = createStreet("Rue de rivoli", "Paris");
+		CopyBulkLoader bulkLoader = EasyMock.createStrictMock(CopyBulkLoader.class);
+		EasyMock.expect(bulkLoader.add(EasyMock.isA(HouseNumber.class))).andReturn(null);
+		EasyMock.expect(bulkLoader.add(newStreet)).andReturn(null);
+		EasyMock.expect(bulkLoader.add(EasyMock.isA(HouseNumber.class))).andReturn(null);
+		EasyMock.replay(bulkLoader);
+		importer.setBulkLoader(bulkLoader);
+
+		HouseNumber houseNumber = importer.bulkLoadHouseNumber(existingStreet, "1", GeolocHelper.createPoint(2F, 48F), "FR", null);
+		Assert.assertSame(existingStreet, houseNumber.getStreet());
+		houseNumber = importer.bulkLoadHouseNumber(newStreet, "2", GeolocHelper.createPoint(2.1F, 48F), "FR", null);
+		Assert.assertSame(newStreet, houseNumber.getStreet());
+		EasyMock.verify(bulkLoader);
+		//the house numbers table is used first, the streets must still be
+		//copied first, see CopyBulkLoaderTest
+	}
+
+	private OpenStreetMap createStreet(String name, String isIn) {
+		OpenStreetMap street = new OpenStreetMap();
+		street.setName(name);
+		street.setIsIn(isIn);
+		return street;
+	}
+	
 }
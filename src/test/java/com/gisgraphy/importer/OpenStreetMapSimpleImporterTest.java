@@ -493,6 +493,66 @@ public class OpenStreetMapSimpleImporterTest extends AbstractIntegrationHttpSolr
 	//EasyMock.verify(idGenerator);
     }
     
+    @Test
+    public void testImporterShouldImportWithThePipeline() throws InterruptedException{
+	ImporterConfig importerConfig = ((OpenStreetMapSimpleImporter) openStreetMapImporter).importerConfig;
+	int pipelineWorkers = importerConfig.getPipelineWorkers();
+	importerConfig.setPipelineWorkers(2);
+	try {
+	    openStreetMapImporter.resetStatus();
+	    openStreetMapImporter.process();
+	    Assert.assertNotNull("the streets should have been processed by the pipeline",
+		    ((OpenStreetMapSimpleImporter) openStreetMapImporter).getPipeline());
+	} finally {
+	    importerConfig.setPipelineWorkers(pipelineWorkers);
+	}
+	assertEquals(4L,openStreetMapDao.count());
+	Set<Long> gids = new HashSet<Long>();
+	for (OpenStreetMap street : openStreetMapDao.getAll()) {
+	    Assert.assertNotNull(street.getGid());
+	    gids.add(street.getGid());
+	}
+	assertEquals("each street should have its own gid", 4, gids.size());
+	OpenStreetMap openStreetMap = openStreetMapDao.getByOpenStreetMapId(11L);
+	assertEquals("The name is not correct","Bachlettenstrasse", openStreetMap.getName());
+	assertEquals("The countryCode is not correct ","FR",openStreetMap.getCountryCode());
+	assertEquals("The azimuth is not correct ",150, openStreetMap.getAzimuthEnd().intValue());
+	assertEquals("label is not correct ",labelGenerator.generateLabel(openStreetMap), openStreetMap.getLabel());
+	Assert.assertEquals(3, openStreetMap.getAlternateNames().size());
+	openStreetMap = openStreetMapDao.getByOpenStreetMapId(22L);
+	Assert.assertEquals("When there is no name and some alternatename, the first alternatename is set to name ","noName BUT an alternate",openStreetMap.getName());
+    }
+
+    @Test
+    public void testPrepareDataShouldNotPersistNorGenerateTheGid(){
+	String line = "11\tBachlettenstrasse\t010100000006C82291A0521E4054CC39B16BC64740\t0.00142246604529\tFR\ta city\t59000\t\tresidential\tt\t01020000000200000009B254CD6218024038E22428D9EF484075C93846B217024090A8AB96CFEF4840\t70___30 mp/h___\t4\tyEs\tasphalt\t100\t150\tA1\tname:fr===Rue de Bachlettenstrasse___name:de===Bachletten strasse";
+	OpenStreetMapSimpleImporter importer = new OpenStreetMapSimpleImporter();
+	ImporterConfig importerConfig = new ImporterConfig();
+	importerConfig.setOpenStreetMapFillIsIn(false);
+	importer.setImporterConfig(importerConfig);
+	IOpenStreetMapDao dao = EasyMock.createMock(IOpenStreetMapDao.class);
+	IIdGenerator idGenerator = EasyMock.createMock(IIdGenerator.class);
+	EasyMock.replay(dao, idGenerator);
+	importer.setOpenStreetMapDao(dao);
+	importer.setIdGenerator(idGenerator);
+
+	OpenStreetMap street = importer.prepareData(line);
+	EasyMock.verify(dao, idGenerator);
+	Assert.assertNotNull(street);
+	Assert.assertEquals("Bachlettenstrasse", street.getName());
+	Assert.assertEquals(new Long(11), street.getOpenstreetmapId());
+	Assert.assertEquals(labelGenerator.generateLabel(street), street.getLabel());
+	Assert.assertNull("the gid should be generated by the thread that persists the street", street.getGid());
+
+	EasyMock.reset(dao, idGenerator);
+	EasyMock.expect(idGenerator.getNextGId()).andReturn(5L);
+	EasyMock.expect(dao.save(street)).andReturn(street);
+	EasyMock.replay(dao, idGenerator);
+	importer.persistData(street);
+	EasyMock.verify(dao, idGenerator);
+	Assert.assertEquals(new Long(5), street.getGid());
+    }
+
     @Test
     public void testImportWithErrors(){
 	OpenStreetMapSimpleImporter importer = createImporterThatThrows();
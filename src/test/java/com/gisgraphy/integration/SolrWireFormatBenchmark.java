@@ -0,0 +1,146 @@
+package com.gisgraphy.integration;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.solr.client.solrj.ResponseParser;
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.client.solrj.impl.XMLResponseParser;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+import com.gisgraphy.domain.valueobject.Constants;
+import com.gisgraphy.domain.valueobject.Pagination;
+import com.gisgraphy.fulltext.FulltextQuery;
+import com.gisgraphy.fulltext.FulltextQuerySolrHelper;
+import com.gisgraphy.geocoding.GeocodingService;
+
+/**
+ * Compare the size and the parse time of the binary (javabin, the default of
+ * solrj) and the xml responses of the fulltext engine, for the queries sent
+ * by the geocoder (exact match on cities and adms, then streets) on the
+ * addresses of {@link RelevanceGeocodingLightTest#FILEPATH}.
+ * <p>
+ * usage : SolrWireFormatBenchmark [solrUrl] [numberOfParsePerResponse]
+ * <p>
+ * It is not a unit test and needs a fulltext engine with data, please do not
+ * run it against a production server.
+ */
+public class SolrWireFormatBenchmark {
+
+	private static final String DEFAULT_SOLR_URL = "http://127.0.0.1:8983/solr/";
+
+	private static final int DEFAULT_NUMBER_OF_PARSE = 20;
+
+	private static class WireFormat {
+		private final String name;
+		private final ResponseParser parser;
+		private final List<byte[]> responses = new ArrayList<byte[]>();
+		private long bytes = 0;
+		private long parseTimeInNanos = 0;
+
+		private WireFormat(String name, ResponseParser parser) {
+			this.name = name;
+			this.parser = parser;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String solrUrl = args.length > 0 ? args[0] : DEFAULT_SOLR_URL;
+		if (!solrUrl.endsWith("/")) {
+			solrUrl = solrUrl + "/";
+		}
+		int numberOfParse = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_PARSE;
+
+		List<ModifiableSolrParams> queries = buildGeocodingQueries();
+		WireFormat[] formats = new WireFormat[] { new WireFormat("javabin", new BinaryResponseParser()), new WireFormat("xml", new XMLResponseParser()) };
+
+		HttpClient httpClient = new HttpClient(new MultiThreadedHttpConnectionManager());
+		for (ModifiableSolrParams query : queries) {
+			for (WireFormat format : formats) {
+				byte[] response = fetch(httpClient, solrUrl, query, format.parser);
+				format.responses.add(response);
+				format.bytes += response.length;
+			}
+		}
+		for (WireFormat format : formats) {
+			//warm up
+			parseAll(format);
+			format.parseTimeInNanos = 0;
+			for (int i = 0; i < numberOfParse; i++) {
+				parseAll(format);
+			}
+		}
+
+		System.out.println(queries.size() + " queries, each response parsed " + numberOfParse + " times");
+		for (WireFormat format : formats) {
+			System.out.println(String.format("%-8s %12d bytes (%8.1f bytes/query) %10.1f microseconds/parse", format.name, format.bytes,
+					(double) format.bytes / queries.size(), format.parseTimeInNanos / 1000D / numberOfParse / queries.size()));
+		}
+	}
+
+	private static List<ModifiableSolrParams> buildGeocodingQueries() throws IOException {
+		List<ModifiableSolrParams> queries = new ArrayList<ModifiableSolrParams>();
+		InputStream inputStream = SolrWireFormatBenchmark.class.getResourceAsStream("/" + RelevanceGeocodingLightTest.FILEPATH);
+		if (inputStream == null) {
+			throw new IOException(RelevanceGeocodingLightTest.FILEPATH + " not found in the classpath");
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Constants.CHARSET));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\\t");
+				if (fields.length < 2 || fields[1].trim().length() == 0) {
+					continue;
+				}
+				String countryCode = fields[0].trim();
+				String address = fields[1].trim();
+				FulltextQuery exactMatchQuery = new FulltextQuery(address, GeocodingService.TEN_RESULT_PAGINATION, GeocodingService.DEFAULT_OUTPUT,
+						com.gisgraphy.fulltext.Constants.CITY_CITYSUB_ADM_PLACETYPE, countryCode);
+				exactMatchQuery.withAllWordsRequired(true).withoutSpellChecking();
+				queries.add(FulltextQuerySolrHelper.parameterize(exactMatchQuery));
+				FulltextQuery streetQuery = new FulltextQuery(address, Pagination.paginate().from(0).to(FulltextQuerySolrHelper.NUMBER_OF_STREET_TO_RETRIEVE),
+						GeocodingService.DEFAULT_OUTPUT, com.gisgraphy.fulltext.Constants.STREET_PLACETYPE, countryCode);
+				streetQuery.withAllWordsRequired(false).withoutSpellChecking();
+				queries.add(FulltextQuerySolrHelper.parameterize(streetQuery));
+			}
+		} finally {
+			reader.close();
+		}
+		return queries;
+	}
+
+	private static byte[] fetch(HttpClient httpClient, String solrUrl, ModifiableSolrParams query, ResponseParser parser) throws IOException {
+		ModifiableSolrParams params = new ModifiableSolrParams(query);
+		params.set(CommonParams.WT, parser.getWriterType());
+		params.set(CommonParams.VERSION, parser.getVersion());
+		GetMethod method = new GetMethod(solrUrl + "select" + ClientUtils.toQueryString(params, false));
+		try {
+			int status = httpClient.executeMethod(method);
+			if (status != 200) {
+				throw new IOException("fulltext engine returns " + status + " for " + method.getURI());
+			}
+			return method.getResponseBody();
+		} finally {
+			method.releaseConnection();
+		}
+	}
+
+	private static void parseAll(WireFormat format) {
+		for (byte[] response : format.responses) {
+			long start = System.nanoTime();
+			format.parser.processResponse(new ByteArrayInputStream(response), Constants.CHARSET);
+			format.parseTimeInNanos += System.nanoTime() - start;
+		}
+	}
+
+}
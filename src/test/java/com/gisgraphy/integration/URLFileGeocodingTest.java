@@ -231,7 +231,7 @@ public void FuzzyShouldWork(){
 public void coefFinder(){
 	MultiThreadedHttpConnectionManager multiThreadedHttpConnectionManager = new MultiThreadedHttpConnectionManager();
 	SolrClient solrclient= new SolrClient("http://import.gisgraphy.com:8983/solr/", multiThreadedHttpConnectionManager);
-	FullTextSearchEngine engine = new FullTextSearchEngine(multiThreadedHttpConnectionManager);
+	FullTextSearchEngine engine = new FullTextSearchEngine();
 	engine.setSolrClient(solrclient);
 	
 	for (int a=1;a<=50;a++){
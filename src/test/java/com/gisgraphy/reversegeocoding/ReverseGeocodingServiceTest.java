@@ -2,6 +2,9 @@ package com.gisgraphy.reversegeocoding;
 
 import static com.gisgraphy.reversegeocoding.ReverseGeocodingService.DEFAULT_STREET_RADIUS;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
@@ -17,6 +20,7 @@ import com.gisgraphy.helper.GeolocHelper;
 import com.gisgraphy.service.IStatsUsageService;
 import com.gisgraphy.service.impl.StatsUsageServiceImpl;
 import com.gisgraphy.stats.StatsUsageType;
+import com.gisgraphy.street.StreetType;
 import com.gisgraphy.test.GisgraphyTestHelper;
 import com.vividsolutions.jts.geom.Point;
 
@@ -236,4 +240,105 @@ public class ReverseGeocodingServiceTest {
 		EasyMock.verify(openStreetMapDao);
 	}
 
+	@Test
+	public void testExecuteQueries_nearbyPointsShouldShareTheStreetCandidates() {
+		Point point1 = GeolocHelper.createPoint(30.0012D, 30.0010D);
+		Point point2 = GeolocHelper.createPoint(30.0010D, 30.0012D);
+		ReverseGeocodingService reverseGeocodingService = new ReverseGeocodingService();
+		IStatsUsageService statsService = EasyMock.createMock(StatsUsageServiceImpl.class);
+		statsService.increaseUsage(StatsUsageType.REVERSEGEOCODING);
+		EasyMock.expectLastCall().times(2);
+		EasyMock.replay(statsService);
+		
+		OpenStreetMap osm = GisgraphyTestHelper.createOpenStreetMapForJohnKenedyStreet();
+		HouseNumber houseNumber = new HouseNumber("2",GeolocHelper.createPoint(30.001D, 30.001D),"fr");
+		osm.addHouseNumber(houseNumber);
+		List<OpenStreetMap> candidates = new ArrayList<OpenStreetMap>();
+		candidates.add(osm);
+		IOpenStreetMapDao openStreetMapDao = EasyMock.createMock(IOpenStreetMapDao.class);
+		EasyMock.expect(openStreetMapDao.getNearestsFrom(EasyMock.isA(Point.class), EasyMock.eq(false), EasyMock.eq(false), EasyMock.anyDouble(), EasyMock.eq(ReverseGeocodingService.MAX_CANDIDATES_PER_CLUSTER))).andReturn(candidates);
+		EasyMock.replay(openStreetMapDao);
+		
+		reverseGeocodingService.openStreetMapDao =openStreetMapDao;
+		reverseGeocodingService.statsUsageService = statsService;
+		
+		List<Point> points = new ArrayList<Point>();
+		points.add(point1);
+		points.add(point2);
+		List<AddressResultsDto> results = reverseGeocodingService.executeQueries(points);
+		Assert.assertEquals(2, results.size());
+		for (AddressResultsDto addressResultsDto : results){
+			Assert.assertEquals(1,addressResultsDto.getResult().size());
+			Assert.assertEquals("2",addressResultsDto.getResult().get(0).getHouseNumber());
+		}
+		
+		EasyMock.verify(statsService);
+		EasyMock.verify(openStreetMapDao);
+	}
+	
+	@Test
+	public void testGetNearestStreet() {
+		ReverseGeocodingService reverseGeocodingService = new ReverseGeocodingService();
+		OpenStreetMap footway = GisgraphyTestHelper.createOpenStreetMapForJohnKenedyStreet();
+		footway.setStreetType(StreetType.FOOTWAY);
+		footway.setShape(GeolocHelper.createLineString("LINESTRING (2 3, 2 3.001)"));
+		OpenStreetMap road = GisgraphyTestHelper.createOpenStreetMapForJohnKenedyStreet();
+		road.setShape(GeolocHelper.createLineString("LINESTRING (2.001 3, 2.001 3.001)"));
+		OpenStreetMap farRoad = GisgraphyTestHelper.createOpenStreetMapForJohnKenedyStreet();
+		farRoad.setShape(GeolocHelper.createLineString("LINESTRING (3 3, 3 3.001)"));
+		List<OpenStreetMap> candidates = new ArrayList<OpenStreetMap>();
+		candidates.add(farRoad);
+		candidates.add(footway);
+		candidates.add(road);
+		Point point = GeolocHelper.createPoint(2.0001D, 3.0005D);
+		Assert.assertSame(footway, reverseGeocodingService.getNearestStreet(candidates, point, false, false));
+		Assert.assertSame(road, reverseGeocodingService.getNearestStreet(candidates, point, true, true));
+		Assert.assertNull(reverseGeocodingService.getNearestStreet(candidates, GeolocHelper.createPoint(10D, 10D), false, false));
+		Assert.assertNull(reverseGeocodingService.getNearestStreet(null, point, false, false));
+	}
+
+	@Test
+	public void testExecuteQueries_tooManyCandidatesShouldUseAQueryPerPoint() {
+		int maxCandidates = ReverseGeocodingService.MAX_CANDIDATES_PER_CLUSTER;
+		ReverseGeocodingService.MAX_CANDIDATES_PER_CLUSTER = 1;
+		try {
+			Point point1 = GeolocHelper.createPoint(30.0012D, 30.0010D);
+			Point point2 = GeolocHelper.createPoint(30.0010D, 30.0012D);
+			ReverseGeocodingService reverseGeocodingService = new ReverseGeocodingService();
+			IStatsUsageService statsService = EasyMock.createMock(StatsUsageServiceImpl.class);
+			statsService.increaseUsage(StatsUsageType.REVERSEGEOCODING);
+			EasyMock.expectLastCall().times(2);
+			EasyMock.replay(statsService);
+
+			OpenStreetMap farStreet = GisgraphyTestHelper.createOpenStreetMapForJohnKenedyStreet();
+			farStreet.setShape(GeolocHelper.createLineString("LINESTRING (30.005 30.005, 30.005 30.006)"));
+			List<OpenStreetMap> candidates = new ArrayList<OpenStreetMap>();
+			candidates.add(farStreet);
+			OpenStreetMap osm = GisgraphyTestHelper.createOpenStreetMapForJohnKenedyStreet();
+			IOpenStreetMapDao openStreetMapDao = EasyMock.createMock(IOpenStreetMapDao.class);
+			EasyMock.expect(openStreetMapDao.getNearestsFrom(EasyMock.isA(Point.class), EasyMock.eq(false), EasyMock.eq(false), EasyMock.anyDouble(), EasyMock.eq(1))).andReturn(candidates);
+			EasyMock.expect(openStreetMapDao.getNearestRoadFrom(point1, DEFAULT_STREET_RADIUS)).andReturn(osm);
+			EasyMock.expect(openStreetMapDao.getNearestRoadFrom(point2, DEFAULT_STREET_RADIUS)).andReturn(osm);
+			EasyMock.replay(openStreetMapDao);
+
+			reverseGeocodingService.openStreetMapDao = openStreetMapDao;
+			reverseGeocodingService.statsUsageService = statsService;
+
+			List<Point> points = new ArrayList<Point>();
+			points.add(point1);
+			points.add(point2);
+			List<AddressResultsDto> results = reverseGeocodingService.executeQueries(points);
+			Assert.assertEquals(2, results.size());
+			for (AddressResultsDto addressResultsDto : results) {
+				Assert.assertEquals(1, addressResultsDto.getResult().size());
+				Assert.assertNotNull(addressResultsDto.getResult().get(0));
+			}
+
+			EasyMock.verify(statsService);
+			EasyMock.verify(openStreetMapDao);
+		} finally {
+			ReverseGeocodingService.MAX_CANDIDATES_PER_CLUSTER = maxCandidates;
+		}
+	}
+
 }
@@ -0,0 +1,167 @@
+package com.gisgraphy.reversegeocoding;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gisgraphy.domain.geoloc.entity.City;
+import com.gisgraphy.domain.geoloc.entity.GisFeature;
+import com.gisgraphy.domain.geoloc.entity.Street;
+import com.gisgraphy.domain.geoloc.entity.event.GisFeatureDeleteAllEvent;
+import com.gisgraphy.domain.geoloc.entity.event.GisFeatureDeletedEvent;
+import com.gisgraphy.domain.geoloc.entity.event.GisFeatureStoredEvent;
+import com.gisgraphy.domain.geoloc.entity.event.PlaceTypeDeleteAllEvent;
+import com.gisgraphy.domain.repository.IOpenStreetMapDao;
+import com.gisgraphy.domain.repository.IhouseNumberDao;
+import com.gisgraphy.helper.GeolocHelper;
+import com.gisgraphy.street.StreetType;
+
+public class StreetSpatialIndexLoaderTest {
+
+	private File directory;
+
+	private List<StreetSpatialIndexLoader> loaders = new ArrayList<StreetSpatialIndexLoader>();
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("streetspatialindexloader", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		for (StreetSpatialIndexLoader loader : loaders) {
+			loader.shutdown();
+		}
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void getIndexShouldReturnNullWhenTheIndexIsEmpty() throws Exception {
+		StreetSpatialIndexLoader loader = createLoader(new ArrayList<Object[]>());
+		loader.reload();
+		assertNull("an empty index should not be used", loader.getIndex());
+	}
+
+	@Test
+	public void getIndexShouldReturnNullWhenTheIndexIsStale() throws Exception {
+		List<Object[]> streets = new ArrayList<Object[]>();
+		streets.add(new Object[] { 1L, GeolocHelper.createLineString("LINESTRING (6.9416088 50.9154239,6.9410001 50.9154734)"), StreetType.RESIDENTIAL, "foo" });
+		StreetSpatialIndexLoader loader = createLoader(streets);
+		loader.reload();
+		assertNotNull(loader.getIndex());
+
+		loader.onModificationStarted();
+		assertNull("the index should not be used while the streets are modified", loader.getIndex());
+		loader.onModificationEnded();
+		assertNull("the index should not be used until it is rebuilt", loader.getIndex());
+		loader.reload();
+		assertNotNull(loader.getIndex());
+
+		loader.markStale();
+		assertNull("the index should not be used once it is stale", loader.getIndex());
+	}
+
+	@Test
+	public void supportsShouldOnlyAcceptTheEventsOfTheStreets() {
+		StreetSpatialIndexLoader loader = new StreetSpatialIndexLoader();
+		assertTrue(loader.supports(new GisFeatureStoredEvent(new Street())));
+		assertTrue(loader.supports(new GisFeatureDeletedEvent(new Street())));
+		assertTrue(loader.supports(new GisFeatureDeleteAllEvent(Arrays.asList(new City(), new Street()))));
+		assertTrue(loader.supports(new PlaceTypeDeleteAllEvent(Street.class)));
+		assertTrue("all the features, streets included, are deleted", loader.supports(new PlaceTypeDeleteAllEvent(GisFeature.class)));
+		assertFalse(loader.supports(new GisFeatureStoredEvent(new City())));
+		assertFalse(loader.supports(new GisFeatureDeleteAllEvent(Arrays.asList(new City()))));
+		assertFalse(loader.supports(new PlaceTypeDeleteAllEvent(City.class)));
+	}
+
+	@Test
+	public void handleEventShouldRebuildTheIndexWhenAStreetIsModifiedOutsideOfAnImport() throws Exception {
+		StreetSpatialIndexLoader loader = createLoader(createStreets());
+		loader.setEnabled(true);
+		loader.setReloadDelaySeconds(1);
+		loader.init();
+		waitForIndex(loader);
+
+		loader.handleEvent(new GisFeatureDeletedEvent(new Street()));
+		assertNull("the index should not be used once a street has been deleted", loader.getIndex());
+		waitForIndex(loader);
+	}
+
+	@Test
+	public void handleEventShouldNotRebuildTheIndexDuringAnImport() throws Exception {
+		StreetSpatialIndexLoader loader = createLoader(createStreets());
+		loader.setEnabled(true);
+		loader.setReloadDelaySeconds(0);
+		loader.init();
+		waitForIndex(loader);
+
+		loader.onModificationStarted();
+		loader.handleEvent(new GisFeatureStoredEvent(new Street()));
+		Thread.sleep(500);
+		loader.onModificationEnded();
+		assertNull("the index should only be rebuilt at the end of the import", loader.getIndex());
+		loader.reloadIfStale();
+		waitForIndex(loader);
+	}
+
+	@Test
+	public void markStaleShouldRebuildTheIndex() throws Exception {
+		StreetSpatialIndexLoader loader = createLoader(createStreets());
+		loader.setEnabled(true);
+		loader.setReloadDelaySeconds(1);
+		loader.init();
+		waitForIndex(loader);
+
+		loader.markStale();
+		assertNull(loader.getIndex());
+		waitForIndex(loader);
+	}
+
+	private void waitForIndex(StreetSpatialIndexLoader loader) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 10000;
+		while (loader.getIndex() == null && System.currentTimeMillis() < timeout) {
+			Thread.sleep(20);
+		}
+		assertNotNull("the index should have been built", loader.getIndex());
+	}
+
+	private List<Object[]> createStreets() {
+		List<Object[]> streets = new ArrayList<Object[]>();
+		streets.add(new Object[] { 1L, GeolocHelper.createLineString("LINESTRING (6.9416088 50.9154239,6.9410001 50.9154734)"), StreetType.RESIDENTIAL, "foo" });
+		return streets;
+	}
+
+	private StreetSpatialIndexLoader createLoader(List<Object[]> streets) {
+		StreetSpatialIndexLoader loader = new StreetSpatialIndexLoader();
+		loaders.add(loader);
+		loader.setDirectory(directory.getAbsolutePath());
+		loader.setBatchSize(10);
+		IOpenStreetMapDao openStreetMapDao = EasyMock.createMock(IOpenStreetMapDao.class);
+		EasyMock.expect(openStreetMapDao.listShapesFrom(EasyMock.anyLong(), EasyMock.eq(10))).andStubReturn(streets);
+		EasyMock.replay(openStreetMapDao);
+		IhouseNumberDao houseNumberDao = EasyMock.createMock(IhouseNumberDao.class);
+		EasyMock.expect(houseNumberDao.listLocationsFrom(EasyMock.anyLong(), EasyMock.eq(10))).andStubReturn(new ArrayList<Object[]>());
+		EasyMock.replay(houseNumberDao);
+		loader.openStreetMapDao = openStreetMapDao;
+		loader.houseNumberDao = houseNumberDao;
+		return loader;
+	}
+
+}
@@ -0,0 +1,169 @@
+package com.gisgraphy.reversegeocoding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gisgraphy.helper.GeolocHelper;
+
+public class StreetSpatialIndexTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("streetspatialindex", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void getNearestStreetIdShouldReturnTheNearestSegment() throws IOException {
+		Random random = new Random(12345);
+		int numberOfStreets = 500;
+		double[][] segments = new double[numberOfStreets * 3][];
+		StreetSpatialIndex.Builder builder = new StreetSpatialIndex.Builder(directory, 4);
+		for (int i = 0; i < numberOfStreets; i++) {
+			int streetIndex = builder.addStreet(i * 2 + 1, i % 3 != 0, i % 5 != 0);
+			double lng = 2.30 + random.nextDouble() * 0.1;
+			double lat = 48.80 + random.nextDouble() * 0.1;
+			for (int j = 0; j < 3; j++) {
+				double nextLng = lng + (random.nextDouble() - 0.5) * 0.002;
+				double nextLat = lat + (random.nextDouble() - 0.5) * 0.002;
+				builder.addSegment(streetIndex, lng, lat, nextLng, nextLat);
+				segments[i * 3 + j] = new double[] { i, lng, lat, nextLng, nextLat };
+				lng = nextLng;
+				lat = nextLat;
+			}
+		}
+		StreetSpatialIndex index = builder.build(new File(directory, "index"));
+		assertEquals(numberOfStreets, index.getNumberOfStreets());
+		assertEquals(numberOfStreets * 3, index.getNumberOfSegments());
+		for (int query = 0; query < 200; query++) {
+			double lng = 2.30 + random.nextDouble() * 0.1;
+			double lat = 48.80 + random.nextDouble() * 0.1;
+			assertEquals(bruteForce(segments, lng, lat, false, false), index.getNearestStreetId(lng, lat, 100000, false, false));
+			assertEquals(bruteForce(segments, lng, lat, true, true), index.getNearestStreetId(lng, lat, 100000, true, true));
+		}
+	}
+
+	private Long bruteForce(double[][] segments, double lng, double lat, boolean onlyRoad, boolean filterEmptyName) {
+		int x = StreetSpatialIndex.toFixedPoint(lng);
+		int y = StreetSpatialIndex.toFixedPoint(lat);
+		double cosLatitude = Math.cos(Math.toRadians(lat));
+		double smallestDistance = Double.MAX_VALUE;
+		Long nearest = null;
+		for (double[] segment : segments) {
+			int street = (int) segment[0];
+			if ((onlyRoad && street % 3 == 0) || (filterEmptyName && street % 5 == 0)) {
+				continue;
+			}
+			double distance = StreetSpatialIndex.distanceToSegment(x, y, cosLatitude, StreetSpatialIndex.toFixedPoint(segment[1]),
+					StreetSpatialIndex.toFixedPoint(segment[2]), StreetSpatialIndex.toFixedPoint(segment[3]), StreetSpatialIndex.toFixedPoint(segment[4]));
+			if (distance < smallestDistance) {
+				smallestDistance = distance;
+				nearest = (long) street * 2 + 1;
+			}
+		}
+		return nearest;
+	}
+
+	@Test
+	public void getNearestStreetIdShouldRespectTheDistance() throws IOException {
+		StreetSpatialIndex.Builder builder = new StreetSpatialIndex.Builder(directory);
+		int streetIndex = builder.addStreet(10, true, true);
+		builder.addSegment(streetIndex, 2.0, 48.0, 2.0, 48.001);
+		StreetSpatialIndex index = builder.build(new File(directory, "index"));
+		//one thousandth of a degree of longitude at 48° is about 74 meters
+		assertEquals(Long.valueOf(10), index.getNearestStreetId(2.001, 48.0005, 100, false, false));
+		assertNull(index.getNearestStreetId(2.001, 48.0005, 50, false, false));
+	}
+
+	@Test
+	public void getNearestStreetIdShouldReturnNullWhenTheIndexIsEmpty() throws IOException {
+		StreetSpatialIndex index = new StreetSpatialIndex.Builder(directory).build(new File(directory, "index"));
+		assertNull(index.getNearestStreetId(2.0, 48.0, 1000, false, false));
+		assertNull(index.getNearestHouseNumber(1L, GeolocHelper.createPoint(2.0, 48.0)));
+	}
+
+	@Test
+	public void addStreetShouldOnlyAcceptIncreasingIds() throws IOException {
+		StreetSpatialIndex.Builder builder = new StreetSpatialIndex.Builder(directory);
+		builder.addStreet(10, true, true);
+		try {
+			builder.addStreet(5, true, true);
+			fail("the streets should be added by increasing id");
+		} catch (IllegalArgumentException e) {
+			//ok
+		} finally {
+			builder.abort();
+		}
+	}
+
+	@Test
+	public void getNearestHouseNumberShouldReturnTheNearestHouseOfTheStreet() throws IOException {
+		StreetSpatialIndex.Builder builder = new StreetSpatialIndex.Builder(directory);
+		int street1 = builder.addStreet(1, true, true);
+		builder.addSegment(street1, 2.0, 48.0, 2.0, 48.01);
+		int street2 = builder.addStreet(2, true, true);
+		builder.addSegment(street2, 2.01, 48.0, 2.01, 48.01);
+		builder.addStreet(3, true, true);
+		builder.addHouseNumber(100, 2, 2.01, 48.002, "1", null);
+		builder.addHouseNumber(101, 1, 2.0, 48.001, "3", "rue de la paix");
+		builder.addHouseNumber(102, 1, 2.0, 48.005, "5bis", null);
+		builder.addHouseNumber(103, 42, 2.0, 48.005, "7", null);
+		StreetSpatialIndex index = builder.build(new File(directory, "index"));
+		assertEquals(3, index.getNumberOfHouseNumbers());
+		assertEquals(2, index.countHouseNumbers(1));
+		assertEquals(1, index.countHouseNumbers(2));
+		assertEquals(0, index.countHouseNumbers(3));
+		assertTrue(index.containsStreet(3));
+		assertFalse(index.containsStreet(42));
+
+		HouseNumberDistance nearest = index.getNearestHouseNumber(1L, GeolocHelper.createPoint(2.0001, 48.0049));
+		assertEquals(Long.valueOf(102), nearest.getHouseNumber().getId());
+		assertEquals("5bis", nearest.getHouseNumber().getNumber());
+		assertNull(nearest.getHouseNumber().getName());
+		assertEquals(48.005, nearest.getHouseNumber().getLatitude(), 0.0000001);
+
+		nearest = index.getNearestHouseNumber(1L, GeolocHelper.createPoint(2.0, 48.0));
+		assertEquals(Long.valueOf(101), nearest.getHouseNumber().getId());
+		assertEquals("rue de la paix", nearest.getHouseNumber().getName());
+
+		assertNull(index.getNearestHouseNumber(3L, GeolocHelper.createPoint(2.0, 48.0)));
+		assertNull(index.getNearestHouseNumber(42L, GeolocHelper.createPoint(2.0, 48.0)));
+	}
+
+	@Test
+	public void openShouldReadAnIndexWrittenByTheBuilder() throws IOException {
+		StreetSpatialIndex.Builder builder = new StreetSpatialIndex.Builder(directory);
+		int street = builder.addStreet(7, false, false);
+		builder.addSegment(street, 2.0, 48.0, 2.0, 48.01);
+		builder.addHouseNumber(1, 7, 2.0, 48.001, "12", null);
+		File file = new File(directory, "index");
+		builder.build(file);
+		StreetSpatialIndex index = StreetSpatialIndex.open(file);
+		assertEquals(Long.valueOf(7), index.getNearestStreetId(2.0001, 48.005, 1000, false, false));
+		assertNull(index.getNearestStreetId(2.0001, 48.005, 1000, true, false));
+		assertEquals("12", index.getNearestHouseNumber(7L, GeolocHelper.createPoint(2.0, 48.0)).getHouseNumber().getNumber());
+	}
+
+}
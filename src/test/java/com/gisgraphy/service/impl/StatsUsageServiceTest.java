@@ -89,17 +89,40 @@ public class StatsUsageServiceTest extends AbstractTransactionalTestCase {
     }
 
     @Test
-    public void testIncreaseUsageShouldflush() {
+    public void testIncreaseUsageShouldNotFlush() {
 	statsUsageService.resetUsage(StatsUsageType.FULLTEXT);
-	for (int i = 1; i < IStatsUsageService.FLUSH_THRESHOLD; i++) {
+	for (int i = 1; i <= IStatsUsageService.FLUSH_THRESHOLD; i++) {
 	    statsUsageService.increaseUsage(StatsUsageType.FULLTEXT);
-	    assertEquals(new Long(0), statsUsageDao.getByUsageType(
-		    StatsUsageType.FULLTEXT).getUsage());
 	}
-	statsUsageService.increaseUsage(StatsUsageType.FULLTEXT);
+	assertEquals(new Long(0), statsUsageDao.getByUsageType(
+		StatsUsageType.FULLTEXT).getUsage());
+	statsUsageService.flushAll();
 	assertEquals(new Long(IStatsUsageService.FLUSH_THRESHOLD),
 		statsUsageDao.getByUsageType(StatsUsageType.FULLTEXT)
 			.getUsage());
     }
 
+    @Test
+    public void testIncreaseUsageShouldNotLoseConcurrentIncrements() throws InterruptedException {
+	statsUsageService.resetUsage(StatsUsageType.GEOLOC);
+	final int numberOfIncrements = 10000;
+	Thread[] threads = new Thread[8];
+	for (int i = 0; i < threads.length; i++) {
+	    threads[i] = new Thread() {
+		@Override
+		public void run() {
+		    for (int j = 0; j < numberOfIncrements; j++) {
+			statsUsageService.increaseUsage(StatsUsageType.GEOLOC);
+		    }
+		}
+	    };
+	    threads[i].start();
+	}
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+	assertEquals(new Long(threads.length * numberOfIncrements),
+		statsUsageService.getUsage(StatsUsageType.GEOLOC));
+    }
+
 }
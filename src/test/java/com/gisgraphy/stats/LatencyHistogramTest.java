@@ -0,0 +1,92 @@
+package com.gisgraphy.stats;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void getBucketIndexShouldBeInTheBucketBounds() {
+	int previousIndex = -1;
+	for (long value = 0; value < 100000; value++) {
+	    int index = LatencyHistogram.getBucketIndex(value);
+	    Assert.assertTrue("the buckets should be sorted", index >= previousIndex);
+	    Assert.assertTrue(value + " should be under the upper bound of its bucket", value <= LatencyHistogram.getBucketUpperBound(index));
+	    if (index > 0) {
+		Assert.assertTrue(value + " should be over the upper bound of the previous bucket", value > LatencyHistogram.getBucketUpperBound(index - 1));
+	    }
+	    previousIndex = index;
+	}
+	Assert.assertEquals(LatencyHistogram.NUMBER_OF_BUCKETS - 1, LatencyHistogram.getBucketIndex(Long.MAX_VALUE));
+	Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.getBucketUpperBound(LatencyHistogram.NUMBER_OF_BUCKETS - 1));
+    }
+
+    @Test
+    public void percentilesShouldBeCloseToTheRecordedValues() {
+	LatencyHistogram histogram = new LatencyHistogram();
+	for (int millis = 1; millis <= 1000; millis++) {
+	    histogram.record(millis * 1000000L);
+	}
+	LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+	Assert.assertEquals(1000, snapshot.getCount());
+	assertClose(500000, snapshot.getValueAtPercentile(50));
+	assertClose(900000, snapshot.getValueAtPercentile(90));
+	assertClose(990000, snapshot.getValueAtPercentile(99));
+	Assert.assertEquals(1000000, snapshot.getValueAtPercentile(100));
+	Assert.assertEquals(1000000, snapshot.getMax());
+	Assert.assertEquals(1000, histogram.getCount());
+	Assert.assertEquals(1000D, histogram.getMax(), 0.001);
+	Assert.assertEquals(500D, histogram.getP50(), 500 / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void emptyHistogramAndResetShouldReturnZero() {
+	LatencyHistogram histogram = new LatencyHistogram();
+	Assert.assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+	histogram.record(5000);
+	histogram.record(-5000);
+	Assert.assertEquals(2, histogram.getCount());
+	Assert.assertEquals(0, histogram.snapshot().getValueAtPercentile(50));
+	Assert.assertEquals(5, histogram.snapshot().getValueAtPercentile(100));
+	histogram.reset();
+	Assert.assertEquals(0, histogram.getCount());
+	Assert.assertEquals(0D, histogram.getMax(), 0);
+    }
+
+    @Test
+    public void recordShouldNotLoseValuesWhenCalledConcurrently() throws InterruptedException {
+	final LatencyHistogram histogram = new LatencyHistogram();
+	final CountDownLatch start = new CountDownLatch(1);
+	Thread[] threads = new Thread[4];
+	for (int i = 0; i < threads.length; i++) {
+	    final long value = (i + 1) * 1000L;
+	    threads[i] = new Thread() {
+		@Override
+		public void run() {
+		    try {
+			start.await();
+		    } catch (InterruptedException e) {
+			return;
+		    }
+		    for (int j = 0; j < 10000; j++) {
+			histogram.record(value);
+		    }
+		}
+	    };
+	    threads[i].start();
+	}
+	start.countDown();
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+	Assert.assertEquals(40000, histogram.getCount());
+	Assert.assertEquals(4, histogram.snapshot().getMax());
+    }
+
+    private static void assertClose(long expected, long actual) {
+	Assert.assertTrue(actual + " is not close to " + expected, actual >= expected && actual <= expected + expected / LatencyHistogram.SUB_BUCKETS);
+    }
+
+}
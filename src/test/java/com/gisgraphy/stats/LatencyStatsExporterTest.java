@@ -0,0 +1,30 @@
+package com.gisgraphy.stats;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyStatsExporterTest {
+
+    @Test
+    public void registerShouldExposeTheHistogramsThroughJmx() throws Exception {
+	MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+	LatencyStatsExporter exporter = new LatencyStatsExporter();
+	exporter.setMBeanServer(mBeanServer);
+	exporter.register();
+	try {
+	    for (LatencyType type : LatencyType.values()) {
+		Assert.assertTrue(mBeanServer.isRegistered(LatencyStatsExporter.getObjectName(type)));
+	    }
+	    LatencyStats.getHistogram(LatencyType.SERIALIZATION).record(2000000);
+	    Assert.assertTrue((Long) mBeanServer.getAttribute(LatencyStatsExporter.getObjectName(LatencyType.SERIALIZATION), "Count") >= 1);
+	    Assert.assertTrue((Double) mBeanServer.getAttribute(LatencyStatsExporter.getObjectName(LatencyType.SERIALIZATION), "Max") >= 2D);
+	} finally {
+	    exporter.unregister();
+	}
+	Assert.assertFalse(mBeanServer.isRegistered(LatencyStatsExporter.getObjectName(LatencyType.GEOCODING)));
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.gisgraphy.street;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gisgraphy.domain.geoloc.entity.HouseNumber;
+import com.gisgraphy.helper.GeolocHelper;
+
+public class HouseNumberBinaryCodecTest {
+
+	private HouseNumber createHouseNumber(String number, double lng, double lat) {
+		HouseNumber houseNumber = new HouseNumber();
+		houseNumber.setLocation(GeolocHelper.createPoint(lng, lat));
+		houseNumber.setNumber(number);
+		return houseNumber;
+	}
+
+	@Test
+	public void encodeShouldReturnNullWhenThereIsNothingToEncode() {
+		HouseNumberBinaryCodec codec = new HouseNumberBinaryCodec();
+		assertNull(codec.encode(null));
+		assertNull(codec.encode(new ArrayList<HouseNumber>()));
+		List<HouseNumber> houseNumbers = new ArrayList<HouseNumber>();
+		houseNumbers.add(null);
+		houseNumbers.add(createHouseNumber(null, 2D, 48D));
+		assertNull(codec.encode(houseNumbers));
+	}
+
+	@Test
+	public void encodeAndDecode() {
+		HouseNumberBinaryCodec codec = new HouseNumberBinaryCodec();
+		List<HouseNumber> houseNumbers = new ArrayList<HouseNumber>();
+		houseNumbers.add(createHouseNumber("12", 2.3522219D, 48.856614D));
+		houseNumbers.add(createHouseNumber("3bis", -2.3522219D, -48.856614D));
+		houseNumbers.add(createHouseNumber("foo", 179.9999999D, 89.9999999D));
+		houseNumbers.add(createHouseNumber("1", 2.3522D, 48.8566D));
+		houseNumbers.add(createHouseNumber("3", 2.3523D, 48.8567D));
+
+		EncodedHouseNumberList decoded = new EncodedHouseNumberList(codec.encode(houseNumbers));
+		assertEquals(5, decoded.size());
+		assertEquals(4, decoded.getKeyedSize());
+		//sorted by normalized number, stable, without number at the end
+		String[] expectedNumbers = { "1", "3bis", "3", "12", "foo" };
+		for (int i = 0; i < expectedNumbers.length; i++) {
+			assertEquals(expectedNumbers[i], decoded.get(i).getNumber());
+		}
+		assertEquals(2.3522219D, decoded.get(3).getLocation().getX(), 0.0000001);
+		assertEquals(48.856614D, decoded.get(3).getLocation().getY(), 0.0000001);
+		assertEquals(-2.3522219D, decoded.get(1).getLocation().getX(), 0.0000001);
+		assertEquals(-48.856614D, decoded.get(1).getLocation().getY(), 0.0000001);
+		assertEquals(179.9999999D, decoded.get(4).getLocation().getX(), 0.0000001);
+		assertEquals(Integer.valueOf(3), decoded.getNumberAsInt(2));
+		assertNull(decoded.getNumberAsInt(4));
+	}
+
+	@Test
+	public void lowerBoundShouldSearchAcrossBlocks() {
+		HouseNumberBinaryCodec codec = new HouseNumberBinaryCodec();
+		List<HouseNumber> houseNumbers = new ArrayList<HouseNumber>();
+		//even numbers from 2 to 200, in the reverse order
+		for (int i = 200; i > 0; i -= 2) {
+			houseNumbers.add(createHouseNumber(String.valueOf(i), 2D + i / 10000D, 48D - i / 10000D));
+		}
+		EncodedHouseNumberList decoded = new EncodedHouseNumberList(codec.encode(houseNumbers));
+		assertEquals(100, decoded.size());
+		assertEquals(0, decoded.lowerBound(-5));
+		assertEquals(0, decoded.lowerBound(2));
+		assertEquals(1, decoded.lowerBound(3));
+		assertEquals(16, decoded.lowerBound(34));
+		assertEquals(16, decoded.lowerBound(33));
+		assertEquals(99, decoded.lowerBound(200));
+		assertEquals(100, decoded.lowerBound(201));
+		for (int i = 0; i < decoded.size(); i++) {
+			assertEquals(String.valueOf((i + 1) * 2), decoded.get(i).getNumber());
+			assertEquals(2D + (i + 1) * 2 / 10000D, decoded.get(i).getLocation().getX(), 0.0000001);
+		}
+	}
+
+	@Test
+	public void isSupported() {
+		assertFalse(EncodedHouseNumberList.isSupported(null));
+		assertFalse(EncodedHouseNumberList.isSupported(new byte[] { 1 }));
+		byte[] unknownVersion = new byte[HouseNumberBinaryCodec.HEADER_SIZE];
+		unknownVersion[0] = 99;
+		assertFalse(EncodedHouseNumberList.isSupported(unknownVersion));
+		List<HouseNumber> houseNumbers = new ArrayList<HouseNumber>();
+		houseNumbers.add(createHouseNumber("1", 2D, 48D));
+		assertTrue(EncodedHouseNumberList.isSupported(new HouseNumberBinaryCodec().encode(houseNumbers)));
+	}
+
+}
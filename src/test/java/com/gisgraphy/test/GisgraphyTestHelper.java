@@ -678,6 +678,36 @@ public class GisgraphyTestHelper {
 	return fileData.toString();
     }
 
+    /**
+     * @param testClass
+     *                the class of the test, the fixture is read from its
+     *                package
+     * @param fileName
+     *                the name of the fixture file
+     * @return the tab separated fields of each line of the fixture, the empty
+     *         lines and the lines that start with '#' are ignored
+     */
+    public static List<String[]> readFixture(Class<?> testClass, String fileName) throws IOException {
+	InputStream inputStream = testClass.getResourceAsStream(fileName);
+	if (inputStream == null) {
+	    throw new IOException(fileName + " not found in the package of " + testClass.getSimpleName());
+	}
+	List<String[]> lines = new ArrayList<String[]>();
+	BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Constants.CHARSET));
+	try {
+	    String line;
+	    while ((line = reader.readLine()) != null) {
+		if (line.length() == 0 || line.startsWith("#")) {
+		    continue;
+		}
+		lines.add(line.split("\t", -1));
+	    }
+	} finally {
+	    reader.close();
+	}
+	return lines;
+    }
+
     public static boolean DeleteNonEmptyDirectory(File path) {
 	if (path.exists()) {
 	    File[] files = path.listFiles();
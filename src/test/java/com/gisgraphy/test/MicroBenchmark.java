@@ -0,0 +1,64 @@
+package com.gisgraphy.test;
+
+/**
+ * Measures shared by the micro benchmarks of the tests (the main classes
+ * named *Benchmark), that time the helpers on the recorded fixtures of their
+ * unit tests.
+ * <p>
+ * It is not a unit test.
+ */
+public final class MicroBenchmark {
+
+	private MicroBenchmark() {
+	}
+
+	/**
+	 * @param runnable
+	 *            the code to time
+	 * @param warmUpIterations
+	 *            the number of runs before the measure, to let the JIT
+	 *            compile the code
+	 * @param iterations
+	 *            the number of runs measured
+	 * @return the time of the measured runs, in nanoseconds
+	 */
+	public static long time(Runnable runnable, int warmUpIterations, int iterations) {
+		for (int i = 0; i < warmUpIterations; i++) {
+			runnable.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			runnable.run();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Print the mean time of a call
+	 *
+	 * @param name
+	 *            the name of the measure
+	 * @param nanos
+	 *            the time returned by {@link #time(Runnable, int, int)}
+	 * @param calls
+	 *            the number of calls done during this time
+	 * @param unit
+	 *            what a call processes (e.g : address)
+	 */
+	public static void print(String name, long nanos, int calls, String unit) {
+		System.out.println(String.format("%-10s %10.3f microseconds/%s", name, nanos / 1000D / calls, unit));
+	}
+
+	/**
+	 * @return the memory used by the objects reachable after some garbage
+	 *         collections, in bytes
+	 */
+	public static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}